@@ -17,4 +17,6 @@ CREATE TABLE IF NOT EXISTS {0}(
 	PARENT VARCHAR, 
 	FILE_ID INT NOT NULL, 
 	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE, 
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS IDX_{0}_NAME ON {0}(NAME);
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hash map with the primitive <code>int</code> keys. Reads are lock free:
+ * the buckets are the chains of the immutable entries, so readers always see
+ * a consistent chain; modifications are serialized and replace the chains.
+ */
+class ConcurrentIntMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private static class Entry<V> {
+		final int key;
+		final V value;
+		final Entry<V> next;
+
+		Entry(int key, V value, Entry<V> next) {
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+	}
+
+	private volatile AtomicReferenceArray<Entry<V>> table;
+	private volatile int size;
+
+	public ConcurrentIntMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public ConcurrentIntMap(int capacity) {
+		int length = MIN_CAPACITY;
+		while (length < capacity) {
+			length <<= 1;
+		}
+		table = new AtomicReferenceArray<Entry<V>>(length);
+	}
+
+	private static int indexFor(int key, int length) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (length - 1);
+	}
+
+	public V get(int key) {
+		final AtomicReferenceArray<Entry<V>> tab = table;
+		for (Entry<V> e = tab.get(indexFor(key, tab.length())); e != null; e = e.next) {
+			if (e.key == key) {
+				return e.value;
+			}
+		}
+		return null;
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Associates the value with the key, returns the previous value or
+	 * <code>null</code>. <code>null</code> values are not allowed.
+	 */
+	public synchronized V put(int key, V value) {
+		return doPut(key, value, false);
+	}
+
+	/**
+	 * Associates the value with the key only if there is no value yet, returns
+	 * the current value or <code>null</code> if the value was added.
+	 */
+	public synchronized V putIfAbsent(int key, V value) {
+		return doPut(key, value, true);
+	}
+
+	private V doPut(int key, V value, boolean onlyIfAbsent) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		AtomicReferenceArray<Entry<V>> tab = table;
+		final int index = indexFor(key, tab.length());
+		final Entry<V> head = tab.get(index);
+		for (Entry<V> e = head; e != null; e = e.next) {
+			if (e.key == key) {
+				if (!onlyIfAbsent) {
+					tab.set(index, replace(head, e, value));
+				}
+				return e.value;
+			}
+		}
+		tab.set(index, new Entry<V>(key, value, head));
+		if (++size > tab.length() - (tab.length() >>> 2)) {
+			resize(tab);
+		}
+		return null;
+	}
+
+	public synchronized V remove(int key) {
+		final AtomicReferenceArray<Entry<V>> tab = table;
+		final int index = indexFor(key, tab.length());
+		final Entry<V> head = tab.get(index);
+		for (Entry<V> e = head; e != null; e = e.next) {
+			if (e.key == key) {
+				tab.set(index, replace(head, e, null));
+				--size;
+				return e.value;
+			}
+		}
+		return null;
+	}
+
+	public synchronized void clear() {
+		table = new AtomicReferenceArray<Entry<V>>(MIN_CAPACITY);
+		size = 0;
+	}
+
+	/**
+	 * Returns the copy of the chain with the specified entry replaced by the
+	 * new value or removed if value is <code>null</code>.
+	 */
+	private static <V> Entry<V> replace(Entry<V> head, Entry<V> target,
+			V value) {
+		Entry<V> result = value != null ? new Entry<V>(target.key, value,
+				target.next) : target.next;
+		for (Entry<V> e = head; e != target; e = e.next) {
+			result = new Entry<V>(e.key, e.value, result);
+		}
+		return result;
+	}
+
+	private void resize(AtomicReferenceArray<Entry<V>> tab) {
+		final int length = tab.length() << 1;
+		final AtomicReferenceArray<Entry<V>> newTab = new AtomicReferenceArray<Entry<V>>(
+				length);
+		for (int i = 0; i < tab.length(); ++i) {
+			for (Entry<V> e = tab.get(i); e != null; e = e.next) {
+				final int index = indexFor(e.key, length);
+				newTab.set(index, new Entry<V>(e.key, e.value, newTab
+						.get(index)));
+			}
+		}
+		table = newTab;
+	}
+
+	/**
+	 * Returns the snapshot of the keys
+	 */
+	public int[] keys() {
+		final AtomicReferenceArray<Entry<V>> tab = table;
+		int[] keys = new int[size];
+		int count = 0;
+		for (int i = 0; i < tab.length(); ++i) {
+			for (Entry<V> e = tab.get(i); e != null; e = e.next) {
+				if (count == keys.length) {
+					final int[] newKeys = new int[count * 2 + 1];
+					System.arraycopy(keys, 0, newKeys, 0, count);
+					keys = newKeys;
+				}
+				keys[count++] = e.key;
+			}
+		}
+		if (count != keys.length) {
+			final int[] newKeys = new int[count];
+			System.arraycopy(keys, 0, newKeys, 0, count);
+			keys = newKeys;
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the snapshot of the values
+	 */
+	public List<V> values() {
+		final AtomicReferenceArray<Entry<V>> tab = table;
+		final List<V> values = new ArrayList<V>(size);
+		for (int i = 0; i < tab.length(); ++i) {
+			for (Entry<V> e = tab.get(i); e != null; e = e.next) {
+				values.add(e.value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the estimated number of bytes used by the map structure itself,
+	 * not including the values.
+	 */
+	public long getFootprint() {
+		// object header + fields, array, 24 bytes per entry
+		return 32 + 16 + 4L * table.length() + 24L * size;
+	}
+
+}
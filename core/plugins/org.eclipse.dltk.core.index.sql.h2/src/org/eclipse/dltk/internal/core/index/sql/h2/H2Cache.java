@@ -13,14 +13,12 @@ package org.eclipse.dltk.internal.core.index.sql.h2;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -44,235 +42,220 @@ import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
  */
 public class H2Cache {
 
-	private static final ILock containerLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Container> containerById = new HashMap<Integer, Container>();
+	private static final ConcurrentIntMap<Container> containerById = new ConcurrentIntMap<Container>();
 
-	private static final ILock fileLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, File>> filesByContainer = new HashMap<Integer, Map<Integer, File>>();
+	private static final ConcurrentIntMap<File> fileById = new ConcurrentIntMap<File>();
+	private static final ConcurrentIntMap<ConcurrentIntMap<File>> filesByContainer = new ConcurrentIntMap<ConcurrentIntMap<File>>();
 
-	private static final ILock elementLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, List<Element>>> elementsMap = new HashMap<Integer, Map<Integer, List<Element>>>();
+	/** Element type -> file id -> elements */
+	private static final ConcurrentIntMap<ConcurrentIntMap<ElementList>> elementsMap = new ConcurrentIntMap<ConcurrentIntMap<ElementList>>();
+	/** File id -> elements of all types */
+	private static final ConcurrentIntMap<ElementList> elementsByFileId = new ConcurrentIntMap<ElementList>();
 
 	private static final ILock loadedLock = Job.getJobManager().newLock();
-	private static boolean isLoaded;
+	private static volatile boolean isLoaded;
+
+	/**
+	 * Append-only list of elements, could be read without locking while the
+	 * elements are added.
+	 */
+	private static class ElementList {
+		private volatile Element[] elements = new Element[4];
+		private volatile int size;
+
+		synchronized void add(Element element) {
+			Element[] array = elements;
+			if (size == array.length) {
+				final Element[] newArray = new Element[size * 2];
+				System.arraycopy(array, 0, newArray, 0, size);
+				elements = array = newArray;
+			}
+			array[size] = element;
+			size = size + 1;
+		}
 
-	public static void addContainer(Container container) {
-		containerLock.acquire();
-		try {
-			int containerId = container.getId();
-			containerById.put(containerId, container);
-		} finally {
-			containerLock.release();
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Returns the array containing at least {@link #size()} elements (as
+		 * read before calling this method)
+		 */
+		Element[] elements() {
+			return elements;
+		}
+
+		void addTo(Collection<Element> result) {
+			final int count = size;
+			final Element[] array = elements;
+			for (int i = 0; i < count; ++i) {
+				result.add(array[i]);
+			}
 		}
 	}
 
-	public static void addElement(Element element) {
-		elementLock.acquire();
-		try {
-			int elementType = element.getType();
-			Map<Integer, List<Element>> elementsByFile = elementsMap
-					.get(elementType);
-			if (elementsByFile == null) {
-				elementsByFile = new HashMap<Integer, List<Element>>();
-				elementsMap.put(elementType, elementsByFile);
+	private static <V> ConcurrentIntMap<V> getOrCreate(
+			ConcurrentIntMap<ConcurrentIntMap<V>> map, int key) {
+		ConcurrentIntMap<V> value = map.get(key);
+		if (value == null) {
+			final ConcurrentIntMap<V> newValue = new ConcurrentIntMap<V>();
+			value = map.putIfAbsent(key, newValue);
+			if (value == null) {
+				value = newValue;
 			}
-			int fileId = element.getFileId();
-			List<Element> elementsSet = elementsByFile.get(fileId);
-			if (elementsSet == null) {
-				elementsSet = new LinkedList<Element>();
-				elementsByFile.put(fileId, elementsSet);
+		}
+		return value;
+	}
+
+	private static ElementList getOrCreateList(
+			ConcurrentIntMap<ElementList> map, int key) {
+		ElementList list = map.get(key);
+		if (list == null) {
+			final ElementList newList = new ElementList();
+			list = map.putIfAbsent(key, newList);
+			if (list == null) {
+				list = newList;
 			}
-			elementsSet.add(element);
-		} finally {
-			elementLock.release();
 		}
+		return list;
 	}
 
-	public static void addFile(File file) {
-		fileLock.acquire();
-		try {
-			int containerId = file.getContainerId();
-			Map<Integer, File> files = filesByContainer.get(containerId);
-			if (files == null) {
-				files = new HashMap<Integer, File>();
-				filesByContainer.put(containerId, files);
+	public static void addContainer(Container container) {
+		containerById.put(container.getId(), container);
+	}
+
+	public static void addElement(Element element) {
+		final int fileId = element.getFileId();
+		getOrCreateList(getOrCreate(elementsMap, element.getType()), fileId)
+				.add(element);
+		getOrCreateList(elementsByFileId, fileId).add(element);
+		final NGramIndex index = NGramIndex.find(element.getType());
+		if (index != null) {
+			index.add(element.getName());
+		}
+	}
+
+	/**
+	 * Adds the names of the cached elements of the specified type to the
+	 * n-gram index, the caller should hold the write lock of the index.
+	 */
+	static void addNamesTo(int elementType, NGramIndex index) {
+		final ConcurrentIntMap<ElementList> elementsByFile = elementsMap
+				.get(elementType);
+		if (elementsByFile != null) {
+			for (ElementList elements : elementsByFile.values()) {
+				final int count = elements.size();
+				final Element[] array = elements.elements();
+				for (int i = 0; i < count; ++i) {
+					index.doAdd(array[i].getName());
+				}
 			}
-			files.put(file.getId(), file);
-		} finally {
-			fileLock.release();
 		}
 	}
 
+	public static void addFile(File file) {
+		fileById.put(file.getId(), file);
+		getOrCreate(filesByContainer, file.getContainerId()).put(file.getId(),
+				file);
+	}
+
 	public static void deleteContainerById(int id) {
-		containerLock.acquire();
-		try {
-			containerById.remove(id);
-			deleteFilesByContainerId(id);
-		} finally {
-			containerLock.release();
-		}
+		containerById.remove(id);
+		deleteFilesByContainerId(id);
 	}
 
 	public static void deleteContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Container container = selectContainerByPath(path);
-			if (container != null) {
-				deleteContainerById(container.getId());
-			}
-		} finally {
-			containerLock.release();
+		Container container = selectContainerByPath(path);
+		if (container != null) {
+			deleteContainerById(container.getId());
 		}
 	}
 
 	public static void deleteElementsByFileId(int id) {
-		elementLock.acquire();
-		try {
-			Iterator<Map<Integer, List<Element>>> i = elementsMap.values()
-					.iterator();
-			while (i.hasNext()) {
-				Map<Integer, List<Element>> elementsByFile = i.next();
+		if (elementsByFileId.remove(id) != null) {
+			for (ConcurrentIntMap<ElementList> elementsByFile : elementsMap
+					.values()) {
 				elementsByFile.remove(id);
 			}
-		} finally {
-			elementLock.release();
 		}
 	}
 
 	public static void deleteFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			File file = selectFileByContainerIdAndPath(containerId, path);
-			if (file != null) {
-				deleteFileById(file.getId());
-			}
-		} finally {
-			fileLock.release();
+		File file = selectFileByContainerIdAndPath(containerId, path);
+		if (file != null) {
+			deleteFileById(file.getId());
 		}
 	}
 
 	public static void deleteFileById(int id) {
-		fileLock.acquire();
-		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				i.next().remove(id);
+		final File file = fileById.remove(id);
+		if (file != null) {
+			final ConcurrentIntMap<File> files = filesByContainer.get(file
+					.getContainerId());
+			if (files != null) {
+				files.remove(id);
 			}
-			deleteElementsByFileId(id);
-		} finally {
-			fileLock.release();
 		}
+		deleteElementsByFileId(id);
 	}
 
 	public static void deleteFilesByContainerId(int id) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.remove(id);
-			if (files != null) {
-				Iterator<Integer> i = files.keySet().iterator();
-				while (i.hasNext()) {
-					deleteElementsByFileId(i.next());
-				}
+		ConcurrentIntMap<File> files = filesByContainer.remove(id);
+		if (files != null) {
+			for (int fileId : files.keys()) {
+				fileById.remove(fileId);
+				deleteElementsByFileId(fileId);
 			}
-		} finally {
-			fileLock.release();
 		}
 	}
 
 	public static Container selectContainerById(int id) {
-		containerLock.acquire();
-		try {
-			return containerById.get(id);
-		} finally {
-			containerLock.release();
-		}
+		return containerById.get(id);
 	}
 
 	public static Container selectContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Iterator<Container> i = containerById.values().iterator();
-			while (i.hasNext()) {
-				Container container = i.next();
-				if (container.getPath().equals(path)) {
-					return container;
-				}
+		for (Container container : containerById.values()) {
+			if (container.getPath().equals(path)) {
+				return container;
 			}
-			return null;
-		} finally {
-			containerLock.release();
 		}
+		return null;
 	}
 
 	public static Collection<Element> selectElementsByFileId(int id) {
-		elementLock.acquire();
-		try {
-			List<Element> elements = new LinkedList<Element>();
-			Iterator<Map<Integer, List<Element>>> i = elementsMap.values()
-					.iterator();
-			while (i.hasNext()) {
-				Map<Integer, List<Element>> elementsByFile = i.next();
-				List<Element> l = elementsByFile.get(id);
-				if (l != null) {
-					elements.addAll(l);
-				}
-			}
-			return elements;
-		} finally {
-			elementLock.release();
+		List<Element> elements = new ArrayList<Element>();
+		ElementList list = elementsByFileId.get(id);
+		if (list != null) {
+			list.addTo(elements);
 		}
+		return elements;
 	}
 
 	public static File selectFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.get(containerId);
-			if (files != null) {
-				Iterator<File> i = files.values().iterator();
-				while (i.hasNext()) {
-					File file = i.next();
-					if (file.getPath().equals(path)) {
-						return file;
-					}
+		ConcurrentIntMap<File> files = filesByContainer.get(containerId);
+		if (files != null) {
+			for (File file : files.values()) {
+				if (file.getPath().equals(path)) {
+					return file;
 				}
 			}
-		} finally {
-			fileLock.release();
 		}
 		return null;
 	}
 
 	public static File selectFileById(int id) {
-		fileLock.acquire();
-		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				File file = i.next().get(id);
-				if (file != null) {
-					return file;
-				}
-			}
-			return null;
-		} finally {
-			fileLock.release();
-		}
+		return fileById.get(id);
 	}
 
 	public static Collection<File> selectFilesByContainerId(int id) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.get(id);
-			if (files != null) {
-				return files.values();
-			}
-			return Collections.emptyList();
-		} finally {
-			fileLock.release();
+		ConcurrentIntMap<File> files = filesByContainer.get(id);
+		if (files != null) {
+			return files.values();
 		}
+		return Collections.emptyList();
 	}
 
 	public static Collection<Element> searchElements(String pattern,
@@ -280,96 +263,95 @@ public class H2Cache {
 			int falseFlags, String qualifier, String parent, int[] filesId,
 			int containersId[], String natureId, int limit) {
 
-		Set<Integer> filesIds = new HashSet<Integer>();
+		int[] filesIds = null;
 		if (filesId != null) {
-			for (int fileId : filesId) {
-				filesIds.add(fileId);
-			}
+			filesIds = filesId;
 		} else if (containersId != null) {
-			containerLock.acquire();
-			try {
-				for (int containerId : containersId) {
-					fileLock.acquire();
-					try {
-						Map<Integer, File> files = filesByContainer
-								.get(containerId);
-						if (files != null) {
-							filesIds.addAll(files.keySet());
-						}
-					} finally {
-						fileLock.release();
+			final Set<Integer> ids = new HashSet<Integer>();
+			for (int containerId : containersId) {
+				ConcurrentIntMap<File> files = filesByContainer
+						.get(containerId);
+				if (files != null) {
+					for (int fileId : files.keys()) {
+						ids.add(fileId);
 					}
 				}
-			} finally {
-				containerLock.release();
+			}
+			filesIds = new int[ids.size()];
+			int index = 0;
+			for (Integer fileId : ids) {
+				filesIds[index++] = fileId;
 			}
 		}
 
-		elementLock.acquire();
-		try {
-			Set<String> patternSet = null;
-			Pattern posixPattern = null;
-
-			// Pre-cache pattern's lower and upper case variants:
-			String patternLC = null;
-			String patternUC = null;
-			if (pattern != null) {
-				patternLC = pattern.toLowerCase();
-				patternUC = pattern.toUpperCase();
-			}
+		Set<String> patternSet = null;
+		Pattern posixPattern = null;
 
-			if (matchRule == MatchRule.SET) {
-				patternSet = new HashSet<String>();
-				String[] parts = pattern.split(",");
-				for (String part : parts) {
-					if (part.length() > 0) {
-						patternSet.add(part.toLowerCase());
-					}
+		// Pre-cache pattern's lower and upper case variants:
+		String patternLC = null;
+		String patternUC = null;
+		if (pattern != null) {
+			patternLC = pattern.toLowerCase();
+			patternUC = pattern.toUpperCase();
+		}
+
+		if (matchRule == MatchRule.SET) {
+			patternSet = new HashSet<String>();
+			String[] parts = pattern.split(",");
+			for (String part : parts) {
+				if (part.length() > 0) {
+					patternSet.add(part.toLowerCase());
 				}
-			} else if (matchRule == MatchRule.PATTERN) {
-				posixPattern = createPosixPattern(pattern);
 			}
-
-			List<Element> result = new LinkedList<Element>();
-			Map<Integer, List<Element>> elementsByFile = elementsMap
-					.get(elementType);
-			if (elementsByFile != null) {
-
-				if (filesIds.size() == 0) {
-					Iterator<List<Element>> i = elementsByFile.values()
-							.iterator();
-					while (i.hasNext()) {
-						searchInElements(i.next(), result, pattern, matchRule,
-								trueFlags, falseFlags, qualifier, parent,
-								patternSet, posixPattern, patternLC, patternUC,
-								limit);
-					}
-				} else {
-					for (Integer fileId : filesIds) {
-						searchInElements(elementsByFile.get(fileId), result,
-								pattern, matchRule, trueFlags, falseFlags,
-								qualifier, parent, patternSet, posixPattern,
-								patternLC, patternUC, limit);
-					}
+		} else if (matchRule == MatchRule.PATTERN) {
+			posixPattern = createPosixPattern(pattern);
+			// Narrow the matching names using n-gram index:
+			final List<String> names = NGramIndex.get(elementType).match(
+					pattern, posixPattern);
+			if (names != null) {
+				if (names.isEmpty()) {
+					return new LinkedList<Element>();
 				}
+				patternSet = new HashSet<String>(names);
+				matchRule = MatchRule.SET;
 			}
-			return result;
+		}
 
-		} finally {
-			elementLock.release();
+		List<Element> result = new LinkedList<Element>();
+		ConcurrentIntMap<ElementList> elementsByFile = elementsMap
+				.get(elementType);
+		if (elementsByFile != null) {
+
+			if (filesIds == null || filesIds.length == 0) {
+				for (ElementList elements : elementsByFile.values()) {
+					searchInElements(elements, result, pattern, matchRule,
+							trueFlags, falseFlags, qualifier, parent,
+							patternSet, posixPattern, patternLC, patternUC,
+							limit);
+				}
+			} else {
+				for (int fileId : filesIds) {
+					searchInElements(elementsByFile.get(fileId), result,
+							pattern, matchRule, trueFlags, falseFlags,
+							qualifier, parent, patternSet, posixPattern,
+							patternLC, patternUC, limit);
+				}
+			}
 		}
+		return result;
 	}
 
-	private static void searchInElements(List<Element> elements,
+	private static void searchInElements(ElementList elements,
 			List<Element> result, String pattern, MatchRule matchRule,
 			int trueFlags, int falseFlags, String qualifier, String parent,
 			Set<String> patternSet, Pattern posixPattern, String patternLC,
 			String patternUC, int limit) {
 
 		if (elements != null) {
-			Iterator<Element> i = elements.iterator();
-			while (i.hasNext()) {
-				Element element = i.next();
+			final int count = elements.size();
+			final Element[] array = elements.elements();
+			for (int i = 0; i < count; ++i) {
+				Element element = array[i];
 				if (elementMatches(element, pattern, matchRule, trueFlags,
 						falseFlags, qualifier, parent, patternSet,
 						posixPattern, patternLC, patternUC)) {
@@ -463,12 +445,53 @@ public class H2Cache {
 	}
 
 	public static boolean isLoaded() {
-		loadedLock.acquire();
-		try {
-			return isLoaded;
-		} finally {
-			loadedLock.release();
+		return isLoaded;
+	}
+
+	/**
+	 * Returns the estimated number of bytes used by the cached containers,
+	 * files and elements.
+	 */
+	public static long getMemoryFootprint() {
+		long footprint = containerById.getFootprint() + fileById.getFootprint()
+				+ filesByContainer.getFootprint() + elementsMap.getFootprint()
+				+ elementsByFileId.getFootprint();
+		for (Container container : containerById.values()) {
+			footprint += 24 + sizeOf(container.getPath());
 		}
+		for (File file : fileById.values()) {
+			footprint += 32 + sizeOf(file.getPath());
+		}
+		for (ConcurrentIntMap<File> files : filesByContainer.values()) {
+			footprint += files.getFootprint();
+		}
+		for (ConcurrentIntMap<ElementList> elementsByFile : elementsMap
+				.values()) {
+			footprint += elementsByFile.getFootprint();
+			for (ElementList elements : elementsByFile.values()) {
+				footprint += 24 + 16 + 4L * elements.elements().length;
+			}
+		}
+		for (ElementList elements : elementsByFileId.values()) {
+			footprint += 24 + 16 + 4L * elements.elements().length;
+			final int count = elements.size();
+			final Element[] array = elements.elements();
+			for (int i = 0; i < count; ++i) {
+				final Element element = array[i];
+				// header + 8 int fields + 6 references
+				footprint += 16 + 4 * 8 + 4 * 6 + sizeOf(element.getName())
+						+ sizeOf(element.getCamelCaseName())
+						+ sizeOf(element.getMetadata())
+						+ sizeOf(element.getDoc())
+						+ sizeOf(element.getQualifier())
+						+ sizeOf(element.getParent());
+			}
+		}
+		return footprint;
+	}
+
+	private static long sizeOf(String value) {
+		return value != null ? 40 + 2L * value.length() : 0;
 	}
 
 	public static void load() {
@@ -522,6 +545,10 @@ public class H2Cache {
 				} finally {
 					isLoaded = true;
 				}
+				if (H2Index.DEBUG) {
+					System.out.println("H2Cache memory footprint: " //$NON-NLS-1$
+							+ (getMemoryFootprint() / 1024) + " KB"); //$NON-NLS-1$
+				}
 			}
 		} finally {
 			loadedLock.release();
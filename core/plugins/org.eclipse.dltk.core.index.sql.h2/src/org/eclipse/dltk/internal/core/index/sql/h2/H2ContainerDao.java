@@ -135,6 +135,10 @@ public class H2ContainerDao implements IContainerDao {
 		}
 
 		H2Cache.deleteContainerById(id);
+		if (connection.getAutoCommit()) {
+			// otherwise cleared when the indexer commits
+			ReferenceCache.clear();
+		}
 	}
 
 	public void deleteByPath(Connection connection, String path)
@@ -150,5 +154,9 @@ public class H2ContainerDao implements IContainerDao {
 		}
 
 		H2Cache.deleteContainerByPath(path);
+		if (connection.getAutoCommit()) {
+			// otherwise cleared when the indexer commits
+			ReferenceCache.clear();
+		}
 	}
 }
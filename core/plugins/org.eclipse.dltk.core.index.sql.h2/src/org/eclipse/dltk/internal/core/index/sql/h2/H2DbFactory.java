@@ -80,6 +80,8 @@ public class H2DbFactory extends DbFactory {
 						// Destroy schema by removing DB (if exists)
 						DeleteDbFiles.execute(dbPath.toOSString(), DB_NAME,
 								true);
+						ReferenceCache.clear();
+						NGramIndex.clear();
 
 						pool = JdbcConnectionPool.create(connString, DB_USER,
 								DB_PASS);
@@ -99,6 +101,8 @@ public class H2DbFactory extends DbFactory {
 				// remove corrupted DB
 				try {
 					DeleteDbFiles.execute(dbPath.toOSString(), DB_NAME, true);
+					ReferenceCache.clear();
+					NGramIndex.clear();
 
 				} catch (Exception e1) {
 					SqlIndex.error(
@@ -126,6 +130,8 @@ public class H2DbFactory extends DbFactory {
 				DB_NAME).toOSString());
 
 		buf.append(";UNDO_LOG=0");
+		// keep compiled statements of the search queries
+		buf.append(";QUERY_CACHE_SIZE=64");
 		buf.append(";LOCK_MODE=").append(
 				preferencesService.getInt(H2Index.PLUGIN_ID,
 						H2IndexPreferences.DB_LOCK_MODE, 0, null));
@@ -15,16 +15,21 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.index.sql.Element;
 import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IElementDaoExtension;
 import org.eclipse.dltk.core.index.sql.IElementHandler;
 import org.eclipse.dltk.core.index.sql.h2.H2Index;
 import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
@@ -36,7 +41,7 @@ import org.eclipse.osgi.util.NLS;
  * 
  * @author michael
  */
-public class H2ElementDao implements IElementDao {
+public class H2ElementDao implements IElementDao, IElementDaoExtension {
 
 	private static final Pattern SEPARATOR_PATTERN = Pattern.compile(","); //$NON-NLS-1$
 
@@ -52,12 +57,39 @@ public class H2ElementDao implements IElementDao {
 	/** Cache for insert element reference queries */
 	private static final Map<String, String> D_INSERT_QUERY_CACHE = new HashMap<String, String>();
 
+	/** Cache for search queries */
+	private static final Map<String, String> SEARCH_QUERY_CACHE = new ConcurrentHashMap<String, String>();
+
+	/** Cache for multi-row insert queries */
+	private static final Map<String, String> MULTI_INSERT_QUERY_CACHE = new HashMap<String, String>();
+
+	/** Number of rows inserted by the single multi-row INSERT statement */
+	private static final int ROWS_PER_STATEMENT = 64;
+
+	/** Number of buffered rows causing the buffers to be written */
+	private static final int FLUSH_THRESHOLD = 1024;
+
+	/**
+	 * Rows buffered for the single insert query
+	 */
+	private static class PendingRows {
+		final Connection connection;
+		final String query;
+		final List<Object[]> rows = new ArrayList<Object[]>();
+
+		PendingRows(Connection connection, String query) {
+			this.connection = connection;
+			this.query = query;
+		}
+	}
+
 	private final ModelManager modelManager;
-	private final Map<String, PreparedStatement> batchStatements;
+	private final Map<String, PendingRows> pendingRows;
+	private int pendingCount;
 
 	public H2ElementDao() {
 		this.modelManager = ModelManager.getModelManager();
-		this.batchStatements = new HashMap<String, PreparedStatement>();
+		this.pendingRows = new HashMap<String, PendingRows>();
 	}
 
 	private String getTableName(Connection connection, int elementType,
@@ -71,64 +103,35 @@ public class H2ElementDao implements IElementDao {
 		return tableName;
 	}
 
-	private void insertBatch(Connection connection,
-			PreparedStatement statement, int type, int flags, int offset,
-			int length, int nameOffset, int nameLength, String name,
-			String metadata, String doc, String qualifier, String parent,
-			int fileId, String natureId, boolean isReference)
-			throws SQLException {
-
-		int param = 0;
-
-		if (!isReference) {
-			statement.setInt(++param, flags);
-		}
+	private Object[] createRow(int type, int flags, int offset, int length,
+			int nameOffset, int nameLength, String name, String metadata,
+			String doc, String qualifier, String parent, int fileId,
+			boolean isReference) {
 
-		statement.setInt(++param, offset);
-		statement.setInt(++param, length);
-
-		if (!isReference) {
-			statement.setInt(++param, nameOffset);
-			statement.setInt(++param, nameLength);
+		if (isReference) {
+			return new Object[] { offset, length, name, metadata, qualifier,
+					fileId };
 		}
 
-		statement.setString(++param, name);
-
-		String camelCaseName = null;
-		if (!isReference) {
-			StringBuilder camelCaseNameBuf = new StringBuilder();
-			for (int i = 0; i < name.length(); ++i) {
-				char ch = name.charAt(i);
-				if (Character.isUpperCase(ch)) {
-					camelCaseNameBuf.append(ch);
-				} else if (i == 0) {
-					// not applicable for camel case search
-					break;
-				}
+		StringBuilder camelCaseNameBuf = new StringBuilder();
+		for (int i = 0; i < name.length(); ++i) {
+			char ch = name.charAt(i);
+			if (Character.isUpperCase(ch)) {
+				camelCaseNameBuf.append(ch);
+			} else if (i == 0) {
+				// not applicable for camel case search
+				break;
 			}
-			camelCaseName = camelCaseNameBuf.length() > 0 ? camelCaseNameBuf
-					.toString() : null;
-			statement.setString(++param, camelCaseName);
-		}
-
-		statement.setString(++param, metadata);
-		if (!isReference) {
-			statement.setString(++param, doc);
-		}
-		statement.setString(++param, qualifier);
-
-		if (!isReference) {
-			statement.setString(++param, parent);
 		}
+		String camelCaseName = camelCaseNameBuf.length() > 0 ? camelCaseNameBuf
+				.toString() : null;
 
-		statement.setInt(++param, fileId);
-		statement.addBatch();
+		H2Cache.addElement(new Element(type, flags, offset, length,
+				nameOffset, nameLength, name, camelCaseName, metadata, doc,
+				qualifier, parent, fileId, isReference));
 
-		if (!isReference) {
-			H2Cache.addElement(new Element(type, flags, offset, length,
-					nameOffset, nameLength, name, camelCaseName, metadata, doc,
-					qualifier, parent, fileId, isReference));
-		}
+		return new Object[] { flags, offset, length, nameOffset, nameLength,
+				name, camelCaseName, metadata, doc, qualifier, parent, fileId };
 	}
 
 	public void insert(Connection connection, int type, int flags, int offset,
@@ -154,34 +157,142 @@ public class H2ElementDao implements IElementDao {
 			}
 		}
 
-		synchronized (batchStatements) {
-			PreparedStatement statement = batchStatements.get(query);
-			if (statement == null) {
-				statement = connection.prepareStatement(query);
-				batchStatements.put(query, statement);
+		synchronized (pendingRows) {
+			PendingRows pending = pendingRows.get(query);
+			if (pending != null && pending.connection != connection) {
+				flush(pending);
+				pending = null;
+			}
+			if (pending == null) {
+				pending = new PendingRows(connection, query);
+				pendingRows.put(query, pending);
 			}
-			insertBatch(connection, statement, type, flags, offset, length,
+			pending.rows.add(createRow(type, flags, offset, length,
 					nameOffset, nameLength, name, metadata, doc, qualifier,
-					parent, fileId, natureId, isReference);
+					parent, fileId, isReference));
+			if (++pendingCount >= FLUSH_THRESHOLD) {
+				flushAll();
+			}
 		}
 	}
 
-	public void commitInsertions() throws SQLException {
-		synchronized (batchStatements) {
-			try {
-				for (PreparedStatement statement : batchStatements.values()) {
-					try {
-						statement.executeBatch();
-					} finally {
-						statement.close();
+	/**
+	 * Returns the query inserting {@link #ROWS_PER_STATEMENT} rows at once,
+	 * built from the single-row insert query.
+	 */
+	private static String getMultiRowQuery(String query) {
+		synchronized (MULTI_INSERT_QUERY_CACHE) {
+			String multiRowQuery = MULTI_INSERT_QUERY_CACHE.get(query);
+			if (multiRowQuery == null) {
+				final int valuesIndex = query.lastIndexOf("VALUES"); //$NON-NLS-1$
+				int columns = 0;
+				for (int i = valuesIndex; i < query.length(); ++i) {
+					if (query.charAt(i) == '?') {
+						++columns;
 					}
 				}
-			} finally {
-				batchStatements.clear();
+				final StringBuilder buf = new StringBuilder(query.substring(0,
+						valuesIndex));
+				buf.append("VALUES"); //$NON-NLS-1$
+				for (int row = 0; row < ROWS_PER_STATEMENT; ++row) {
+					buf.append(row == 0 ? "(" : ",("); //$NON-NLS-1$ //$NON-NLS-2$
+					for (int column = 0; column < columns; ++column) {
+						if (column > 0) {
+							buf.append(',');
+						}
+						buf.append('?');
+					}
+					buf.append(')');
+				}
+				buf.append(';');
+				multiRowQuery = buf.toString();
+				MULTI_INSERT_QUERY_CACHE.put(query, multiRowQuery);
 			}
+			return multiRowQuery;
 		}
 	}
 
+	private static int setParameters(PreparedStatement statement, int param,
+			Object[] row) throws SQLException {
+		for (Object value : row) {
+			if (value == null) {
+				statement.setNull(++param, Types.VARCHAR);
+			} else if (value instanceof Integer) {
+				statement.setInt(++param, ((Integer) value).intValue());
+			} else {
+				statement.setString(++param, (String) value);
+			}
+		}
+		return param;
+	}
+
+	/**
+	 * Writes the buffered rows: full chunks of {@link #ROWS_PER_STATEMENT}
+	 * rows are inserted by the multi-row statement, the remaining rows are
+	 * added to the batch of the single-row statement.
+	 */
+	private void flush(PendingRows pending) throws SQLException {
+		final List<Object[]> rows = pending.rows;
+		pendingCount -= rows.size();
+		try {
+			int index = 0;
+			if (rows.size() >= ROWS_PER_STATEMENT) {
+				final PreparedStatement statement = pending.connection
+						.prepareStatement(getMultiRowQuery(pending.query));
+				try {
+					for (; index + ROWS_PER_STATEMENT <= rows.size(); index += ROWS_PER_STATEMENT) {
+						int param = 0;
+						for (int i = index; i < index + ROWS_PER_STATEMENT; ++i) {
+							param = setParameters(statement, param, rows.get(i));
+						}
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				} finally {
+					statement.close();
+				}
+			}
+			if (index < rows.size()) {
+				final PreparedStatement statement = pending.connection
+						.prepareStatement(pending.query);
+				try {
+					for (; index < rows.size(); ++index) {
+						setParameters(statement, 0, rows.get(index));
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				} finally {
+					statement.close();
+				}
+			}
+		} finally {
+			rows.clear();
+		}
+	}
+
+	private void flushAll() throws SQLException {
+		try {
+			for (PendingRows pending : pendingRows.values()) {
+				if (!pending.rows.isEmpty()) {
+					flush(pending);
+				}
+			}
+		} finally {
+			pendingRows.clear();
+			pendingCount = 0;
+		}
+	}
+
+	public void commitInsertions() throws SQLException {
+		synchronized (pendingRows) {
+			flushAll();
+		}
+	}
+
+	public void insertionsCommitted(Connection connection) {
+		ReferenceCache.clear();
+	}
+
 	public void search(Connection connection, String pattern,
 			MatchRule matchRule, int elementType, int trueFlags,
 			int falseFlags, String qualifier, String parent, int[] filesId,
@@ -190,7 +301,6 @@ public class H2ElementDao implements IElementDao {
 			IProgressMonitor monitor) throws SQLException {
 
 		long timeStamp = System.currentTimeMillis();
-		int count = 0;
 
 		if (!isReference && H2Cache.isLoaded()) {
 			Collection<Element> elements = H2Cache.searchElements(pattern,
@@ -207,112 +317,230 @@ public class H2ElementDao implements IElementDao {
 		String tableName = getTableName(connection, elementType, natureId,
 				isReference);
 
-		final StringBuilder query = new StringBuilder("SELECT * FROM ")
-				.append(tableName);
-		final List<String> parameters = new ArrayList<String>();
-		// Dummy pattern
-		query.append(" WHERE 1=1");
-
-		// Name patterns
 		if (pattern != null && pattern.length() > 0) {
 			if (isReference && matchRule == MatchRule.CAMEL_CASE) {
 				H2Index.warn("MatchRule.CAMEL_CASE is not supported by element references search."); //$NON-NLS-1$
 				matchRule = MatchRule.EXACT;
 			}
+		} else {
+			matchRule = null;
+		}
 
-			// Exact pattern
-			if (matchRule == MatchRule.EXACT) {
-				query.append(" AND NAME=?");
-				parameters.add(pattern);
-			}
-			// Prefix
-			else if (matchRule == MatchRule.PREFIX) {
-				query.append(" AND NAME LIKE ?");
-				parameters.add(pattern + "%");
-			}
-			// Camel-case
-			else if (matchRule == MatchRule.CAMEL_CASE) {
-				query.append(" AND CC_NAME LIKE ?");
-				parameters.add(pattern + "%");
-			}
-			// Set of names
-			else if (matchRule == MatchRule.SET) {
-				String[] patternSet = SEPARATOR_PATTERN.split(pattern);
-				query.append(" AND NAME IN (");
-				for (int i = 0; i < patternSet.length; ++i) {
-					if (i > 0) {
-						query.append(',');
-					}
-					query.append('?');
-					parameters.add(patternSet[i]);
-				}
-				query.append(')');
-			}
-			// POSIX pattern
-			else if (matchRule == MatchRule.PATTERN) {
-				query.append(" AND NAME LIKE ?");
-				parameters.add(pattern.replace('*', '%').replace('?', '_'));
-			}
+		if (isReference && matchRule == MatchRule.EXACT
+				&& containersId == null) {
+			searchReferences(connection, tableName, pattern, elementType,
+					trueFlags, falseFlags, qualifier, filesId, limit, handler,
+					monitor);
+			return;
+		}
+
+		final String query = getSearchQuery(tableName, matchRule,
+				trueFlags != 0, falseFlags != 0, qualifier != null
+						&& qualifier.length() > 0, parent != null
+						&& parent.length() > 0, filesId != null,
+				filesId == null && containersId != null, limit > 0);
+		final List<Object> parameters = new ArrayList<Object>();
+
+		// Name patterns
+		if (matchRule == MatchRule.EXACT) {
+			parameters.add(pattern);
+		} else if (matchRule == MatchRule.PREFIX
+				|| matchRule == MatchRule.CAMEL_CASE) {
+			parameters.add(pattern + "%");
+		} else if (matchRule == MatchRule.SET) {
+			parameters.add(SEPARATOR_PATTERN.split(pattern));
+		} else if (matchRule == MatchRule.PATTERN) {
+			parameters.add(pattern.replace('*', '%').replace('?', '_'));
 		}
 
 		// Flags
 		if (trueFlags != 0) {
-			query.append(" AND BITAND(FLAGS,").append(trueFlags)
-					.append(") <> 0");
+			parameters.add(trueFlags);
 		}
 		if (falseFlags != 0) {
-			query.append(" AND BITAND(FLAGS,").append(falseFlags)
-					.append(") = 0");
+			parameters.add(falseFlags);
 		}
-
 		// Qualifier
 		if (qualifier != null && qualifier.length() > 0) {
-			query.append(" AND QUALIFIER=?");
 			parameters.add(qualifier);
 		}
 		// Parent
 		if (parent != null && parent.length() > 0) {
-			query.append(" AND PARENT=?");
 			parameters.add(parent);
 		}
-
 		// Files or container paths
 		if (filesId != null) {
-			query.append(" AND FILE_ID IN(");
-			for (int i = 0; i < filesId.length; ++i) {
-				if (i > 0) {
-					query.append(",");
-				}
-				query.append(filesId[i]);
-			}
-			query.append(")");
-
+			parameters.add(toArray(filesId));
 		} else if (containersId != null) {
-			query.append(" AND FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID IN(");
-			for (int i = 0; i < containersId.length; ++i) {
-				if (i > 0) {
-					query.append(",");
-				}
-				query.append(containersId[i]);
-			}
-			query.append("))");
+			parameters.add(toArray(containersId));
 		}
-
 		// Records limit
 		if (limit > 0) {
-			query.append(" LIMIT ").append(limit);
+			parameters.add(limit);
 		}
-		query.append(";");
 
 		if (H2Index.DEBUG) {
-			System.out.println("Query: " + query.toString());
+			System.out.println("Query: " + query);
 		}
 
-		final PreparedStatement statement = connection.prepareStatement(query
-				.toString());
+		final int count = executeSearch(connection, query, parameters,
+				elementType, isReference, handler, null, monitor);
+
+		if (H2Index.DEBUG) {
+			System.out.println("Results = " + count + " ; Time taken = "
+					+ (System.currentTimeMillis() - timeStamp) + " ms.");
+		}
+	}
+
+	/**
+	 * Returns the parameterized search query. Queries depend only on the
+	 * table and the set of the specified criteria, so they are built once and
+	 * the database could reuse the compiled statements.
+	 */
+	private static String getSearchQuery(String tableName,
+			MatchRule matchRule, boolean trueFlags, boolean falseFlags,
+			boolean qualifier, boolean parent, boolean files,
+			boolean containers, boolean limit) {
+
+		final StringBuilder key = new StringBuilder(tableName).append(':');
+		if (matchRule != null) {
+			key.append(matchRule.name());
+		}
+		key.append(':').append(trueFlags ? 'T' : '-')
+				.append(falseFlags ? 'F' : '-').append(qualifier ? 'Q' : '-')
+				.append(parent ? 'P' : '-').append(files ? 'I' : '-')
+				.append(containers ? 'C' : '-').append(limit ? 'L' : '-');
+
+		String query = SEARCH_QUERY_CACHE.get(key.toString());
+		if (query != null) {
+			return query;
+		}
+
+		final StringBuilder buf = new StringBuilder("SELECT * FROM ")
+				.append(tableName);
+		// Dummy pattern
+		buf.append(" WHERE 1=1");
+
+		// Name patterns
+		if (matchRule == MatchRule.EXACT) {
+			buf.append(" AND NAME=?");
+		} else if (matchRule == MatchRule.PREFIX
+				|| matchRule == MatchRule.PATTERN) {
+			buf.append(" AND NAME LIKE ?");
+		} else if (matchRule == MatchRule.CAMEL_CASE) {
+			buf.append(" AND CC_NAME LIKE ?");
+		} else if (matchRule == MatchRule.SET) {
+			buf.append(" AND NAME IN(SELECT X FROM TABLE(X VARCHAR=?))");
+		}
+
+		// Flags
+		if (trueFlags) {
+			buf.append(" AND BITAND(FLAGS,?) <> 0");
+		}
+		if (falseFlags) {
+			buf.append(" AND BITAND(FLAGS,?) = 0");
+		}
+		// Qualifier
+		if (qualifier) {
+			buf.append(" AND QUALIFIER=?");
+		}
+		// Parent
+		if (parent) {
+			buf.append(" AND PARENT=?");
+		}
+		// Files or container paths
+		if (files) {
+			buf.append(" AND FILE_ID IN(SELECT X FROM TABLE(X INT=?))");
+		} else if (containers) {
+			buf.append(" AND FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID IN(SELECT X FROM TABLE(X INT=?)))");
+		}
+		// Records limit
+		if (limit) {
+			buf.append(" LIMIT ?");
+		}
+		buf.append(";");
+
+		query = buf.toString();
+		SEARCH_QUERY_CACHE.put(key.toString(), query);
+		return query;
+	}
+
+	private static Object[] toArray(int[] values) {
+		final Object[] result = new Object[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			result[i] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Searches the references with the exact name using the
+	 * {@link ReferenceCache}, the references are loaded from the database only
+	 * if they are not cached yet.
+	 */
+	private void searchReferences(Connection connection, String tableName,
+			String name, int elementType, int trueFlags, int falseFlags,
+			String qualifier, int[] filesId, int limit,
+			IElementHandler handler, IProgressMonitor monitor)
+			throws SQLException {
+
+		List<Element> references = ReferenceCache.get(tableName, name);
+		if (references == null) {
+			final long version = ReferenceCache.getVersion();
+			final String query = getSearchQuery(tableName, MatchRule.EXACT,
+					false, false, false, false, false, false, false);
+			final List<Object> parameters = new ArrayList<Object>();
+			parameters.add(name);
+			references = new ArrayList<Element>();
+			executeSearch(connection, query, parameters, elementType, true,
+					null, references, monitor);
+			if (monitor != null && monitor.isCanceled()) {
+				return;
+			}
+			ReferenceCache.put(tableName, name, references, version);
+		}
+
+		Set<Integer> files = null;
+		if (filesId != null) {
+			files = new HashSet<Integer>();
+			for (int fileId : filesId) {
+				files.add(fileId);
+			}
+		}
+		int count = 0;
+		for (Element element : references) {
+			if (monitor != null && monitor.isCanceled()) {
+				return;
+			}
+			if ((trueFlags == 0 || (element.getFlags() & trueFlags) != 0)
+					&& (falseFlags == 0 || (element.getFlags() & falseFlags) == 0)
+					&& (qualifier == null || qualifier.length() == 0 || qualifier
+							.equals(element.getQualifier()))
+					&& (files == null || files.contains(element.getFileId()))) {
+				handler.handle(element);
+				if (++count == limit) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes the search query, the found elements are passed to the handler
+	 * or added to the specified list.
+	 * 
+	 * @return number of the found elements
+	 */
+	private int executeSearch(Connection connection, String query,
+			List<Object> parameters, int elementType, boolean isReference,
+			IElementHandler handler, List<Element> elements,
+			IProgressMonitor monitor) throws SQLException {
+
+		int count = 0;
+		final PreparedStatement statement = connection.prepareStatement(query);
 		try {
 			for (int i = 0; i < parameters.size(); ++i) {
-				statement.setString(i + 1, parameters.get(i));
+				statement.setObject(i + 1, parameters.get(i));
 			}
 
 			final ResultSet result = statement.executeQuery();
@@ -320,7 +548,7 @@ public class H2ElementDao implements IElementDao {
 				while (result.next()) {
 					++count;
 					if (monitor != null && monitor.isCanceled()) {
-						return;
+						return count;
 					}
 
 					int columnIndex = 0;
@@ -352,8 +580,9 @@ public class H2ElementDao implements IElementDao {
 					if (!isReference) {
 						doc = result.getString(++columnIndex);
 					}
-					qualifier = result.getString(++columnIndex);
+					String qualifier = result.getString(++columnIndex);
 
+					String parent = null;
 					if (!isReference) {
 						parent = result.getString(++columnIndex);
 					}
@@ -368,7 +597,11 @@ public class H2ElementDao implements IElementDao {
 						H2Cache.addElement(element);
 					}
 
-					handler.handle(element);
+					if (handler != null) {
+						handler.handle(element);
+					} else {
+						elements.add(element);
+					}
 				}
 			} finally {
 				result.close();
@@ -376,10 +609,6 @@ public class H2ElementDao implements IElementDao {
 		} finally {
 			statement.close();
 		}
-
-		if (H2Index.DEBUG) {
-			System.out.println("Results = " + count + " ; Time taken = "
-					+ (System.currentTimeMillis() - timeStamp) + " ms.");
-		}
+		return count;
 	}
-}
\ No newline at end of file
+}
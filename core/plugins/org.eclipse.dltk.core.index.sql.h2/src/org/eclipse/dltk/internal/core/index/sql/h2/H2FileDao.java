@@ -165,6 +165,10 @@ public class H2FileDao implements IFileDao {
 		}
 
 		H2Cache.deleteFileByContainerIdAndPath(containerId, path);
+		if (connection.getAutoCommit()) {
+			// otherwise cleared when the indexer commits
+			ReferenceCache.clear();
+		}
 	}
 
 	public void deleteById(Connection connection, int id) throws SQLException {
@@ -179,5 +183,9 @@ public class H2FileDao implements IFileDao {
 		}
 
 		H2Cache.deleteFileById(id);
+		if (connection.getAutoCommit()) {
+			// otherwise cleared when the indexer commits
+			ReferenceCache.clear();
+		}
 	}
 }
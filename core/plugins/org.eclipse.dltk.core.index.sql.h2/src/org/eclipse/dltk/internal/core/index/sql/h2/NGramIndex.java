@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram index of the names of the cached elements of the single
+ * type. It is used by {@link H2Cache} to find the candidate names for the
+ * patterns with the wildcards, so the patterns without any matching names are
+ * answered without scanning all the elements and the other ones are checked
+ * with the set lookup instead of the regular expression.
+ *
+ * <p>
+ * The index of the element type is built on the first pattern search and is
+ * updated when the elements are added to the cache later. Names are never
+ * removed, so the index could contain the names which are not cached anymore,
+ * these candidates are filtered by the cache anyway. If the number of the
+ * names exceeds {@link #MAX_NAMES} the index is released and is not used for
+ * this type until {@link #clear()}.
+ * </p>
+ */
+public class NGramIndex {
+
+	private static final int N = 3;
+
+	/** If there are more candidates the index is not used */
+	static final int MAX_CANDIDATES = 4096;
+
+	/** If there are more names the index is released */
+	static final int MAX_NAMES = 100000;
+
+	private static final Map<Integer, NGramIndex> indexes = new ConcurrentHashMap<Integer, NGramIndex>();
+
+	/**
+	 * Returns the index of the specified element type, building it from the
+	 * elements of {@link H2Cache} if needed.
+	 */
+	public static NGramIndex get(int elementType) {
+		NGramIndex index = indexes.get(elementType);
+		if (index == null) {
+			synchronized (indexes) {
+				index = indexes.get(elementType);
+				if (index == null) {
+					index = new NGramIndex();
+					// the index is published before it is built, so the
+					// elements added meanwhile wait for the lock and are
+					// indexed after the existing ones
+					index.lock.writeLock().lock();
+					try {
+						indexes.put(elementType, index);
+						H2Cache.addNamesTo(elementType, index);
+					} finally {
+						index.lock.writeLock().unlock();
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the already built index of the specified element type or
+	 * <code>null</code>
+	 */
+	public static NGramIndex find(int elementType) {
+		return indexes.get(elementType);
+	}
+
+	/**
+	 * Releases all the indexes, they will be built again on the next pattern
+	 * search.
+	 */
+	public static void clear() {
+		indexes.clear();
+	}
+
+	/**
+	 * Posting list of the name ids, ids are added in the ascending order.
+	 */
+	private static class Posting {
+		int[] ids = new int[4];
+		int size;
+
+		void add(int id) {
+			if (size != 0 && ids[size - 1] == id) {
+				return;
+			}
+			if (size == ids.length) {
+				final int[] newIds = new int[size * 2];
+				System.arraycopy(ids, 0, newIds, 0, size);
+				ids = newIds;
+			}
+			ids[size++] = id;
+		}
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<String> names = new ArrayList<String>();
+	private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+	private final Map<String, Posting> postings = new HashMap<String, Posting>();
+	private boolean overflow;
+
+	private NGramIndex() {
+	}
+
+	/**
+	 * Adds the name to the index
+	 */
+	public void add(String name) {
+		lock.writeLock().lock();
+		try {
+			doAdd(name);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the name to the index, the caller should hold the write lock.
+	 */
+	void doAdd(String name) {
+		if (overflow) {
+			return;
+		}
+		final String key = name.toLowerCase();
+		if (nameIds.containsKey(key)) {
+			return;
+		}
+		if (names.size() == MAX_NAMES) {
+			overflow = true;
+			names.clear();
+			nameIds.clear();
+			postings.clear();
+			return;
+		}
+		final int id = names.size();
+		names.add(key);
+		nameIds.put(key, id);
+		for (int i = 0; i + N <= key.length(); ++i) {
+			final String gram = key.substring(i, i + N);
+			Posting posting = postings.get(gram);
+			if (posting == null) {
+				posting = new Posting();
+				postings.put(gram, posting);
+			}
+			posting.add(id);
+		}
+	}
+
+	/**
+	 * Returns the lower case names matching the specified pattern (
+	 * <code>*</code> and <code>?</code> are the wildcards, the matching is
+	 * checked with the specified regular expression) or <code>null</code> if
+	 * the pattern has no literal parts long enough to use the index or there
+	 * are too many candidates.
+	 */
+	public List<String> match(String pattern, Pattern regex) {
+		final String lowerCase = pattern.toLowerCase();
+		final List<String> grams = new ArrayList<String>();
+		int segmentStart = 0;
+		for (int i = 0; i <= lowerCase.length(); ++i) {
+			final char ch = i < lowerCase.length() ? lowerCase.charAt(i) : '*';
+			if (ch == '*' || ch == '?') {
+				final String segment = lowerCase.substring(segmentStart, i);
+				for (int j = 0; j + N <= segment.length(); ++j) {
+					grams.add(segment.substring(j, j + N));
+				}
+				segmentStart = i + 1;
+			}
+		}
+		if (grams.isEmpty()) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			if (overflow) {
+				return null;
+			}
+			// intersect starting from the shortest posting
+			final Posting[] selected = new Posting[grams.size()];
+			int shortest = 0;
+			for (int i = 0; i < grams.size(); ++i) {
+				selected[i] = postings.get(grams.get(i));
+				if (selected[i] == null) {
+					return new ArrayList<String>();
+				}
+				if (selected[i].size < selected[shortest].size) {
+					shortest = i;
+				}
+			}
+			final List<String> result = new ArrayList<String>();
+			final int[] positions = new int[selected.length];
+			final Posting first = selected[shortest];
+			candidates: for (int k = 0; k < first.size; ++k) {
+				final int id = first.ids[k];
+				for (int i = 0; i < selected.length; ++i) {
+					if (i == shortest) {
+						continue;
+					}
+					final Posting posting = selected[i];
+					int position = positions[i];
+					while (position < posting.size
+							&& posting.ids[position] < id) {
+						++position;
+					}
+					positions[i] = position;
+					if (position == posting.size) {
+						break candidates;
+					}
+					if (posting.ids[position] != id) {
+						continue candidates;
+					}
+				}
+				final String name = names.get(id);
+				if (regex.matcher(name).matches()) {
+					if (result.size() == MAX_CANDIDATES) {
+						return null;
+					}
+					result.add(name);
+				}
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+}
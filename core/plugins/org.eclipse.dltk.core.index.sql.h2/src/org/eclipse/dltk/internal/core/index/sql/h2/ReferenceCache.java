@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.dltk.core.index.sql.Element;
+
+/**
+ * Cache of the element references by name (the posting lists), so the
+ * repeated reference searches of the same names are answered without SQL
+ * queries.
+ *
+ * <p>
+ * Postings are immutable and could be iterated without locking. The cache is
+ * cleared after the transaction modifying the references is committed (while
+ * it is not committed the cached postings are still the ones visible to the
+ * other connections). Clearing increments the version, postings loaded from
+ * the database are stored only if the cache was not cleared while loading.
+ * </p>
+ */
+class ReferenceCache {
+
+	/** Maximum number of the cached names */
+	private static final int MAX_NAMES = 512;
+
+	/** Postings with more references are not cached */
+	static final int MAX_POSTING_SIZE = 4096;
+
+	private static final Map<String, List<Element>> postings = new LinkedHashMap<String, List<Element>>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<String, List<Element>> eldest) {
+			return size() > MAX_NAMES;
+		}
+	};
+
+	private static final AtomicLong version = new AtomicLong();
+
+	private static String key(String tableName, String name) {
+		return tableName + ':' + name.toLowerCase();
+	}
+
+	/**
+	 * Returns the current version, should be called before loading the
+	 * posting from the database.
+	 */
+	public static long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Returns the references with the specified name or <code>null</code> if
+	 * they are not cached
+	 */
+	public static List<Element> get(String tableName, String name) {
+		synchronized (postings) {
+			return postings.get(key(tableName, name));
+		}
+	}
+
+	/**
+	 * Stores the posting if the cache was not modified since the specified
+	 * version.
+	 */
+	public static void put(String tableName, String name,
+			List<Element> references, long loadedVersion) {
+		if (references.size() > MAX_POSTING_SIZE) {
+			return;
+		}
+		final List<Element> posting = Collections
+				.unmodifiableList(new ArrayList<Element>(references));
+		synchronized (postings) {
+			if (version.get() == loadedVersion) {
+				postings.put(key(tableName, name), posting);
+			}
+		}
+	}
+
+	/**
+	 * Removes all the postings, should be called after the modifications of
+	 * the references are committed.
+	 */
+	public static void clear() {
+		version.incrementAndGet();
+		synchronized (postings) {
+			postings.clear();
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql;
+
+import java.sql.Connection;
+
+/**
+ * Optional interface of the {@link IElementDao} implementations caching the
+ * search results.
+ * 
+ * @since 5.1
+ */
+public interface IElementDaoExtension {
+
+	/**
+	 * Called after the transaction modifying the index (inserting the
+	 * elements or deleting the files) is committed, so the cached results
+	 * loaded before could be discarded.
+	 * 
+	 * @param connection
+	 *            the connection of the committed transaction
+	 */
+	void insertionsCommitted(Connection connection);
+
+}
@@ -28,8 +28,10 @@ import org.eclipse.dltk.core.index.sql.Container;
 import org.eclipse.dltk.core.index.sql.DbFactory;
 import org.eclipse.dltk.core.index.sql.File;
 import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IElementDaoExtension;
 import org.eclipse.dltk.core.index.sql.SqlIndex;
 import org.eclipse.dltk.core.index2.AbstractIndexer;
+import org.eclipse.dltk.core.index2.IBulkIndexer;
 import org.eclipse.dltk.core.index2.search.ISearchEngine;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
 import org.eclipse.dltk.internal.core.SourceModule;
@@ -42,12 +44,20 @@ import org.eclipse.osgi.util.NLS;
  * @author michael
  * 
  */
-public class SqlIndexer extends AbstractIndexer {
+public class SqlIndexer extends AbstractIndexer implements IBulkIndexer {
+
+	/** Number of documents written in a single transaction in bulk mode */
+	private static final int BULK_COMMIT_INTERVAL = 200;
 
 	private Connection connection;
 	private File file;
 	private String natureId;
 	private IElementDao elementDao;
+	private boolean bulk;
+	private Connection bulkConnection;
+	private int bulkDocuments;
+	/** Whether the current transaction modified the index */
+	private boolean modified;
 
 	public SqlIndexer() {
 		final DbFactory db = DbFactory.getInstance();
@@ -93,9 +103,17 @@ public class SqlIndexer extends AbstractIndexer {
 
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
-			connection = dbFactory.createConnection();
-			try {
+			if (bulk) {
+				if (bulkConnection == null) {
+					bulkConnection = dbFactory.createConnection();
+					bulkConnection.setAutoCommit(false);
+				}
+				connection = bulkConnection;
+			} else {
+				connection = dbFactory.createConnection();
 				connection.setAutoCommit(false);
+			}
+			try {
 
 				IDLTKLanguageToolkit toolkit = DLTKLanguageManager
 						.getLanguageToolkit(sourceModule);
@@ -141,21 +159,71 @@ public class SqlIndexer extends AbstractIndexer {
 					dbFactory.getFileDao().deleteById(connection,
 							existing.getId());
 				}
+				modified = true;
 				file = dbFactory.getFileDao().insert(connection, relativePath,
 						lastModified, container.getId());
 
 				super.indexDocument(sourceModule);
 
 			} finally {
-				elementDao.commitInsertions();
-				connection.commit();
-				connection.close();
+				if (!bulk) {
+					try {
+						commit(connection);
+					} finally {
+						connection.close();
+					}
+				} else if (++bulkDocuments >= BULK_COMMIT_INTERVAL) {
+					bulkDocuments = 0;
+					commit(connection);
+				}
 			}
 		} catch (Exception e) {
 			SqlIndex.error("An exception was thrown while indexing document", e);
 		}
 	}
 
+	private void commit(Connection connection) throws SQLException {
+		elementDao.commitInsertions();
+		connection.commit();
+		if (modified) {
+			modified = false;
+			if (elementDao instanceof IElementDaoExtension) {
+				((IElementDaoExtension) elementDao)
+						.insertionsCommitted(connection);
+			}
+		}
+	}
+
+	/**
+	 * Starts the bulk mode. The declaration tables have the index on the NAME
+	 * column (see element_decl.sql), it is maintained while inserting and not
+	 * dropped for the bulk: searches run concurrently with indexing and the
+	 * bulk usually covers a small part of the table, so rebuilding the index
+	 * afterwards would cost more than updating it.
+	 */
+	public void beginBulk() {
+		bulk = true;
+		bulkDocuments = 0;
+	}
+
+	public void endBulk() {
+		bulk = false;
+		if (bulkConnection == null) {
+			return;
+		}
+		try {
+			try {
+				commit(bulkConnection);
+			} finally {
+				bulkConnection.close();
+				bulkConnection = null;
+			}
+		} catch (SQLException e) {
+			SqlIndex.error("An exception was thrown while indexing documents",
+					e);
+		}
+	}
+
 	public Map<String, Long> getDocuments(IPath containerPath) {
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.environment;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Optional adapter of the remote {@link IEnvironment}, maintaining the local
+ * copy of the remote folders, so reading of the many files there (e.g. when
+ * indexing the libraries) does not require the separate remote request for
+ * each file.
+ *
+ * @since 5.1
+ */
+public interface IEnvironmentMirror {
+
+	/**
+	 * Synchronizes the local copy of the specified folder with all the
+	 * subfolders. The first synchronization transfers the whole tree, the
+	 * subsequent ones only the files modified since. After the successful
+	 * synchronization the contents of the files in that folder are read from
+	 * the local copy while they are not modified remotely.
+	 *
+	 * @param folder
+	 *            the folder in the environment this adapter was returned for
+	 * @param monitor
+	 *            the progress monitor, could be <code>null</code>
+	 * @return <code>true</code> if the local copy was synchronized or
+	 *         <code>false</code> if it is not supported for this folder or the
+	 *         transfer failed
+	 */
+	boolean synchronize(IFileHandle folder, IProgressMonitor monitor);
+
+}
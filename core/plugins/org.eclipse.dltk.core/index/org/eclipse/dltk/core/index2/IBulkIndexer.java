@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+/**
+ * Optional interface of the {@link IIndexer} supporting the bulk mode: when
+ * many documents are indexed one after another the indexer could buffer the
+ * data of the multiple documents and write them at once.
+ * 
+ * @since 5.1
+ */
+public interface IBulkIndexer extends IIndexer {
+
+	/**
+	 * Starts the bulk mode, the subsequent calls of
+	 * {@link #indexDocument(org.eclipse.dltk.core.ISourceModule)} are not
+	 * required to be visible to the searches until {@link #endBulk()}.
+	 */
+	void beginBulk();
+
+	/**
+	 * Ends the bulk mode writing all the buffered data. Should always be called
+	 * after {@link #beginBulk()}.
+	 */
+	void endBulk();
+
+}
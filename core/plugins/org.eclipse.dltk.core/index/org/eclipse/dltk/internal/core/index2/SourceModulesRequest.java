@@ -22,6 +22,7 @@ import java.util.Set;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.IBulkIndexer;
 import org.eclipse.dltk.core.index2.IIndexer;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
 
@@ -73,9 +74,20 @@ public class SourceModulesRequest extends AbstractIndexRequest {
 			}
 		});
 
-		for (final ISourceModule sourceModule : toReindex) {
-			reportToProgress(sourceModule);
-			indexer.indexDocument(sourceModule);
+		final boolean bulk = indexer instanceof IBulkIndexer
+				&& toReindex.size() > 1;
+		if (bulk) {
+			((IBulkIndexer) indexer).beginBulk();
+		}
+		try {
+			for (final ISourceModule sourceModule : toReindex) {
+				reportToProgress(sourceModule);
+				indexer.indexDocument(sourceModule);
+			}
+		} finally {
+			if (bulk) {
+				((IBulkIndexer) indexer).endBulk();
+			}
 		}
 	}
 
@@ -351,12 +351,41 @@ public class DLTKCore extends Plugin {
 	 */
 	public static final String BUILDER_ENABLED = PLUGIN_ID + ".builder"; //$NON-NLS-1$					
 
+	/**
+	 * Possible configurable option ID. Value is the maximum number of the
+	 * source modules built in parallel, values less than 2 mean the modules
+	 * are built one by one.
+	 * 
+	 * @see org.eclipse.dltk.core.builder.IConcurrentBuildParticipant
+	 * @since 5.1
+	 */
+	public static final String BUILDER_THREADS = PLUGIN_ID + ".builder.threads"; //$NON-NLS-1$
+
 	/**
 	 * Possible configurable option ID. Value should be {@link #ENABLED} or
 	 * {@link #DISABLED}.
 	 */
 	public static final String INDEXER_ENABLED = PLUGIN_ID + ".indexer"; //$NON-NLS-1$					
 
+	/**
+	 * Possible configurable option ID. Value is the maximum number of the
+	 * library indexing jobs executed in parallel, values less than 2 mean the
+	 * jobs are executed one by one.
+	 * 
+	 * @since 5.1
+	 */
+	public static final String INDEXER_THREADS = PLUGIN_ID + ".indexer.threads"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the maximum number of the type
+	 * inference results cached for each source module, <code>0</code> disables
+	 * the cache.
+	 * 
+	 * @since 5.1
+	 */
+	public static final String TI_RESULT_CACHE_SIZE = PLUGIN_ID
+			+ ".ti.resultCacheSize"; //$NON-NLS-1$
+
 	/**
 	 * Possible project configurable option ID. Value is the identifier of
 	 * contributed {@link org.eclipse.dltk.ast.parser.ISourceParser}.
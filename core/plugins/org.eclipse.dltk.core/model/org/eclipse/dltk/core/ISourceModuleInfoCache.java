@@ -46,8 +46,9 @@ public interface ISourceModuleInfoCache {
 	public int size();
 
 	/**
-	 * Returns the capacity of the cache, i.e. the number of elements it can
-	 * contain.
+	 * Returns the capacity of the cache, i.e. the total weight of the elements
+	 * it can contain. Each element weighs at least 1, elements with the large
+	 * ASTs weigh more.
 	 */
 	public int capacity();
 }
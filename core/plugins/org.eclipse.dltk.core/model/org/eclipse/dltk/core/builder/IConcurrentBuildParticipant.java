@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.builder;
+
+/**
+ * Marker interface of the {@link IBuildParticipant}s which could build
+ * different modules at the same time. In the parallel build mode (see
+ * {@link org.eclipse.dltk.core.DLTKCore#BUILDER_THREADS}) the concurrent
+ * participants preceding all the other participants (e.g. the parser) are
+ * called by the worker threads, while the rest of the participants are called
+ * by the builder thread for one module after another.
+ * 
+ * @since 5.1
+ */
+public interface IConcurrentBuildParticipant extends IBuildParticipant {
+
+}
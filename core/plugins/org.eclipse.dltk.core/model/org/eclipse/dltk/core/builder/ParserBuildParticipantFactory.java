@@ -34,7 +34,7 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 			final ISourceParser parser = DLTKLanguageManager.getSourceParser(
 					project.getProject(), natureId);
 			if (parser != null) {
-				return new ParserBuildParticipant(parser);
+				return new ParserBuildParticipant(project, natureId, parser);
 			}
 		}
 		return null;
@@ -47,12 +47,28 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 		natureId = config.getAttribute("nature"); //$NON-NLS-1$
 	}
 
-	private static class ParserBuildParticipant implements IBuildParticipant {
+	/**
+	 * Parsers are not thread safe, so each thread building the modules gets
+	 * its own parser.
+	 */
+	private static class ParserBuildParticipant implements
+			IConcurrentBuildParticipant {
 
-		private final ISourceParser parser;
+		private final ThreadLocal<ISourceParser> parsers;
 
-		public ParserBuildParticipant(ISourceParser parser) {
-			this.parser = parser;
+		public ParserBuildParticipant(final IScriptProject project,
+				final String natureId, final ISourceParser parser) {
+			final Thread owner = Thread.currentThread();
+			this.parsers = new ThreadLocal<ISourceParser>() {
+				@Override
+				protected ISourceParser initialValue() {
+					if (Thread.currentThread() == owner) {
+						return parser;
+					}
+					return DLTKLanguageManager.getSourceParser(
+							project.getProject(), natureId);
+				}
+			};
 		}
 
 		public void build(IBuildContext context) throws CoreException {
@@ -77,9 +93,9 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 			// create problem collector
 			final ProblemCollector problemCollector = new ProblemCollector();
 			// parse
-			moduleDeclaration = parser
-					.parse((IModuleSource) context.getSourceModule(),
-							problemCollector);
+			moduleDeclaration = parsers.get().parse(
+					(IModuleSource) context.getSourceModule(),
+					problemCollector);
 			// put result to the cache
 			SourceParserUtil.putModuleToCache(cacheEntry, moduleDeclaration,
 					problemCollector);
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.caching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.eclipse.dltk.ast.parser.IASTCache;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.DefaultProblemIdentifier;
+import org.eclipse.dltk.compiler.problem.IProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.compiler.util.Util;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.utils.ByteBufferDataInput;
+
+/**
+ * Base class of the persistent {@link IASTCache} implementations, storing
+ * binary AST snapshots together with the parse problems in the core metadata
+ * cache.
+ *
+ * <p>
+ * Entries are keyed by the file handle of the source module and its
+ * modification time, working copies are never cached. Entries are read to
+ * the heap at once (the cache file could be rewritten concurrently, so it is
+ * not memory mapped) and verified by the checksum, subclasses only need to
+ * encode and decode the language specific AST nodes.
+ * </p>
+ *
+ * @since 5.1
+ */
+public abstract class AbstractBinaryASTCache implements IASTCache {
+
+	private static final String ATTRIBUTE = "_bast"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x44415354;
+	private static final int FORMAT_VERSION = 2;
+	private static final int HEADER_SIZE = 20;
+
+	/**
+	 * Returns the version of the AST encoding, entries written with the other
+	 * version are ignored.
+	 */
+	protected abstract int getVersion();
+
+	/**
+	 * Writes the AST of the module
+	 */
+	protected abstract void writeModule(IModuleDeclaration module,
+			DataOutput output) throws IOException;
+
+	/**
+	 * Reads the AST of the module, returns <code>null</code> if it could not
+	 * be restored.
+	 */
+	protected abstract IModuleDeclaration readModule(ISourceModule module,
+			DataInput input) throws IOException;
+
+	/**
+	 * Checks if the AST of the specified module could be cached. By default
+	 * everything except the working copies is cached.
+	 */
+	protected boolean isCacheable(ISourceModule module) {
+		return !module.isWorkingCopy();
+	}
+
+	private IFileHandle getHandle(ISourceModule module) {
+		if (!isCacheable(module)) {
+			return null;
+		}
+		final IFileHandle handle = EnvironmentPathUtils.getFile(module, false);
+		return handle != null && handle.exists() ? handle : null;
+	}
+
+	public ASTCacheEntry restoreModule(ISourceModule module) {
+		final IFileHandle handle = getHandle(module);
+		if (handle == null) {
+			return null;
+		}
+		final IContentCache cache = ModelManager.getModelManager()
+				.getCoreCache();
+		final InputStream stream = cache.getCacheEntryAttribute(handle,
+				ATTRIBUTE, true);
+		if (stream == null) {
+			return null;
+		}
+		try {
+			final byte[] data;
+			try {
+				data = Util.getInputStreamAsByteArray(stream, -1);
+			} finally {
+				stream.close();
+			}
+			return decode(module, handle.lastModified(), data);
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			return null;
+		}
+	}
+
+	public void storeModule(ISourceModule module,
+			IModuleDeclaration moduleDeclaration, ProblemCollector problems) {
+		final IFileHandle handle = getHandle(module);
+		if (handle == null || moduleDeclaration == null) {
+			return;
+		}
+		final byte[] data;
+		try {
+			data = encode(handle.lastModified(), moduleDeclaration, problems);
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		final IContentCache cache = ModelManager.getModelManager()
+				.getCoreCache();
+		final OutputStream stream = cache.getCacheEntryAttributeOutputStream(
+				handle, ATTRIBUTE);
+		if (stream == null) {
+			return;
+		}
+		boolean success = false;
+		try {
+			try {
+				stream.write(data);
+				success = true;
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+		} finally {
+			if (!success) {
+				cache.removeCacheEntryAttributes(handle, ATTRIBUTE);
+			}
+		}
+	}
+
+	/**
+	 * Encodes the cache entry. The entry ends with the checksum of the
+	 * preceding bytes, so the entry partially overwritten by the concurrent
+	 * {@link #storeModule(ISourceModule, IModuleDeclaration, ProblemCollector)}
+	 * is detected when reading.
+	 * 
+	 * @param stamp
+	 *            the modification time of the source module
+	 */
+	protected byte[] encode(long stamp, IModuleDeclaration moduleDeclaration,
+			ProblemCollector problems) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(MAGIC);
+		output.writeInt(FORMAT_VERSION);
+		output.writeInt(getVersion());
+		output.writeLong(stamp);
+		ProblemEncoder.write(problems, output);
+		writeModule(moduleDeclaration, output);
+		output.flush();
+		final CRC32 checksum = new CRC32();
+		checksum.update(bytes.toByteArray());
+		output.writeInt((int) checksum.getValue());
+		output.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the cache entry, returns <code>null</code> if the entry is
+	 * damaged, was written for the other modification time or by the other
+	 * version.
+	 * 
+	 * @param stamp
+	 *            the modification time of the source module
+	 */
+	protected ASTCacheEntry decode(ISourceModule module, long stamp,
+			byte[] data) throws IOException {
+		if (data.length < HEADER_SIZE + 4) {
+			return null;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		final CRC32 checksum = new CRC32();
+		checksum.update(data, 0, data.length - 4);
+		if (buffer.getInt(data.length - 4) != (int) checksum.getValue()) {
+			return null;
+		}
+		final DataInput input = new ByteBufferDataInput(buffer, 0);
+		if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION
+				|| input.readInt() != getVersion() || input.readLong() != stamp) {
+			return null;
+		}
+		final ProblemCollector problems = ProblemEncoder.read(input);
+		final IModuleDeclaration declaration = readModule(module, input);
+		if (declaration == null) {
+			return null;
+		}
+		final ASTCacheEntry entry = new ASTCacheEntry();
+		entry.module = declaration;
+		entry.problems = problems;
+		return entry;
+	}
+
+	/**
+	 * Encodes the collected problems, extends {@link ProblemCollector} to
+	 * access the tasks.
+	 */
+	private static class ProblemEncoder extends ProblemCollector {
+
+		static void write(ProblemCollector collector, DataOutput output)
+				throws IOException {
+			if (collector == null) {
+				output.writeInt(0);
+				return;
+			}
+			final List<IProblem> problems = collector.getProblems();
+			output.writeInt(problems.size());
+			for (IProblem problem : problems) {
+				if (problem instanceof TaskInfo) {
+					output.writeBoolean(true);
+					writeString(output, problem.getMessage());
+					output.writeInt(problem.getSourceLineNumber());
+					output.writeInt(((TaskInfo) problem).getPriority());
+					output.writeInt(problem.getSourceStart());
+					output.writeInt(problem.getSourceEnd());
+				} else {
+					output.writeBoolean(false);
+					writeString(output, problem.getOriginatingFileName());
+					writeString(output, problem.getMessage());
+					writeString(output, DefaultProblemIdentifier.encode(problem
+							.getID()));
+					final String[] arguments = problem.getArguments();
+					if (arguments == null) {
+						output.writeInt(-1);
+					} else {
+						output.writeInt(arguments.length);
+						for (String argument : arguments) {
+							writeString(output, argument);
+						}
+					}
+					final ProblemSeverity severity = problem.getSeverity();
+					output.writeInt(severity != null ? severity.ordinal() : -1);
+					output.writeInt(problem.getSourceStart());
+					output.writeInt(problem.getSourceEnd());
+					output.writeInt(problem.getSourceLineNumber());
+				}
+			}
+		}
+
+		static ProblemCollector read(DataInput input) throws IOException {
+			final int count = input.readInt();
+			final ProblemCollector collector = new ProblemCollector();
+			for (int i = 0; i < count; ++i) {
+				if (input.readBoolean()) {
+					final String message = readString(input);
+					final int lineNumber = input.readInt();
+					final int priority = input.readInt();
+					final int start = input.readInt();
+					final int end = input.readInt();
+					collector.reportTask(message, lineNumber, priority, start,
+							end);
+				} else {
+					final String fileName = readString(input);
+					final String message = readString(input);
+					final String id = readString(input);
+					final int argumentCount = input.readInt();
+					String[] arguments = null;
+					if (argumentCount >= 0) {
+						arguments = new String[argumentCount];
+						for (int j = 0; j < argumentCount; ++j) {
+							arguments[j] = readString(input);
+						}
+					}
+					final int severity = input.readInt();
+					final int start = input.readInt();
+					final int end = input.readInt();
+					final int line = input.readInt();
+					collector.reportProblem(new DefaultProblem(fileName,
+							message, DefaultProblemIdentifier.decode(id),
+							arguments, severity >= 0 ? ProblemSeverity
+									.values()[severity] : null, start, end,
+							line, 0));
+				}
+			}
+			return collector;
+		}
+
+		private static void writeString(DataOutput output, String value)
+				throws IOException {
+			output.writeBoolean(value != null);
+			if (value != null) {
+				output.writeUTF(value);
+			}
+		}
+
+		private static String readString(DataInput input) throws IOException {
+			return input.readBoolean() ? input.readUTF() : null;
+		}
+	}
+
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.IArchive;
+import org.eclipse.dltk.core.IArchiveEntry;
+
+/**
+ * Pool of the opened archives shared by all the threads. Archives are
+ * reference counted: every {@link #acquire(File, Opener)} returns the new
+ * handle which should be closed when no longer needed, the archive itself
+ * stays open while not used (idle) so the next request does not open and
+ * parse it again. The least recently used idle archives are closed when there
+ * are more than {@link #MAX_OPEN_ARCHIVES} archives opened, and the archives
+ * are closed when idle for {@link #IDLE_TIMEOUT} milliseconds, so the files
+ * are not kept locked (on Windows) once they are not used.
+ *
+ * <p>
+ * Archives are identified by the file path, and reopened when the size or
+ * modification time of the file is changed.
+ * </p>
+ */
+public class ArchivePool {
+
+	static final int MAX_OPEN_ARCHIVES = 32;
+
+	static final long IDLE_TIMEOUT = 60 * 1000;
+
+	/**
+	 * Opens the archive if it is not in the pool yet
+	 */
+	public interface Opener {
+		IArchive open(File file) throws IOException;
+	}
+
+	private static class PoolEntry {
+		final String path;
+		final long lastModified;
+		final long length;
+		final IArchive archive;
+		int references;
+		boolean retired;
+		long idleSince;
+
+		PoolEntry(String path, long lastModified, long length, IArchive archive) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.archive = archive;
+		}
+	}
+
+	/**
+	 * The handle of the pooled archive
+	 */
+	private class PooledArchive implements IArchive {
+		private final PoolEntry entry;
+		private volatile boolean closed = false;
+
+		PooledArchive(PoolEntry entry) {
+			this.entry = entry;
+		}
+
+		private IArchive getArchive() {
+			if (closed) {
+				throw new IllegalStateException("archive closed"); //$NON-NLS-1$
+			}
+			return entry.archive;
+		}
+
+		public Enumeration<? extends IArchiveEntry> getArchiveEntries() {
+			return getArchive().getArchiveEntries();
+		}
+
+		public String getName() {
+			return entry.archive.getName();
+		}
+
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				release(entry);
+			}
+		}
+
+		public IArchiveEntry getArchiveEntry(String name) {
+			return getArchive().getArchiveEntry(name);
+		}
+
+		public InputStream getInputStream(IArchiveEntry archiveEntry)
+				throws IOException {
+			return getArchive().getInputStream(archiveEntry);
+		}
+
+		@Override
+		public String toString() {
+			return getName();
+		}
+	}
+
+	private final Map<String, PoolEntry> entries = new HashMap<String, PoolEntry>();
+
+	/**
+	 * The idle archives in the order of use, the least recently used first
+	 */
+	private final LinkedHashMap<String, PoolEntry> idle = new LinkedHashMap<String, PoolEntry>();
+
+	private final int maxOpenArchives;
+
+	private final long idleTimeout;
+
+	private int openCount = 0;
+
+	private final Job closeIdleJob = new Job("Close idle archives") { //$NON-NLS-1$
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			closeIdle(idleTimeout);
+			synchronized (ArchivePool.this) {
+				if (!idle.isEmpty()) {
+					final PoolEntry oldest = idle.values().iterator().next();
+					schedule(Math.max(0, oldest.idleSince + idleTimeout
+							- System.currentTimeMillis()));
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	};
+
+	public ArchivePool() {
+		this(MAX_OPEN_ARCHIVES);
+	}
+
+	public ArchivePool(int maxOpenArchives) {
+		this(maxOpenArchives, IDLE_TIMEOUT);
+	}
+
+	public ArchivePool(int maxOpenArchives, long idleTimeout) {
+		this.maxOpenArchives = maxOpenArchives;
+		this.idleTimeout = idleTimeout;
+		closeIdleJob.setSystem(true);
+	}
+
+	/**
+	 * Returns the handle of the specified archive, opening it if it is not
+	 * pooled yet or the file was modified. The returned handle should be
+	 * closed by the caller.
+	 */
+	public IArchive acquire(File file, Opener opener) throws IOException {
+		final String path = file.getAbsolutePath();
+		final long lastModified = file.lastModified();
+		final long length = file.length();
+		final List<IArchive> toClose = new ArrayList<IArchive>();
+		synchronized (this) {
+			final PoolEntry entry = entries.get(path);
+			if (entry != null) {
+				if (entry.lastModified == lastModified
+						&& entry.length == length) {
+					return newHandle(entry);
+				}
+				retire(entry, toClose);
+			}
+		}
+		closeAll(toClose);
+		toClose.clear();
+		// open outside of the lock, the other thread could do the same
+		final IArchive archive = opener.open(file);
+		final IArchive handle;
+		synchronized (this) {
+			final PoolEntry existing = entries.get(path);
+			if (existing != null && existing.lastModified == lastModified
+					&& existing.length == length) {
+				toClose.add(archive);
+				handle = newHandle(existing);
+			} else {
+				if (existing != null) {
+					retire(existing, toClose);
+				}
+				final PoolEntry entry = new PoolEntry(path, lastModified,
+						length, archive);
+				entries.put(path, entry);
+				++openCount;
+				handle = newHandle(entry);
+				evict(toClose);
+			}
+		}
+		closeAll(toClose);
+		return handle;
+	}
+
+	private IArchive newHandle(PoolEntry entry) {
+		if (entry.references++ == 0) {
+			idle.remove(entry.path);
+		}
+		return new PooledArchive(entry);
+	}
+
+	/**
+	 * Removes the entry from the pool, it is closed now if not used or when
+	 * released otherwise. Should be called when holding the lock.
+	 */
+	private void retire(PoolEntry entry, List<IArchive> toClose) {
+		entry.retired = true;
+		entries.remove(entry.path);
+		idle.remove(entry.path);
+		--openCount;
+		if (entry.references == 0) {
+			toClose.add(entry.archive);
+		}
+	}
+
+	private void release(PoolEntry entry) {
+		final List<IArchive> toClose = new ArrayList<IArchive>();
+		synchronized (this) {
+			if (--entry.references == 0) {
+				if (entry.retired) {
+					toClose.add(entry.archive);
+				} else {
+					entry.idleSince = System.currentTimeMillis();
+					idle.put(entry.path, entry);
+					evict(toClose);
+					// no effect if already scheduled
+					closeIdleJob.schedule(idleTimeout);
+				}
+			}
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * Closes the least recently used idle archives while there are too many
+	 * open archives. Should be called when holding the lock.
+	 */
+	private void evict(List<IArchive> toClose) {
+		final Iterator<PoolEntry> i = idle.values().iterator();
+		while (openCount > maxOpenArchives && i.hasNext()) {
+			final PoolEntry entry = i.next();
+			i.remove();
+			closeIdleEntry(entry, toClose);
+		}
+	}
+
+	/**
+	 * Removes the idle entry (already removed from {@link #idle}) from the
+	 * pool. Should be called when holding the lock.
+	 */
+	private void closeIdleEntry(PoolEntry entry, List<IArchive> toClose) {
+		entries.remove(entry.path);
+		entry.retired = true;
+		--openCount;
+		toClose.add(entry.archive);
+	}
+
+	/**
+	 * Closes the archives which are not used for the specified number of
+	 * milliseconds.
+	 */
+	public void closeIdle(long maxIdleTime) {
+		final List<IArchive> toClose = new ArrayList<IArchive>();
+		synchronized (this) {
+			final long now = System.currentTimeMillis();
+			final Iterator<PoolEntry> i = idle.values().iterator();
+			while (i.hasNext()) {
+				final PoolEntry entry = i.next();
+				if (now - entry.idleSince < maxIdleTime) {
+					// the following ones are idle for the shorter time
+					break;
+				}
+				i.remove();
+				closeIdleEntry(entry, toClose);
+			}
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * Closes all the idle archives, the archives which are in use are closed
+	 * when released.
+	 */
+	public void clear() {
+		closeIdleJob.cancel();
+		final List<IArchive> toClose = new ArrayList<IArchive>();
+		synchronized (this) {
+			for (PoolEntry entry : new ArrayList<PoolEntry>(entries.values())) {
+				retire(entry, toClose);
+			}
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * Returns the number of the open archives (used and idle)
+	 */
+	public synchronized int getOpenCount() {
+		return openCount;
+	}
+
+	private static void closeAll(List<IArchive> archives) {
+		for (IArchive archive : archives) {
+			try {
+				if (ModelManager.ZIP_ACCESS_VERBOSE) {
+					System.out
+							.println("(" + Thread.currentThread() + ") [ArchivePool] Closing archive " + archive.getName()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				archive.close();
+			} catch (IOException e) {
+				// problem occured closing zip file: cannot do much more
+			}
+		}
+	}
+
+}
@@ -9,6 +9,11 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.IScriptFolder;
@@ -17,10 +22,25 @@ import org.eclipse.dltk.internal.core.util.LRUCache;
 
 /**
  * An LRU cache of <code>ModelElements</code>.
+ * 
+ * <p>
+ * All the modifications must be externally synchronized (by the
+ * {@link ModelManager}), while {@link #getConcurrent(Object)} and
+ * {@link #peekConcurrent(Object)} could be called without any locking: the
+ * values are mirrored in the concurrent map and the accesses are buffered and
+ * applied to the LRU order on the next modification.
+ * </p>
  */
 public class ElementCache extends OverflowingLRUCache {
+	/** Number of buffered accesses applied on the next modification */
+	private static final int MAX_PENDING_ACCESSES = 1024;
+
 	private IModelElement spaceLimitParent = null;
 
+	private final ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<Object, Object>();
+	private final Queue<Object> accesses = new ConcurrentLinkedQueue<Object>();
+	private final AtomicInteger accessCount = new AtomicInteger();
+
 	/**
 	 * Constructs a new element cache of the given size.
 	 */
@@ -83,6 +103,84 @@ public class ElementCache extends OverflowingLRUCache {
 		}
 	}
 
+	/**
+	 * Returns the value of the specified key, could be called without
+	 * synchronization. The access is recorded and applied to the LRU order
+	 * later.
+	 */
+	public Object getConcurrent(Object key) {
+		final Object value = values.get(key);
+		if (value != null && accessCount.get() < MAX_PENDING_ACCESSES) {
+			accessCount.incrementAndGet();
+			accesses.add(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value of the specified key without disturbing the LRU
+	 * order, could be called without synchronization.
+	 */
+	public Object peekConcurrent(Object key) {
+		return values.get(key);
+	}
+
+	/**
+	 * Applies the buffered accesses to the LRU order
+	 */
+	private void drainAccesses() {
+		Object key;
+		while ((key = accesses.poll()) != null) {
+			accessCount.decrementAndGet();
+			final LRUCacheEntry entry = (LRUCacheEntry) fEntryTable.get(key);
+			if (entry != null) {
+				updateTimestamp(entry);
+			}
+		}
+	}
+
+	@Override
+	public Object get(Object key) {
+		drainAccesses();
+		return super.get(key);
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		drainAccesses();
+		super.put(key, value);
+		final LRUCacheEntry entry = (LRUCacheEntry) fEntryTable.get(key);
+		if (entry != null && entry._fValue != null) {
+			values.put(key, entry._fValue);
+		}
+		return value;
+	}
+
+	@Override
+	protected void privateAddEntry(LRUCacheEntry entry, boolean shuffle) {
+		super.privateAddEntry(entry, shuffle);
+		if (!shuffle) {
+			if (entry._fValue != null) {
+				values.put(entry._fKey, entry._fValue);
+			}
+		}
+	}
+
+	@Override
+	protected void privateRemoveEntry(LRUCacheEntry entry, boolean shuffle,
+			boolean external) {
+		super.privateRemoveEntry(entry, shuffle, external);
+		if (!shuffle && fEntryTable.get(entry._fKey) == null) {
+			values.remove(entry._fKey);
+		}
+	}
+
+	@Override
+	public void flush() {
+		super.flush();
+		values.clear();
+	}
+
 	/*
 	 * Returns a new instance of the receiver.
 	 */
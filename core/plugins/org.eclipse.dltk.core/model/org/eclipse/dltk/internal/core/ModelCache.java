@@ -10,14 +10,20 @@
 package org.eclipse.dltk.internal.core;
 
 import java.text.NumberFormat;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IModelElement;
 
 /**
  * The cache ofscriptelements to their respective info.
+ * 
+ * <p>
+ * Modifications are synchronized by the {@link ModelManager}, while
+ * {@link #getInfo(IModelElement)} and {@link #peekAtInfo(IModelElement)} are
+ * safe to call without locking.
+ * </p>
  */
 public class ModelCache {
 	public static final int DEFAULT_PROJECT_SIZE = 5; // average 25552 bytes
@@ -42,11 +48,11 @@ public class ModelCache {
 	/**
 	 * Active script Model Info
 	 */
-	protected ModelInfo modelInfo;
+	protected volatile ModelInfo modelInfo;
 	/**
 	 * Cache of open projects.
 	 */
-	protected HashMap projectCache;
+	protected Map projectCache;
 	/**
 	 * Cache of open package fragment roots.
 	 */
@@ -79,7 +85,7 @@ public class ModelCache {
 		// for
 		// most
 		// JInterpreter
-		this.projectCache = new HashMap(DEFAULT_PROJECT_SIZE); // NB: Don't use
+		this.projectCache = new ConcurrentHashMap(DEFAULT_PROJECT_SIZE); // NB: Don't use
 		// a LRUCache
 		// for projects
 		// as they are
@@ -92,7 +98,8 @@ public class ModelCache {
 		this.pkgCache = new ElementCache((int) (DEFAULT_PKG_SIZE * ratio));
 		this.openableCache = new ElementCache(
 				(int) (DEFAULT_OPENABLE_SIZE * ratio));
-		this.childrenCache = new HashMap((int) (DEFAULT_CHILDREN_SIZE * ratio));
+		this.childrenCache = new ConcurrentHashMap(
+				(int) (DEFAULT_CHILDREN_SIZE * ratio));
 	}
 
 	/**
@@ -105,12 +112,12 @@ public class ModelCache {
 		case IModelElement.SCRIPT_PROJECT:
 			return this.projectCache.get(element);
 		case IModelElement.PROJECT_FRAGMENT:
-			return this.rootCache.get(element);
+			return this.rootCache.getConcurrent(element);
 		case IModelElement.SCRIPT_FOLDER:
-			return this.pkgCache.get(element);
+			return this.pkgCache.getConcurrent(element);
 		case IModelElement.SOURCE_MODULE:
 		case IModelElement.BINARY_MODULE:
-			return this.openableCache.get(element);
+			return this.openableCache.getConcurrent(element);
 		default:
 			return this.childrenCache.get(element);
 		}
@@ -126,12 +133,12 @@ public class ModelCache {
 		case IModelElement.SCRIPT_PROJECT:
 			return this.projectCache.get(element);
 		case IModelElement.PROJECT_FRAGMENT:
-			return this.rootCache.peek(element);
+			return this.rootCache.peekConcurrent(element);
 		case IModelElement.SCRIPT_FOLDER:
-			return this.pkgCache.peek(element);
+			return this.pkgCache.peekConcurrent(element);
 		case IModelElement.SOURCE_MODULE:
 		case IModelElement.BINARY_MODULE:
-			return this.openableCache.peek(element);
+			return this.openableCache.peekConcurrent(element);
 		default:
 			return this.childrenCache.get(element);
 		}
@@ -165,7 +172,11 @@ public class ModelCache {
 			this.openableCache.put(element, info);
 			break;
 		default:
-			this.childrenCache.put(element, info);
+			if (info != null) {
+				this.childrenCache.put(element, info);
+			} else {
+				this.childrenCache.remove(element);
+			}
 		}
 	}
 
@@ -476,6 +476,12 @@ public class ModelManager implements ISaveParticipant {
 	 */
 	private ThreadLocal<Map<IPath, IArchive>> zipFiles = new ThreadLocal<Map<IPath, IArchive>>();
 
+	/**
+	 * Archives shared by all the threads, {@link #getArchive(IPath, IProjectFragment)}
+	 * returns the handles of the pooled archives.
+	 */
+	private final ArchivePool archivePool = new ArchivePool();
+
 	private UserLibraryManager userLibraryManager;
 
 	public final static ISourceModule[] NO_WORKING_COPY = new ISourceModule[0];
@@ -486,7 +492,7 @@ public class ModelManager implements ISaveParticipant {
 	/**
 	 * Infos cache.
 	 */
-	public ModelCache cache;// = new ModelCache();
+	public volatile ModelCache cache;// = new ModelCache();
 	/*
 	 * Temporary cache of newly opened elements
 	 */
@@ -581,9 +587,10 @@ public class ModelManager implements ISaveParticipant {
 	}
 
 	/**
-	 * Returns the info for the element.
+	 * Returns the info for the element. Does not lock the manager, see
+	 * {@link ModelCache}.
 	 */
-	public synchronized Object getInfo(IModelElement element) {
+	public Object getInfo(IModelElement element) {
 		HashMap tempCache = (HashMap) this.temporaryCache.get();
 		if (tempCache != null) {
 			Object result = tempCache.get(element);
@@ -597,7 +604,7 @@ public class ModelManager implements ISaveParticipant {
 	/**
 	 * Returns the info for this element without disturbing the cache ordering.
 	 */
-	protected synchronized Object peekAtInfo(IModelElement element) {
+	protected Object peekAtInfo(IModelElement element) {
 		HashMap tempCache = (HashMap) this.temporaryCache.get();
 		if (tempCache != null) {
 			Object result = tempCache.get(element);
@@ -714,11 +721,21 @@ public class ModelManager implements ISaveParticipant {
 				this.cache.putInfo(element, info);
 			}
 		}
+		// The opened element is added last, so the concurrent readers (see
+		// getInfo) finding its info also find the infos of the children.
+		Object openedInfo = null;
 		Iterator iterator = newElements.keySet().iterator();
 		while (iterator.hasNext()) {
 			IModelElement element = (IModelElement) iterator.next();
 			Object info = newElements.get(element);
-			this.cache.putInfo(element, info);
+			if (openedElement.equals(element)) {
+				openedInfo = info;
+			} else {
+				this.cache.putInfo(element, info);
+			}
+		}
+		if (openedInfo != null) {
+			this.cache.putInfo(openedElement, openedInfo);
 		}
 	}
 
@@ -1595,6 +1612,7 @@ public class ModelManager implements ISaveParticipant {
 		if (this.indexManager != null) { // no more indexing
 			this.indexManager.shutdown();
 		}
+		archivePool.clear();
 		// wait for the initialization job to finish
 		try {
 			Job.getJobManager().join(DLTKCore.PLUGIN_ID, null);
@@ -2325,7 +2343,7 @@ public class ModelManager implements ISaveParticipant {
 	 *                If unable to create/open the ZipFile
 	 */
 	public IArchive getArchive(IPath path,
-			IProjectFragment archiveProjectFragment) throws CoreException {
+			final IProjectFragment archiveProjectFragment) throws CoreException {
 		Map<IPath, IArchive> map;
 		IArchive zipFile;
 		if ((map = this.zipFiles.get()) != null
@@ -2364,7 +2382,11 @@ public class ModelManager implements ISaveParticipant {
 				System.out
 						.println("(" + Thread.currentThread() + ") [ModelManager.getZipFile(IPath)] Creating ZipFile on " + localFile); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-			zipFile = openArchive(archiveProjectFragment, localFile);
+			zipFile = archivePool.acquire(localFile, new ArchivePool.Opener() {
+				public IArchive open(File file) throws IOException {
+					return openArchive(archiveProjectFragment, file);
+				}
+			});
 
 			if (map != null) {
 				map.put(path, zipFile);
@@ -15,6 +15,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -25,6 +30,7 @@ import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.dltk.annotations.Internal;
+import org.eclipse.dltk.ast.ASTNode;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ISourceModuleInfoCache;
@@ -32,27 +38,69 @@ import org.eclipse.dltk.core.ISourceModuleInfoCache;
 /**
  * Used to cache some source module information. All information related to
  * source module are removed, then source module are changed.
+ * 
+ * <p>
+ * Lookups are lock free: entries are kept in the {@link ConcurrentHashMap},
+ * while the LRU order is maintained under the lock, which is taken only when
+ * entries are added and when the buffered accesses are replayed. The capacity
+ * is the total weight of the entries, each entry weighs 1 plus 1 for every
+ * {@link #WEIGHT_UNIT} characters of the cached AST.
+ * </p>
  */
 public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		IResourceChangeListener, IResourceDeltaVisitor {
 	@Internal
 	final int capacity = ModelCache.DEFAULT_ROOT_SIZE * 50;
 
+	@Internal
+	static final int WEIGHT_UNIT = 8192;
+
+	/**
+	 * Number of the buffered accesses to start replaying them
+	 */
+	private static final int DRAIN_THRESHOLD = 64;
+
+	/**
+	 * Maximum number of the buffered accesses, others are dropped
+	 */
+	private static final int MAX_PENDING = 1024;
+
 	private final ReferenceQueue<ISourceModuleInfo> queue = new ReferenceQueue<ISourceModuleInfo>();
 
-	@SuppressWarnings("serial")
-	private final Map<ISourceModule, CacheReference> map = new LinkedHashMap<ISourceModule, CacheReference>(
-			16, 0.9f, true) {
-		protected boolean removeEldestEntry(
-				Map.Entry<ISourceModule, CacheReference> eldest) {
-			return size() > capacity;
-		}
-	};
+	private final ConcurrentHashMap<ISourceModule, CacheReference> map = new ConcurrentHashMap<ISourceModule, CacheReference>();
+
+	/**
+	 * Entries in the LRU order, guarded by {@link #lock}
+	 */
+	private final LinkedHashMap<ISourceModule, CacheReference> order = new LinkedHashMap<ISourceModule, CacheReference>(
+			16, 0.9f, true);
+
+	/**
+	 * Total weight of the entries in {@link #order}, guarded by {@link #lock}
+	 */
+	private int weight = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Accesses and weight changes to be replayed in the {@link #order}
+	 */
+	private final Queue<CacheReference> accesses = new ConcurrentLinkedQueue<CacheReference>();
+	private final AtomicInteger pending = new AtomicInteger();
 
 	private static class CacheReference extends
 			SoftReference<ISourceModuleInfo> {
 		final long modificationStamp;
 		final ISourceModule module;
+		/**
+		 * The current weight of the entry
+		 */
+		volatile int weight = 1;
+		/**
+		 * The weight of the entry included in the total weight, guarded by
+		 * {@link SourceModuleInfoCache#lock}
+		 */
+		int appliedWeight;
 
 		public CacheReference(ISourceModule module, ISourceModuleInfo referent,
 				ReferenceQueue<? super ISourceModuleInfo> q) {
@@ -84,32 +132,125 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		DLTKCore.removePreProcessingResourceChangedListener(this);
 	}
 
+	/**
+	 * Should be called under the {@link #lock}
+	 */
 	private void expungeStaleEntries() {
 		for (CacheReference r; (r = (CacheReference) queue.poll()) != null;) {
 			if (DEBUG) {
 				System.out.println("[Cache] expunge "
 						+ r.module.getElementName());
 			}
-			map.remove(r.module);
+			map.remove(r.module, r);
+			update(r.module);
+		}
+	}
+
+	/**
+	 * Synchronizes the {@link #order} with the {@link #map} for the specified
+	 * module and marks it as recently used. Should be called under the
+	 * {@link #lock}
+	 */
+	private void update(ISourceModule module) {
+		final CacheReference mapped = map.get(module);
+		final CacheReference current = order.get(module);
+		if (current != mapped) {
+			if (current != null) {
+				order.remove(module);
+				weight -= current.appliedWeight;
+			}
+			if (mapped != null) {
+				order.put(module, mapped);
+				mapped.appliedWeight = mapped.weight;
+				weight += mapped.appliedWeight;
+			}
+		} else if (current != null && current.appliedWeight != current.weight) {
+			weight += current.weight - current.appliedWeight;
+			current.appliedWeight = current.weight;
 		}
 	}
 
-	public synchronized ISourceModuleInfo get(ISourceModule module) {
-		expungeStaleEntries();
+	/**
+	 * Replays the buffered accesses and evicts the least recently used entries
+	 * exceeding the capacity. Should be called under the {@link #lock}
+	 */
+	private void drain() {
+		for (CacheReference r; (r = accesses.poll()) != null;) {
+			pending.decrementAndGet();
+			update(r.module);
+		}
+		while (weight > capacity && order.size() > 1) {
+			final Iterator<CacheReference> i = order.values().iterator();
+			final CacheReference eldest = i.next();
+			i.remove();
+			weight -= eldest.appliedWeight;
+			map.remove(eldest.module, eldest);
+		}
+	}
+
+	/**
+	 * Buffers the access to the entry, replaying the buffer if it's full and
+	 * the lock is available.
+	 */
+	private void recordAccess(CacheReference ref) {
+		if (pending.get() < MAX_PENDING) {
+			pending.incrementAndGet();
+			accesses.add(ref);
+		}
+		if (pending.get() >= DRAIN_THRESHOLD && lock.tryLock()) {
+			try {
+				drain();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Called when the weight of the entry was changed
+	 */
+	void weightChanged(CacheReference ref) {
+		accesses.add(ref);
+		pending.incrementAndGet();
+		if (lock.tryLock()) {
+			try {
+				drain();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	public ISourceModuleInfo get(ISourceModule module) {
 		final CacheReference ref = map.get(module);
 		if (ref != null) {
 			final ISourceModuleInfo info = ref.get();
 			if (info != null && ref.isValid(module)) {
+				recordAccess(ref);
 				return info;
 			}
 		}
-		final ISourceModuleInfo info = new SourceModuleInfo();
-		map.put(module, new CacheReference(module, info, queue));
+		final SourceModuleInfo info = new SourceModuleInfo(this);
+		info.reference = new CacheReference(module, info, queue);
+		map.put(module, info.reference);
+		lock.lock();
+		try {
+			expungeStaleEntries();
+			update(module);
+			drain();
+		} finally {
+			lock.unlock();
+		}
 		return info;
 	}
 
-	public synchronized void resourceChanged(IResourceChangeEvent event) {
-		expungeStaleEntries();
+	public void resourceChanged(IResourceChangeEvent event) {
+		lock.lock();
+		try {
+			expungeStaleEntries();
+		} finally {
+			lock.unlock();
+		}
 		final IResourceDelta delta = event.getDelta();
 		try {
 			delta.accept(this);
@@ -163,6 +304,12 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 	@Internal
 	static class SourceModuleInfo implements ISourceModuleInfo {
 		private Map<Object, Object> map;
+		private final SourceModuleInfoCache cache;
+		CacheReference reference;
+
+		SourceModuleInfo(SourceModuleInfoCache cache) {
+			this.cache = cache;
+		}
 
 		public synchronized Object get(String key) {
 			if (map == null) {
@@ -171,11 +318,21 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 			return map.get(key);
 		}
 
-		public synchronized void put(String key, Object value) {
-			if (map == null) {
-				map = new HashMap<Object, Object>();
+		public void put(String key, Object value) {
+			synchronized (this) {
+				if (map == null) {
+					map = new HashMap<Object, Object>();
+				}
+				map.put(key, value);
+			}
+			if (value instanceof ASTNode) {
+				final int weight = 1 + ((ASTNode) value).sourceEnd()
+						/ WEIGHT_UNIT;
+				if (weight > reference.weight) {
+					reference.weight = weight;
+					cache.weightChanged(reference);
+				}
 			}
-			map.put(key, value);
 		}
 
 		public synchronized void remove(String key) {
@@ -189,16 +346,10 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		}
 	}
 
-	/**
-	 * Not synchronized here, as it's called only from
-	 * {@link #resourceChanged(IResourceChangeEvent)} which is already
-	 * synchronized.
-	 */
 	private void removeByProject(IProject project) {
-		for (Iterator<ISourceModule> i = map.keySet().iterator(); i.hasNext();) {
-			final ISourceModule module = i.next();
+		for (ISourceModule module : map.keySet()) {
 			if (project.equals(module.getScriptProject().getProject())) {
-				i.remove();
+				remove(module);
 			}
 		}
 	}
@@ -207,23 +358,39 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		remove(DLTKCore.createSourceModuleFrom(file));
 	}
 
-	public synchronized void remove(ISourceModule module) {
+	public void remove(ISourceModule module) {
 		if (DEBUG) {
 			System.out.println("[Cache] remove " + module.getElementName()); //$NON-NLS-1$
 		}
-		map.remove(module);
+		if (map.remove(module) != null) {
+			lock.lock();
+			try {
+				update(module);
+			} finally {
+				lock.unlock();
+			}
+		}
 	}
 
 	private static final boolean DEBUG = false;
 
-	public synchronized void clear() {
-		// clear out reference queue.
-		while (queue.poll() != null)
-			;
-		map.clear();
+	public void clear() {
+		lock.lock();
+		try {
+			// clear out reference queue.
+			while (queue.poll() != null)
+				;
+			accesses.clear();
+			pending.set(0);
+			map.clear();
+			order.clear();
+			weight = 0;
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized int size() {
+	public int size() {
 		return map.size();
 	}
 
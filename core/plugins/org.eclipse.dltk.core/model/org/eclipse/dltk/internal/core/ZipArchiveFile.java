@@ -4,34 +4,84 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IArchive;
 import org.eclipse.dltk.core.IArchiveEntry;
 
 public class ZipArchiveFile implements IArchive {
 
+	private final String name;
 	private ZipFile zipFile;
+	/**
+	 * The parsed central directory, if not <code>null</code> it is used
+	 * instead of the {@link #zipFile}
+	 */
+	private volatile ZipCentralDirectory directory;
+	private volatile boolean closed = false;
+
 	public ZipArchiveFile(File file) throws ZipException, IOException {
-		zipFile = new ZipFile(file);
+		name = file.getPath();
+		try {
+			directory = ZipCentralDirectory.open(file);
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+		}
+		if (directory == null) {
+			zipFile = new ZipFile(file);
+		}
 	}
 
 	public ZipArchiveFile(String zipName) throws IOException {
-		zipFile = new ZipFile(zipName);
+		this(new File(zipName));
+	}
+
+	private ZipCentralDirectory getDirectory() {
+		if (closed) {
+			throw new IllegalStateException("zip file closed"); //$NON-NLS-1$
+		}
+		return directory;
 	}
 
 	public InputStream getInputStream(IArchiveEntry entry) throws IOException {
 		ZipArchiveEntry zipArchiveEntry = (ZipArchiveEntry) entry;
+		final ZipCentralDirectory dir = getDirectory();
+		if (dir != null) {
+			return dir.getInputStream(zipArchiveEntry.getZipEntry());
+		}
 		return zipFile.getInputStream(zipArchiveEntry.getZipEntry());
 	}
 
 	public IArchiveEntry getArchiveEntry(String name) {
+		final ZipCentralDirectory dir = getDirectory();
+		if (dir != null) {
+			return new ZipArchiveEntry(dir.getEntry(name));
+		}
 		return new ZipArchiveEntry(zipFile.getEntry(name));
 	}
 
 	public Enumeration<? extends IArchiveEntry> getArchiveEntries() {
+		final ZipCentralDirectory dir = getDirectory();
+		if (dir != null) {
+			final Iterator<ZipEntry> iterator = dir.getEntries().iterator();
+			return new Enumeration<IArchiveEntry>() {
+
+				public boolean hasMoreElements() {
+					return iterator.hasNext();
+				}
+
+				public IArchiveEntry nextElement() {
+					return new ZipArchiveEntry(iterator.next());
+				}
+
+			};
+		}
 		final Enumeration<? extends ZipEntry> zipEnumeration = zipFile
 				.entries();
 
@@ -49,11 +99,19 @@ public class ZipArchiveFile implements IArchive {
 	}
 
 	public void close() throws IOException {
-		zipFile.close();
+		closed = true;
+		final ZipCentralDirectory dir = directory;
+		directory = null;
+		if (dir != null) {
+			dir.close();
+		}
+		if (zipFile != null) {
+			zipFile.close();
+		}
 	}
 
 	public String getName() {
-		return zipFile.getName();
+		return name;
 	}
 
 }
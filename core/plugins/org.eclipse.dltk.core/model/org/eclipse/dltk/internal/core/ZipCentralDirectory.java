@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only access to the zip archive. The central directory is read into
+ * the heap and parsed once into the hash table, so entries are found by name
+ * in constant time, and the entry data is read from the file at the known
+ * offsets.
+ *
+ * <p>
+ * The file is not memory mapped: if the archive is rewritten while opened the
+ * reads fail or return the wrong data (detected by the checksum of the
+ * callers or the inflater), but could not crash the VM.
+ * </p>
+ *
+ * <p>
+ * Only the plain zip format is supported, {@link #open(File)} returns
+ * <code>null</code> for the archives which should be read by
+ * {@link java.util.zip.ZipFile} (zip64, too large, etc).
+ * </p>
+ */
+class ZipCentralDirectory {
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	private static class Entry {
+		final ZipEntry zipEntry;
+		final long localHeaderOffset;
+
+		Entry(ZipEntry zipEntry, long localHeaderOffset) {
+			this.zipEntry = zipEntry;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+
+	private final RandomAccessFile file;
+	private final long size;
+	private final Map<String, Entry> entries;
+	private final List<ZipEntry> entryList;
+
+	private ZipCentralDirectory(RandomAccessFile file, long size,
+			Map<String, Entry> entries, List<ZipEntry> entryList) {
+		this.file = file;
+		this.size = size;
+		this.entries = entries;
+		this.entryList = entryList;
+	}
+
+	/**
+	 * Opens the specified archive and reads its central directory. Returns
+	 * <code>null</code> if the archive could not be handled, in that case it
+	 * should be opened by {@link java.util.zip.ZipFile}.
+	 */
+	static ZipCentralDirectory open(File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		ZipCentralDirectory directory = null;
+		try {
+			directory = read(raf);
+			return directory;
+		} finally {
+			if (directory == null) {
+				raf.close();
+			}
+		}
+	}
+
+	private static ByteBuffer readBuffer(RandomAccessFile raf, long offset,
+			int length) throws IOException {
+		final byte[] bytes = new byte[length];
+		raf.seek(offset);
+		raf.readFully(bytes);
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static ZipCentralDirectory read(RandomAccessFile raf)
+			throws IOException {
+		final long size = raf.length();
+		if (size < END_SIZE) {
+			return null;
+		}
+		final int tailLength = (int) Math.min(size, END_SIZE
+				+ MAX_COMMENT_SIZE);
+		final long tailOffset = size - tailLength;
+		final ByteBuffer tail = readBuffer(raf, tailOffset, tailLength);
+		final int endOffset = findEnd(tail);
+		if (endOffset < 0) {
+			return null;
+		}
+		final int count = tail.getShort(endOffset + 10) & 0xFFFF;
+		final long directorySize = tail.getInt(endOffset + 12) & 0xFFFFFFFFL;
+		final long directoryOffset = tail.getInt(endOffset + 16) & 0xFFFFFFFFL;
+		if (count == 0xFFFF || directorySize == 0xFFFFFFFFL
+				|| directoryOffset == 0xFFFFFFFFL
+				|| directoryOffset + directorySize > tailOffset + endOffset
+				|| directorySize > Integer.MAX_VALUE) {
+			// zip64 or not consistent
+			return null;
+		}
+		final ByteBuffer buffer = readBuffer(raf, directoryOffset,
+				(int) directorySize);
+		final int limit = buffer.limit();
+		final Map<String, Entry> entries = new HashMap<String, Entry>(
+				count * 4 / 3 + 1);
+		final List<ZipEntry> entryList = new ArrayList<ZipEntry>(count);
+		int offset = 0;
+		for (int i = 0; i < count; ++i) {
+			if (offset + CENTRAL_HEADER_SIZE > limit
+					|| buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+				return null;
+			}
+			final int method = buffer.getShort(offset + 10) & 0xFFFF;
+			final long crc = buffer.getInt(offset + 16) & 0xFFFFFFFFL;
+			final long compressedSize = buffer.getInt(offset + 20) & 0xFFFFFFFFL;
+			final long entrySize = buffer.getInt(offset + 24) & 0xFFFFFFFFL;
+			final int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+			final int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+			final int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+			final long localHeaderOffset = buffer.getInt(offset + 42) & 0xFFFFFFFFL;
+			if (compressedSize == 0xFFFFFFFFL || entrySize == 0xFFFFFFFFL
+					|| localHeaderOffset == 0xFFFFFFFFL
+					|| offset + CENTRAL_HEADER_SIZE + nameLength > limit) {
+				return null;
+			}
+			final String name = new String(buffer.array(), offset
+					+ CENTRAL_HEADER_SIZE, nameLength, "UTF-8"); //$NON-NLS-1$
+			final ZipEntry zipEntry = new ZipEntry(name);
+			zipEntry.setMethod(method == ZipEntry.STORED ? ZipEntry.STORED
+					: ZipEntry.DEFLATED);
+			zipEntry.setCrc(crc);
+			zipEntry.setCompressedSize(compressedSize);
+			zipEntry.setSize(entrySize);
+			if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+				// not supported compression
+				return null;
+			}
+			entries.put(zipEntry.getName(), new Entry(zipEntry,
+					localHeaderOffset));
+			entryList.add(zipEntry);
+			offset += CENTRAL_HEADER_SIZE + nameLength + extraLength
+					+ commentLength;
+		}
+		return new ZipCentralDirectory(raf, size, entries,
+				Collections.unmodifiableList(entryList));
+	}
+
+	private static int findEnd(ByteBuffer buffer) {
+		final int limit = buffer.limit();
+		final int min = Math.max(0, limit - END_SIZE - MAX_COMMENT_SIZE);
+		for (int offset = limit - END_SIZE; offset >= min; --offset) {
+			if (buffer.getInt(offset) == END_SIGNATURE) {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the entry with the specified name or <code>null</code>
+	 */
+	ZipEntry getEntry(String name) {
+		final Entry entry = entries.get(name);
+		return entry != null ? entry.zipEntry : null;
+	}
+
+	List<ZipEntry> getEntries() {
+		return entryList;
+	}
+
+	/**
+	 * Reads the specified range of the file, could be called by the different
+	 * threads.
+	 */
+	private int read(long position, byte[] b, int off, int len)
+			throws IOException {
+		synchronized (file) {
+			file.seek(position);
+			return file.read(b, off, len);
+		}
+	}
+
+	/**
+	 * Returns the stream with the uncompressed contents of the entry
+	 */
+	InputStream getInputStream(ZipEntry zipEntry) throws IOException {
+		final Entry entry = entries.get(zipEntry.getName());
+		if (entry == null) {
+			return null;
+		}
+		final long offset = entry.localHeaderOffset;
+		final byte[] header = new byte[LOCAL_HEADER_SIZE];
+		if (offset + LOCAL_HEADER_SIZE > size
+				|| read(offset, header, 0, header.length) != header.length) {
+			throw new IOException("Invalid local header: " + zipEntry.getName()); //$NON-NLS-1$
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(header).order(
+				ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("Invalid local header: " + zipEntry.getName()); //$NON-NLS-1$
+		}
+		final int nameLength = buffer.getShort(26) & 0xFFFF;
+		final int extraLength = buffer.getShort(28) & 0xFFFF;
+		final long start = offset + LOCAL_HEADER_SIZE + nameLength
+				+ extraLength;
+		final long end = start + entry.zipEntry.getCompressedSize();
+		if (end > size) {
+			throw new IOException("Truncated entry: " + zipEntry.getName()); //$NON-NLS-1$
+		}
+		if (zipEntry.getMethod() == ZipEntry.STORED) {
+			return new EntryInputStream(start, end, false);
+		}
+		final Inflater inflater = new Inflater(true);
+		return new InflaterInputStream(new EntryInputStream(start, end, true),
+				inflater, 4096) {
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					inflater.end();
+					super.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Closes the archive file
+	 */
+	void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Stream reading the range of the archive file, optionally appends the
+	 * dummy byte required by the {@link Inflater} in the "nowrap" mode.
+	 */
+	private class EntryInputStream extends InputStream {
+		private long position;
+		private final long end;
+		private boolean dummy;
+
+		EntryInputStream(long start, long end, boolean dummy) {
+			this.position = start;
+			this.end = end;
+			this.dummy = dummy;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			final long remaining = end - position;
+			if (remaining == 0) {
+				if (dummy) {
+					dummy = false;
+					b[off] = 0;
+					return 1;
+				}
+				return -1;
+			}
+			final int count = ZipCentralDirectory.this.read(position, b, off,
+					(int) Math.min(len, remaining));
+			if (count < 0) {
+				throw new IOException("Unexpected end of archive"); //$NON-NLS-1$
+			}
+			position += count;
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			final long count = Math.min(Math.max(n, 0), end - position);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(end - position, Integer.MAX_VALUE);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.builder;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Builds the items in two stages. The first stage is executed for several
+ * items at the same time by the worker threads, the second one is executed by
+ * the calling thread in the order of the items. Only a few items are
+ * submitted ahead of the second stage, so the number of the first stage
+ * results waiting for it is limited.
+ *
+ * <p>
+ * If the second stage or some first stage fails or the monitor is canceled
+ * then the items not started yet are skipped, and the method returns (or
+ * rethrows the failure) only after the worker threads are terminated.
+ * </p>
+ */
+public abstract class ParallelBuildRunner<T, R> {
+
+	private static final int ITEMS_PER_THREAD = 2;
+
+	private final int threads;
+
+	public ParallelBuildRunner(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Executes the first stage, called by the worker threads.
+	 */
+	protected abstract R buildConcurrently(T item);
+
+	/**
+	 * Executes the second stage, called by the thread executing
+	 * {@link #run(List, IProgressMonitor)} in the order of the items.
+	 */
+	protected abstract void buildSequentially(T item, R result);
+
+	public void run(List<T> items, IProgressMonitor monitor) {
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final LinkedList<Future<R>> pending = new LinkedList<Future<R>>();
+		try {
+			final Iterator<T> submitting = items.iterator();
+			for (T item : items) {
+				while (pending.size() < threads * ITEMS_PER_THREAD
+						&& submitting.hasNext()) {
+					final T next = submitting.next();
+					pending.add(executor.submit(new Callable<R>() {
+						public R call() {
+							return canceled.get() ? null
+									: buildConcurrently(next);
+						}
+					}));
+				}
+				if (monitor.isCanceled()) {
+					return;
+				}
+				final R result;
+				try {
+					result = pending.removeFirst().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+				buildSequentially(item, result);
+				monitor.worked(1);
+			}
+		} finally {
+			canceled.set(true);
+			for (Future<R> future : pending) {
+				future.cancel(false);
+			}
+			executor.shutdown();
+			awaitTermination(executor);
+		}
+	}
+
+	/**
+	 * Waits for the running first stages, keeping the interrupted status of
+	 * the current thread.
+	 */
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted = false;
+		try {
+			for (;;) {
+				try {
+					if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+						return;
+					}
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
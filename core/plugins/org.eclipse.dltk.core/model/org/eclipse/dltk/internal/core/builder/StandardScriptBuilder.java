@@ -42,6 +42,7 @@ import org.eclipse.dltk.core.builder.IBuildParticipantExtension3;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension4;
 import org.eclipse.dltk.core.builder.IBuildParticipantFilter;
 import org.eclipse.dltk.core.builder.IBuildState;
+import org.eclipse.dltk.core.builder.IConcurrentBuildParticipant;
 import org.eclipse.dltk.core.builder.IProjectChange;
 import org.eclipse.dltk.core.builder.IScriptBuilder;
 import org.eclipse.dltk.internal.core.builder.BuildParticipantManager.BuildParticipantResult;
@@ -162,6 +163,18 @@ public class StandardScriptBuilder implements IScriptBuilder {
 		if (reporters == null) {
 			reporters = new ArrayList<IProblemReporter>(modules.size());
 		}
+		final int threads = getThreadCount();
+		if (threads > 1 && modules.size() > 1) {
+			buildModulesParallel(modules, buildType, state, threads, monitor);
+			monitor.done();
+			if (DEBUG) {
+				System.out.println("Build " + project.getElementName() + "(" //$NON-NLS-1$ //$NON-NLS-2$
+						+ modules.size() + ") in " //$NON-NLS-1$
+						+ (System.currentTimeMillis() - startTime) + "ms" //$NON-NLS-1$
+						+ " using " + threads + " threads"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return;
+		}
 		for (Iterator<ISourceModule> j = modules.iterator(); j.hasNext();) {
 			if (monitor.isCanceled())
 				return;
@@ -187,6 +200,120 @@ public class StandardScriptBuilder implements IScriptBuilder {
 		}
 	}
 
+	/**
+	 * Returns the value of the {@link DLTKCore#BUILDER_THREADS} option, but
+	 * not more than the number of available processors.
+	 */
+	protected int getThreadCount() {
+		final String value = DLTKCore.getOption(DLTKCore.BUILDER_THREADS);
+		if (value != null && value.length() != 0) {
+			try {
+				return Math.min(Integer.parseInt(value), Runtime.getRuntime()
+						.availableProcessors());
+			} catch (NumberFormatException e) {
+				// fall thru
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Builds the modules using the specified number of threads. The leading
+	 * participants implementing {@link IConcurrentBuildParticipant} (usually
+	 * the parser) are called by the worker threads, the rest of them are
+	 * called by the builder thread in the order of the modules, so the
+	 * participants are still called in their order and the AST is parsed once
+	 * and shared by the participants as in the sequential mode. Problem
+	 * reporters are collected in the order of the modules.
+	 */
+	private void buildModulesParallel(final List<ISourceModule> modules,
+			final int buildType, IBuildState state, int threads,
+			final IProgressMonitor monitor) {
+		final IBuildState syncState = new SynchronizedBuildState(state);
+		new ParallelBuildRunner<ISourceModule, ModuleBuild>(threads) {
+			int counter = 0;
+
+			@Override
+			protected ModuleBuild buildConcurrently(ISourceModule module) {
+				final SourceModuleBuildContext context = new SourceModuleBuildContext(
+						problemFactory, module, buildType, syncState);
+				if (context.reporter == null) {
+					return null;
+				}
+				final IBuildParticipant[] selected;
+				synchronized (filters) {
+					selected = filter(participants, context);
+				}
+				final ModuleBuild build = new ModuleBuild(context, selected);
+				build.buildConcurrent();
+				return build;
+			}
+
+			@Override
+			protected void buildSequentially(ISourceModule module,
+					ModuleBuild build) {
+				monitor.subTask(NLS.bind(
+						Messages.ValidatorBuilder_buildModuleSubTask,
+						String.valueOf(modules.size() - counter),
+						module.getElementName()));
+				if (build != null) {
+					build.buildRemaining();
+					reporters.add(build.context.reporter);
+				}
+				++counter;
+			}
+		}.run(modules, monitor);
+	}
+
+	/**
+	 * The build of the module in the parallel mode.
+	 */
+	private class ModuleBuild {
+		final SourceModuleBuildContext context;
+		final IBuildParticipant[] selected;
+		int next = 0;
+		boolean failed = false;
+
+		ModuleBuild(SourceModuleBuildContext context,
+				IBuildParticipant[] selected) {
+			this.context = context;
+			this.selected = selected;
+		}
+
+		/**
+		 * Calls the leading concurrent participants, executed by the worker
+		 * thread.
+		 */
+		void buildConcurrent() {
+			if (selected == null) {
+				return;
+			}
+			int count = 0;
+			while (count < selected.length
+					&& selected[count] instanceof IConcurrentBuildParticipant) {
+				++count;
+			}
+			failed = !build(selected, 0, count, context);
+			next = count;
+		}
+
+		/**
+		 * Calls the other participants, executed by the builder thread.
+		 */
+		void buildRemaining() {
+			if (selected == null) {
+				return;
+			}
+			try {
+				if (!failed) {
+					build(selected, next, selected.length, context);
+				}
+			} finally {
+				afterBuild(context);
+			}
+		}
+	}
+
 	/**
 	 * Calls {@link IBuildParticipantExtension#beginBuild(int)} for all
 	 * {@link #participants}. Returns <code>true</code> if it was called for
@@ -230,28 +357,56 @@ public class StandardScriptBuilder implements IScriptBuilder {
 	}
 
 	private void buildModule(IBuildContext context) {
-		IBuildParticipant[] selected = participants;
-		for (IBuildParticipantFilter filter : filters) {
-			selected = filter.filter(selected, context);
-			if (selected == null || selected.length == 0) {
-				return;
-			}
+		final IBuildParticipant[] selected = filter(participants, context);
+		if (selected == null) {
+			return;
 		}
 		try {
-			for (int k = 0; k < selected.length; ++k) {
+			build(selected, 0, selected.length, context);
+		} finally {
+			afterBuild(context);
+		}
+	}
+
+	/**
+	 * Calls the participants from the specified range, returns
+	 * <code>false</code> if some of them failed, so the rest was skipped.
+	 */
+	private boolean build(IBuildParticipant[] selected, int from, int to,
+			IBuildContext context) {
+		try {
+			for (int k = from; k < to; ++k) {
 				selected[k].build(context);
 			}
+			return true;
 		} catch (CoreException e) {
 			DLTKCore.error(Messages.StandardScriptBuilder_errorBuildingModule,
 					e);
-		} finally {
-			for (IBuildParticipant participant : participants) {
-				if (participant instanceof IBuildParticipantExtension4) {
-					((IBuildParticipantExtension4) participant)
-							.afterBuild(context);
-				}
+			return false;
+		}
+	}
+
+	private void afterBuild(IBuildContext context) {
+		for (IBuildParticipant participant : participants) {
+			if (participant instanceof IBuildParticipantExtension4) {
+				((IBuildParticipantExtension4) participant).afterBuild(context);
+			}
+		}
+	}
+
+	/**
+	 * Applies the {@link #filters}, returns <code>null</code> if no
+	 * participants are selected.
+	 */
+	private IBuildParticipant[] filter(IBuildParticipant[] selected,
+			IBuildContext context) {
+		for (IBuildParticipantFilter filter : filters) {
+			selected = filter.filter(selected, context);
+			if (selected == null || selected.length == 0) {
+				return null;
 			}
 		}
+		return selected;
 	}
 
 	protected IStatus buildResources(List<IFile> resources,
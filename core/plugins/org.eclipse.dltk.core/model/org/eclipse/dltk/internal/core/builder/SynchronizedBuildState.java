@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.builder;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.builder.IBuildState;
+
+/**
+ * {@link IBuildState} wrapper used when the modules are built in parallel.
+ */
+class SynchronizedBuildState implements IBuildState {
+
+	private final IBuildState state;
+
+	public SynchronizedBuildState(IBuildState state) {
+		this.state = state;
+	}
+
+	public synchronized void recordImportProblem(IPath path) {
+		state.recordImportProblem(path);
+	}
+
+	public synchronized void recordDependency(IPath path, IPath dependency) {
+		state.recordDependency(path, dependency);
+	}
+
+	public synchronized void recordDependency(IPath path, IPath dependency,
+			int flags) {
+		state.recordDependency(path, dependency, flags);
+	}
+
+	public synchronized void recordStructuralChange(IPath path) {
+		state.recordStructuralChange(path);
+	}
+
+	public synchronized Set<IPath> getStructuralChanges() {
+		return new HashSet<IPath>(state.getStructuralChanges());
+	}
+
+}
@@ -11,12 +11,16 @@ package org.eclipse.dltk.core.mixin;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -51,6 +55,7 @@ import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.internal.core.OverflowingLRUCache;
 import org.eclipse.dltk.internal.core.mixin.IInternalMixinElement;
 import org.eclipse.dltk.internal.core.mixin.MixinCache;
+import org.eclipse.dltk.internal.core.mixin.MixinKeyTrie;
 import org.eclipse.dltk.internal.core.mixin.MixinManager;
 import org.eclipse.dltk.internal.core.util.LRUCache;
 
@@ -77,23 +82,34 @@ public class MixinModel {
 			REQUEST_CACHE_LIMIT);
 
 	// true if exists, false if doesn't
-	private Map<String, Boolean> knownKeysCache = new HashMap<String, Boolean>();
+	private Map<String, Boolean> knownKeysCache = new ConcurrentHashMap<String, Boolean>();
 	// boolean, for the atomicity of it
-	public boolean removes = true;
+	public volatile boolean removes = true;
 
 	private final IDLTKLanguageToolkit toolkit;
 
 	private final IScriptProject project;
 
-	private MixinRequestor mixinRequestor = new MixinRequestor();
-
-	private ISourceModule currentModule;
-
 	/**
 	 * modules required to be reparsed
 	 */
 	private Set<ISourceModule> modulesToReparse = new HashSet<ISourceModule>();
 
+	/**
+	 * modules being parsed at the moment, other threads reporting the same
+	 * module wait for the latch.
+	 */
+	private final Map<ISourceModule, CountDownLatch> reportingModules = new HashMap<ISourceModule, CountDownLatch>();
+
+	/**
+	 * All the mixin keys in the scope of this model, loaded from the mixin
+	 * index on the first use and updated when modules are changed.
+	 */
+	private final MixinKeyTrie<ISourceModule> keyTrie = new MixinKeyTrie<ISourceModule>(
+			IIndexConstants.SEPARATOR);
+
+	private final Object keyTrieLock = new Object();
+
 	/**
 	 * Creates workspace instance
 	 * 
@@ -145,7 +161,7 @@ public class MixinModel {
 				if (!removes) {
 					return null;
 				} else {
-					element = new MixinElement(key, currentModule);
+					element = new MixinElement(key, null);
 					cache.put(key, element);
 					cache.ensureSpaceLimit(1, element);
 				}
@@ -229,17 +245,23 @@ public class MixinModel {
 		}
 		long parsee = TRACE ? System.currentTimeMillis() : 0;
 
-		Set<MixinElement> result = new HashSet<MixinElement>();
-
+		final List<MixinElement> elements = new ArrayList<MixinElement>(
+				entry.keys.size());
 		synchronized (this) {
 			for (String key : entry.keys) {
-				MixinElement element = getCreateEmpty(key);
+				MixinElement element = getCreateEmpty(key, null);
 				if (!monitor.isCanceled()) {
 					markElementAsFinal(element);
 				}
-				addKeyToSet(result, element, pattern);
+				elements.add(element);
 			}
 		}
+		// the matching children are collected without holding the lock
+		final Set<MixinElement> result = new HashSet<MixinElement>();
+		final char[] patternChars = pattern.toCharArray();
+		for (MixinElement element : elements) {
+			addKeyToSet(result, element, patternChars);
+		}
 		if (TRACE) {
 			long end = System.currentTimeMillis();
 			System.out.println("MixinModel::find.time:" //$NON-NLS-1$
@@ -251,17 +273,17 @@ public class MixinModel {
 		return result.toArray(new IMixinElement[result.size()]);
 	}
 
-	// called with lock being held
 	private void addKeyToSet(Set<MixinElement> result,
-			MixinElement element, String pattern) {
+			MixinElement element, char[] pattern) {
 		// Skip all not matched keys
-		if (!CharOperation.match(pattern.toCharArray(),
-				element.key.toCharArray(), true)) {
+		if (!CharOperation.match(pattern, element.key.toCharArray(), true)) {
+			return;
+		}
+		if (!result.add(element)) {
 			return;
 		}
-		result.add(element);
 		knownKeysCache.put(element.key, Boolean.TRUE);
-		for (MixinElement child : element.children)
+		for (MixinElement child : element.children.values())
 			addKeyToSet(result, child, pattern);
 	}
 
@@ -280,21 +302,32 @@ public class MixinModel {
 		}
 		Map<ISourceModule, Set<String>> keys = new HashMap<ISourceModule, Set<String>>();
 		ISourceModule[] containedModules = null;
-		try {
-			containedModules = SearchEngine.searchMixinSources(
-					createSearchScope(), pattern, toolkit, keys, monitor);
-		} catch (OperationCanceledException e) {
-			return entry;
+		final MixinKeyTrie<ISourceModule> trie = isPrefixPattern(pattern) ? getKeyTrie(monitor)
+				: null;
+		if (trie != null) {
+			final boolean prefix = pattern.endsWith("*"); //$NON-NLS-1$
+			trie.find(prefix ? pattern.substring(0, pattern.length() - 1)
+					: pattern, prefix, keys);
+			containedModules = keys.keySet().toArray(
+					new ISourceModule[keys.size()]);
+		} else {
+			try {
+				containedModules = SearchEngine.searchMixinSources(
+						createSearchScope(), pattern, toolkit, keys, monitor);
+			} catch (OperationCanceledException e) {
+				return entry;
+			}
 		}
 		entry.expireTime = System.currentTimeMillis()
 				+ REQUEST_CACHE_EXPIRE_TIME;
 		entry.modules = new HashSet<ISourceModule>(
 				Arrays.asList(containedModules));
 		entry.prefix = pattern;
-		entry.keys = new HashSet<String>();
+		final Set<String> entryKeys = new HashSet<String>();
 		for (Set<String> strs : keys.values()) {
-			entry.keys.addAll(strs);
+			entryKeys.addAll(strs);
 		}
+		entry.keys = Collections.unmodifiableSet(entryKeys);
 		if (!monitor.isCanceled()) {
 			synchronized (this) {
 				requestCache.put(pattern, entry);
@@ -304,6 +337,85 @@ public class MixinModel {
 		return entry;
 	}
 
+	/**
+	 * Checks if the pattern could be answered by the key trie: it is either
+	 * the exact key or the prefix followed by the single <code>*</code>.
+	 */
+	private static boolean isPrefixPattern(String pattern) {
+		if (pattern.indexOf('?') >= 0) {
+			return false;
+		}
+		final int star = pattern.indexOf('*');
+		return star < 0 || star == pattern.length() - 1;
+	}
+
+	/**
+	 * Returns the loaded key trie, reloading the keys of the changed modules,
+	 * or <code>null</code> if the trie could not be used.
+	 */
+	private MixinKeyTrie<ISourceModule> getKeyTrie(IProgressMonitor monitor) {
+		synchronized (keyTrieLock) {
+			try {
+				if (!keyTrie.isLoaded()) {
+					final long version = keyTrie.getVersion();
+					final Map<ISourceModule, Set<String>> keys = new HashMap<ISourceModule, Set<String>>();
+					SearchEngine.searchMixinSources(createSearchScope(),
+							"*", toolkit, keys, monitor); //$NON-NLS-1$
+					if (monitor.isCanceled()) {
+						return null;
+					}
+					keyTrie.load(keys, version);
+				}
+				final List<ISourceModule> staleModules = keyTrie
+						.takeStaleModules();
+				if (!staleModules.isEmpty()) {
+					final long version = keyTrie.getVersion();
+					final Map<ISourceModule, Set<String>> keys = new HashMap<ISourceModule, Set<String>>();
+					try {
+						SearchEngine.searchMixinSources(SearchEngine
+								.createSearchScope(staleModules
+										.toArray(new IModelElement[staleModules
+												.size()]), toolkit), "*", //$NON-NLS-1$
+								toolkit, keys, monitor);
+					} finally {
+						if (monitor.isCanceled()) {
+							for (ISourceModule module : staleModules) {
+								keyTrie.markStale(module);
+							}
+						}
+					}
+					if (monitor.isCanceled()) {
+						return null;
+					}
+					keyTrie.update(staleModules, keys, version);
+				}
+			} catch (OperationCanceledException e) {
+				return null;
+			}
+		}
+		return keyTrie.isEnabled() ? keyTrie : null;
+	}
+
+	/**
+	 * Returns the keys of the direct children of the specified key.
+	 * 
+	 * @since 5.1
+	 */
+	public String[] findChildKeys(String key, IProgressMonitor monitor) {
+		final MixinKeyTrie<ISourceModule> trie = getKeyTrie(monitor);
+		if (trie != null) {
+			final Set<String> keys = trie.findChildKeys(key);
+			return keys.toArray(new String[keys.size()]);
+		}
+		final Set<String> result = new HashSet<String>();
+		final String prefix = key + SEPARATOR;
+		for (String childKey : findKeys(prefix + "*", monitor)) { //$NON-NLS-1$
+			final int pos = childKey.indexOf(SEPARATOR, prefix.length());
+			result.add(pos < 0 ? childKey : childKey.substring(0, pos));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
 	/**
 	 * @deprecated
 	 */
@@ -342,7 +454,8 @@ public class MixinModel {
 			if (cached != null)
 				return cached;
 		}
-		boolean exists = get(key) != null;
+		final MixinKeyTrie<ISourceModule> trie = getKeyTrie(new NullProgressMonitor());
+		boolean exists = trie != null ? trie.exists(key) : get(key) != null;
 		synchronized (this) {
 			if (knownKeysCache.size() > KEYS_CACHE_LIMIT) {
 				knownKeysCache.clear();
@@ -360,7 +473,7 @@ public class MixinModel {
 		}
 		ISourceModule[] containedModules = findModules(element.getKey());
 		if (containedModules.length == 0) {
-			synchronized (cache) {
+			synchronized (this) {
 				cache.remove(element.key);
 				cache.resetSpaceLimit(CACHE_LIMIT, element);
 			}
@@ -378,35 +491,81 @@ public class MixinModel {
 	// called with lock being held
 	private void markElementAsFinal(MixinElement element) {
 		element.bFinal = true;
-		for (MixinElement child : element.children) {
+		for (MixinElement child : element.children.values()) {
 			markElementAsFinal(child);
 		}
 	}
 
-	// TODO long-running operation. shouldn't be synchronized
-	public synchronized void reportModule(ISourceModule sourceModule) {
-			if (!elementToMixinCache.containsKey(sourceModule)) {
-				elementToMixinCache.put(sourceModule,
-						new ArrayList<MixinElement>());
+	/**
+	 * Parses the specified module and adds its elements to the model. The
+	 * module is parsed without holding the model lock, the reported elements
+	 * are added in a single batch when parsing is completed.
+	 */
+	public void reportModule(ISourceModule sourceModule) {
+		final CountDownLatch running;
+		final CountDownLatch latch;
+		synchronized (this) {
+			running = reportingModules.get(sourceModule);
+			if (running == null) {
+				if (!elementToMixinCache.containsKey(sourceModule)) {
+					elementToMixinCache.put(sourceModule,
+							new ArrayList<MixinElement>());
+				} else {
+					// Module already in model. So we do not to rebuild it.
+					if (!modulesToReparse.remove(sourceModule)) {
+						return;
+					}
+					// We need to reparse module if some elements are moved from
+					// it.
+				}
+				latch = new CountDownLatch(1);
+				reportingModules.put(sourceModule, latch);
 			} else {
-				// Module already in model. So we do not to rebuild it.
-				if (!modulesToReparse.remove(sourceModule)) {
-					return;
+				latch = null;
+			}
+		}
+		if (running != null) {
+			// module is being parsed by the other thread
+			if (!Thread.holdsLock(this)) {
+				try {
+					running.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
 				}
-				// We need to reparse module if some elements are moved from it.
 			}
+			return;
+		}
+		try {
+			final MixinRequestor requestor = new MixinRequestor(sourceModule);
+			if (parseModule(sourceModule, requestor)) {
+				synchronized (this) {
+					requestor.apply();
+				}
+			}
+		} finally {
+			synchronized (this) {
+				reportingModules.remove(sourceModule);
+			}
+			latch.countDown();
+		}
+	}
+
+	private boolean parseModule(ISourceModule sourceModule,
+			IMixinRequestor requestor) {
 		try {
 			IMixinParser mixinParser = MixinManager
 					.getMixinParser(sourceModule);
 			if (mixinParser != null) {
-				this.currentModule = sourceModule;
-				mixinParser.setRequirestor(mixinRequestor);
-				mixinParser.parserSourceModule(true, sourceModule);
-				this.currentModule = null;
+				// parser instances are shared
+				synchronized (mixinParser) {
+					mixinParser.setRequirestor(requestor);
+					mixinParser.parserSourceModule(true, sourceModule);
+				}
 			}
+			return true;
 		} catch (CoreException e) {
 			DLTKCore.error("Error in reportModule", e); //$NON-NLS-1$
-			return;
+			return false;
 		}
 	}
 
@@ -437,11 +596,11 @@ public class MixinModel {
 	 * @param key
 	 * @return
 	 */
-	private MixinElement getCreateEmpty(String key) {
+	private MixinElement getCreateEmpty(String key, ISourceModule module) {
 		// called with lock being held
 		MixinElement element = (MixinElement) cache.get(key);
 		if (element == null) {
-			element = new MixinElement(key, currentModule);
+			element = new MixinElement(key, module);
 			this.cache.put(key, element);
 			this.cache.ensureSpaceLimit(1, element);
 		}
@@ -455,13 +614,19 @@ public class MixinModel {
 	private IMixinChangedListener changedListener = new IMixinChangedListener() {
 		public void elementChanged(ElementChangedEvent event) {
 			IModelElementDelta delta = event.getDelta();
+			final List<ISourceModule> addedModules = new ArrayList<ISourceModule>();
 			synchronized (MixinModel.this) {
-				processDelta(delta);
+				processDelta(delta, addedModules);
+			}
+			// parse the added modules without holding the lock
+			for (ISourceModule module : addedModules) {
+				reportModule(module);
 			}
 		}
 
 		// called with lock being held
-		private void processDelta(IModelElementDelta delta) {
+		private void processDelta(IModelElementDelta delta,
+				List<ISourceModule> addedModules) {
 			IModelElement element = delta.getElement();
 			if (delta.getKind() == IModelElementDelta.REMOVED
 					|| delta.getKind() == IModelElementDelta.CHANGED
@@ -510,8 +675,9 @@ public class MixinModel {
 			}
 			if (delta.getKind() == IModelElementDelta.ADDED) {
 				if (element.getElementType() == IModelElement.SOURCE_MODULE) {
+					keyTrie.markStale((ISourceModule) element);
 					if (modulesToReparse.add((ISourceModule) element)) {
-						reportModule((ISourceModule) element);
+						addedModules.add((ISourceModule) element);
 					}
 				}
 				knownKeysCache.clear();
@@ -520,7 +686,7 @@ public class MixinModel {
 
 			if ((delta.getFlags() & IModelElementDelta.F_CHILDREN) != 0) {
 				for (IModelElementDelta child : delta.getAffectedChildren()) {
-					processDelta(child);
+					processDelta(child, addedModules);
 				}
 			} else if (delta.getKind() == IModelElementDelta.REMOVED
 					&& element.getElementType() == IModelElement.SCRIPT_FOLDER) {
@@ -609,6 +775,7 @@ public class MixinModel {
 		if (DEBUG) {
 			log("remove " + element.getElementName()); //$NON-NLS-1$
 		}
+		keyTrie.markStale(element);
 		List<MixinElement> mixinCache = elementToMixinCache.get(element);
 		if (mixinCache != null) {
 			removeFromRequestCache(element);
@@ -626,7 +793,7 @@ public class MixinModel {
 						MixinElement parent = (MixinElement) this.cache
 								.get(parentKey);
 						if (parent != null) {
-							parent.children.remove(mixin);
+							parent.children.remove(mixin.key);
 							parent.bFinal = false;
 						}
 					}
@@ -654,6 +821,12 @@ public class MixinModel {
 		for (ISourceModule module : modulesToRemove) {
 			remove(module);
 		}
+		// modules which were not parsed yet
+		for (ISourceModule module : keyTrie.getModules()) {
+			if (folderPath.isPrefixOf(module.getPath())) {
+				keyTrie.markStale(module);
+			}
+		}
 	}
 
 	// called with lock being held
@@ -689,11 +862,15 @@ public class MixinModel {
 	private final class MixinElement implements IMixinElement,
 			IInternalMixinElement {
 		private String key;
-		private boolean bFinal = false;
-		private List<ISourceModule> sourceModules = new ArrayList<ISourceModule>();
-		private Map<ISourceModule, List<Object>> sourceModuleToObject = new HashMap<ISourceModule, List<Object>>();
+		private volatile boolean bFinal = false;
+		/*
+		 * Element data is modified with the model lock being held and copied
+		 * on write, so it is read without locking.
+		 */
+		private final List<ISourceModule> sourceModules = new CopyOnWriteArrayList<ISourceModule>();
+		private final Map<ISourceModule, List<Object>> sourceModuleToObject = new ConcurrentHashMap<ISourceModule, List<Object>>();
 
-		private Set<MixinElement> children = new HashSet<MixinElement>();
+		private final Map<String, MixinElement> children = new ConcurrentHashMap<String, MixinElement>();
 
 		public boolean equals(Object obj) {
 			if (this == obj)
@@ -714,7 +891,7 @@ public class MixinModel {
 
 		public String toString() {
 			return this.getLastKeySegment() + " final[" + this.bFinal + "]" //$NON-NLS-1$ //$NON-NLS-2$
-					+ this.children + " "; //$NON-NLS-1$
+					+ this.children.values() + " "; //$NON-NLS-1$
 		}
 
 		/*
@@ -722,14 +899,14 @@ public class MixinModel {
 		 * this(info.key, currentModule); addInfo(info, module); }
 		 */
 		// called with lock being held
-		void addInfo(ElementInfo info, ISourceModule module) {
-			if (info.object != null) {
+		void addInfo(Object object, ISourceModule module) {
+			if (object != null) {
 				List<Object> list = this.sourceModuleToObject.get(module);
 				if (list == null) {
-					list = new ArrayList<Object>();
+					list = new CopyOnWriteArrayList<Object>();
 					this.sourceModuleToObject.put(module, list);
 				}
-				list.add(info.object);
+				list.add(object);
 			}
 		}
 
@@ -742,17 +919,19 @@ public class MixinModel {
 		// called with lock being held
 		void addModule(ISourceModule currentModule) {
 			if (currentModule != null) {
-				if (!this.sourceModules.contains(currentModule)) {
-					this.sourceModules.add(currentModule);
-				}
+				((CopyOnWriteArrayList<ISourceModule>) this.sourceModules)
+						.addIfAbsent(currentModule);
 			}
 		}
 
 		public IMixinElement[] getChildren() {
 			this.validate();
-			synchronized (MixinModel.this) {
-				return children.toArray(new IMixinElement[children.size()]);
+			// iterates, as the size could be changed concurrently
+			final List<IMixinElement> result = new ArrayList<IMixinElement>();
+			for (MixinElement child : children.values()) {
+				result.add(child);
 			}
+			return result.toArray(new IMixinElement[result.size()]);
 		}
 
 		public IMixinElement getChildren(String key) {
@@ -796,37 +975,30 @@ public class MixinModel {
 			if (!isFinal()) {
 				get(key);
 			}
-			synchronized (MixinModel.this) {
-				return this.sourceModules
-						.toArray(new ISourceModule[this.sourceModules.size()]);
-			}
+			return this.sourceModules.toArray(new ISourceModule[0]);
 		}
 
 		public Object[] getObjects(ISourceModule module) {
 			this.validate();
-			synchronized (MixinModel.this) {
-				List<Object> list = this.sourceModuleToObject.get(module);
-				if (list == null)
-					return NO_OBJECTS;
-				Object[] objs = list.toArray();
-				for (Object obj : objs) {
-					notifyInitializeListener(this, module, obj);
-				}
-				return objs;
+			List<Object> list = this.sourceModuleToObject.get(module);
+			if (list == null)
+				return NO_OBJECTS;
+			Object[] objs = list.toArray();
+			for (Object obj : objs) {
+				notifyInitializeListener(this, module, obj);
 			}
+			return objs;
 		}
 
 		public Object[] getAllObjects() {
 			this.validate();
-			synchronized (MixinModel.this) {
-				Set<Object> objects = new HashSet<Object>();
-				for (ISourceModule module : sourceModules) {
-					for (Object obj : this.getObjects(module)) {
-						objects.add(obj);
-					}
+			Set<Object> objects = new HashSet<Object>();
+			for (ISourceModule module : sourceModules) {
+				for (Object obj : this.getObjects(module)) {
+					objects.add(obj);
 				}
-				return objects.toArray();
 			}
+			return objects.toArray();
 		}
 
 		public boolean isFinal() {
@@ -838,8 +1010,7 @@ public class MixinModel {
 				knownKeysCache.remove(key);
 				removes = true;
 				this.bFinal = false;
-				for (int i = 0; i < sourceModules.size(); i++) {
-					ISourceModule module = sourceModules.get(i);
+				for (ISourceModule module : sourceModules) {
 					List<MixinElement> list = elementToMixinCache.get(module);
 					if (list != null) {
 						list.remove(this);
@@ -863,7 +1034,7 @@ public class MixinModel {
 					if (parent != null) {
 						removes = true;
 						knownKeysCache.remove(parent.key);
-						parent.children.remove(element);
+						parent.children.remove(element.key);
 						parent.bFinal = false;
 						element = parent;
 						parentKey = parent.getParentKey();
@@ -882,45 +1053,58 @@ public class MixinModel {
 		}
 	};
 
+	/**
+	 * Collects the elements reported by the parser, they are added to the
+	 * model by {@link #apply()} at once.
+	 */
 	private final class MixinRequestor implements IMixinRequestor {
+		private final ISourceModule module;
+		private final List<String> keys = new ArrayList<String>();
+		private final List<Object> objects = new ArrayList<Object>();
+
+		MixinRequestor(ISourceModule module) {
+			this.module = module;
+		}
+
 		public void reportElement(ElementInfo info) {
 			// if( DLTKCore.VERBOSE_MIXIN ) {
 			// System.out.println("Append mixin:" + info.key);
 			// }
-			synchronized (MixinModel.this) {
-				knownKeysCache.put(info.key, Boolean.TRUE);
-				String[] list = info.key.split("\\" //$NON-NLS-1$
+			keys.add(info.key);
+			objects.add(info.object);
+		}
+
+		// called with lock being held
+		void apply() {
+			final List<MixinElement> moduleElements = elementToMixinCache
+					.get(module);
+			if (moduleElements == null) {
+				// module was removed while being parsed
+				return;
+			}
+			for (int k = 0; k < keys.size(); ++k) {
+				final String key = keys.get(k);
+				knownKeysCache.put(key, Boolean.TRUE);
+				String[] list = key.split("\\" //$NON-NLS-1$
 						+ IMixinRequestor.MIXIN_NAME_SEPARATOR);
-				MixinElement element = getCreateEmpty(info.key);
-				addElementToModules(element);
-				element.addModule(currentModule);
-				element.addInfo(info, currentModule);
+				MixinElement element = getCreateEmpty(key, module);
+				moduleElements.add(element);
+				element.addModule(module);
+				element.addInfo(objects.get(k), module);
 				// Append as childs for all other elements. Also append modules
 				// to
 				// all selected elements.
 				if (list.length != 1) {
 					for (int i = 0; i < list.length - 1; ++i) {
-						MixinElement parent = getCreateEmpty(element
-								.getParentKey());
-						parent.children.add(element);
-						addElementToModules(parent);
+						MixinElement parent = getCreateEmpty(
+								element.getParentKey(), module);
+						parent.children.put(element.key, element);
+						moduleElements.add(parent);
 						element = parent;
 					}
 				}
 			}
 		}
-
-		// called with lock being held
-		private void addElementToModules(MixinElement element) {
-			List<MixinElement> elements = MixinModel.this.elementToMixinCache
-					.get(currentModule);
-			if (elements == null) {
-				elements = new ArrayList<MixinElement>();
-				MixinModel.this.elementToMixinCache
-						.put(currentModule, elements);
-			}
-			elements.add(element);
-		}
 	}
 
 	public synchronized void makeAllModuleElementsFinal(ISourceModule module) {
@@ -983,6 +1167,7 @@ public class MixinModel {
 	}
 
 	protected synchronized void clear() {
+		keyTrie.reset();
 		cache.flush();
 		elementToMixinCache.clear();
 		knownKeysCache.clear();
@@ -12,6 +12,9 @@ package org.eclipse.dltk.core.search.index;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -19,8 +22,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.regex.Pattern;
 
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.compiler.util.HashtableOfIntValues;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
@@ -31,6 +38,7 @@ import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.internal.core.util.Messages;
 import org.eclipse.dltk.internal.core.util.SimpleWordSet;
 import org.eclipse.dltk.internal.core.util.Util;
+import org.eclipse.dltk.utils.ByteBufferDataInput;
 
 public class DiskIndex {
 
@@ -60,10 +68,13 @@ public class DiskIndex {
 	// int[] of document #'s) or
 	// offset if not read yet
 
+	private HashtableOfObject categoryBlocks; // category name ->
+	// CategoryBlocks
+
 	private char[] cachedCategoryName;
 	char separator = Index.DEFAULT_SEPARATOR;
 
-	public static final String SIGNATURE = "DLTK INDEX VERSION 1.014"; //$NON-NLS-1$
+	public static final String SIGNATURE = "DLTK INDEX VERSION 1.015"; //$NON-NLS-1$
 
 	public final static boolean DEBUG = false;
 
@@ -73,6 +84,27 @@ public class DiskIndex {
 
 	private static final int CHUNK_SIZE = 100;
 
+	/**
+	 * The number of the sorted words in the block of the category table.
+	 */
+	private static final int BLOCK_SIZE = 32;
+
+	private static final int LARGE_ARRAY_SIZE = 256;
+
+	/**
+	 * Memory mapped files can't be deleted on Windows until the mapping is
+	 * garbage collected, so index files are mapped on other platforms only,
+	 * otherwise each read opens the file stream.
+	 */
+	private static final boolean MAP_INDEX_FILE = !Platform.OS_WIN32
+			.equals(Platform.getOS());
+
+	/**
+	 * The read-only mapping of the index file, initialized on first read and
+	 * shared by all the readers.
+	 */
+	private volatile ByteBuffer mappedFile;
+
 	static class IntList {
 
 		int size;
@@ -102,6 +134,45 @@ public class DiskIndex {
 		}
 	}
 
+	/**
+	 * The index of the sorted category table: the first word and the offset of
+	 * each block of {@link DiskIndex#BLOCK_SIZE} words.
+	 */
+	static class CategoryBlocks {
+
+		final int size;
+
+		final char[][] firstWords;
+
+		final int[] offsets;
+
+		CategoryBlocks(int size, char[][] firstWords, int[] offsets) {
+			this.size = size;
+			this.firstWords = firstWords;
+			this.offsets = offsets;
+		}
+
+		/**
+		 * Returns the number of the first block which could contain the words
+		 * greater or equal to the specified one.
+		 */
+		int findBlock(char[] word) {
+			int low = 0;
+			int high = this.firstWords.length - 1;
+			int result = 0;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				if (Util.compare(this.firstWords[mid], word) <= 0) {
+					result = mid;
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return result;
+		}
+	}
+
 	DiskIndex(String fileName) {
 		this.fileName = fileName;
 
@@ -114,6 +185,7 @@ public class DiskIndex {
 		this.cacheUserCount = -1;
 		this.cachedChunks = null;
 		this.categoryTables = null;
+		this.categoryBlocks = null;
 		this.cachedCategoryName = null;
 		this.categoryOffsets = null;
 	}
@@ -209,6 +281,12 @@ public class DiskIndex {
 			}
 			if (results != null && this.cachedChunks == null)
 				cacheDocumentNames();
+		} else if (isRangeQuery(key, matchRule)) {
+			final char[][] prefixes = getRangePrefixes(key, matchRule);
+			for (int i = 0, l = categories.length; i < l; i++) {
+				results = addRangeQueryResults(results, categories[i], key,
+						prefixes, matchRule, memoryIndex);
+			}
 		} else {
 			switch (matchRule) {
 			case SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE:
@@ -295,22 +373,197 @@ public class DiskIndex {
 		return results;
 	}
 
+	/**
+	 * Answers if all the words matching the query start with the known prefix,
+	 * so only the corresponding ranges of the sorted category tables should be
+	 * read.
+	 */
+	private static boolean isRangeQuery(char[] key, int matchRule) {
+		return key.length != 0
+				&& (matchRule & (SearchPattern.R_PATTERN_MATCH | SearchPattern.R_REGEXP_MATCH)) == 0;
+	}
+
+	/**
+	 * Returns the prefixes of the word ranges containing all the words
+	 * matching the query, in ascending order.
+	 */
+	private static char[][] getRangePrefixes(char[] key, int matchRule) {
+		if (matchRule == (SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE)
+				|| matchRule == (SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE)) {
+			return new char[][] { key };
+		}
+		// camel case queries match the first character
+		if ((matchRule & SearchPattern.R_CASE_SENSITIVE) != 0) {
+			return new char[][] { new char[] { key[0] } };
+		}
+		// case insensitive queries match the first character ignoring case
+		// (as defined by CharOperation.prefixEquals())
+		final char lower = Character.toLowerCase(key[0]);
+		final StringBuilder sb = new StringBuilder(3);
+		for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; ++i) {
+			if (Character.toLowerCase((char) i) == lower) {
+				sb.append((char) i);
+			}
+		}
+		final char[][] prefixes = new char[sb.length()][];
+		for (int i = 0; i < prefixes.length; ++i) {
+			prefixes[i] = new char[] { sb.charAt(i) };
+		}
+		return prefixes;
+	}
+
+	private HashtableOfObject addRangeQueryResults(HashtableOfObject results,
+			char[] categoryName, char[] key, char[][] prefixes, int matchRule,
+			MemoryIndex memoryIndex) throws IOException {
+		if (this.categoryOffsets.get(categoryName) == HashtableOfIntValues.NO_VALUE)
+			return results;
+		final HashtableOfObject cachedTable;
+		synchronized (this) {
+			cachedTable = this.categoryTables != null ? (HashtableOfObject) this.categoryTables
+					.get(categoryName)
+					: null;
+		}
+		if (cachedTable != null) {
+			if (matchRule == (SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE)) {
+				if (cachedTable.containsKey(key))
+					results = addQueryResult(results, key, cachedTable,
+							memoryIndex);
+				return results;
+			}
+			char[][] words = cachedTable.keyTable;
+			for (int j = 0, m = words.length; j < m; j++) {
+				char[] word = words[j];
+				if (word != null && Index.isMatch(key, word, matchRule))
+					results = addQueryResult(results, word, cachedTable,
+							memoryIndex);
+			}
+			return results;
+		}
+		final CategoryBlocks blocks = readCategoryBlocks(categoryName);
+		if (blocks.size == 0)
+			return results;
+		final HashtableOfObject wordsToDocNumbers = new HashtableOfObject(3);
+		for (int i = 0; i < prefixes.length; ++i) {
+			scanCategoryTable(blocks, prefixes[i], key, matchRule,
+					wordsToDocNumbers);
+		}
+		char[][] words = wordsToDocNumbers.keyTable;
+		for (int j = 0, m = words.length; j < m; j++)
+			if (words[j] != null)
+				results = addQueryResult(results, words[j], wordsToDocNumbers,
+						memoryIndex);
+		return results;
+	}
+
+	/**
+	 * Reads the words starting with the specified prefix from the sorted
+	 * category table and puts the ones matching the query to the specified
+	 * table. Only the blocks containing such words are read and only the
+	 * document numbers of the matching words are decoded.
+	 */
+	private void scanCategoryTable(CategoryBlocks blocks, char[] prefix,
+			char[] key, int matchRule, HashtableOfObject wordsToDocNumbers)
+			throws IOException {
+		final int block = blocks.findBlock(prefix);
+		DataInput stream = openInput(blocks.offsets[block], 2048);
+		try {
+			for (int i = block * BLOCK_SIZE; i < blocks.size; i++) {
+				char[] word = Util.readUTF(stream);
+				int compare = CharOperation.compareWith(word, prefix);
+				if (compare > 0)
+					break;
+				if (compare == 0 && Index.isMatch(key, word, matchRule)) {
+					wordsToDocNumbers.put(word, readDocumentsValue(stream));
+				} else {
+					skipDocumentsValue(stream);
+				}
+			}
+		} finally {
+			close(stream);
+		}
+	}
+
+	/**
+	 * Reads the document numbers of the word: the array or the Integer offset
+	 * of the large array in the file.
+	 */
+	private Object readDocumentsValue(DataInput stream) throws IOException {
+		int arrayOffset = stream.readInt();
+		if (arrayOffset <= 0) {
+			return new int[] { -arrayOffset };
+		} else if (arrayOffset < LARGE_ARRAY_SIZE) {
+			return readDocumentArray(stream, arrayOffset);
+		} else {
+			return new Integer(stream.readInt());
+		}
+	}
+
+	private void skipDocumentsValue(DataInput stream) throws IOException {
+		int arrayOffset = stream.readInt();
+		if (arrayOffset <= 0) {
+			// single document number is in-lined
+		} else if (arrayOffset < LARGE_ARRAY_SIZE) {
+			stream.skipBytes(arrayOffset * this.documentReferenceSize);
+		} else {
+			stream.skipBytes(4);
+		}
+	}
+
+	private CategoryBlocks readCategoryBlocks(char[] categoryName)
+			throws IOException {
+		synchronized (this) {
+			if (this.categoryBlocks == null) {
+				this.categoryBlocks = new HashtableOfObject(3);
+			} else {
+				final CategoryBlocks blocks = (CategoryBlocks) this.categoryBlocks
+						.get(categoryName);
+				if (blocks != null)
+					return blocks;
+			}
+		}
+		final int offset = this.categoryOffsets.get(categoryName);
+		final CategoryBlocks blocks;
+		DataInput stream = openInput(offset, 2048);
+		try {
+			final int size = stream.readInt();
+			final int blockCount = stream.readInt();
+			final int indexLength = stream.readInt();
+			final int entriesOffset = offset + 12 + indexLength;
+			final char[][] firstWords = new char[blockCount][];
+			final int[] offsets = new int[blockCount];
+			for (int i = 0; i < blockCount; i++) {
+				firstWords[i] = Util.readUTF(stream);
+				offsets[i] = entriesOffset + stream.readInt();
+			}
+			blocks = new CategoryBlocks(size, firstWords, offsets);
+		} finally {
+			close(stream);
+		}
+		synchronized (this) {
+			if (this.categoryBlocks == null) {
+				this.categoryBlocks = new HashtableOfObject(3);
+			}
+			this.categoryBlocks.put(categoryName, blocks);
+		}
+		return blocks;
+	}
+
 	private void cacheDocumentNames() throws IOException {
 		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()),
-				this.numberOfChunks > 5 ? 4096 : 2048));
+		final String[][] chunks = new String[this.numberOfChunks][];
+		DataInput input = openInput(this.chunkOffsets[0],
+				this.numberOfChunks > 5 ? 4096 : 2048);
 		try {
-			stream.skip(this.chunkOffsets[0]);
 			for (int i = 0; i < this.numberOfChunks; i++) {
 				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk
 						: CHUNK_SIZE;
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0,
-						size);
+				readChunk(chunks[i] = new String[size], input, 0, size);
 			}
 		} finally {
-			stream.close();
+			close(input);
+		}
+		synchronized (this) {
+			this.cachedChunks = chunks;
 		}
 	}
 
@@ -482,6 +735,7 @@ public class DiskIndex {
 	}
 
 	void initialize(boolean reuseExistingFile) throws IOException {
+		this.mappedFile = null;
 		File indexFile = getIndexFile();
 		if (indexFile.exists()) {
 			if (reuseExistingFile) {
@@ -718,60 +972,131 @@ public class DiskIndex {
 		return newDiskIndex;
 	}
 
-	private synchronized String[] readAllDocumentNames() throws IOException {
+	/**
+	 * Returns the memory mapped index file or <code>null</code> if index files
+	 * should not be mapped on this platform.
+	 */
+	private ByteBuffer getMappedFile() throws IOException {
+		if (!MAP_INDEX_FILE)
+			return null;
+		ByteBuffer buffer = this.mappedFile;
+		if (buffer == null) {
+			synchronized (this) {
+				buffer = this.mappedFile;
+				if (buffer == null) {
+					RandomAccessFile file = new RandomAccessFile(
+							this.fileName, "r"); //$NON-NLS-1$
+					try {
+						// the mapping remains valid after the file is closed
+						final FileChannel channel = file.getChannel();
+						buffer = channel.map(MapMode.READ_ONLY, 0, channel
+								.size());
+					} finally {
+						file.close();
+					}
+					this.mappedFile = buffer;
+				}
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Opens the input positioned at the specified offset of the index file.
+	 * The input should be released with {@link #close(DataInput)}.
+	 */
+	private DataInput openInput(int offset, int bufferSize) throws IOException {
+		final ByteBuffer buffer = getMappedFile();
+		if (buffer != null) {
+			return new ByteBufferDataInput(buffer, offset);
+		}
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(getIndexFile()), bufferSize));
+		stream.skip(offset);
+		return stream;
+	}
+
+	private static void close(DataInput input) throws IOException {
+		if (input instanceof Closeable) {
+			((Closeable) input).close();
+		}
+	}
+
+	private String[] readAllDocumentNames() throws IOException {
 		if (this.numberOfChunks <= 0)
 			return new String[0];
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()),
-				this.numberOfChunks > 5 ? 4096 : 2048));
+		DataInput input = openInput(this.chunkOffsets[0],
+				this.numberOfChunks > 5 ? 4096 : 2048);
 		try {
-			stream.skip(this.chunkOffsets[0]);
 			int lastIndex = this.numberOfChunks - 1;
 			String[] docNames = new String[lastIndex * CHUNK_SIZE
 					+ sizeOfLastChunk];
 			for (int i = 0; i < this.numberOfChunks; i++)
-				readChunk(docNames, stream, i * CHUNK_SIZE,
+				readChunk(docNames, input, i * CHUNK_SIZE,
 						i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
 			return docNames;
 		} finally {
-			stream.close();
+			close(input);
 		}
 	}
 
-	private synchronized HashtableOfObject readCategoryTable(
-			char[] categoryName, boolean readDocNumbers) throws IOException {
+	private HashtableOfObject readCategoryTable(char[] categoryName,
+			boolean readDocNumbers) throws IOException {
 		// result will be null if categoryName is unknown
 		int offset = this.categoryOffsets.get(categoryName);
 		if (offset == HashtableOfIntValues.NO_VALUE)
 			return null;
 
-		if (this.categoryTables == null) {
-			this.categoryTables = new HashtableOfObject(3);
-		} else {
-			HashtableOfObject cachedTable = (HashtableOfObject) this.categoryTables
-					.get(categoryName);
-			if (cachedTable != null) {
-				if (readDocNumbers) { // must cache remaining document number
-					// arrays
-					Object[] arrayOffsets = cachedTable.valueTable;
-					for (int i = 0, l = arrayOffsets.length; i < l; i++)
-						if (arrayOffsets[i] instanceof Integer)
-							arrayOffsets[i] = readDocumentNumbers(arrayOffsets[i]);
-				}
-				return cachedTable;
+		HashtableOfObject cachedTable = null;
+		synchronized (this) {
+			if (this.categoryTables == null) {
+				this.categoryTables = new HashtableOfObject(3);
+			} else {
+				cachedTable = (HashtableOfObject) this.categoryTables
+						.get(categoryName);
 			}
 		}
+		if (cachedTable != null) {
+			if (readDocNumbers) { // must cache remaining document number
+				// arrays
+				Object[] arrayOffsets = cachedTable.valueTable;
+				for (int i = 0, l = arrayOffsets.length; i < l; i++)
+					if (arrayOffsets[i] instanceof Integer)
+						arrayOffsets[i] = readDocumentNumbers(arrayOffsets[i]);
+			}
+			return cachedTable;
+		}
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()), 2048));
+		// the table is decoded without holding the lock, so concurrent
+		// queries could read the index at the same time
+		final HashtableOfObject categoryTable = readCategoryTable(offset,
+				readDocNumbers);
+		synchronized (this) {
+			if (this.categoryTables == null) {
+				this.categoryTables = new HashtableOfObject(3);
+			}
+			this.categoryTables.put(categoryName, categoryTable);
+			// cache the table as long as its not too big
+			// in practise, some tables can be greater than 500K when the
+			// contain more than 10K elements
+			this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName
+					: null;
+		}
+		return categoryTable;
+	}
+
+	private HashtableOfObject readCategoryTable(int offset,
+			boolean readDocNumbers) throws IOException {
+		DataInput stream = openInput(offset, 2048);
 		HashtableOfObject categoryTable = null;
 		char[][] matchingWords = null;
 		int count = 0;
 		int firstOffset = -1;
 		try {
-			stream.skip(offset);
 			int size = stream.readInt();
+			stream.readInt(); // number of blocks
+			stream.skipBytes(stream.readInt()); // the block index
 			try {
 				if (size < 0) { // DEBUG
 					System.err
@@ -834,33 +1159,25 @@ public class DiskIndex {
 					// file
 				}
 			}
-			this.categoryTables.put(categoryName, categoryTable);
-			// cache the table as long as its not too big
-			// in practise, some tables can be greater than 500K when the
-			// contain more than 10K elements
-			this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName
-					: null;
 		} finally {
-			stream.close();
+			close(stream);
 		}
 
 		if (matchingWords != null && count > 0) {
-			stream = new DataInputStream(new BufferedInputStream(
-					new FileInputStream(getIndexFile()), 2048));
+			stream = openInput(firstOffset, 2048);
 			try {
-				stream.skip(firstOffset);
 				for (int i = 0; i < count; i++)
 					// each array follows the previous one
 					categoryTable.put(matchingWords[i],
 							readDocumentArray(stream, stream.readInt()));
 			} finally {
-				stream.close();
+				close(stream);
 			}
 		}
 		return categoryTable;
 	}
 
-	private void readChunk(String[] docNames, DataInputStream stream,
+	private void readChunk(String[] docNames, DataInput stream,
 			int index, int size) throws IOException {
 		String current = stream.readUTF();
 		docNames[index++] = current;
@@ -888,7 +1205,7 @@ public class DiskIndex {
 		}
 	}
 
-	private int[] readDocumentArray(DataInputStream stream, int arraySize)
+	private int[] readDocumentArray(DataInput stream, int arraySize)
 			throws IOException {
 		int[] result = new int[arraySize];
 		switch (this.documentReferenceSize) {
@@ -908,51 +1225,60 @@ public class DiskIndex {
 		return result;
 	}
 
-	synchronized String readDocumentName(int docNumber) throws IOException {
-		if (this.cachedChunks == null)
-			this.cachedChunks = new String[this.numberOfChunks][];
-
+	String readDocumentName(int docNumber) throws IOException {
 		int chunkNumber = docNumber / CHUNK_SIZE;
-		String[] chunk = this.cachedChunks[chunkNumber];
+		String[] chunk;
+		synchronized (this) {
+			if (this.cachedChunks == null)
+				this.cachedChunks = new String[this.numberOfChunks][];
+			chunk = this.cachedChunks[chunkNumber];
+		}
 		if (chunk == null) {
 			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
 			int start = this.chunkOffsets[chunkNumber];
-			int numberOfBytes = (isLastChunk ? this.startOfCategoryTables
-					: this.chunkOffsets[chunkNumber + 1]) - start;
-			if (numberOfBytes < 0)
-				throw new IllegalArgumentException();
-			byte[] bytes = new byte[numberOfBytes];
-			FileInputStream file = new FileInputStream(getIndexFile());
-			try {
-				file.skip(start);
-				if (file.read(bytes, 0, numberOfBytes) != numberOfBytes)
-					throw new IOException();
-			} finally {
-				file.close();
-			}
-			DataInputStream stream = new DataInputStream(
-					new ByteArrayInputStream(bytes));
 			int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
-			chunk = this.cachedChunks[chunkNumber] = new String[numberOfNames];
-			readChunk(chunk, stream, 0, numberOfNames);
+			chunk = new String[numberOfNames];
+			final ByteBuffer buffer = getMappedFile();
+			if (buffer != null) {
+				readChunk(chunk, new ByteBufferDataInput(buffer, start), 0,
+						numberOfNames);
+			} else {
+				int numberOfBytes = (isLastChunk ? this.startOfCategoryTables
+						: this.chunkOffsets[chunkNumber + 1]) - start;
+				if (numberOfBytes < 0)
+					throw new IllegalArgumentException();
+				byte[] bytes = new byte[numberOfBytes];
+				FileInputStream file = new FileInputStream(getIndexFile());
+				try {
+					file.skip(start);
+					if (file.read(bytes, 0, numberOfBytes) != numberOfBytes)
+						throw new IOException();
+				} finally {
+					file.close();
+				}
+				DataInputStream stream = new DataInputStream(
+						new ByteArrayInputStream(bytes));
+				readChunk(chunk, stream, 0, numberOfNames);
+			}
+			synchronized (this) {
+				if (this.cachedChunks != null)
+					this.cachedChunks[chunkNumber] = chunk;
+			}
 		}
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
 	}
 
-	synchronized int[] readDocumentNumbers(Object arrayOffset)
-			throws IOException {
+	int[] readDocumentNumbers(Object arrayOffset) throws IOException {
 		// arrayOffset is either a cached array of docNumbers or an Integer
 		// offset in the file
 		if (arrayOffset instanceof int[])
 			return (int[]) arrayOffset;
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()), 2048));
+		DataInput stream = openInput(((Integer) arrayOffset).intValue(), 2048);
 		try {
-			stream.skip(((Integer) arrayOffset).intValue());
 			return readDocumentArray(stream, stream.readInt());
 		} finally {
-			stream.close();
+			close(stream);
 		}
 	}
 
@@ -1090,6 +1416,10 @@ public class DiskIndex {
 		// any document number arrays with >= 256 elements are written before
 		// the table (the offset to each array is remembered)
 		// then the number of word->int[] pairs in the table is written
+		// followed by the number of blocks and the length of the block index
+		// the block index contains the first word and the relative offset of
+		// each block of BLOCK_SIZE pairs
+		// then the pairs are written in ascending order of the words
 		// for each word -> int[] pair, the word is written followed by:
 		// an int <= 0 if the array size == 1
 		// an int > 1 & < 256 for the size of the array if its > 1 & < 256, the
@@ -1112,39 +1442,64 @@ public class DiskIndex {
 			}
 		}
 
+		char[][] keys = wordsToDocs.keyTable;
+		int size = 0;
+		for (int i = 0, l = keys.length; i < l; i++)
+			if (values[i] != null)
+				size++;
+		char[][] words = new char[size][];
+		size = 0;
+		for (int i = 0, l = keys.length; i < l; i++)
+			if (values[i] != null)
+				words[size++] = keys[i];
+		Util.sort(words);
+
+		int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		ByteArrayOutputStream blockIndex = new ByteArrayOutputStream(
+				blockCount * 16);
+		DataOutputStream blockStream = new DataOutputStream(blockIndex);
+		ByteArrayOutputStream entries = new ByteArrayOutputStream(size * 16);
+		DataOutputStream entryStream = new DataOutputStream(entries);
+		for (int i = 0; i < size; i++) {
+			char[] word = words[i];
+			if (i % BLOCK_SIZE == 0) {
+				Util.writeUTF(blockStream, word);
+				blockStream.writeInt(entryStream.size());
+			}
+			Util.writeUTF(entryStream, word);
+			Object o = wordsToDocs.get(word);
+			if (o instanceof int[]) {
+				int[] documentNumbers = (int[]) o;
+				if (documentNumbers.length == 1)
+					entryStream.writeInt(-documentNumbers[0]); // store an
+				// array of 1
+				// element by
+				// negating the
+				// documentNumber
+				// (can be zero)
+				else
+					writeDocumentNumbers(documentNumbers, entryStream);
+			} else {
+				entryStream.writeInt(largeArraySize); // mark to identify that
+				// an offset follows
+				entryStream.writeInt(((Integer) o).intValue()); // offset in the
+				// file of the
+				// array of
+				// document
+				// numbers
+			}
+		}
+
 		this.categoryOffsets.put(categoryName, stream.size()); // remember the
 		// offset to the
 		// start of the
 		// table
 		this.categoryTables.put(categoryName, null); // flush cached table
-		stream.writeInt(wordsToDocs.elementSize);
-		char[][] words = wordsToDocs.keyTable;
-		for (int i = 0, l = words.length; i < l; i++) {
-			Object o = values[i];
-			if (o != null) {
-				Util.writeUTF(stream, words[i]);
-				if (o instanceof int[]) {
-					int[] documentNumbers = (int[]) o;
-					if (documentNumbers.length == 1)
-						stream.writeInt(-documentNumbers[0]); // store an
-					// array of 1
-					// element by
-					// negating the
-					// documentNumber
-					// (can be zero)
-					else
-						writeDocumentNumbers(documentNumbers, stream);
-				} else {
-					stream.writeInt(largeArraySize); // mark to identify that
-					// an offset follows
-					stream.writeInt(((Integer) o).intValue()); // offset in the
-					// file of the
-					// array of
-					// document
-					// numbers
-				}
-			}
-		}
+		stream.writeInt(size);
+		stream.writeInt(blockCount);
+		stream.writeInt(blockStream.size());
+		blockIndex.writeTo(stream);
+		entries.writeTo(stream);
 	}
 
 	private void writeDocumentNumbers(int[] documentNumbers,
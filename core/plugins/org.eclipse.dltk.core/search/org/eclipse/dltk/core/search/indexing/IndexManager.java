@@ -513,6 +513,24 @@ public class IndexManager extends JobManager implements IIndexConstants {
 		}
 	}
 
+	/**
+	 * Returns the value of the {@link DLTKCore#INDEXER_THREADS} option, but
+	 * not more than the number of available processors.
+	 */
+	@Override
+	protected int getWorkerCount() {
+		final String value = DLTKCore.getOption(DLTKCore.INDEXER_THREADS);
+		if (value != null && value.length() != 0) {
+			try {
+				return Math.min(Integer.parseInt(value), Runtime.getRuntime()
+						.availableProcessors());
+			} catch (NumberFormatException e) {
+				// fall thru
+			}
+		}
+		return 1;
+	}
+
 	/**
 	 * Name of the background process
 	 */
@@ -40,8 +40,10 @@ import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
+import org.eclipse.dltk.internal.core.search.processing.IParallelJob;
 
-public class ArchiveProjectFragmentRequest extends IndexRequest {
+public class ArchiveProjectFragmentRequest extends IndexRequest implements
+		IParallelJob {
 
 	protected final IProjectFragment fragment;
 	protected final IDLTKLanguageToolkit toolkit;
@@ -184,6 +186,14 @@ public class ArchiveProjectFragmentRequest extends IndexRequest {
 		return visitor.modules;
 	}
 
+	/**
+	 * Requests for the different fragments update different indexes, so they
+	 * could be executed in parallel.
+	 */
+	public Object getSchedulingKey() {
+		return fragment.getPath();
+	}
+
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
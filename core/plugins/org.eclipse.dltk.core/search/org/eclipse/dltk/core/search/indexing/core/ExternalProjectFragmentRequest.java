@@ -19,6 +19,7 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IExternalSourceModule;
@@ -30,14 +31,23 @@ import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.environment.EnvironmentManager;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IEnvironment;
+import org.eclipse.dltk.core.environment.IEnvironmentMirror;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
 import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.processing.IParallelJob;
 
-public class ExternalProjectFragmentRequest extends IndexRequest {
+public class ExternalProjectFragmentRequest extends IndexRequest implements
+		IParallelJob {
+
+	/**
+	 * The minimal number of the changed modules to synchronize the local copy
+	 * of the remote fragment before indexing.
+	 */
+	private static final int MIRROR_THRESHOLD = 16;
 
 	protected final IProjectFragment fragment;
 	protected final IDLTKLanguageToolkit toolkit;
@@ -74,6 +84,9 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 		if (changes.isEmpty()) {
 			return;
 		}
+		if (changes.size() >= MIRROR_THRESHOLD) {
+			synchronizeMirror(containerPath);
+		}
 		final ReadWriteMonitor imon = index.monitor;
 		imon.enterWrite();
 		try {
@@ -116,6 +129,36 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 		return EnvironmentManager.getEnvironment(fragment);
 	}
 
+	/**
+	 * Transfers the changed files of the remote fragment at once, if supported
+	 * by the environment, so the modules are read from the local copy then.
+	 * The transfer is stopped when this request is cancelled.
+	 */
+	private void synchronizeMirror(IPath containerPath) {
+		final IEnvironment environment = getEnvironment();
+		if (environment == null || environment.isLocal()) {
+			return;
+		}
+		final IEnvironmentMirror mirror = (IEnvironmentMirror) environment
+				.getAdapter(IEnvironmentMirror.class);
+		if (mirror != null) {
+			final IFileHandle folder = EnvironmentPathUtils
+					.getFile(containerPath);
+			if (folder != null) {
+				final boolean result = mirror.synchronize(folder,
+						new NullProgressMonitor() {
+							@Override
+							public boolean isCanceled() {
+								return isCancelled;
+							}
+						});
+				if (DEBUG) {
+					log("mirror synchronized=" + result); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
 	static class ExternalModuleVisitor implements IModelElementVisitor {
 		final Set<ISourceModule> modules = new HashSet<ISourceModule>();
 
@@ -138,6 +181,14 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 		return visitor.modules;
 	}
 
+	/**
+	 * Requests for the different fragments update different indexes, so they
+	 * could be executed in parallel.
+	 */
+	public Object getSchedulingKey() {
+		return fragment.getPath();
+	}
+
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
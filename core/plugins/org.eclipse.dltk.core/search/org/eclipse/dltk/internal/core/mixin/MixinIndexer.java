@@ -77,10 +77,12 @@ public class MixinIndexer extends AbstractIndexer {
 						.getNatureId());
 				if (parser != null) {
 					final MixinIndexRequestor requestor = new MixinIndexRequestor();
-					parser.setRequirestor(requestor);
-					parser
-							.parserSourceModule(false, document
-									.getSourceModule());
+					// parser instances are shared with the MixinModel
+					synchronized (parser) {
+						parser.setRequirestor(requestor);
+						parser.parserSourceModule(false,
+								document.getSourceModule());
+					}
 					if (requestor.count == 0) {
 						((MixinIndex) document.getIndex())
 								.addDocumentName(document
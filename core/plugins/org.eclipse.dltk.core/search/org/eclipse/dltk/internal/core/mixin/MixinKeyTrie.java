@@ -0,0 +1,561 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.mixin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed trie (radix tree) of the mixin keys with the modules reporting
+ * each key. Mixin keys are hierarchical, so the keys starting with the prefix
+ * and the child segments of the key are found by walking the single subtree.
+ *
+ * <p>
+ * The trie is loaded from the mixin index and updated per module: modules
+ * marked as stale have their keys removed until they are reloaded from the
+ * index by the caller.
+ * </p>
+ *
+ * @param <M>
+ *            the module type
+ */
+public class MixinKeyTrie<M> {
+
+	/** If there are more keys the trie is not used */
+	public static final int MAX_KEYS = 500000;
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private static class Node {
+		/** label of the edge leading to this node */
+		String edge;
+		/** sorted by the first character of the edge */
+		Node[] children = NO_CHILDREN;
+		int childCount;
+		/** modules reporting the key ending at this node or null */
+		Object[] modules;
+
+		Node(String edge) {
+			this.edge = edge;
+		}
+
+		int indexOf(char c) {
+			int low = 0;
+			int high = childCount - 1;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				final char midChar = children[mid].edge.charAt(0);
+				if (midChar < c) {
+					low = mid + 1;
+				} else if (midChar > c) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		void insertChild(int index, Node child) {
+			if (childCount == children.length) {
+				final Node[] newChildren = new Node[childCount == 0 ? 2
+						: childCount * 2];
+				System.arraycopy(children, 0, newChildren, 0, childCount);
+				children = newChildren;
+			}
+			System.arraycopy(children, index, children, index + 1, childCount
+					- index);
+			children[index] = child;
+			++childCount;
+		}
+
+		void removeChild(int index) {
+			System.arraycopy(children, index + 1, children, index, childCount
+					- index - 1);
+			children[--childCount] = null;
+		}
+
+		boolean addModule(Object module) {
+			if (modules == null) {
+				modules = new Object[] { module };
+				return true;
+			}
+			for (Object m : modules) {
+				if (m.equals(module)) {
+					return false;
+				}
+			}
+			final Object[] newModules = new Object[modules.length + 1];
+			System.arraycopy(modules, 0, newModules, 0, modules.length);
+			newModules[modules.length] = module;
+			modules = newModules;
+			return true;
+		}
+
+		void removeModule(Object module) {
+			if (modules == null) {
+				return;
+			}
+			for (int i = 0; i < modules.length; ++i) {
+				if (modules[i].equals(module)) {
+					if (modules.length == 1) {
+						modules = null;
+					} else {
+						final Object[] newModules = new Object[modules.length - 1];
+						System.arraycopy(modules, 0, newModules, 0, i);
+						System.arraycopy(modules, i + 1, newModules, i,
+								newModules.length - i);
+						modules = newModules;
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	private final char separator;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Node root = new Node(""); //$NON-NLS-1$
+	private final Map<M, String[]> moduleKeys = new HashMap<M, String[]>();
+	private final Set<M> staleModules = new LinkedHashSet<M>();
+	private int keyCount;
+	private boolean loaded;
+	private boolean disabled;
+	private long version;
+
+	public MixinKeyTrie(char separator) {
+		this.separator = separator;
+	}
+
+	/**
+	 * Returns the version incremented by every {@link #reset()}, it should be
+	 * remembered before querying the index and passed to the update methods.
+	 */
+	public long getVersion() {
+		lock.readLock().lock();
+		try {
+			return version;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the keys were loaded
+	 */
+	public boolean isLoaded() {
+		lock.readLock().lock();
+		try {
+			return loaded;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the trie was loaded and could be used
+	 */
+	public boolean isEnabled() {
+		lock.readLock().lock();
+		try {
+			return loaded && !disabled;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Loads the keys of all the modules. If there are too many keys, the trie
+	 * is disabled until the next {@link #reset()}.
+	 */
+	public void load(Map<M, ? extends Collection<String>> keysByModule,
+			long loadedVersion) {
+		lock.writeLock().lock();
+		try {
+			if (version != loadedVersion) {
+				return;
+			}
+			clearKeys();
+			for (Map.Entry<M, ? extends Collection<String>> entry : keysByModule
+					.entrySet()) {
+				doAdd(entry.getKey(), entry.getValue());
+				if (keyCount > MAX_KEYS) {
+					clearKeys();
+					disabled = true;
+					break;
+				}
+			}
+			loaded = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the keys of the specified modules, which were reloaded from the
+	 * index. Modules without keys are removed.
+	 */
+	public void update(Collection<M> modules,
+			Map<M, ? extends Collection<String>> keysByModule,
+			long loadedVersion) {
+		lock.writeLock().lock();
+		try {
+			if (version != loadedVersion || !loaded || disabled) {
+				return;
+			}
+			for (M module : modules) {
+				doRemove(module);
+				final Collection<String> keys = keysByModule.get(module);
+				if (keys != null) {
+					doAdd(module, keys);
+				}
+			}
+			if (keyCount > MAX_KEYS) {
+				clearKeys();
+				disabled = true;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the keys of the module and remembers it to be reloaded
+	 */
+	public void markStale(M module) {
+		lock.writeLock().lock();
+		try {
+			if (loaded && !disabled) {
+				doRemove(module);
+				staleModules.add(module);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the modules marked as stale and clears this list
+	 */
+	public List<M> takeStaleModules() {
+		lock.writeLock().lock();
+		try {
+			final List<M> result = new ArrayList<M>(staleModules);
+			staleModules.clear();
+			return result;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the modules having keys in this trie
+	 */
+	public List<M> getModules() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<M>(moduleKeys.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Clears the trie, it should be loaded again.
+	 */
+	public void reset() {
+		lock.writeLock().lock();
+		try {
+			clearKeys();
+			loaded = false;
+			disabled = false;
+			++version;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void clearKeys() {
+		root = new Node(""); //$NON-NLS-1$
+		moduleKeys.clear();
+		staleModules.clear();
+		keyCount = 0;
+	}
+
+	private void doAdd(M module, Collection<String> keys) {
+		final List<String> added = new ArrayList<String>(keys.size());
+		for (String key : keys) {
+			if (key.length() != 0 && insert(key, module)) {
+				added.add(key);
+			}
+		}
+		if (!added.isEmpty()) {
+			final String[] previous = moduleKeys.get(module);
+			if (previous != null) {
+				for (String key : previous) {
+					added.add(key);
+				}
+			}
+			moduleKeys.put(module, added.toArray(new String[added.size()]));
+		}
+	}
+
+	private void doRemove(M module) {
+		final String[] keys = moduleKeys.remove(module);
+		if (keys != null) {
+			for (String key : keys) {
+				remove(root, key, 0, module);
+			}
+		}
+	}
+
+	private boolean insert(String key, Object module) {
+		Node node = root;
+		int pos = 0;
+		for (;;) {
+			if (pos == key.length()) {
+				final boolean newKey = node.modules == null;
+				final boolean added = node.addModule(module);
+				if (newKey) {
+					++keyCount;
+				}
+				return added;
+			}
+			final int index = node.indexOf(key.charAt(pos));
+			if (index < 0) {
+				final Node leaf = new Node(key.substring(pos));
+				leaf.addModule(module);
+				node.insertChild(-index - 1, leaf);
+				++keyCount;
+				return true;
+			}
+			final Node child = node.children[index];
+			final String edge = child.edge;
+			int common = 1;
+			while (common < edge.length() && pos + common < key.length()
+					&& edge.charAt(common) == key.charAt(pos + common)) {
+				++common;
+			}
+			if (common < edge.length()) {
+				// split the edge, the first character is the same
+				final Node middle = new Node(edge.substring(0, common));
+				child.edge = edge.substring(common);
+				middle.insertChild(0, child);
+				node.children[index] = middle;
+				node = middle;
+			} else {
+				node = child;
+			}
+			pos += common;
+		}
+	}
+
+	private void remove(Node node, String key, int pos, Object module) {
+		if (pos == key.length()) {
+			if (node.modules != null) {
+				node.removeModule(module);
+				if (node.modules == null) {
+					--keyCount;
+				}
+			}
+			return;
+		}
+		final int index = node.indexOf(key.charAt(pos));
+		if (index < 0) {
+			return;
+		}
+		final Node child = node.children[index];
+		if (!key.startsWith(child.edge, pos)) {
+			return;
+		}
+		remove(child, key, pos + child.edge.length(), module);
+		if (child.modules == null) {
+			if (child.childCount == 0) {
+				node.removeChild(index);
+			} else if (child.childCount == 1) {
+				// merge with the single child
+				final Node grandChild = child.children[0];
+				grandChild.edge = child.edge + grandChild.edge;
+				node.children[index] = grandChild;
+			}
+		}
+	}
+
+	/**
+	 * Finds the node containing the specified prefix, appending the path to
+	 * this node into the builder. Returns <code>null</code> if there are no
+	 * keys with this prefix.
+	 */
+	private Node findNode(String prefix, StringBuilder path) {
+		Node node = root;
+		int pos = 0;
+		while (pos < prefix.length()) {
+			final int index = node.indexOf(prefix.charAt(pos));
+			if (index < 0) {
+				return null;
+			}
+			final Node child = node.children[index];
+			final String edge = child.edge;
+			final int len = Math.min(edge.length(), prefix.length() - pos);
+			if (!edge.regionMatches(0, prefix, pos, len)) {
+				return null;
+			}
+			path.append(edge);
+			pos += edge.length();
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns <code>true</code> if the key was reported or it is the parent of
+	 * the reported key.
+	 */
+	public boolean exists(String key) {
+		lock.readLock().lock();
+		try {
+			final StringBuilder path = new StringBuilder();
+			final Node node = findNode(key, path);
+			if (node == null) {
+				return false;
+			}
+			if (path.length() == key.length() && node.modules != null) {
+				return true;
+			}
+			return findNode(key + separator, new StringBuilder()) != null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Collects the keys equal to the specified one (or starting with it if
+	 * <code>prefix</code> is <code>true</code>) grouped by modules.
+	 */
+	@SuppressWarnings("unchecked")
+	public void find(String key, boolean prefix, Map<M, Set<String>> result) {
+		lock.readLock().lock();
+		try {
+			final StringBuilder path = new StringBuilder();
+			final Node node = findNode(key, path);
+			if (node == null) {
+				return;
+			}
+			if (prefix) {
+				collect(node, path, result);
+			} else if (path.length() == key.length() && node.modules != null) {
+				for (Object module : node.modules) {
+					addKey(result, (M) module, key);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void collect(Node node, StringBuilder path,
+			Map<M, Set<String>> result) {
+		if (node.modules != null) {
+			final String key = path.toString();
+			for (Object module : node.modules) {
+				addKey(result, (M) module, key);
+			}
+		}
+		for (int i = 0; i < node.childCount; ++i) {
+			final Node child = node.children[i];
+			final int length = path.length();
+			path.append(child.edge);
+			collect(child, path, result);
+			path.setLength(length);
+		}
+	}
+
+	private static <M> void addKey(Map<M, Set<String>> result, M module,
+			String key) {
+		Set<String> keys = result.get(module);
+		if (keys == null) {
+			keys = new HashSet<String>();
+			result.put(module, keys);
+		}
+		keys.add(key);
+	}
+
+	/**
+	 * Returns the keys of the direct children (the next segment) of the
+	 * specified key.
+	 */
+	public Set<String> findChildKeys(String key) {
+		lock.readLock().lock();
+		try {
+			final Set<String> result = new LinkedHashSet<String>();
+			final String prefix = key + separator;
+			final StringBuilder path = new StringBuilder();
+			final Node node = findNode(prefix, path);
+			if (node != null) {
+				collectSegments(node, path, prefix.length(), prefix.length(),
+						result);
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param prefixLength
+	 *            length of the parent key with the separator
+	 * @param scanFrom
+	 *            position to look for the separator from, the path before it
+	 *            was already checked
+	 */
+	private void collectSegments(Node node, StringBuilder path,
+			int prefixLength, int scanFrom, Set<String> result) {
+		for (int i = scanFrom; i < path.length(); ++i) {
+			if (path.charAt(i) == separator) {
+				result.add(path.substring(0, i));
+				return;
+			}
+		}
+		if (node.modules != null && path.length() > prefixLength) {
+			result.add(path.toString());
+		}
+		for (int i = 0; i < node.childCount; ++i) {
+			final Node child = node.children[i];
+			final int length = path.length();
+			path.append(child.edge);
+			collectSegments(child, path, prefixLength, length, result);
+			path.setLength(length);
+		}
+	}
+
+	/**
+	 * Returns the number of the keys
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return keyCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+}
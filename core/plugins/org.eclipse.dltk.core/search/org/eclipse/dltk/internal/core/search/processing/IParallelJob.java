@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search.processing;
+
+/**
+ * The job which could be executed by the {@link JobManager} in parallel with
+ * other jobs of this kind.
+ *
+ * <p>
+ * Jobs returning equal scheduling keys are never executed at the same time
+ * and are started in the order they were requested, so the key should
+ * identify the resource (e.g. the index) the job is going to update. Jobs not
+ * implementing this interface act as barriers: they are started only after all
+ * the parallel jobs requested before them are completed.
+ * </p>
+ */
+public interface IParallelJob extends IJob {
+
+	/**
+	 * Returns the key of the resource updated by this job, not
+	 * <code>null</code>.
+	 */
+	Object getSchedulingKey();
+
+}
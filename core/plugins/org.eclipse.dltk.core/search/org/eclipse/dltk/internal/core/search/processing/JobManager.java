@@ -9,6 +9,14 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.search.processing;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -32,6 +40,13 @@ public abstract class JobManager implements Runnable {
 	protected Thread processingThread;
 	protected Job progressJob;
 
+	/* parallel jobs being executed by the worker threads */
+	private final Set<IJob> parallelJobs = new HashSet<IJob>();
+	/* scheduling keys of the parallel jobs being executed */
+	private final Set<Object> parallelKeys = new HashSet<Object>();
+	private ExecutorService workers;
+	private int workerCount;
+
 	/*
 	 * counter indicating whether job execution is enabled or not, disabled if
 	 * <= 0 it cannot go beyond 1
@@ -57,7 +72,8 @@ public abstract class JobManager implements Runnable {
 	public synchronized int awaitingJobsCount() {
 		// pretend busy in case concurrent job attempts performing before
 		// activated
-		return this.activated ? this.jobEnd - this.jobStart + 1 : 1;
+		return this.activated ? this.jobEnd - this.jobStart + 1
+				+ this.parallelJobs.size() : 1;
 	}
 
 	/**
@@ -88,11 +104,20 @@ public abstract class JobManager implements Runnable {
 
 		try {
 			IJob currentJob;
+			IJob[] runningJobs;
 			// cancel current job if it belongs to the given family
 			synchronized (this) {
 				currentJob = this.currentJob();
 				disable();
+				runningJobs = this.parallelJobs
+						.toArray(new IJob[this.parallelJobs.size()]);
+			}
+			for (IJob runningJob : runningJobs) {
+				if (jobFamily == null || runningJob.belongsTo(jobFamily)) {
+					runningJob.cancel();
+				}
 			}
+			waitParallelJobs(jobFamily);
 			if (currentJob != null
 					&& (jobFamily == null || currentJob.belongsTo(jobFamily))) {
 				currentJob.cancel();
@@ -140,6 +165,38 @@ public abstract class JobManager implements Runnable {
 					.verbose("DISCARD   DONE with background job family - " + jobFamily); //$NON-NLS-1$
 	}
 
+	/**
+	 * Waits until the parallel jobs of the specified family are completed. Does
+	 * nothing if called from the worker thread, as the job can't wait for
+	 * itself.
+	 */
+	private synchronized void waitParallelJobs(String jobFamily) {
+		if (Thread.currentThread() instanceof WorkerThread) {
+			return;
+		}
+		while (hasParallelJob(jobFamily)) {
+			if (VERBOSE)
+				Util.verbose("-> waiting end of parallel background jobs - " + jobFamily); //$NON-NLS-1$
+			try {
+				this.wait(50);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+
+	private boolean hasParallelJob(String jobFamily) {
+		if (jobFamily == null) {
+			return !this.parallelJobs.isEmpty();
+		}
+		for (IJob job : this.parallelJobs) {
+			if (job.belongsTo(jobFamily)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public synchronized void enable() {
 		this.enableCount++;
 		if (VERBOSE)
@@ -173,6 +230,18 @@ public abstract class JobManager implements Runnable {
 		}
 	}
 
+	/**
+	 * Returns the maximum number of the {@link IParallelJob}s executed at the
+	 * same time. Values less than 2 mean all the jobs are executed by the
+	 * processing thread one by one. Invoked once, when background processing is
+	 * started.
+	 * 
+	 * @since 5.1
+	 */
+	protected int getWorkerCount() {
+		return 1;
+	}
+
 	/**
 	 * When idle, give chance to do something
 	 */
@@ -380,10 +449,108 @@ public abstract class JobManager implements Runnable {
 			// less prioritary by default, priority is raised if clients are
 			// actively waiting on it
 			this.processingThread.setPriority(Thread.NORM_PRIORITY - 1);
+			if (this.workers == null) {
+				this.workerCount = getWorkerCount();
+				if (this.workerCount > 1) {
+					this.workers = Executors.newFixedThreadPool(
+							this.workerCount, new WorkerThreadFactory());
+				}
+			}
 			this.processingThread.start();
 		}
 	}
 
+	private static class WorkerThread extends Thread {
+		WorkerThread(Runnable target, String name) {
+			super(target, name);
+		}
+	}
+
+	private class WorkerThreadFactory implements ThreadFactory {
+		private int count = 0;
+
+		public synchronized Thread newThread(Runnable r) {
+			final Thread thread = new WorkerThread(r, processName()
+					+ " Worker #" + (++count)); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+	}
+
+	private class ParallelJobRunner implements Runnable {
+		private final IJob job;
+		private final Object key;
+
+		ParallelJobRunner(IJob job, Object key) {
+			this.job = job;
+			this.key = key;
+		}
+
+		public void run() {
+			if (VERBOSE)
+				Util.verbose("STARTING parallel background job - " + job); //$NON-NLS-1$
+			try {
+				job.execute(null);
+			} catch (RuntimeException e) {
+				Util.log(e, "Parallel background job failed - " + job); //$NON-NLS-1$
+			} finally {
+				if (VERBOSE)
+					Util.verbose("FINISHED parallel background job - " + job); //$NON-NLS-1$
+				synchronized (JobManager.this) {
+					parallelJobs.remove(job);
+					parallelKeys.remove(key);
+					JobManager.this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Schedules the specified (current) job for the execution. The
+	 * {@link IParallelJob}s are passed to the worker threads as soon as there
+	 * is a free worker and no job with the same scheduling key is running,
+	 * other jobs wait until all the parallel ones are completed. Returns
+	 * <code>true</code> if the job should be executed by the processing thread
+	 * or <code>false</code> if it was passed to the worker or is not the
+	 * current one anymore.
+	 */
+	private boolean dispatch(IJob job) throws InterruptedException {
+		final Object key = job instanceof IParallelJob ? ((IParallelJob) job)
+				.getSchedulingKey() : null;
+		final ExecutorService executor;
+		synchronized (this) {
+			executor = this.workers;
+			if (key == null || executor == null) {
+				while (this.processingThread != null
+						&& !this.parallelJobs.isEmpty()) {
+					this.wait();
+				}
+				return currentJob() == job;
+			}
+			while (this.processingThread != null
+					&& (this.parallelJobs.size() >= this.workerCount || this.parallelKeys
+							.contains(key))) {
+				this.wait();
+			}
+			if (currentJob() != job) {
+				return false;
+			}
+			this.parallelJobs.add(job);
+			this.parallelKeys.add(key);
+			moveToNextJob();
+		}
+		showProgress();
+		final ParallelJobRunner runner = new ParallelJobRunner(job, key);
+		try {
+			executor.execute(runner);
+		} catch (RejectedExecutionException e) {
+			// shutting down, the job is not current anymore so run it here
+			runner.run();
+		}
+		return false;
+	}
+
 	private final class ProgressJob extends Job {
 		ProgressJob(String name) {
 			super(name);
@@ -457,6 +624,9 @@ public abstract class JobManager implements Runnable {
 						}
 						continue;
 					}
+					if (this.workers != null && !dispatch(job)) {
+						continue;
+					}
 					if (VERBOSE) {
 						Util.verbose(awaitingJobsCount() + " awaiting jobs"); //$NON-NLS-1$
 						Util.verbose("STARTING background job - " + job); //$NON-NLS-1$
@@ -550,6 +720,15 @@ public abstract class JobManager implements Runnable {
 				// XXX wait not more than 1 minute
 				thread.join(60000);
 			}
+			final ExecutorService executor;
+			synchronized (this) {
+				executor = this.workers;
+				this.workers = null;
+			}
+			if (executor != null) {
+				executor.shutdown();
+				executor.awaitTermination(60, TimeUnit.SECONDS);
+			}
 			Job job = this.progressJob;
 			if (job != null) {
 				job.cancel();
@@ -566,6 +745,7 @@ public abstract class JobManager implements Runnable {
 		buffer.append("Enable count:").append(this.enableCount).append('\n'); //$NON-NLS-1$
 		int numJobs = this.jobEnd - this.jobStart + 1;
 		buffer.append("Jobs in queue:").append(numJobs).append('\n'); //$NON-NLS-1$
+		buffer.append("Parallel jobs:").append(this.parallelJobs.size()).append('\n'); //$NON-NLS-1$
 		for (int i = 0; i < numJobs && i < 15; i++) {
 			buffer
 					.append(i)
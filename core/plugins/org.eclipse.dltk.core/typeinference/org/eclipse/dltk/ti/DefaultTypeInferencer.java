@@ -15,6 +15,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.dltk.core.DLTKCore;
@@ -192,7 +193,19 @@ public class DefaultTypeInferencer implements ITypeInferencer {
 	}
 
 	public DefaultTypeInferencer(IGoalEvaluatorFactory userFactory) {
-		engine = new GoalEngine(new MapBasedEvaluatorFactory());
+		this(userFactory, null);
+	}
+
+	/**
+	 * Creates the type inferencer evaluating the independent goals in parallel
+	 * using the specified executor, see {@link GoalEngine}.
+	 * 
+	 * @since 5.1
+	 */
+	public DefaultTypeInferencer(IGoalEvaluatorFactory userFactory,
+			Executor executor) {
+		engine = new GoalEngine(new MapBasedEvaluatorFactory(), executor);
+		engine.setResultCache(GoalResultCache.getDefault());
 		this.userFactory = userFactory;
 		initStdGoals();
 	}
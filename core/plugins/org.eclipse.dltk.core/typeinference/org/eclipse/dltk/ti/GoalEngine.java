@@ -14,8 +14,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.dltk.ti.goals.GoalEvaluator;
 import org.eclipse.dltk.ti.goals.IGoal;
 import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
@@ -26,18 +31,42 @@ import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
  * allows pruning: before evaluating every goal(except root goal) could be
  * pruned by provided prunner.
  * 
+ * <p>
+ * If the engine is created with the {@link Executor} then
+ * {@link GoalEvaluator#init()} of the independent goals (and
+ * {@link GoalEvaluator#produceResult()} of the goals without subgoals) are
+ * executed in parallel by that executor. All the other evaluator methods, the
+ * pruner, the statistics requestor and the engine bookkeeping are still called
+ * by the thread evaluating the root goal only, so they don't need to be thread
+ * safe. Goal states are handled the same way as in the serial mode, so
+ * recursive goals are detected the same way too. The order in which the
+ * evaluators receive subgoal results is not defined in this mode. If some
+ * evaluator fails, no more goals are scheduled and the failure is rethrown
+ * after the already running tasks are completed.
+ * </p>
+ * 
  * This class isn't thread safe.
  */
 public class GoalEngine {
 
 	private final IGoalEvaluatorFactory evaluatorFactory;
 
+	private final Executor executor;
+
 	private final LinkedList<WorkingPair> workingQueue = new LinkedList<WorkingPair>();
 	private final HashMap<IGoal, GoalEvaluationState> goalStates = new HashMap<IGoal, GoalEvaluationState>();
 	private final HashMap<GoalEvaluator, EvaluatorState> evaluatorStates = new HashMap<GoalEvaluator, EvaluatorState>();
 
 	private IEvaluationStatisticsRequestor statisticsRequestor;
 
+	private GoalResultCache resultCache;
+
+	/**
+	 * <code>true</code> if some goals were pruned during the current
+	 * evaluation, so its result is not complete
+	 */
+	private boolean pruned;
+
 	private static class EvaluatorState {
 		public long timeCreated;
 		public int totalSubgoals;
@@ -70,8 +99,76 @@ public class GoalEngine {
 		public Object result;
 	}
 
+	/**
+	 * Task initializing the evaluator on the executor thread.
+	 */
+	private static class InitTask implements Runnable {
+		final WorkingPair pair;
+		final GoalEvaluator evaluator;
+		final BlockingQueue<InitTask> completed;
+		IGoal[] newGoals;
+		Object result;
+		long initTime;
+		long resultTime;
+		Throwable error;
+
+		InitTask(WorkingPair pair, GoalEvaluator evaluator,
+				BlockingQueue<InitTask> completed) {
+			this.pair = pair;
+			this.evaluator = evaluator;
+			this.completed = completed;
+		}
+
+		public void run() {
+			try {
+				long time = System.currentTimeMillis();
+				IGoal[] goals = evaluator.init();
+				if (goals == null) {
+					goals = IGoal.NO_GOALS;
+				}
+				initTime = System.currentTimeMillis() - time;
+				if (goals.length == 0) {
+					time = System.currentTimeMillis();
+					result = evaluator.produceResult();
+					resultTime = System.currentTimeMillis() - time;
+				}
+				newGoals = goals;
+			} catch (Throwable e) {
+				error = e;
+			} finally {
+				completed.add(this);
+			}
+		}
+	}
+
 	public GoalEngine(IGoalEvaluatorFactory evaluatorFactory) {
+		this(evaluatorFactory, null);
+	}
+
+	/**
+	 * Creates the engine evaluating the independent goals in parallel using
+	 * the specified executor.
+	 * 
+	 * @param evaluatorFactory
+	 * @param executor
+	 *            the executor or <code>null</code> to evaluate the goals
+	 *            sequentially by the calling thread
+	 * @since 5.1
+	 */
+	public GoalEngine(IGoalEvaluatorFactory evaluatorFactory, Executor executor) {
 		this.evaluatorFactory = evaluatorFactory;
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the cache of the root goal results, could be <code>null</code>.
+	 * Results of the evaluations without pruned goals are saved there and are
+	 * returned without evaluation next time.
+	 * 
+	 * @since 5.1
+	 */
+	public void setResultCache(GoalResultCache resultCache) {
+		this.resultCache = resultCache;
 	}
 
 	private void storeGoal(IGoal goal, GoalState state, Object result,
@@ -81,6 +178,9 @@ public class GoalEngine {
 		es.state = state;
 		es.creator = creator;
 		goalStates.put(goal, es);
+		if (state == GoalState.PRUNED) {
+			pruned = true;
+		}
 		this.statisticsRequestor.goalStateChanged(goal, state, null);
 		// TODO: add old state
 	}
@@ -155,6 +255,18 @@ public class GoalEngine {
 	public Object evaluateGoal(IGoal rootGoal, IPruner pruner,
 			IEvaluationStatisticsRequestor statisticsRequestor) {
 		long time = 0;
+		if (resultCache != null) {
+			final Object cached = resultCache.get(rootGoal);
+			if (cached != null) {
+				if (statisticsRequestor != null) {
+					// no evaluators were involved, report the goal as done
+					statisticsRequestor.evaluationStarted(rootGoal);
+					statisticsRequestor.goalStateChanged(rootGoal,
+							GoalState.DONE, null);
+				}
+				return cached;
+			}
+		}
 
 		if (statisticsRequestor == null) {
 			statisticsRequestor = new IEvaluationStatisticsRequestor() {
@@ -189,6 +301,9 @@ public class GoalEngine {
 		}
 		workingQueue.add(new WorkingPair(rootGoal, null));
 		statisticsRequestor.evaluationStarted(rootGoal);
+		if (executor != null) {
+			evaluateParallel(pruner);
+		}
 		while (!workingQueue.isEmpty()) {
 			WorkingPair pair = workingQueue.getFirst();
 			workingQueue.removeFirst();
@@ -256,13 +371,133 @@ public class GoalEngine {
 		GoalEvaluationState s = goalStates.get(rootGoal);
 
 		Assert.isTrue(s.state == GoalState.DONE);
+		if (resultCache != null && !pruned) {
+			resultCache.put(rootGoal, s.result);
+		}
 		return s.result;
 	}
 
+	private void evaluateParallel(IPruner pruner) {
+		final BlockingQueue<InitTask> completed = new LinkedBlockingQueue<InitTask>();
+		// goals being initialized -> pairs waiting for them
+		final Map<IGoal, List<WorkingPair>> initializing = new HashMap<IGoal, List<WorkingPair>>();
+		int running = 0;
+		// the first failure, no more goals are scheduled after it
+		Throwable error = null;
+		while ((error == null && !workingQueue.isEmpty()) || running != 0) {
+			while (error == null && !workingQueue.isEmpty()) {
+				WorkingPair pair = workingQueue.removeFirst();
+				if (DEBUG) {
+					System.out.println(pair.goal);
+				}
+				final List<WorkingPair> waiting = initializing.get(pair.goal);
+				if (waiting != null) {
+					// handle it after initialization, as the serial mode does
+					waiting.add(pair);
+					continue;
+				}
+				try {
+					if (schedule(pair, pruner, initializing, completed)) {
+						++running;
+					}
+				} catch (Throwable e) {
+					error = e;
+				}
+			}
+			if (running != 0) {
+				final InitTask task;
+				try {
+					task = completed.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				}
+				--running;
+				if (error != null) {
+					// just wait for the running tasks
+					continue;
+				}
+				if (task.error != null) {
+					error = task.error;
+					continue;
+				}
+				try {
+					initialized(task);
+				} catch (Throwable e) {
+					error = e;
+					continue;
+				}
+				workingQueue.addAll(0, initializing.remove(task.pair.goal));
+			}
+		}
+		if (error != null) {
+			workingQueue.clear();
+			if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			} else if (error instanceof Error) {
+				throw (Error) error;
+			} else {
+				throw new RuntimeException(error);
+			}
+		}
+	}
+
+	/**
+	 * Handles the pair, returns <code>true</code> if the task initializing
+	 * the new evaluator was started.
+	 */
+	private boolean schedule(WorkingPair pair, IPruner pruner,
+			Map<IGoal, List<WorkingPair>> initializing,
+			BlockingQueue<InitTask> completed) {
+		GoalEvaluationState state = goalStates.get(pair.goal);
+		if (state != null && pair.creator != null) {
+			notifyEvaluator(pair.creator, pair.goal);
+		} else if (pruner != null
+				&& pair.creator != null
+				&& pruner.prune(pair.goal, getEvaluatorStatistics(pair.creator))) {
+			storeGoal(pair.goal, GoalState.PRUNED, null, pair.creator);
+			notifyEvaluator(pair.creator, pair.goal);
+		} else {
+			GoalEvaluator evaluator = evaluatorFactory
+					.createEvaluator(pair.goal);
+			Assert.isNotNull(evaluator);
+			statisticsRequestor.goalEvaluatorAssigned(pair.goal, evaluator);
+			executor.execute(new InitTask(pair, evaluator, completed));
+			initializing.put(pair.goal, new ArrayList<WorkingPair>());
+			return true;
+		}
+		return false;
+	}
+
+	private void initialized(InitTask task) {
+		final WorkingPair pair = task.pair;
+		final GoalEvaluator evaluator = task.evaluator;
+		final IGoal[] newGoals = task.newGoals;
+		statisticsRequestor.evaluatorInitialized(evaluator, newGoals,
+				task.initTime);
+		if (newGoals.length > 0) {
+			for (int i = 0; i < newGoals.length; i++) {
+				workingQueue.add(new WorkingPair(newGoals[i], evaluator));
+			}
+			EvaluatorState evaluatorState = new EvaluatorState(newGoals.length);
+			evaluatorState.subgoals.addAll(Arrays.asList(newGoals));
+			putEvaluatorState(evaluator, evaluatorState);
+			storeGoal(pair.goal, GoalState.WAITING, null, pair.creator);
+		} else {
+			statisticsRequestor.evaluatorProducedResult(evaluator, task.result,
+					task.resultTime);
+			storeGoal(pair.goal, GoalState.DONE, task.result, pair.creator);
+			if (pair.creator != null) {
+				notifyEvaluator(pair.creator, pair.goal);
+			}
+		}
+	}
+
 	private void reset() {
 		workingQueue.clear();
 		goalStates.clear();
 		evaluatorStates.clear();
+		pruned = false;
 	}
 
 	private static final boolean DEBUG = false;
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ti;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ElementChangedEvent;
+import org.eclipse.dltk.core.IElementChangedListener;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.statistics.GoalCacheStatistics;
+
+/**
+ * Cache of the root goal results shared by the {@link GoalEngine} instances.
+ *
+ * <p>
+ * Only the goals with the {@link ISourceModuleContext} are cached. Results are
+ * grouped by source module and are valid only for the same
+ * {@link ModuleDeclaration} instance the goals were evaluated on (goals refer
+ * the AST nodes of that declaration and AST nodes are compared by identity),
+ * so a reparsed module never gets the results of its previous version.
+ * However the results in the other modules could depend on the changed one
+ * while their declarations are still the same, so any element change
+ * (including the reconcile of the working copy) clears the whole cache.
+ * </p>
+ *
+ * @since 5.1
+ */
+public class GoalResultCache {
+
+	private static final int MODULE_LIMIT = 16;
+
+	private static class ModuleResults extends LinkedHashMap<IGoal, Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		final ModuleDeclaration rootNode;
+		final int limit;
+
+		ModuleResults(ModuleDeclaration rootNode, int limit) {
+			super(16, 0.75f, true);
+			this.rootNode = rootNode;
+			this.limit = limit;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<IGoal, Object> eldest) {
+			return size() > limit;
+		}
+	}
+
+	private final Map<ISourceModule, ModuleResults> modules = new LinkedHashMap<ISourceModule, ModuleResults>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<ISourceModule, ModuleResults> eldest) {
+			if (size() > MODULE_LIMIT) {
+				statistics.evicted();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private final int limit;
+
+	private final GoalCacheStatistics statistics = new GoalCacheStatistics();
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			// the goal dependencies are not tracked, so the results in the
+			// other modules could be stale too
+			clear();
+		}
+	};
+
+	/**
+	 * @param limit
+	 *            the maximum number of results cached for each source module
+	 */
+	public GoalResultCache(int limit) {
+		this.limit = limit;
+	}
+
+	private static GoalResultCache instance = null;
+
+	/**
+	 * Returns the shared cache instance or <code>null</code> if it is disabled
+	 * by the {@link DLTKCore#TI_RESULT_CACHE_SIZE} option.
+	 */
+	public static synchronized GoalResultCache getDefault() {
+		if (instance == null) {
+			final int limit = readLimit();
+			if (limit <= 0) {
+				return null;
+			}
+			instance = new GoalResultCache(limit);
+			DLTKCore.addElementChangedListener(instance.listener);
+		}
+		return instance;
+	}
+
+	private static int readLimit() {
+		final String value = DLTKCore
+				.getOption(DLTKCore.TI_RESULT_CACHE_SIZE);
+		if (value != null && value.length() != 0) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				// fall thru
+			}
+		}
+		return 0;
+	}
+
+	private static ISourceModuleContext getContext(IGoal goal) {
+		final IContext context = goal.getContext();
+		if (context instanceof ISourceModuleContext) {
+			final ISourceModuleContext moduleContext = (ISourceModuleContext) context;
+			if (moduleContext.getSourceModule() != null
+					&& moduleContext.getRootNode() != null) {
+				return moduleContext;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the cached result of the specified goal or <code>null</code> if
+	 * there is no such result.
+	 */
+	public Object get(IGoal goal) {
+		final ISourceModuleContext context = getContext(goal);
+		if (context == null) {
+			return null;
+		}
+		final Object result;
+		synchronized (modules) {
+			final ModuleResults results = modules.get(context
+					.getSourceModule());
+			if (results == null) {
+				result = null;
+			} else if (results.rootNode != context.getRootNode()) {
+				modules.remove(context.getSourceModule());
+				statistics.invalidated();
+				result = null;
+			} else {
+				result = results.get(goal);
+			}
+		}
+		if (result != null) {
+			statistics.hit();
+		} else {
+			statistics.miss();
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the result of the specified goal. <code>null</code> results and
+	 * goals without {@link ISourceModuleContext} are ignored.
+	 */
+	public void put(IGoal goal, Object result) {
+		final ISourceModuleContext context = getContext(goal);
+		if (context == null || result == null) {
+			return;
+		}
+		synchronized (modules) {
+			ModuleResults results = modules.get(context.getSourceModule());
+			if (results == null || results.rootNode != context.getRootNode()) {
+				results = new ModuleResults(context.getRootNode(), limit);
+				modules.put(context.getSourceModule(), results);
+			}
+			results.put(goal, result);
+		}
+	}
+
+	/**
+	 * Removes the results of the specified source module
+	 */
+	public void remove(ISourceModule module) {
+		synchronized (modules) {
+			if (modules.remove(module) != null) {
+				statistics.invalidated();
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (modules) {
+			if (!modules.isEmpty()) {
+				statistics.invalidated();
+				modules.clear();
+			}
+		}
+	}
+
+	public GoalCacheStatistics getStatistics() {
+		return statistics;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ti.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit/miss counters of the goal results cache.
+ *
+ * @since 5.1
+ */
+public class GoalCacheStatistics {
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	public void hit() {
+		hits.incrementAndGet();
+	}
+
+	public void miss() {
+		misses.incrementAndGet();
+	}
+
+	public void evicted() {
+		evictions.incrementAndGet();
+	}
+
+	public void invalidated() {
+		invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of goals answered from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of goals not found in the cache
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of source modules evicted from the cache because of
+	 * the size limit
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of source modules removed from the cache because of
+	 * modifications
+	 */
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public void reset() {
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+		invalidations.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + getHits() + " misses=" + getMisses() //$NON-NLS-1$ //$NON-NLS-2$
+				+ " evictions=" + getEvictions() + " invalidations=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ getInvalidations();
+	}
+
+}
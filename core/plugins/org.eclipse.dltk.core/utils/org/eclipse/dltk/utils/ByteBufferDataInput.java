@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.utils;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DataInput} reading directly from the {@link ByteBuffer} (usually the
+ * memory mapped index file). Each instance has its own position, so any number
+ * of instances could read the same buffer concurrently.
+ * 
+ * @since 5.1
+ */
+public class ByteBufferDataInput implements DataInput {
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Creates the input starting at the specified offset of the buffer. The
+	 * buffer is not modified.
+	 */
+	public ByteBufferDataInput(ByteBuffer buffer, int offset) {
+		this.buffer = buffer.duplicate();
+		this.buffer.position(offset);
+	}
+
+	private void ensureAvailable(int count) throws EOFException {
+		if (buffer.remaining() < count) {
+			throw new EOFException();
+		}
+	}
+
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		ensureAvailable(len);
+		buffer.get(b, off, len);
+	}
+
+	public int skipBytes(int n) {
+		final int count = Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public byte readByte() throws IOException {
+		try {
+			return buffer.get();
+		} catch (BufferUnderflowException e) {
+			throw new EOFException();
+		}
+	}
+
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	public short readShort() throws IOException {
+		try {
+			return buffer.getShort();
+		} catch (BufferUnderflowException e) {
+			throw new EOFException();
+		}
+	}
+
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	public char readChar() throws IOException {
+		return (char) readUnsignedShort();
+	}
+
+	public int readInt() throws IOException {
+		try {
+			return buffer.getInt();
+		} catch (BufferUnderflowException e) {
+			throw new EOFException();
+		}
+	}
+
+	public long readLong() throws IOException {
+		try {
+			return buffer.getLong();
+		} catch (BufferUnderflowException e) {
+			throw new EOFException();
+		}
+	}
+
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	/**
+	 * Reads the line as specified by the {@link DataInput#readLine()}: each
+	 * byte is converted to the character directly, the line is terminated by
+	 * the '\n', '\r' or "\r\n".
+	 */
+	public String readLine() throws IOException {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		final StringBuilder sb = new StringBuilder();
+		while (buffer.hasRemaining()) {
+			final char c = (char) (buffer.get() & 0xFF);
+			if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (buffer.hasRemaining()
+						&& buffer.get(buffer.position()) == '\n') {
+					buffer.get();
+				}
+				break;
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache with the limited number of entries, evicting the least
+ * recently used ones, and the limited lifetime of each entry. Intended for the
+ * metadata of the remote files, so it is split into the independently locked
+ * segments to allow concurrent access from several threads.
+ *
+ * @since 5.1
+ */
+public class ExpiringLRUCache<K, V> {
+
+	private static class Entry<V> {
+		final V value;
+		final long timestamp;
+
+		Entry(V value, long timestamp) {
+			this.value = value;
+			this.timestamp = timestamp;
+		}
+	}
+
+	private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int limit;
+
+		Segment(int limit) {
+			super(16, 0.75f, true);
+			this.limit = limit;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+			return size() > limit;
+		}
+	}
+
+	private final Segment<K, V>[] segments;
+	private final long lifetime;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param limit
+	 *            the maximum number of entries
+	 * @param lifetime
+	 *            the time in milliseconds the entry is valid after it was put
+	 *            to the cache
+	 * @param concurrencyLevel
+	 *            the number of the independently locked segments
+	 */
+	@SuppressWarnings("unchecked")
+	public ExpiringLRUCache(int limit, long lifetime, int concurrencyLevel) {
+		if (limit <= 0 || concurrencyLevel <= 0) {
+			throw new IllegalArgumentException();
+		}
+		if (concurrencyLevel > limit) {
+			concurrencyLevel = limit;
+		}
+		this.lifetime = lifetime;
+		this.segments = new Segment[concurrencyLevel];
+		final int segmentLimit = (limit + concurrencyLevel - 1)
+				/ concurrencyLevel;
+		for (int i = 0; i < segments.length; ++i) {
+			segments[i] = new Segment<K, V>(segmentLimit);
+		}
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		int h = key.hashCode();
+		// spread the bits, as the keys are often paths with similar hashes
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return segments[(h & 0x7FFFFFFF) % segments.length];
+	}
+
+	/**
+	 * Returns the current time in milliseconds, used to check if the entries
+	 * are expired.
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the value cached for the specified key or <code>null</code> if
+	 * there is no value or it is expired.
+	 */
+	public V get(K key) {
+		final Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			final Entry<V> entry = segment.get(key);
+			if (entry != null) {
+				if (currentTime() - entry.timestamp < lifetime) {
+					hits.incrementAndGet();
+					return entry.value;
+				}
+				segment.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public void put(K key, V value) {
+		final Segment<K, V> segment = segmentFor(key);
+		final Entry<V> entry = new Entry<V>(value, currentTime());
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	/**
+	 * Puts all the specified values with the same timestamp, e.g. the
+	 * attributes of all the children returned by a single directory listing.
+	 */
+	public void putAll(Map<? extends K, ? extends V> values) {
+		final long now = currentTime();
+		for (Map.Entry<? extends K, ? extends V> e : values.entrySet()) {
+			final Segment<K, V> segment = segmentFor(e.getKey());
+			synchronized (segment) {
+				segment.put(e.getKey(), new Entry<V>(e.getValue(), now));
+			}
+		}
+	}
+
+	public void remove(K key) {
+		final Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of the entries in the cache, including the expired
+	 * ones which were not removed yet.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the ratio of the successful lookups or <code>0</code> if there
+	 * were no lookups yet.
+	 */
+	public double getHitRate() {
+		final long h = hits.get();
+		final long total = h + misses.get();
+		return total != 0 ? (double) h / total : 0;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[size=" + size() + ",hits=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ getHitCount() + ",misses=" + getMissCount() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+}
@@ -25,6 +25,7 @@ import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.internal.launching.AbstractInterpreterInstallType;
 import org.eclipse.dltk.launching.EnvironmentVariable;
 import org.eclipse.dltk.launching.IInterpreterInstall;
 import org.eclipse.dltk.launching.IInterpreterInstallType;
@@ -202,6 +203,14 @@ public abstract class AbstractInterpreterLibraryBlock implements
 	 * The "default" button has been toggled
 	 */
 	public void restoreDefaultLibraries() {
+		final IFileHandle installLocation = getHomeDirectory();
+		final IInterpreterInstallType type = getInterpreterInstallType();
+		if (installLocation != null
+				&& type instanceof AbstractInterpreterInstallType) {
+			// look them up again rather than restore the saved ones
+			((AbstractInterpreterInstallType) type)
+					.clearDefaultLibraryLocations(installLocation);
+		}
 		LibraryLocation[] libs = getLibrariesWithEnvironment(fDialog
 				.getEnvironmentVariables());
 		if (libs != null) {
@@ -25,6 +25,7 @@ import org.eclipse.dltk.core.environment.EnvironmentManager;
 import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.debug.ui.DLTKDebugUIPlugin;
+import org.eclipse.dltk.internal.launching.AbstractInterpreterInstallType;
 import org.eclipse.dltk.internal.ui.util.SWTUtil;
 import org.eclipse.dltk.internal.ui.util.TableLayoutComposite;
 import org.eclipse.dltk.launching.IInterpreterInstall;
@@ -685,6 +686,15 @@ public abstract class InterpretersBlock implements
 		IStructuredSelection prev = (IStructuredSelection) getSelection();
 		for (int i = 0; i < Interpreters.length; i++) {
 			fInterpreters.remove(Interpreters[i]);
+			final IInterpreterInstallType type = Interpreters[i]
+					.getInterpreterInstallType();
+			final IFileHandle installLocation = Interpreters[i]
+					.getInstallLocation();
+			if (installLocation != null
+					&& type instanceof AbstractInterpreterInstallType) {
+				((AbstractInterpreterInstallType) type)
+						.clearDefaultLibraryLocations(installLocation);
+			}
 		}
 		fInterpreterList.refresh();
 		IStructuredSelection curr = (IStructuredSelection) getSelection();
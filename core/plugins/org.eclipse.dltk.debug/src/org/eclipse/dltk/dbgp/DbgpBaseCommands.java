@@ -9,7 +9,13 @@
  *******************************************************************************/
 package org.eclipse.dltk.dbgp;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
+import org.eclipse.dltk.dbgp.exceptions.DbgpOpertionCanceledException;
 import org.eclipse.dltk.dbgp.internal.DbgpTransactionManager;
 import org.w3c.dom.Element;
 
@@ -43,6 +49,49 @@ public class DbgpBaseCommands {
 		return communicator.communicate(request);
 	}
 
+	/**
+	 * Sends the request and returns the future of its response without
+	 * waiting for it if the communicator supports that, otherwise the
+	 * returned future is already completed.
+	 * 
+	 * @since 5.1
+	 */
+	protected Future<Element> communicateAsync(final DbgpRequest request)
+			throws DbgpException {
+		if (communicator instanceof IDbgpAsyncCommunicator) {
+			return ((IDbgpAsyncCommunicator) communicator)
+					.communicateAsync(request);
+		}
+		final FutureTask<Element> task = new FutureTask<Element>(
+				new Callable<Element>() {
+					public Element call() throws Exception {
+						return communicator.communicate(request);
+					}
+				});
+		task.run();
+		return task;
+	}
+
+	/**
+	 * Waits for the response returned by
+	 * {@link #communicateAsync(DbgpRequest)}
+	 * 
+	 * @since 5.1
+	 */
+	protected static Element getResponse(Future<Element> response)
+			throws DbgpException {
+		try {
+			return response.get();
+		} catch (InterruptedException e) {
+			throw new DbgpOpertionCanceledException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof DbgpException) {
+				throw (DbgpException) e.getCause();
+			}
+			throw new DbgpException(e.getCause());
+		}
+	}
+
 	protected void send(DbgpRequest request) throws DbgpException {
 		communicator.send(request);
 	}
@@ -26,6 +26,8 @@ public class DbgpRequest implements IDbgpRawPacket {
 
 	private String data;
 
+	private boolean decodeEntities = false;
+
 	public DbgpRequest(String command) {
 		this(command, false);
 	}
@@ -106,6 +108,25 @@ public class DbgpRequest implements IDbgpRawPacket {
 		return false;
 	}
 
+	/**
+	 * Requests the properties or the stack levels of the response to be
+	 * decoded while the packet is received, without building the DOM elements
+	 * for them. The caller should take them from the response element with
+	 * {@link org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser}.
+	 * 
+	 * @since 5.1
+	 */
+	public void setDecodeEntities(boolean decodeEntities) {
+		this.decodeEntities = decodeEntities;
+	}
+
+	/**
+	 * @since 5.1
+	 */
+	public boolean isDecodeEntities() {
+		return decodeEntities;
+	}
+
 	/**
 	 * @return the async
 	 */
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.dbgp;
+
+import java.util.concurrent.Future;
+
+import org.eclipse.dltk.dbgp.exceptions.DbgpException;
+import org.w3c.dom.Element;
+
+/**
+ * The communicator which is able to send the request without waiting for the
+ * response, so several requests could be in flight together.
+ * 
+ * @since 5.1
+ */
+public interface IDbgpAsyncCommunicator extends IDbgpCommunicator {
+
+	/**
+	 * Sends the request and returns the future of its response. The
+	 * {@link java.util.concurrent.ExecutionException} thrown by the future
+	 * wraps the {@link DbgpException} which would be thrown by
+	 * {@link #communicate(DbgpRequest)}.
+	 */
+	Future<Element> communicateAsync(DbgpRequest request)
+			throws DbgpException;
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.dbgp.commands;
+
+import org.eclipse.dltk.dbgp.IDbgpProperty;
+import org.eclipse.dltk.dbgp.exceptions.DbgpException;
+
+/**
+ * Optional extension of the {@link IDbgpContextCommands}.
+ * 
+ * @since 5.1
+ */
+public interface IDbgpContextCommandsExtension extends IDbgpContextCommands {
+
+	/**
+	 * Returns the properties of the specified contexts, the requests are sent
+	 * together without waiting for the previous responses.
+	 * 
+	 * @return the properties in the same order as the context ids
+	 */
+	IDbgpProperty[][] getContextProperties(int stackDepth, int[] contextIds)
+			throws DbgpException;
+
+}
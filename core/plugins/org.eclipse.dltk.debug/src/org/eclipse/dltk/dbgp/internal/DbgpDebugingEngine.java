@@ -13,9 +13,11 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.dbgp.DbgpBaseCommands;
 import org.eclipse.dltk.dbgp.DbgpRequest;
 import org.eclipse.dltk.dbgp.IDbgpRawListener;
 import org.eclipse.dltk.dbgp.IDbgpRawPacket;
@@ -94,7 +96,15 @@ public class DbgpDebugingEngine extends DbgpTermination implements
 		return receiver.getResponsePacket(transactionId, timeout);
 	}
 
+	public Future<DbgpResponsePacket> getResponseFuture(int transactionId) {
+		return receiver.getResponseFuture(transactionId);
+	}
+
 	public void sendCommand(DbgpRequest command) throws IOException {
+		if (command.isDecodeEntities()) {
+			receiver.decodeEntities(command
+					.getOption(DbgpBaseCommands.ID_OPTION));
+		}
 		sender.sendCommand(command);
 	}
 
@@ -10,6 +10,7 @@
 package org.eclipse.dltk.dbgp.internal;
 
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 import org.eclipse.dltk.dbgp.DbgpRequest;
 import org.eclipse.dltk.dbgp.IDbgpRawListener;
@@ -21,6 +22,15 @@ public interface IDbgpDebugingEngine extends IDbgpTermination {
 	// Non-blocking method
 	void sendCommand(DbgpRequest command) throws IOException;
 
+	/**
+	 * Returns the future of the response with the specified transaction id
+	 * without waiting for it, so several commands could be in flight
+	 * together.
+	 * 
+	 * @since 5.1
+	 */
+	Future<DbgpResponsePacket> getResponseFuture(int transactionId);
+
 	// Blocking methods
 	DbgpResponsePacket getResponsePacket(int transactionId, int timeout)
 			throws IOException, InterruptedException;
@@ -13,20 +13,22 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.eclipse.dltk.dbgp.DbgpBaseCommands;
 import org.eclipse.dltk.dbgp.DbgpRequest;
 import org.eclipse.dltk.dbgp.IDbgpCommunicator;
 import org.eclipse.dltk.dbgp.IDbgpProperty;
-import org.eclipse.dltk.dbgp.commands.IDbgpContextCommands;
+import org.eclipse.dltk.dbgp.commands.IDbgpContextCommandsExtension;
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
 import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlEntityParser;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 public class DbgpContextCommands extends DbgpBaseCommands implements
-		IDbgpContextCommands {
+		IDbgpContextCommandsExtension {
 	private static final String CONTEXT_NAMES_COMMAND = "context_names"; //$NON-NLS-1$
 
 	private static final String CONTEXT_GET = "context_get"; //$NON-NLS-1$
@@ -58,6 +60,11 @@ public class DbgpContextCommands extends DbgpBaseCommands implements
 
 	protected IDbgpProperty[] parseContextPropertiesResponse(Element response)
 			throws DbgpException {
+		final IDbgpProperty[] decoded = DbgpXmlStreamParser
+				.getProperties(response);
+		if (decoded != null) {
+			return decoded;
+		}
 		NodeList properties = response.getChildNodes();
 
 		List list = new ArrayList();
@@ -83,6 +90,7 @@ public class DbgpContextCommands extends DbgpBaseCommands implements
 	public IDbgpProperty[] getContextProperties(int stackDepth)
 			throws DbgpException {
 		DbgpRequest request = createRequest(CONTEXT_GET);
+		request.setDecodeEntities(true);
 		request.addOption("-d", stackDepth); //$NON-NLS-1$
 		return parseContextPropertiesResponse(communicate(request));
 	}
@@ -90,8 +98,35 @@ public class DbgpContextCommands extends DbgpBaseCommands implements
 	public IDbgpProperty[] getContextProperties(int stackDepth, int contextId)
 			throws DbgpException {
 		DbgpRequest request = createRequest(CONTEXT_GET);
+		request.setDecodeEntities(true);
 		request.addOption("-d", stackDepth); //$NON-NLS-1$
 		request.addOption("-c", contextId); //$NON-NLS-1$
 		return parseContextPropertiesResponse(communicate(request));
 	}
+
+	public IDbgpProperty[][] getContextProperties(int stackDepth,
+			int[] contextIds) throws DbgpException {
+		final List<Future<Element>> responses = new ArrayList<Future<Element>>(
+				contextIds.length);
+		try {
+			for (int i = 0; i < contextIds.length; ++i) {
+				DbgpRequest request = createRequest(CONTEXT_GET);
+				request.setDecodeEntities(true);
+				request.addOption("-d", stackDepth); //$NON-NLS-1$
+				request.addOption("-c", contextIds[i]); //$NON-NLS-1$
+				responses.add(communicateAsync(request));
+			}
+			final IDbgpProperty[][] result = new IDbgpProperty[contextIds.length][];
+			for (int i = 0; i < contextIds.length; ++i) {
+				result[i] = parseContextPropertiesResponse(getResponse(responses
+						.get(i)));
+			}
+			return result;
+		} finally {
+			// stop waiting for the rest of responses if failed
+			for (Future<Element> response : responses) {
+				response.cancel(false);
+			}
+		}
+	}
 }
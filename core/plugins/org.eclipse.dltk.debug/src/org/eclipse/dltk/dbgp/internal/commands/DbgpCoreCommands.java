@@ -20,7 +20,7 @@ import org.eclipse.dltk.dbgp.IDbgpStatus;
 import org.eclipse.dltk.dbgp.breakpoints.DbgpBreakpointConfig;
 import org.eclipse.dltk.dbgp.breakpoints.IDbgpBreakpoint;
 import org.eclipse.dltk.dbgp.commands.IDbgpBreakpointCommands;
-import org.eclipse.dltk.dbgp.commands.IDbgpContextCommands;
+import org.eclipse.dltk.dbgp.commands.IDbgpContextCommandsExtension;
 import org.eclipse.dltk.dbgp.commands.IDbgpContinuationCommands;
 import org.eclipse.dltk.dbgp.commands.IDbgpCoreCommands;
 import org.eclipse.dltk.dbgp.commands.IDbgpDataTypeCommands;
@@ -32,7 +32,8 @@ import org.eclipse.dltk.dbgp.commands.IDbgpStatusCommands;
 import org.eclipse.dltk.dbgp.commands.IDbgpStreamCommands;
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
 
-public class DbgpCoreCommands implements IDbgpCoreCommands {
+public class DbgpCoreCommands implements IDbgpCoreCommands,
+		IDbgpContextCommandsExtension {
 
 	private final IDbgpFeatureCommands featureCommands;
 
@@ -42,7 +43,7 @@ public class DbgpCoreCommands implements IDbgpCoreCommands {
 
 	private final IDbgpSourceCommands sourceCommands;
 
-	private final IDbgpContextCommands contextCommands;
+	private final DbgpContextCommands contextCommands;
 
 	private final IDbgpStackCommands stackCommands;
 
@@ -200,6 +201,11 @@ public class DbgpCoreCommands implements IDbgpCoreCommands {
 		return contextCommands.getContextProperties(stackDepth, contextId);
 	}
 
+	public IDbgpProperty[][] getContextProperties(int stackDepth,
+			int[] contextIds) throws DbgpException {
+		return contextCommands.getContextProperties(stackDepth, contextIds);
+	}
+
 	public boolean configureStderr(int value) throws DbgpException {
 		return streamCommands.configureStderr(value);
 	}
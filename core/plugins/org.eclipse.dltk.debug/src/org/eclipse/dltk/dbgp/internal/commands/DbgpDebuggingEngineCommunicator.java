@@ -12,10 +12,16 @@ package org.eclipse.dltk.dbgp.internal.commands;
 import java.io.IOException;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.dltk.dbgp.DbgpBaseCommands;
 import org.eclipse.dltk.dbgp.DbgpRequest;
-import org.eclipse.dltk.dbgp.IDbgpCommunicator;
+import org.eclipse.dltk.dbgp.IDbgpAsyncCommunicator;
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
 import org.eclipse.dltk.dbgp.exceptions.DbgpIOException;
 import org.eclipse.dltk.dbgp.exceptions.DbgpOpertionCanceledException;
@@ -29,7 +35,8 @@ import org.eclipse.dltk.debug.core.DebugOption;
 import org.eclipse.dltk.debug.core.IDebugOptions;
 import org.w3c.dom.Element;
 
-public class DbgpDebuggingEngineCommunicator implements IDbgpCommunicator {
+public class DbgpDebuggingEngineCommunicator implements
+		IDbgpAsyncCommunicator {
 	private final int timeout;
 
 	private final IDbgpDebugingEngine engine;
@@ -103,6 +110,88 @@ public class DbgpDebuggingEngineCommunicator implements IDbgpCommunicator {
 		}
 	}
 
+	/**
+	 * The future of the response to the pipelined request, the response
+	 * timeout is counted from the moment the request was sent.
+	 */
+	private class ResponseFuture implements Future<Element> {
+		private final Future<DbgpResponsePacket> packet;
+		private final long deadline;
+
+		ResponseFuture(Future<DbgpResponsePacket> packet) {
+			this.packet = packet;
+			this.deadline = timeout > 0 ? System.currentTimeMillis() + timeout
+					: 0;
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return packet.cancel(mayInterruptIfRunning);
+		}
+
+		public boolean isCancelled() {
+			return packet.isCancelled();
+		}
+
+		public boolean isDone() {
+			return packet.isDone();
+		}
+
+		public Element get() throws InterruptedException, ExecutionException {
+			if (deadline == 0) {
+				return getResponse(packet.get());
+			}
+			try {
+				return getResponse(packet.get(Math.max(deadline
+						- System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+			} catch (TimeoutException e) {
+				packet.cancel(false);
+				throw new ExecutionException(new DbgpTimeoutException());
+			}
+		}
+
+		public Element get(long timeout, TimeUnit unit)
+				throws InterruptedException, ExecutionException,
+				TimeoutException {
+			return getResponse(packet.get(timeout, unit));
+		}
+
+		private Element getResponse(DbgpResponsePacket packet)
+				throws ExecutionException {
+			final Element response = packet.getContent();
+			final DbgpException e = DbgpXmlParser.checkError(response);
+			if (e != null) {
+				throw new ExecutionException(e);
+			}
+			return response;
+		}
+	}
+
+	public Future<Element> communicateAsync(final DbgpRequest request)
+			throws DbgpException {
+		if (!options.get(DebugOption.DBGP_ASYNC) && !request.isAsync()) {
+			// requests should not overlap, so wait for the response now
+			final FutureTask<Element> task = new FutureTask<Element>(
+					new Callable<Element>() {
+						public Element call() throws Exception {
+							return communicate(request);
+						}
+					});
+			task.run();
+			return task;
+		}
+		final int requestId = Integer.parseInt(request
+				.getOption(DbgpBaseCommands.ID_OPTION));
+		final Future<DbgpResponsePacket> packet = engine
+				.getResponseFuture(requestId);
+		try {
+			sendRequest(request);
+		} catch (IOException e) {
+			packet.cancel(false);
+			throw new DbgpIOException(e);
+		}
+		return new ResponseFuture(packet);
+	}
+
 	private void endSyncRequest(DbgpRequest request) {
 		synchronized (activeRequests) {
 			activeRequests.remove(request);
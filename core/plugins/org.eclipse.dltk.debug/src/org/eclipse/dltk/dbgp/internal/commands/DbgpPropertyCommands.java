@@ -17,6 +17,7 @@ import org.eclipse.dltk.dbgp.commands.IDbgpPropertyCommands;
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
 import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlEntityParser;
 import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlParser;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -28,6 +29,11 @@ public class DbgpPropertyCommands extends DbgpBaseCommands implements
 
 	protected IDbgpProperty parsePropertyResponse(Element response)
 			throws DbgpException {
+		final IDbgpProperty[] decoded = DbgpXmlStreamParser
+				.getProperties(response);
+		if (decoded != null && decoded.length != 0) {
+			return decoded[0];
+		}
 		// TODO: check length!!!
 		NodeList properties = response
 				.getElementsByTagName(DbgpXmlEntityParser.TAG_PROPERTY);
@@ -46,6 +52,7 @@ public class DbgpPropertyCommands extends DbgpBaseCommands implements
 	protected IDbgpProperty getProperty(Integer page, String name,
 			Integer stackDepth, Integer contextId) throws DbgpException {
 		DbgpRequest request = createRequest(PROPERTY_GET_COMMAND);
+		request.setDecodeEntities(true);
 		request.addOption("-n", name); //$NON-NLS-1$
 
 		if (stackDepth != null) {
@@ -65,6 +72,7 @@ public class DbgpPropertyCommands extends DbgpBaseCommands implements
 	public IDbgpProperty getPropertyByKey(String name, String key)
 			throws DbgpException {
 		DbgpRequest request = createRequest(PROPERTY_GET_COMMAND);
+		request.setDecodeEntities(true);
 		request.addOption("-n", name); //$NON-NLS-1$
 		request.addOption("-k", key); //$NON-NLS-1$
 		return parsePropertyResponse(communicate(request));
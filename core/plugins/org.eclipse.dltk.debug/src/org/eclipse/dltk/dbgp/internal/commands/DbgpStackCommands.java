@@ -20,6 +20,7 @@ import org.eclipse.dltk.dbgp.commands.IDbgpStackCommands;
 import org.eclipse.dltk.dbgp.exceptions.DbgpDebuggingEngineException;
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
 import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlEntityParser;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -40,6 +41,14 @@ public class DbgpStackCommands extends DbgpBaseCommands implements
 
 	protected IDbgpStackLevel[] parseStackLevels(Element response)
 			throws DbgpException {
+		final IDbgpStackLevel[] decoded = DbgpXmlStreamParser
+				.getStackLevels(response);
+		if (decoded != null) {
+			final IDbgpStackLevel[] list = new IDbgpStackLevel[decoded.length];
+			System.arraycopy(decoded, 0, list, 0, decoded.length);
+			Arrays.sort(list, STACK_LEVEL_COMPARATOR);
+			return list;
+		}
 		NodeList nodes = response.getElementsByTagName(TAG_STACK);
 		IDbgpStackLevel[] list = new IDbgpStackLevel[nodes.getLength()];
 		for (int i = 0; i < nodes.getLength(); ++i) {
@@ -68,14 +77,20 @@ public class DbgpStackCommands extends DbgpBaseCommands implements
 		return parseStackDepthResponse(communicate(createRequest(STACK_DEPTH_COMMAND)));
 	}
 
+	private static DbgpRequest createStackGetRequest() {
+		final DbgpRequest request = createRequest(STACK_GET_COMMAND);
+		request.setDecodeEntities(true);
+		return request;
+	}
+
 	public IDbgpStackLevel getStackLevel(int stackDepth) throws DbgpException {
-		DbgpRequest request = createRequest(STACK_GET_COMMAND);
+		DbgpRequest request = createStackGetRequest();
 		request.addOption("-d", stackDepth); //$NON-NLS-1$
 		IDbgpStackLevel[] levels = parseStackLevels(communicate(request));
 		return levels.length == 1 ? levels[0] : null;
 	}
 
 	public IDbgpStackLevel[] getStackLevels() throws DbgpException {
-		return parseStackLevels(communicate(createRequest(STACK_GET_COMMAND)));
+		return parseStackLevels(communicate(createStackGetRequest()));
 	}
 }
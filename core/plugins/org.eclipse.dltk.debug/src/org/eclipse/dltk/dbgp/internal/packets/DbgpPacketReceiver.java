@@ -10,65 +10,179 @@
 package org.eclipse.dltk.dbgp.internal.packets;
 
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.dltk.dbgp.internal.DbgpRawPacket;
 import org.eclipse.dltk.dbgp.internal.DbgpWorkingThread;
 import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlPacketParser;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 public class DbgpPacketReceiver extends DbgpWorkingThread {
+	/**
+	 * The response packets by the transaction id. Every waiter has its own
+	 * future, so the arrived packet wakes only the thread waiting for it and
+	 * any number of the requests could be in flight at the same time.
+	 */
 	private static class ResponcePacketWaiter {
-		private static final int MIN_TIMEOUT = 5;
-		private final HashMap map;
-		private boolean terminated;
+		private final ConcurrentMap<Integer, ResponseFuture> futures = new ConcurrentHashMap<Integer, ResponseFuture>();
+		private volatile boolean terminated = false;
 
-		public ResponcePacketWaiter() {
-			map = new HashMap();
-			terminated = false;
-		}
+		private class ResponseFuture implements Future<DbgpResponsePacket> {
+			private final Integer key;
+			private final CountDownLatch latch = new CountDownLatch(1);
+			private DbgpResponsePacket packet;
+			private boolean cancelled;
 
-		public synchronized void put(DbgpResponsePacket packet) {
-			int id = packet.getTransactionId();
-			map.put(new Integer(id), packet);
-			notifyAll();
-		}
+			ResponseFuture(Integer key) {
+				this.key = key;
+			}
 
-		public synchronized DbgpResponsePacket waitPacket(int id, int timeout)
-				throws InterruptedException {
-			Integer key = new Integer(id);
-			long endTime = 0;
-			if (timeout > 0) {
-				endTime = System.currentTimeMillis() + timeout;
-			}
-			while (!terminated && !map.containsKey(key)) {
-				long current = System.currentTimeMillis();
-				if (endTime != 0 && current >= endTime) {
-					break;
+			synchronized boolean set(DbgpResponsePacket packet) {
+				if (latch.getCount() == 0) {
+					return false;
+				}
+				this.packet = packet;
+				latch.countDown();
+				return true;
+			}
+
+			synchronized void terminate() {
+				latch.countDown();
+			}
+
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				synchronized (this) {
+					if (latch.getCount() == 0) {
+						return false;
+					}
+					cancelled = true;
+					latch.countDown();
 				}
-				if (endTime == 0)
-					wait();
-				else
-					wait(endTime - current);
+				futures.remove(key, this);
+				return true;
 			}
 
-			if (map.containsKey(key)) {
-				return (DbgpResponsePacket) map.remove(key);
+			public synchronized boolean isCancelled() {
+				return cancelled;
+			}
+
+			public boolean isDone() {
+				return latch.getCount() == 0;
+			}
+
+			public DbgpResponsePacket get() throws InterruptedException,
+					ExecutionException {
+				latch.await();
+				return getPacket();
+			}
+
+			public DbgpResponsePacket get(long timeout, TimeUnit unit)
+					throws InterruptedException, ExecutionException,
+					TimeoutException {
+				if (!latch.await(timeout, unit)) {
+					throw new TimeoutException();
+				}
+				return getPacket();
+			}
+
+			private synchronized DbgpResponsePacket getPacket()
+					throws ExecutionException {
+				if (cancelled) {
+					throw new CancellationException();
+				}
+				if (packet == null) {
+					throw new ExecutionException(
+							new InterruptedException(
+									Messages.DbgpPacketReceiver_responsePacketWaiterTerminated));
+				}
+				return packet;
 			}
 
+			/**
+			 * Waits for the packet, returns <code>null</code> if not received
+			 * in the specified time.
+			 */
+			DbgpResponsePacket waitPacket(int timeout)
+					throws InterruptedException {
+				try {
+					if (timeout > 0) {
+						latch.await(timeout, TimeUnit.MILLISECONDS);
+					} else {
+						latch.await();
+					}
+				} catch (InterruptedException e) {
+					cancel(false);
+					throw e;
+				}
+				cancel(false);
+				synchronized (this) {
+					if (packet == null && !cancelled) {
+						throw new InterruptedException(
+								Messages.DbgpPacketReceiver_responsePacketWaiterTerminated);
+					}
+					return packet;
+				}
+			}
+		}
+
+		public void put(DbgpResponsePacket packet) {
+			final Integer key = new Integer(packet.getTransactionId());
+			final ResponseFuture received = new ResponseFuture(key);
+			received.set(packet);
+			final ResponseFuture waiting = futures.putIfAbsent(key, received);
+			if (waiting != null) {
+				futures.remove(key, waiting);
+				if (!waiting.set(packet)) {
+					// the previous response was not taken yet
+					futures.putIfAbsent(key, received);
+				}
+			}
+		}
+
+		/**
+		 * Returns the future of the response with the specified id, the
+		 * response could be already received.
+		 */
+		public ResponseFuture register(int id) {
+			final Integer key = new Integer(id);
+			final ResponseFuture future = new ResponseFuture(key);
+			final ResponseFuture existing = futures.putIfAbsent(key, future);
+			if (existing != null) {
+				if (existing.isDone()) {
+					futures.remove(key, existing);
+				}
+				return existing;
+			}
 			if (terminated) {
-				throw new InterruptedException(
-						Messages.DbgpPacketReceiver_responsePacketWaiterTerminated);
+				future.terminate();
+				futures.remove(key, future);
 			}
+			return future;
+		}
 
-			return null;
+		public DbgpResponsePacket waitPacket(int id, int timeout)
+				throws InterruptedException {
+			return register(id).waitPacket(timeout);
 		}
 
-		public synchronized void terminate() {
+		public void terminate() {
 			terminated = true;
-			notifyAll();
+			for (ResponseFuture future : futures.values()) {
+				future.terminate();
+			}
 		}
 	}
 
@@ -117,6 +231,13 @@ public class DbgpPacketReceiver extends DbgpWorkingThread {
 	private final InputStream input;
 	private IDbgpRawLogger logger;
 
+	/**
+	 * The transaction ids of the responses, which entities should be decoded
+	 * without building the DOM tree
+	 */
+	private final Set<String> decodedTransactions = Collections
+			.synchronizedSet(new HashSet<String>());
+
 	protected void workingCycle() throws Exception {
 		try {
 			while (!Thread.interrupted()) {
@@ -126,7 +247,8 @@ public class DbgpPacketReceiver extends DbgpWorkingThread {
 					logger.log(packet);
 				}
 
-				addDocument(packet.getParsedXml());
+				addDocument(DbgpXmlStreamParser.parse(packet.getXml(),
+						decodedTransactions));
 			}
 		} finally {
 			responseWaiter.terminate();
@@ -153,6 +275,16 @@ public class DbgpPacketReceiver extends DbgpWorkingThread {
 		}
 	}
 
+	/**
+	 * Requests the properties or stack levels of the response with the
+	 * specified transaction id to be decoded by {@link DbgpXmlStreamParser}
+	 * instead of building the DOM tree for them. Should be called before the
+	 * request is sent.
+	 */
+	public void decodeEntities(String transactionId) {
+		decodedTransactions.add(transactionId);
+	}
+
 	public DbgpNotifyPacket getNotifyPacket() throws InterruptedException {
 		return (DbgpNotifyPacket) notifyWaiter.waitPacket();
 	}
@@ -166,6 +298,14 @@ public class DbgpPacketReceiver extends DbgpWorkingThread {
 		return responseWaiter.waitPacket(transactionId, timeout);
 	}
 
+	/**
+	 * Returns the future of the response with the specified transaction id,
+	 * could be called before or after the request is sent.
+	 */
+	public Future<DbgpResponsePacket> getResponseFuture(int transactionId) {
+		return responseWaiter.register(transactionId);
+	}
+
 	public DbgpPacketReceiver(InputStream input) {
 		super("DBGP - Packet receiver"); //$NON-NLS-1$
 
@@ -75,10 +75,22 @@ public class DbgpXmlEntityParser extends DbgpXmlParser {
 
 	public static DbgpStackLevel parseStackLevel(Element element)
 			throws DbgpException {
-		int level = Integer.parseInt(element.getAttribute(ATTR_LEVEL));
+		return createStackLevel(element.getAttribute(ATTR_LEVEL),
+				element.getAttribute(ATTR_CMDBEGIN),
+				element.getAttribute(ATTR_CMDEND),
+				element.getAttribute(ATTR_LINENO),
+				element.getAttribute(ATTR_FILENAME),
+				element.getAttribute(ATTR_WHERE));
+	}
 
-		String cmdBegin = element.getAttribute(ATTR_CMDBEGIN);
-		String cmdEnd = element.getAttribute(ATTR_CMDEND);
+	/**
+	 * Creates the stack level from the attribute values, shared by the DOM
+	 * and the streaming parsers. The missing attributes should be passed as
+	 * empty strings.
+	 */
+	static DbgpStackLevel createStackLevel(String levelAttr, String cmdBegin,
+			String cmdEnd, String linenoAttr, String fileName, String where) {
+		int level = Integer.parseInt(levelAttr);
 
 		int beginLine = -1;
 		int beginColumn = -1;
@@ -91,7 +103,7 @@ public class DbgpXmlEntityParser extends DbgpXmlParser {
 			endColumn = parseColumn(cmdEnd);
 		}
 
-		int lineNumber = Integer.parseInt(element.getAttribute(ATTR_LINENO));
+		int lineNumber = Integer.parseInt(linenoAttr);
 
 		/**
 		 * TODO Check ATTR_TYPE who knows when.
@@ -100,9 +112,7 @@ public class DbgpXmlEntityParser extends DbgpXmlParser {
 		 * <code>Valid values are "file" or "eval"</code>, but Tcl debugger also
 		 * sends "source" and "console".
 		 */
-		final URI fileUri = parseURI(element.getAttribute(ATTR_FILENAME));
-
-		final String where = element.getAttribute(ATTR_WHERE);
+		final URI fileUri = parseURI(fileName);
 
 		return new DbgpStackLevel(fileUri, where, level, lineNumber, beginLine,
 				beginColumn, endLine, endColumn);
@@ -182,72 +192,88 @@ public class DbgpXmlEntityParser extends DbgpXmlParser {
 		final String name = getFromChildOrAttr(property, ATTR_NAME);
 		final String fullName = getFromChildOrAttr(property, ATTR_FULLNAME);
 
-		final String type = property.getAttribute(ATTR_TYPE);
+		// Value
+		final String value;
+		Element[] list = getChildElements(property, "value"); //$NON-NLS-1$
+		if (list.length == 0) {
+			value = getEncodedValue(property);
+		} else {
+			value = getEncodedValue(list[0]);
+		}
+
+		final String children = getOptionalAttribute(property, ATTR_CHILDREN);
+
+		// Children
+		IDbgpProperty[] availableChildren = NO_CHILDREN;
+		if (children != null && makeBoolean(children)) {
+			final Element[] childElements = getChildElements(property,
+					TAG_PROPERTY);
+			final int length = childElements.length;
+			if (length > 0) {
+				availableChildren = new IDbgpProperty[length];
+				for (int i = 0; i < length; ++i) {
+					availableChildren[i] = parseProperty(childElements[i]);
+				}
+			}
+		}
+
+		return createProperty(name, fullName,
+				property.getAttribute(ATTR_TYPE), children,
+				getOptionalAttribute(property, ATTR_NUMCHILDREN),
+				getOptionalAttribute(property, ATTR_PAGE),
+				getOptionalAttribute(property, ATTR_PAGE_SIZE),
+				getOptionalAttribute(property, ATTR_CONSTANT),
+				getOptionalAttribute(property, ATTR_KEY),
+				getOptionalAttribute(property, ATTR_ADDRESS), value,
+				availableChildren);
+	}
+
+	private static String getOptionalAttribute(Element element, String name) {
+		return element.hasAttribute(name) ? element.getAttribute(name) : null;
+	}
 
+	/**
+	 * Creates the property from the already decoded values, shared by the DOM
+	 * and the streaming parsers. The optional attributes are passed as
+	 * <code>null</code> if missing, the available children are ignored if the
+	 * property has no children.
+	 */
+	static IDbgpProperty createProperty(String name, String fullName,
+			String type, String children, String numChildren, String pageAttr,
+			String pageSizeAttr, String constantAttr, String key,
+			String address, String value, IDbgpProperty[] availableChildren) {
 		// hasChildren
 		boolean hasChildren = false;
-		if (property.hasAttribute(ATTR_CHILDREN)) {
-			hasChildren = makeBoolean(property.getAttribute(ATTR_CHILDREN));
+		if (children != null) {
+			hasChildren = makeBoolean(children);
 		}
 
 		// Children count
 		int childrenCount = -1;
-		if (property.hasAttribute(ATTR_NUMCHILDREN)) {
-			childrenCount = Integer.parseInt(property
-					.getAttribute(ATTR_NUMCHILDREN));
+		if (numChildren != null) {
+			childrenCount = Integer.parseInt(numChildren);
 		}
 
 		// Page
 		int page = 0;
-		if (property.hasAttribute(ATTR_PAGE)) {
-			page = Integer.parseInt(property.getAttribute(ATTR_PAGE));
+		if (pageAttr != null) {
+			page = Integer.parseInt(pageAttr);
 		}
 
 		// Page Size
 		int pagesize = -1;
-		if (property.hasAttribute(ATTR_PAGE_SIZE)) {
-			pagesize = Integer.parseInt(property.getAttribute(ATTR_PAGE_SIZE));
+		if (pageSizeAttr != null) {
+			pagesize = Integer.parseInt(pageSizeAttr);
 		}
 
 		// Constant
 		boolean constant = false;
-		if (property.hasAttribute(ATTR_CONSTANT)) {
-			constant = makeBoolean(property.getAttribute(ATTR_CONSTANT));
-		}
-
-		// Key
-		String key = null;
-		if (property.hasAttribute(ATTR_KEY)) {
-			key = property.getAttribute(ATTR_KEY);
-		}
-
-		// memory address
-		String address = null;
-		if (property.hasAttribute(ATTR_ADDRESS)) {
-			address = property.getAttribute(ATTR_ADDRESS);
-		}
-
-		// Value
-		String value = ""; //$NON-NLS-1$
-
-		Element[] list = getChildElements(property, "value"); //$NON-NLS-1$
-		if (list.length == 0) {
-			value = getEncodedValue(property);
-		} else {
-			value = getEncodedValue(list[0]);
+		if (constantAttr != null) {
+			constant = makeBoolean(constantAttr);
 		}
 
-		// Children
-		IDbgpProperty[] availableChildren = NO_CHILDREN;
-		if (hasChildren) {
-			final Element[] children = getChildElements(property, TAG_PROPERTY);
-			final int length = children.length;
-			if (length > 0) {
-				availableChildren = new IDbgpProperty[length];
-				for (int i = 0; i < length; ++i) {
-					availableChildren[i] = parseProperty(children[i]);
-				}
-			}
+		if (!hasChildren) {
+			availableChildren = NO_CHILDREN;
 		}
 
 		if (childrenCount < 0) {
@@ -391,13 +417,20 @@ public class DbgpXmlEntityParser extends DbgpXmlParser {
 		if (element.hasAttribute(ATTR_ENCODING)) {
 			encoding = element.getAttribute(ATTR_ENCODING);
 		}
+		return decodeValue(encoding, parseContent(element));
+	}
 
-		if (ENCODING_NONE.equals(encoding)) {
-			return parseContent(element);
+	/**
+	 * Decodes the element content according to the value of its "encoding"
+	 * attribute (<code>null</code> means no encoding).
+	 */
+	static String decodeValue(String encoding, String content) {
+		if (encoding == null || ENCODING_NONE.equals(encoding)) {
+			return content;
 		}
 
 		if (ENCODING_BASE64.equals(encoding)) {
-			return parseBase64Content(element);
+			return Base64Helper.decodeString(content);
 		}
 
 		throw new AssertionError(NLS.bind(
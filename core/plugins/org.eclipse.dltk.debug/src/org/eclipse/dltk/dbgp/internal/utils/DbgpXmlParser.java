@@ -52,27 +52,28 @@ public class DbgpXmlParser {
 		return Integer.parseInt(s) == 0 ? false : true;
 	}
 
+	/**
+	 * The document builders are not thread safe, but could be reused, so every
+	 * thread keeps its own instance instead of creating the new one for each
+	 * packet.
+	 */
+	private static final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<DocumentBuilder>();
+
+	static DocumentBuilder getDocumentBuilder()
+			throws ParserConfigurationException {
+		DocumentBuilder builder = builders.get();
+		if (builder == null) {
+			builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			builders.set(builder);
+		} else {
+			builder.reset();
+		}
+		return builder;
+	}
+
 	public static Document parseXml(byte[] xml) throws DbgpProtocolException {
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory
-					.newInstance();
-
-			DocumentBuilder builder = factory.newDocumentBuilder();
-
-			// builder.setErrorHandler(new ErrorHandler() {
-			// public void error(SAXParseException exception)
-			// throws SAXException {
-			// }
-			//
-			// public void fatalError(SAXParseException exception)
-			// throws SAXException {
-			// }
-			//
-			// public void warning(SAXParseException exception)
-			// throws SAXException {
-			// }
-			// });
-
+			final DocumentBuilder builder = getDocumentBuilder();
 			InputSource source = new InputSource(new ByteArrayInputStream(xml));
 			return builder.parse(source);
 		} catch (ParserConfigurationException e) {
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.dbgp.internal.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.eclipse.dltk.dbgp.IDbgpProperty;
+import org.eclipse.dltk.dbgp.exceptions.DbgpProtocolException;
+import org.eclipse.dltk.dbgp.internal.DbgpStackLevel;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Streaming parser of the DBGp packets. The responses of the commands
+ * returning the potentially large number of the entities (
+ * <code>context_get</code>, <code>property_get</code>, <code>stack_get</code>)
+ * could be decoded directly into the {@link IDbgpProperty} and
+ * {@link DbgpStackLevel} objects without building the DOM tree for them, the
+ * decoded entities are attached to the root element and are available via
+ * {@link #getProperties(Element)} and {@link #getStackLevels(Element)}. That
+ * is done only for the transactions requested by the caller (see
+ * {@link org.eclipse.dltk.dbgp.DbgpRequest#setDecodeEntities(boolean)}), as
+ * the other clients of the Element based API expect the complete DOM tree. All the other elements
+ * are returned as the usual DOM tree.
+ *
+ * <p>
+ * The SAX parser and the handler are reused by the thread.
+ * </p>
+ */
+public class DbgpXmlStreamParser extends DefaultHandler {
+
+	private static final String KEY_PROPERTIES = DbgpXmlStreamParser.class
+			.getName() + ".properties"; //$NON-NLS-1$
+	private static final String KEY_STACK_LEVELS = DbgpXmlStreamParser.class
+			.getName() + ".stackLevels"; //$NON-NLS-1$
+
+	private static final String TAG_RESPONSE = "response"; //$NON-NLS-1$
+	private static final String TAG_PROPERTY = DbgpXmlEntityParser.TAG_PROPERTY;
+	private static final String TAG_STACK = "stack"; //$NON-NLS-1$
+	private static final String TAG_VALUE = "value"; //$NON-NLS-1$
+	private static final String TAG_NAME = "name"; //$NON-NLS-1$
+	private static final String TAG_FULLNAME = "fullname"; //$NON-NLS-1$
+
+	private static final String ATTR_COMMAND = "command"; //$NON-NLS-1$
+	private static final String ATTR_TRANSACTION_ID = "transaction_id"; //$NON-NLS-1$
+	private static final String ATTR_ENCODING = "encoding"; //$NON-NLS-1$
+
+	private static final ThreadLocal<DbgpXmlStreamParser> parsers = new ThreadLocal<DbgpXmlStreamParser>();
+
+	/**
+	 * Parses the packet, decoding the entities of the supported responses if
+	 * their transaction id is contained in the specified set. The id is
+	 * removed from the set then.
+	 * 
+	 * @param decodedTransactions
+	 *            the synchronized set of the transaction ids or
+	 *            <code>null</code> to build the complete DOM tree
+	 */
+	public static Document parse(byte[] xml, Set<String> decodedTransactions)
+			throws DbgpProtocolException {
+		DbgpXmlStreamParser parser = parsers.get();
+		if (parser == null) {
+			parser = new DbgpXmlStreamParser();
+			parsers.set(parser);
+		}
+		return parser.doParse(xml, decodedTransactions);
+	}
+
+	/**
+	 * Returns the properties decoded from the specified response or
+	 * <code>null</code> if the response was not decoded by this parser.
+	 */
+	public static IDbgpProperty[] getProperties(Element response) {
+		return (IDbgpProperty[]) response.getUserData(KEY_PROPERTIES);
+	}
+
+	/**
+	 * Returns the stack levels decoded from the specified response or
+	 * <code>null</code> if the response was not decoded by this parser.
+	 */
+	public static DbgpStackLevel[] getStackLevels(Element response) {
+		return (DbgpStackLevel[]) response.getUserData(KEY_STACK_LEVELS);
+	}
+
+	private static final int MODE_NONE = 0;
+	private static final int MODE_PROPERTIES = 1;
+	private static final int MODE_STACK = 2;
+
+	/**
+	 * The kinds of the open elements
+	 */
+	private static final int FRAME_DOM = 0;
+	private static final int FRAME_PROPERTY = 1;
+	private static final int FRAME_CAPTURE = 2;
+	private static final int FRAME_SKIP = 3;
+
+	/**
+	 * The state of the property being decoded
+	 */
+	private static class PropertyBuilder {
+		final String type;
+		final String children;
+		final String numChildren;
+		final String page;
+		final String pageSize;
+		final String constant;
+		final String key;
+		final String address;
+		final String encoding;
+		final String nameAttr;
+		final String fullNameAttr;
+
+		String name;
+		String fullName;
+		String value;
+		final List<IDbgpProperty> childProperties = new ArrayList<IDbgpProperty>();
+
+		/**
+		 * The first text run of the property itself
+		 */
+		final StringBuilder text = new StringBuilder();
+		boolean textComplete = false;
+
+		PropertyBuilder(Attributes attributes) {
+			type = nonNull(attributes.getValue("type")); //$NON-NLS-1$
+			children = attributes.getValue("children"); //$NON-NLS-1$
+			numChildren = attributes.getValue("numchildren"); //$NON-NLS-1$
+			page = attributes.getValue("page"); //$NON-NLS-1$
+			pageSize = attributes.getValue("pagesize"); //$NON-NLS-1$
+			constant = attributes.getValue("constant"); //$NON-NLS-1$
+			key = attributes.getValue("key"); //$NON-NLS-1$
+			address = attributes.getValue("address"); //$NON-NLS-1$
+			encoding = attributes.getValue(ATTR_ENCODING);
+			nameAttr = nonNull(attributes.getValue(TAG_NAME));
+			fullNameAttr = nonNull(attributes.getValue(TAG_FULLNAME));
+		}
+
+		void endTextRun() {
+			if (text.length() != 0) {
+				textComplete = true;
+			}
+		}
+
+		IDbgpProperty build() {
+			final String propertyValue = value != null ? value
+					: DbgpXmlEntityParser.decodeValue(encoding,
+							text.toString());
+			return DbgpXmlEntityParser.createProperty(name != null ? name
+					: nameAttr, fullName != null ? fullName : fullNameAttr,
+					type, children, numChildren, page, pageSize, constant,
+					key, address, propertyValue,
+					childProperties.toArray(new IDbgpProperty[childProperties
+							.size()]));
+		}
+	}
+
+	private static String nonNull(String value) {
+		return value != null ? value : ""; //$NON-NLS-1$
+	}
+
+	private final SAXParser parser;
+
+	private Set<String> decodedTransactions;
+	private Document document;
+	private Node current;
+	private int mode;
+	private final List<Integer> frames = new ArrayList<Integer>();
+	private final List<PropertyBuilder> propertyBuilders = new ArrayList<PropertyBuilder>();
+	private final List<IDbgpProperty> properties = new ArrayList<IDbgpProperty>();
+	private final List<DbgpStackLevel> stackLevels = new ArrayList<DbgpStackLevel>();
+
+	/**
+	 * The child element of the property being captured (name, fullname or
+	 * value)
+	 */
+	private String captureTag;
+	private String captureEncoding;
+	private final StringBuilder captureText = new StringBuilder();
+
+	private DbgpXmlStreamParser() throws DbgpProtocolException {
+		try {
+			parser = SAXParserFactory.newInstance().newSAXParser();
+		} catch (ParserConfigurationException e) {
+			throw new DbgpProtocolException(e);
+		} catch (SAXException e) {
+			throw new DbgpProtocolException(e);
+		}
+	}
+
+	private Document doParse(byte[] xml, Set<String> decodedTransactions)
+			throws DbgpProtocolException {
+		try {
+			this.decodedTransactions = decodedTransactions;
+			document = DbgpXmlParser.getDocumentBuilder().newDocument();
+			parser.reset();
+			parser.parse(new InputSource(new ByteArrayInputStream(xml)), this);
+			return document;
+		} catch (ParserConfigurationException e) {
+			throw new DbgpProtocolException(e);
+		} catch (SAXException e) {
+			throw new DbgpProtocolException(e);
+		} catch (IOException e) {
+			throw new DbgpProtocolException(e);
+		} finally {
+			this.decodedTransactions = null;
+			document = null;
+			current = null;
+			mode = MODE_NONE;
+			frames.clear();
+			propertyBuilders.clear();
+			properties.clear();
+			stackLevels.clear();
+			captureTag = null;
+			captureText.setLength(0);
+		}
+	}
+
+	private int currentFrame() {
+		return frames.isEmpty() ? FRAME_SKIP : frames.get(frames.size() - 1)
+				.intValue();
+	}
+
+	private PropertyBuilder currentProperty() {
+		return propertyBuilders.get(propertyBuilders.size() - 1);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException {
+		final int frame = currentFrame();
+		if (frames.isEmpty()) {
+			if (TAG_RESPONSE.equals(qName) && decodedTransactions != null
+					&& decodedTransactions.remove(attributes
+							.getValue(ATTR_TRANSACTION_ID))) {
+				final String command = attributes.getValue(ATTR_COMMAND);
+				if ("context_get".equals(command) //$NON-NLS-1$
+						|| "property_get".equals(command)) { //$NON-NLS-1$
+					mode = MODE_PROPERTIES;
+				} else if ("stack_get".equals(command)) { //$NON-NLS-1$
+					mode = MODE_STACK;
+				}
+			}
+			startDomElement(qName, attributes);
+		} else if (frame == FRAME_PROPERTY) {
+			final PropertyBuilder builder = currentProperty();
+			builder.endTextRun();
+			if (TAG_PROPERTY.equals(qName)) {
+				startProperty(attributes);
+			} else if ((TAG_VALUE.equals(qName) && builder.value == null)
+					|| (TAG_NAME.equals(qName) && builder.name == null)
+					|| (TAG_FULLNAME.equals(qName) && builder.fullName == null)) {
+				captureTag = qName;
+				captureEncoding = attributes.getValue(ATTR_ENCODING);
+				captureText.setLength(0);
+				frames.add(Integer.valueOf(FRAME_CAPTURE));
+			} else {
+				frames.add(Integer.valueOf(FRAME_SKIP));
+			}
+		} else if (frame == FRAME_DOM) {
+			if (frames.size() == 1 && mode == MODE_PROPERTIES
+					&& TAG_PROPERTY.equals(qName)) {
+				startProperty(attributes);
+			} else if (frames.size() == 1 && mode == MODE_STACK
+					&& TAG_STACK.equals(qName)) {
+				stackLevels.add(DbgpXmlEntityParser.createStackLevel(
+						nonNull(attributes.getValue("level")), //$NON-NLS-1$
+						nonNull(attributes.getValue("cmdbegin")), //$NON-NLS-1$
+						nonNull(attributes.getValue("cmdend")), //$NON-NLS-1$
+						nonNull(attributes.getValue("lineno")), //$NON-NLS-1$
+						nonNull(attributes.getValue("filename")), //$NON-NLS-1$
+						nonNull(attributes.getValue("where")))); //$NON-NLS-1$
+				frames.add(Integer.valueOf(FRAME_SKIP));
+			} else {
+				startDomElement(qName, attributes);
+			}
+		} else {
+			frames.add(Integer.valueOf(FRAME_SKIP));
+		}
+	}
+
+	private void startDomElement(String qName, Attributes attributes) {
+		final Element element = document.createElement(qName);
+		for (int i = 0, length = attributes.getLength(); i < length; ++i) {
+			element.setAttribute(attributes.getQName(i),
+					attributes.getValue(i));
+		}
+		(current != null ? current : document).appendChild(element);
+		current = element;
+		frames.add(Integer.valueOf(FRAME_DOM));
+	}
+
+	private void startProperty(Attributes attributes) {
+		propertyBuilders.add(new PropertyBuilder(attributes));
+		frames.add(Integer.valueOf(FRAME_PROPERTY));
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+		final int frame = frames.remove(frames.size() - 1).intValue();
+		if (frame == FRAME_DOM) {
+			if (frames.isEmpty()) {
+				final Element root = (Element) current;
+				if (mode == MODE_PROPERTIES) {
+					root.setUserData(KEY_PROPERTIES, properties
+							.toArray(new IDbgpProperty[properties.size()]),
+							null);
+				} else if (mode == MODE_STACK) {
+					root.setUserData(KEY_STACK_LEVELS, stackLevels
+							.toArray(new DbgpStackLevel[stackLevels.size()]),
+							null);
+				}
+			}
+			current = current.getParentNode();
+		} else if (frame == FRAME_PROPERTY) {
+			final IDbgpProperty property = propertyBuilders.remove(
+					propertyBuilders.size() - 1).build();
+			if (propertyBuilders.isEmpty()) {
+				properties.add(property);
+			} else {
+				final PropertyBuilder parent = currentProperty();
+				parent.childProperties.add(property);
+				parent.endTextRun();
+			}
+		} else if (frame == FRAME_CAPTURE) {
+			final PropertyBuilder builder = currentProperty();
+			final String value = DbgpXmlEntityParser.decodeValue(
+					captureEncoding, captureText.toString());
+			if (TAG_VALUE.equals(captureTag)) {
+				builder.value = value;
+			} else if (TAG_NAME.equals(captureTag)) {
+				builder.name = value;
+			} else {
+				builder.fullName = value;
+			}
+			captureTag = null;
+			captureText.setLength(0);
+			builder.endTextRun();
+		} else if (currentFrame() == FRAME_PROPERTY) {
+			currentProperty().endTextRun();
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length)
+			throws SAXException {
+		switch (currentFrame()) {
+		case FRAME_DOM:
+			final Node last = current.getLastChild();
+			if (last instanceof Text) {
+				((Text) last).appendData(new String(ch, start, length));
+			} else {
+				current.appendChild(document.createTextNode(new String(ch,
+						start, length)));
+			}
+			break;
+		case FRAME_PROPERTY:
+			final PropertyBuilder builder = currentProperty();
+			if (!builder.textComplete) {
+				builder.text.append(ch, start, length);
+			}
+			break;
+		case FRAME_CAPTURE:
+			captureText.append(ch, start, length);
+			break;
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.debug.core.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.dltk.dbgp.IDbgpProperty;
+import org.eclipse.dltk.dbgp.commands.IDbgpPropertyCommands;
+import org.eclipse.dltk.dbgp.exceptions.DbgpException;
+
+/**
+ * The pages of the properties retrieved while the thread is suspended, so
+ * expanding the same value again (e.g. after the variables are refreshed)
+ * does not request the debugging engine. Should be cleared when the thread is
+ * resumed or the values are modified.
+ */
+class ScriptPropertyCache {
+
+	private static class Key {
+		final String fullName;
+		final int level;
+		final int page;
+
+		Key(String fullName, int level, int page) {
+			this.fullName = fullName;
+			this.level = level;
+			this.page = page;
+		}
+
+		public int hashCode() {
+			return (fullName.hashCode() * 31 + level) * 31 + page;
+		}
+
+		public boolean equals(Object obj) {
+			if (obj instanceof Key) {
+				final Key other = (Key) obj;
+				return fullName.equals(other.fullName) && level == other.level
+						&& page == other.page;
+			}
+			return false;
+		}
+	}
+
+	private final Map<Key, IDbgpProperty> pages = new HashMap<Key, IDbgpProperty>();
+
+	/**
+	 * Incremented when cleared, so the property requested before is not
+	 * cached.
+	 */
+	private int generation = 0;
+
+	/**
+	 * Returns the specified page of the property, requesting it from the
+	 * debugging engine if not cached yet.
+	 */
+	IDbgpProperty getProperty(IDbgpPropertyCommands commands, String fullName,
+			int level, int page) throws DbgpException {
+		final Key key = new Key(fullName, level, page);
+		final int requestGeneration;
+		synchronized (pages) {
+			final IDbgpProperty property = pages.get(key);
+			if (property != null) {
+				return property;
+			}
+			requestGeneration = generation;
+		}
+		final IDbgpProperty property = commands.getProperty(page, fullName,
+				level);
+		synchronized (pages) {
+			if (requestGeneration == generation) {
+				pages.put(key, property);
+			}
+		}
+		return property;
+	}
+
+	void clear() {
+		synchronized (pages) {
+			pages.clear();
+			++generation;
+		}
+	}
+}
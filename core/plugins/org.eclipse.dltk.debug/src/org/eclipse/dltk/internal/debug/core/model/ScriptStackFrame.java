@@ -28,6 +28,7 @@ import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.dbgp.IDbgpProperty;
 import org.eclipse.dltk.dbgp.IDbgpStackLevel;
 import org.eclipse.dltk.dbgp.commands.IDbgpContextCommands;
+import org.eclipse.dltk.dbgp.commands.IDbgpContextCommandsExtension;
 import org.eclipse.dltk.dbgp.exceptions.DbgpDebuggingEngineException;
 import org.eclipse.dltk.dbgp.exceptions.DbgpException;
 import org.eclipse.dltk.debug.core.DLTKDebugPlugin;
@@ -57,24 +58,7 @@ public class ScriptStackFrame extends ScriptDebugElement implements
 		try {
 			IDbgpProperty[] properties = commands.getContextProperties(
 					parentFrame.getLevel(), contextId);
-
-			IScriptVariable[] variables = new IScriptVariable[properties.length];
-
-			// Workaround for bug 215215
-			// https://bugs.eclipse.org/bugs/show_bug.cgi?id=215215
-			// Remove this code when Tcl active state debugger fixed
-			Set duplicates = findDuplicateNames(properties);
-
-			for (int i = 0; i < properties.length; ++i) {
-				IDbgpProperty property = properties[i];
-				String name = property.getName();
-				if (duplicates.contains(name)) {
-					name = property.getEvalName();
-				}
-				variables[i] = new ScriptVariable(parentFrame, name, property);
-			}
-
-			return variables;
+			return createVariables(parentFrame, properties);
 		} catch (DbgpDebuggingEngineException e) {
 			if (DLTKCore.DEBUG) {
 				e.printStackTrace();
@@ -83,6 +67,27 @@ public class ScriptStackFrame extends ScriptDebugElement implements
 		}
 	}
 
+	private static IScriptVariable[] createVariables(
+			ScriptStackFrame parentFrame, IDbgpProperty[] properties) {
+		IScriptVariable[] variables = new IScriptVariable[properties.length];
+
+		// Workaround for bug 215215
+		// https://bugs.eclipse.org/bugs/show_bug.cgi?id=215215
+		// Remove this code when Tcl active state debugger fixed
+		Set duplicates = findDuplicateNames(properties);
+
+		for (int i = 0; i < properties.length; ++i) {
+			IDbgpProperty property = properties[i];
+			String name = property.getName();
+			if (duplicates.contains(name)) {
+				name = property.getEvalName();
+			}
+			variables[i] = new ScriptVariable(parentFrame, name, property);
+		}
+
+		return variables;
+	}
+
 	private static Set findDuplicateNames(IDbgpProperty[] properties) {
 		final Set duplicates = new HashSet();
 		final Set alreadyExsisting = new HashSet();
@@ -96,29 +101,74 @@ public class ScriptStackFrame extends ScriptDebugElement implements
 		return duplicates;
 	}
 
+	/**
+	 * Reads the variables of the specified contexts, the requests are sent
+	 * together if supported by the commands. Falls back to reading the
+	 * contexts one by one if the engine reports the error, so the failed
+	 * context is just empty.
+	 */
+	private IScriptVariable[][] readVariables(int[] contextIds,
+			IDbgpContextCommands commands) throws DbgpException {
+		final IScriptVariable[][] result = new IScriptVariable[contextIds.length][];
+		if (contextIds.length == 0) {
+			return result;
+		}
+		if (commands instanceof IDbgpContextCommandsExtension) {
+			try {
+				final IDbgpProperty[][] properties = ((IDbgpContextCommandsExtension) commands)
+						.getContextProperties(getLevel(), contextIds);
+				for (int i = 0; i < contextIds.length; ++i) {
+					result[i] = createVariables(this, properties[i]);
+				}
+				return result;
+			} catch (DbgpDebuggingEngineException e) {
+				// read one by one
+			}
+		}
+		for (int i = 0; i < contextIds.length; ++i) {
+			result[i] = readVariables(this, contextIds[i], commands);
+		}
+		return result;
+	}
+
 	protected ScriptVariableContainer readAllVariables() throws DbgpException {
 		final IDbgpContextCommands commands = thread.getDbgpSession()
 				.getCoreCommands();
 
 		final Map names = commands.getContextNames(getLevel());
-		final ScriptVariableContainer result = new ScriptVariableContainer();
-		if (thread.retrieveLocalVariables()
+		final boolean locals = thread.retrieveLocalVariables()
 				&& names.containsKey(new Integer(
-						IDbgpContextCommands.LOCAL_CONTEXT_ID))) {
-			result.locals = readVariables(this,
-					IDbgpContextCommands.LOCAL_CONTEXT_ID, commands);
-		}
-		if (thread.retrieveGlobalVariables()
+						IDbgpContextCommands.LOCAL_CONTEXT_ID));
+		final boolean globals = thread.retrieveGlobalVariables()
 				&& names.containsKey(new Integer(
-						IDbgpContextCommands.GLOBAL_CONTEXT_ID))) {
-			result.globals = readVariables(this,
-					IDbgpContextCommands.GLOBAL_CONTEXT_ID, commands);
-		}
-		if (thread.retrieveClassVariables()
+						IDbgpContextCommands.GLOBAL_CONTEXT_ID));
+		final boolean classes = thread.retrieveClassVariables()
 				&& names.containsKey(new Integer(
-						IDbgpContextCommands.CLASS_CONTEXT_ID))) {
-			result.classes = readVariables(this,
-					IDbgpContextCommands.CLASS_CONTEXT_ID, commands);
+						IDbgpContextCommands.CLASS_CONTEXT_ID));
+		final int[] contextIds = new int[(locals ? 1 : 0) + (globals ? 1 : 0)
+				+ (classes ? 1 : 0)];
+		int index = 0;
+		if (locals) {
+			contextIds[index++] = IDbgpContextCommands.LOCAL_CONTEXT_ID;
+		}
+		if (globals) {
+			contextIds[index++] = IDbgpContextCommands.GLOBAL_CONTEXT_ID;
+		}
+		if (classes) {
+			contextIds[index++] = IDbgpContextCommands.CLASS_CONTEXT_ID;
+		}
+		final IScriptVariable[][] variables = readVariables(contextIds,
+				commands);
+		final ScriptVariableContainer result = new ScriptVariableContainer();
+		index = 0;
+		if (locals) {
+			result.locals = variables[index++];
+		}
+		if (globals) {
+			result.globals = variables[index++];
+		}
+		if (classes) {
+			result.classes = variables[index++];
 		}
 		return result;
 	}
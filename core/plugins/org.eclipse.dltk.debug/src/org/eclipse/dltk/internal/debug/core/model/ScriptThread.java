@@ -62,11 +62,14 @@ public class ScriptThread extends ScriptDebugElement implements IScriptThread,
 
 	private int propertyPageSize = 32;
 
+	private final ScriptPropertyCache propertyCache = new ScriptPropertyCache();
+
 	// ScriptThreadStateManager.IStateChangeHandler
 	public void handleSuspend(int detail) {
 		DebugEventHelper.fireExtendedEvent(this,
 				ExtendedDebugEventDetails.BEFORE_SUSPEND);
 
+		propertyCache.clear();
 		stack.update(true);
 
 		if (handleSmartStepInto()) {
@@ -110,6 +113,8 @@ public class ScriptThread extends ScriptDebugElement implements IScriptThread,
 		DebugEventHelper.fireExtendedEvent(this,
 				ExtendedDebugEventDetails.BEFORE_RESUME);
 
+		propertyCache.clear();
+
 		DebugEventHelper.fireResumeEvent(this, detail);
 		DebugEventHelper.fireChangeEvent(this);
 	}
@@ -174,7 +179,8 @@ public class ScriptThread extends ScriptDebugElement implements IScriptThread,
 			}
 
 			engine.setMaxChildren(propertyPageSize);
-			engine.setMaxDepth(2);
+			// nested children are requested page by page when expanded
+			engine.setMaxDepth(1);
 			engine.setMaxData(8192);
 			monitor.worked(2);
 
@@ -393,6 +399,7 @@ public class ScriptThread extends ScriptDebugElement implements IScriptThread,
 	}
 
 	public void notifyModified() {
+		propertyCache.clear();
 		stateManager.notifyModified();
 	}
 
@@ -415,6 +422,13 @@ public class ScriptThread extends ScriptDebugElement implements IScriptThread,
 		return propertyPageSize;
 	}
 
+	/**
+	 * Returns the property pages retrieved during the current suspend
+	 */
+	ScriptPropertyCache getPropertyCache() {
+		return propertyCache;
+	}
+
 	public boolean retrieveGlobalVariables() {
 		return target.retrieveGlobalVariables();
 	}
@@ -38,7 +38,13 @@ public class ScriptValue extends ScriptDebugElement implements IScriptValue,
 	static final IVariable[] NO_VARIABLES = new IVariable[0];
 
 	private final IScriptType type;
-	final IVariable[] variables;
+	/**
+	 * The children, <code>null</code> if the engine has not sent them yet, the
+	 * elements are <code>null</code> until the page is loaded. The array and
+	 * its elements are modified when holding the lock of this value, while the
+	 * pages are requested from the engine without it.
+	 */
+	private volatile IVariable[] variables;
 	private IScriptStackFrame frame;
 	private int pageSize;
 	private String name;
@@ -87,28 +93,71 @@ public class ScriptValue extends ScriptDebugElement implements IScriptValue,
 
 		final int childrenCount = property.getChildrenCount();
 		if (childrenCount > 0) {
-			this.variables = new IVariable[childrenCount];
-			fillVariables(property.getPage(), property);
+			final IVariable[] children = new IVariable[childrenCount];
+			fillVariables(children, property.getPage(), property);
+			this.variables = children;
+		} else if (hasChildren) {
+			// children were not sent because of max_depth, load on demand
+			this.variables = null;
 		} else {
 			this.variables = NO_VARIABLES;
 		}
 	}
 
-	private void loadPage(int page) throws DbgpException {
-		IDbgpPropertyCommands commands = frame.getScriptThread()
-				.getDbgpSession().getCoreCommands();
-		IDbgpProperty pageProperty = commands.getProperty(page, fullname, frame
-				.getLevel());
-		fillVariables(page, pageProperty);
-		final int endIndex = Math.min((page + 1) * pageSize, variables.length);
-		for (int i = page * pageSize; i < endIndex; ++i) {
-			if (variables[i] == null) {
-				variables[i] = new UnknownVariable(frame, this, i);
+	private IDbgpProperty getPageProperty(int page) throws DbgpException {
+		final IScriptThread thread = frame.getScriptThread();
+		final IDbgpPropertyCommands commands = thread.getDbgpSession()
+				.getCoreCommands();
+		if (thread instanceof ScriptThread) {
+			return ((ScriptThread) thread).getPropertyCache().getProperty(
+					commands, fullname, frame.getLevel(), page);
+		}
+		return commands.getProperty(page, fullname, frame.getLevel());
+	}
+
+	/**
+	 * Returns the children array, requesting the first page of the children
+	 * if they were not sent with this value.
+	 */
+	private IVariable[] getChildren() throws DbgpException {
+		IVariable[] children = variables;
+		if (children == null) {
+			// the other thread could request it too, the first one is used
+			final IDbgpProperty pageProperty = getPageProperty(0);
+			synchronized (this) {
+				children = variables;
+				if (children == null) {
+					final int childrenCount = pageProperty.getChildrenCount();
+					if (childrenCount > 0) {
+						children = new IVariable[childrenCount];
+						fillVariables(children, pageProperty.getPage(),
+								pageProperty);
+					} else {
+						children = NO_VARIABLES;
+					}
+					variables = children;
+				}
+			}
+		}
+		return children;
+	}
+
+	private void loadPage(IVariable[] children, int page) throws DbgpException {
+		final IDbgpProperty pageProperty = getPageProperty(page);
+		synchronized (this) {
+			fillVariables(children, page, pageProperty);
+			final int endIndex = Math.min((page + 1) * pageSize,
+					children.length);
+			for (int i = page * pageSize; i < endIndex; ++i) {
+				if (children[i] == null) {
+					children[i] = new UnknownVariable(frame, this, i);
+				}
 			}
 		}
 	}
 
-	private void fillVariables(int page, IDbgpProperty pageProperty) {
+	private void fillVariables(IVariable[] variables, int page,
+			IDbgpProperty pageProperty) {
 		int offset = getPageOffset(page);
 		IDbgpProperty[] properties = pageProperty.getAvailableChildren();
 		final int size = Math.min(properties.length, variables.length - offset);
@@ -123,7 +172,7 @@ public class ScriptValue extends ScriptDebugElement implements IScriptValue,
 				variables[offset + i] = new ScriptVariable(frame, p.getName(),
 						p);
 			}
-			Arrays.sort(this.variables, offset, offset + size,
+			Arrays.sort(variables, offset, offset + size,
 					ScriptDebugManager.getInstance()
 							.getVariableNameComparatorByDebugModel(
 									getDebugTarget().getModelIdentifier()));
@@ -230,16 +279,27 @@ public class ScriptValue extends ScriptDebugElement implements IScriptValue,
 		return 0;
 	}
 
-	public int getSize() {
-		return variables.length;
+	public int getSize() throws DebugException {
+		try {
+			return getChildren().length;
+		} catch (DbgpException e) {
+			throw wrapDbgpException(NLS.bind(
+					Messages.ScriptValue_unableToLoadChildrenOf, name), e);
+		}
 	}
 
 	public IVariable getVariable(int offset) throws DebugException {
 		try {
-			if (variables[offset] == null) {
-				loadPage(getPageForOffset(offset));
+			final IVariable[] children = getChildren();
+			synchronized (this) {
+				if (children[offset] != null) {
+					return children[offset];
+				}
+			}
+			loadPage(children, getPageForOffset(offset));
+			synchronized (this) {
+				return children[offset];
 			}
-			return variables[offset];
 		} catch (DbgpException e) {
 			throw wrapDbgpException(NLS.bind(
 					Messages.ScriptValue_unableToLoadChildrenOf, name), e);
@@ -283,11 +343,23 @@ public class ScriptValue extends ScriptDebugElement implements IScriptValue,
 	 * @return
 	 */
 	protected boolean hasChildrenValuesLoaded() {
-		for (int i = 0; i < variables.length; ++i) {
-			if (variables[i] != null) {
-				return true;
+		return getLoadedVariables() != null;
+	}
+
+	/**
+	 * Returns the copy of the children if some of them are already created,
+	 * otherwise <code>null</code>. The elements which are not loaded yet are
+	 * <code>null</code>.
+	 */
+	synchronized IVariable[] getLoadedVariables() {
+		final IVariable[] children = variables;
+		if (children != null) {
+			for (int i = 0; i < children.length; ++i) {
+				if (children[i] != null) {
+					return children.clone();
+				}
 			}
 		}
-		return false;
+		return null;
 	}
 }
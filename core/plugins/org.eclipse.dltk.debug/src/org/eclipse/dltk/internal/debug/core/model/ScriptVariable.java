@@ -140,15 +140,16 @@ public class ScriptVariable extends ScriptDebugElement implements
 			final ScriptVariable v = (ScriptVariable) newVariable;
 			if (property.hasChildren() && v.property.hasChildren()) {
 				isValueChanged = false;
-				if (value != null
-						&& ((ScriptValue) value).hasChildrenValuesLoaded()) {
+				final IVariable[] loaded = value != null ? ((ScriptValue) value)
+						.getLoadedVariables() : null;
+				if (loaded != null) {
 					/*
 					 * Refresh children if some of them are loaded. Since it
 					 * could be a hash - it is safer to get all of the new
 					 * children.
 					 */
 					ScriptStackFrame.refreshVariables(v.getValue()
-							.getVariables(), ((ScriptValue) value).variables);
+							.getVariables(), loaded);
 				}
 			}
 			isValueChanged = !equals(property, v.property);
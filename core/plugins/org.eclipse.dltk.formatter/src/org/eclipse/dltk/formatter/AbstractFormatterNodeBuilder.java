@@ -13,9 +13,49 @@ package org.eclipse.dltk.formatter;
 
 import java.util.Stack;
 
+import org.eclipse.jface.text.IRegion;
+
 public class AbstractFormatterNodeBuilder {
 
 	private final Stack<IFormatterContainerNode> stack = new Stack<IFormatterContainerNode>();
+	private IRegion region = null;
+
+	/**
+	 * Limits the building of the nodes to the specified region of the
+	 * document. The leaf nodes not intersecting that region are not added, so
+	 * their source is written as the plain text. The range of the container
+	 * node is not known when it is pushed, so the implementations should skip
+	 * the subtrees outside of the region themselves, checking the source range
+	 * with {@link #isInRegion(int, int)}. Only the formatting changes in the
+	 * region are relevant then, see {@link FormatterDiff}.
+	 * 
+	 * @param region
+	 *            the region or <code>null</code> to build the nodes for the
+	 *            whole document
+	 * @since 5.1
+	 */
+	public void setRegion(IRegion region) {
+		this.region = region;
+	}
+
+	/**
+	 * @since 5.1
+	 */
+	public IRegion getRegion() {
+		return region;
+	}
+
+	/**
+	 * Tests if the nodes for the specified source range should be built, i.e.
+	 * there is no region limit or the range intersects (or encloses) it.
+	 * 
+	 * @since 5.1
+	 */
+	protected boolean isInRegion(int startOffset, int endOffset) {
+		return region == null
+				|| startOffset <= region.getOffset() + region.getLength()
+				&& endOffset >= region.getOffset();
+	}
 
 	protected void start(IFormatterContainerNode root) {
 		stack.clear();
@@ -34,6 +74,12 @@ public class AbstractFormatterNodeBuilder {
 	protected IFormatterNode addChild(IFormatterNode node) {
 		IFormatterContainerNode parentNode = peek();
 		if (!node.isEmpty()) {
+			if (!(node instanceof IFormatterContainerNode)
+					&& !isInRegion(node.getStartOffset(), node.getEndOffset())) {
+				// outside of the region, keep the source as is
+				advanceParent(parentNode, node.getEndOffset());
+				return node;
+			}
 			advanceParent(parentNode, node.getStartOffset());
 		}
 		parentNode.addChild(node);
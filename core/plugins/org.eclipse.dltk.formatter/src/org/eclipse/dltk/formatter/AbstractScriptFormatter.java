@@ -18,6 +18,8 @@ import org.eclipse.dltk.formatter.internal.FormatterMixedIndentGenerator;
 import org.eclipse.dltk.ui.CodeFormatterConstants;
 import org.eclipse.dltk.ui.formatter.IScriptFormatter;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.text.edits.TextEdit;
 
 /**
  * Abstract base class for the {@link IScriptFormatter} implementations.
@@ -93,4 +95,41 @@ public abstract class AbstractScriptFormatter implements IScriptFormatter {
 		return 0;
 	}
 
+	/**
+	 * Detects the indentation level at the specified offset using the already
+	 * built formatter nodes, e.g. the ones built for the region being
+	 * formatted, so the document is not parsed again for that.
+	 * 
+	 * @since 5.1
+	 */
+	protected int detectIndentationLevel(IFormatterContainerNode root,
+			int offset) throws Exception {
+		final FormatterIndentDetector detector = new FormatterIndentDetector(
+				offset);
+		root.accept(new FormatterContext(0), detector);
+		return detector.getLevel();
+	}
+
+	/**
+	 * Returns the minimal edit transforming the formatted part of the source
+	 * into the formatter output. If the nodes were built for the whole
+	 * document, but only the region should be formatted, then the changes
+	 * outside of the region are ignored.
+	 * 
+	 * @param input
+	 *            the formatted part of the source
+	 * @param output
+	 *            the formatter output
+	 * @param offset
+	 *            the offset of the input in the document
+	 * @param region
+	 *            the region to format or <code>null</code> to include all the
+	 *            changes
+	 * @since 5.1
+	 */
+	protected TextEdit createTextEdit(String input, String output, int offset,
+			IRegion region) {
+		return FormatterDiff.createEdit(input, output, offset, region);
+	}
+
 }
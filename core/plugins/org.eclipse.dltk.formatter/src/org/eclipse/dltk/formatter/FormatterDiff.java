@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.formatter;
+
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * Calculates the minimal {@link TextEdit} transforming the source into the
+ * formatter output.
+ *
+ * <p>
+ * Usually formatting changes only the whitespace, so the source and the output
+ * are compared token by token and each changed whitespace sequence results in
+ * the separate {@link ReplaceEdit}. The indentation of the line is always a
+ * separate edit, so the edits could be limited to the specified region without
+ * changing the lines following it. If the other characters were changed too,
+ * the single edit replacing the changed part is returned, if that part
+ * intersects the region.
+ * </p>
+ *
+ * @since 5.1
+ */
+public class FormatterDiff {
+
+	private final String input;
+	private final String output;
+	private final int offset;
+	private final IRegion region;
+	private MultiTextEdit result;
+
+	private FormatterDiff(String input, String output, int offset,
+			IRegion region) {
+		this.input = input;
+		this.output = output;
+		this.offset = offset;
+		this.region = region;
+	}
+
+	/**
+	 * Returns the edit transforming the input into the output.
+	 *
+	 * @param input
+	 *            the formatted source
+	 * @param output
+	 *            the formatter output
+	 * @param offset
+	 *            the offset of the input in the document, the edits are
+	 *            shifted by this value
+	 */
+	public static TextEdit createEdit(String input, String output, int offset) {
+		return createEdit(input, output, offset, null);
+	}
+
+	/**
+	 * Returns the edit transforming the input into the output, only the
+	 * whitespace changes intersecting the specified region are included.
+	 *
+	 * @param input
+	 *            the formatted source
+	 * @param output
+	 *            the formatter output
+	 * @param offset
+	 *            the offset of the input in the document, the edits are
+	 *            shifted by this value
+	 * @param region
+	 *            the region of the document or <code>null</code> to include
+	 *            all the changes
+	 */
+	public static TextEdit createEdit(String input, String output, int offset,
+			IRegion region) {
+		final FormatterDiff diff = new FormatterDiff(input, output, offset,
+				region);
+		if (!diff.compareTokens()) {
+			diff.replaceChangedRange();
+		}
+		return diff.result;
+	}
+
+	/**
+	 * Compares the non-whitespace characters of the input and output,
+	 * collecting the edits for the different whitespace between them.
+	 *
+	 * @return <code>true</code> if the non-whitespace characters are the same
+	 */
+	private boolean compareTokens() {
+		result = new MultiTextEdit();
+		int i = 0;
+		int j = 0;
+		for (;;) {
+			final int inputStart = i;
+			final int outputStart = j;
+			while (i < input.length()
+					&& Character.isWhitespace(input.charAt(i))) {
+				++i;
+			}
+			while (j < output.length()
+					&& Character.isWhitespace(output.charAt(j))) {
+				++j;
+			}
+			if (inputStart != i || outputStart != j) {
+				compareWhitespace(inputStart, i, outputStart, j);
+			}
+			if (i == input.length() || j == output.length()) {
+				return i == input.length() && j == output.length();
+			}
+			if (input.charAt(i) != output.charAt(j)) {
+				return false;
+			}
+			++i;
+			++j;
+		}
+	}
+
+	private void compareWhitespace(int inputStart, int inputEnd,
+			int outputStart, int outputEnd) {
+		final int inputIndent = indentStart(input, inputStart, inputEnd);
+		final int outputIndent = indentStart(output, outputStart, outputEnd);
+		if (inputIndent > inputStart && outputIndent > outputStart) {
+			addEdit(inputStart, inputIndent, outputStart, outputIndent);
+			addEdit(inputIndent, inputEnd, outputIndent, outputEnd);
+		} else {
+			addEdit(inputStart, inputEnd, outputStart, outputEnd);
+		}
+	}
+
+	/**
+	 * Returns the position after the last line break in the specified range
+	 * (i.e. the start of the indentation) or the start of the range if there
+	 * are no line breaks.
+	 */
+	private static int indentStart(String text, int start, int end) {
+		int pos = end;
+		while (pos > start
+				&& !FormatterUtils.isLineSeparator(text.charAt(pos - 1))) {
+			--pos;
+		}
+		return pos;
+	}
+
+	private void addEdit(int inputStart, int inputEnd, int outputStart,
+			int outputEnd) {
+		while (inputStart < inputEnd && outputStart < outputEnd
+				&& input.charAt(inputStart) == output.charAt(outputStart)) {
+			++inputStart;
+			++outputStart;
+		}
+		while (inputStart < inputEnd && outputStart < outputEnd
+				&& input.charAt(inputEnd - 1) == output.charAt(outputEnd - 1)) {
+			--inputEnd;
+			--outputEnd;
+		}
+		if (inputStart == inputEnd && outputStart == outputEnd) {
+			return;
+		}
+		if (isInRegion(inputStart, inputEnd)) {
+			result.addChild(new ReplaceEdit(offset + inputStart, inputEnd
+					- inputStart, output.substring(outputStart, outputEnd)));
+		}
+	}
+
+	/**
+	 * Tests if the specified range of the input intersects the region.
+	 */
+	private boolean isInRegion(int inputStart, int inputEnd) {
+		return region == null
+				|| offset + inputStart < region.getOffset()
+						+ region.getLength()
+				&& offset + inputEnd >= region.getOffset();
+	}
+
+	/**
+	 * Returns the single edit replacing the changed part, which could not be
+	 * split, so there is no edit if that part is outside of the region.
+	 */
+	private void replaceChangedRange() {
+		result = new MultiTextEdit();
+		final int length = Math.min(input.length(), output.length());
+		int prefix = 0;
+		while (prefix < length && input.charAt(prefix) == output.charAt(prefix)) {
+			++prefix;
+		}
+		int suffix = 0;
+		while (suffix < length - prefix
+				&& input.charAt(input.length() - 1 - suffix) == output
+						.charAt(output.length() - 1 - suffix)) {
+			++suffix;
+		}
+		if (isInRegion(prefix, input.length() - suffix)) {
+			result.addChild(new ReplaceEdit(offset + prefix, input.length()
+					- prefix - suffix, output.substring(prefix, output.length()
+					- suffix)));
+		}
+	}
+
+}
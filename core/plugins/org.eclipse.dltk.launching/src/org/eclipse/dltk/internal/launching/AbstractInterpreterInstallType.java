@@ -21,6 +21,7 @@ import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -36,6 +37,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IDeployment;
@@ -44,9 +46,11 @@ import org.eclipse.dltk.core.environment.IExecutionEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.launching.EnvironmentVariable;
 import org.eclipse.dltk.launching.IInterpreterInstall;
+import org.eclipse.dltk.launching.IInterpreterInstallChangedListener;
 import org.eclipse.dltk.launching.IInterpreterInstallType;
 import org.eclipse.dltk.launching.LaunchingMessages;
 import org.eclipse.dltk.launching.LibraryLocation;
+import org.eclipse.dltk.launching.PropertyChangeEvent;
 import org.eclipse.dltk.launching.ScriptRuntime;
 import org.eclipse.osgi.util.NLS;
 
@@ -741,19 +745,36 @@ public abstract class AbstractInterpreterInstallType implements
 		};
 	}
 
-	public synchronized LibraryLocation[] getDefaultLibraryLocations(
+	public LibraryLocation[] getDefaultLibraryLocations(
 			final IFileHandle installLocation) {
 		return getDefaultLibraryLocations(installLocation, null);
 	}
 
-	public synchronized LibraryLocation[] getDefaultLibraryLocations(
+	public LibraryLocation[] getDefaultLibraryLocations(
 			final IFileHandle installLocation, EnvironmentVariable[] variables) {
 		return getDefaultLibraryLocations(installLocation, variables, null);
 	}
 
-	public synchronized LibraryLocation[] getDefaultLibraryLocations(
+	public LibraryLocation[] getDefaultLibraryLocations(
 			final IFileHandle installLocation, EnvironmentVariable[] variables,
 			IProgressMonitor monitor) {
+		final Object cacheKey = makeKey(installLocation, variables);
+		final String persistentKey = getId() + "|" + cacheKey; //$NON-NLS-1$
+		final LibraryLocation[] previous = LibraryLocationsCache.getDefault()
+				.get(persistentKey);
+		final LibraryLocation[] libs = lookupDefaultLibraryLocations(
+				installLocation, variables, monitor, cacheKey, persistentKey);
+		if (previous != null && libs.length != 0
+				&& !Arrays.equals(previous, libs)) {
+			// the interpreter was changed since the locations were saved
+			fireLibraryLocationsChanged(installLocation, previous, libs);
+		}
+		return libs;
+	}
+
+	private synchronized LibraryLocation[] lookupDefaultLibraryLocations(
+			final IFileHandle installLocation, EnvironmentVariable[] variables,
+			IProgressMonitor monitor, Object cacheKey, String persistentKey) {
 		if (monitor != null) {
 			monitor
 					.beginTask(
@@ -762,11 +783,24 @@ public abstract class AbstractInterpreterInstallType implements
 											LaunchingMessages.AbstractInterpreterInstallType_resolvingLibraryPaths,
 											this.getName()), 100);
 		}
-		Object cacheKey = makeKey(installLocation, variables);
 		if (fCachedLocations.containsKey(cacheKey)) {
 			return fCachedLocations.get(cacheKey);
 		}
 
+		final String fingerprint = LibraryLocationsCache
+				.fingerprint(installLocation);
+		final LibraryLocation[] stored = LibraryLocationsCache.getDefault()
+				.get(persistentKey, fingerprint);
+		if (stored != null) {
+			fCachedLocations.put(cacheKey, stored);
+			new RevalidateLibraryLocationsJob(installLocation, variables,
+					cacheKey, persistentKey, fingerprint, stored).schedule();
+			if (monitor != null) {
+				monitor.done();
+			}
+			return stored;
+		}
+
 		final ArrayList<LibraryLocation> locations = new ArrayList<LibraryLocation>();
 
 		final ILookupRunnable runnable = createLookupRunnable(installLocation,
@@ -796,6 +830,8 @@ public abstract class AbstractInterpreterInstallType implements
 				monitor != null ? new SubProgressMonitor(monitor, 5) : null);
 		if (libs.length != 0) {
 			fCachedLocations.put(cacheKey, libs);
+			LibraryLocationsCache.getDefault().put(persistentKey, fingerprint,
+					libs);
 		}
 		if (monitor != null) {
 			monitor.done();
@@ -803,6 +839,102 @@ public abstract class AbstractInterpreterInstallType implements
 		return libs;
 	}
 
+	/**
+	 * Notifies the listeners about the changed default library locations of
+	 * the interpreters using them.
+	 */
+	private void fireLibraryLocationsChanged(IFileHandle installLocation,
+			LibraryLocation[] oldLocations, LibraryLocation[] newLocations) {
+		for (IInterpreterInstall install : getInterpreterInstalls()) {
+			if (install.getLibraryLocations() == null
+					&& installLocation.equals(install.getInstallLocation())) {
+				ScriptRuntime.fireInterpreterChanged(new PropertyChangeEvent(
+						install,
+						IInterpreterInstallChangedListener.PROPERTY_LIBRARY_LOCATIONS,
+						oldLocations, newLocations));
+			}
+		}
+	}
+
+	/**
+	 * Runs the library lookup in background to check if the library locations
+	 * restored from the {@link LibraryLocationsCache} are still valid, e.g.
+	 * the interpreter could be reconfigured without changing its executable.
+	 */
+	private class RevalidateLibraryLocationsJob extends Job {
+
+		private final IFileHandle installLocation;
+		private final EnvironmentVariable[] variables;
+		private final Object cacheKey;
+		private final String persistentKey;
+		private final String fingerprint;
+		private final LibraryLocation[] stored;
+
+		public RevalidateLibraryLocationsJob(IFileHandle installLocation,
+				EnvironmentVariable[] variables, Object cacheKey,
+				String persistentKey, String fingerprint,
+				LibraryLocation[] stored) {
+			super(NLS.bind(
+					LaunchingMessages.AbstractInterpreterInstallType_resolvingLibraryPaths,
+					getName()));
+			this.installLocation = installLocation;
+			this.variables = variables;
+			this.cacheKey = cacheKey;
+			this.persistentKey = persistentKey;
+			this.fingerprint = fingerprint;
+			this.stored = stored;
+			setSystem(true);
+			setPriority(DECORATE);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			final ArrayList<LibraryLocation> locations = new ArrayList<LibraryLocation>();
+			createLookupRunnable(installLocation, locations, variables).run(
+					monitor);
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			final LibraryLocation[] libs = correctLocations(locations, monitor);
+			if (libs.length == 0 || Arrays.equals(libs, stored)) {
+				return Status.OK_STATUS;
+			}
+			synchronized (AbstractInterpreterInstallType.this) {
+				if (fCachedLocations.get(cacheKey) != stored) {
+					// cleared or looked up again meanwhile
+					return Status.OK_STATUS;
+				}
+				fCachedLocations.put(cacheKey, libs);
+				LibraryLocationsCache.getDefault().put(persistentKey,
+						fingerprint, libs);
+			}
+			fireLibraryLocationsChanged(installLocation, stored, libs);
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Clears the default library locations of the interpreters with the
+	 * specified install location (with any environment variables), both
+	 * cached in memory and saved in the {@link LibraryLocationsCache}, so they
+	 * are looked up again when requested next time.
+	 * 
+	 * @since 5.1
+	 */
+	public synchronized void clearDefaultLibraryLocations(
+			IFileHandle installLocation) {
+		final String key = (String) makeKey(installLocation, null);
+		for (Iterator<Object> i = fCachedLocations.keySet().iterator(); i
+				.hasNext();) {
+			final String cached = (String) i.next();
+			if (cached.equals(key) || cached.startsWith(key + "|")) { //$NON-NLS-1$
+				i.remove();
+			}
+		}
+		LibraryLocationsCache.getDefault().removeWithVariables(
+				getId() + "|" + key); //$NON-NLS-1$
+	}
+
 	public static Object makeKey(IFileHandle installLocation,
 			EnvironmentVariable[] variables) {
 		String key = installLocation.getFullPath().toString();
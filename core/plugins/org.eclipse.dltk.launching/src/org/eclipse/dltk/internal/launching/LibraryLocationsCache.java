@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.launching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.launching.LibraryLocation;
+
+/**
+ * Persistent cache of the interpreter library locations, so they are not
+ * discovered by launching the interpreter after each restart.
+ *
+ * <p>
+ * Entries are keyed by the interpreter install type, install location and
+ * environment variables, and are valid only while the fingerprint (size,
+ * modification time and for the local interpreters the checksum of the
+ * beginning) of the interpreter executable is not changed.
+ * </p>
+ */
+public class LibraryLocationsCache {
+
+	private static final String FILE_NAME = "libraryLocations.dat"; //$NON-NLS-1$
+
+	private static final int FORMAT_VERSION = 1;
+
+	/** Number of the bytes of the executable included in the checksum */
+	private static final int CHECKSUM_LENGTH = 64 * 1024;
+
+	private static class Entry {
+		final String fingerprint;
+		final LibraryLocation[] locations;
+
+		Entry(String fingerprint, LibraryLocation[] locations) {
+			this.fingerprint = fingerprint;
+			this.locations = locations;
+		}
+	}
+
+	private static LibraryLocationsCache instance = null;
+
+	public static synchronized LibraryLocationsCache getDefault() {
+		if (instance == null) {
+			final DLTKLaunchingPlugin plugin = DLTKLaunchingPlugin.getDefault();
+			instance = new LibraryLocationsCache(plugin != null ? plugin
+					.getStateLocation().append(FILE_NAME).toFile() : null);
+		}
+		return instance;
+	}
+
+	private final File file;
+	private Map<String, Entry> entries;
+
+	public LibraryLocationsCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the fingerprint of the specified interpreter executable or
+	 * <code>null</code> if it could not be calculated.
+	 */
+	public static String fingerprint(IFileHandle installLocation) {
+		try {
+			if (!installLocation.exists()) {
+				return null;
+			}
+			final StringBuilder sb = new StringBuilder();
+			sb.append(installLocation.length());
+			sb.append(':');
+			sb.append(installLocation.lastModified());
+			if (installLocation.getEnvironment().isLocal()) {
+				final CRC32 crc = new CRC32();
+				final InputStream stream = installLocation
+						.openInputStream(null);
+				try {
+					final byte[] buffer = new byte[8192];
+					int total = 0;
+					int len;
+					while (total < CHECKSUM_LENGTH
+							&& (len = stream.read(buffer)) != -1) {
+						crc.update(buffer, 0, len);
+						total += len;
+					}
+				} finally {
+					stream.close();
+				}
+				sb.append(':');
+				sb.append(Long.toHexString(crc.getValue()));
+			}
+			return sb.toString();
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the stored library locations or <code>null</code> if there are
+	 * no locations for the specified key or they were saved for the different
+	 * fingerprint.
+	 */
+	public synchronized LibraryLocation[] get(String key, String fingerprint) {
+		if (fingerprint == null) {
+			return null;
+		}
+		final Entry entry = getEntries().get(key);
+		if (entry != null && fingerprint.equals(entry.fingerprint)) {
+			return entry.locations;
+		}
+		return null;
+	}
+
+	/**
+	 * Saves the library locations for the specified key and fingerprint.
+	 */
+	public synchronized void put(String key, String fingerprint,
+			LibraryLocation[] locations) {
+		if (fingerprint == null) {
+			return;
+		}
+		getEntries().put(key, new Entry(fingerprint, locations));
+		save();
+	}
+
+	/**
+	 * Returns the stored library locations for the specified key whatever
+	 * fingerprint they were saved for or <code>null</code> if there are no
+	 * locations for this key.
+	 */
+	public synchronized LibraryLocation[] get(String key) {
+		final Entry entry = getEntries().get(key);
+		return entry != null ? entry.locations : null;
+	}
+
+	public synchronized void remove(String key) {
+		if (getEntries().remove(key) != null) {
+			save();
+		}
+	}
+
+	/**
+	 * Removes the stored library locations for the specified key and for the
+	 * same key followed by the environment variables (separated by
+	 * <code>'|'</code>).
+	 */
+	public synchronized void removeWithVariables(String key) {
+		boolean changed = false;
+		for (Iterator<String> i = getEntries().keySet().iterator(); i
+				.hasNext();) {
+			final String k = i.next();
+			if (k.equals(key) || k.startsWith(key + "|")) { //$NON-NLS-1$
+				i.remove();
+				changed = true;
+			}
+		}
+		if (changed) {
+			save();
+		}
+	}
+
+	private Map<String, Entry> getEntries() {
+		if (entries == null) {
+			entries = new HashMap<String, Entry>();
+			if (file != null && file.exists()) {
+				try {
+					load();
+				} catch (Exception e) {
+					// ignore corrupted file, it will be rewritten
+					entries.clear();
+					if (DLTKCore.DEBUG) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		return entries;
+	}
+
+	private void load() throws IOException {
+		final DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (input.readInt() != FORMAT_VERSION) {
+				return;
+			}
+			final int count = input.readInt();
+			for (int i = 0; i < count; ++i) {
+				final String key = input.readUTF();
+				final String fingerprint = input.readUTF();
+				final LibraryLocation[] locations = new LibraryLocation[input
+						.readInt()];
+				for (int j = 0; j < locations.length; ++j) {
+					final IPath path = Path.fromPortableString(input.readUTF());
+					locations[j] = new LibraryLocation(path);
+				}
+				entries.put(key, new Entry(fingerprint, locations));
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private void save() {
+		if (file == null) {
+			return;
+		}
+		try {
+			final DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				output.writeInt(FORMAT_VERSION);
+				output.writeInt(entries.size());
+				for (Map.Entry<String, Entry> e : entries.entrySet()) {
+					output.writeUTF(e.getKey());
+					output.writeUTF(e.getValue().fingerprint);
+					final LibraryLocation[] locations = e.getValue().locations;
+					output.writeInt(locations.length);
+					for (LibraryLocation location : locations) {
+						output.writeUTF(location.getLibraryPath()
+								.toPortableString());
+					}
+				}
+			} finally {
+				output.close();
+			}
+		} catch (IOException e) {
+			DLTKLaunchingPlugin.log(e);
+		}
+	}
+
+}
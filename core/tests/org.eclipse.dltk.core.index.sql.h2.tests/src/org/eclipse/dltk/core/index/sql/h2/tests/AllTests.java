@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import junit.framework.JUnit4TestAdapter;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.dltk.internal.core.index.sql.h2.NGramIndexTest;
+
+public class AllTests {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite("org.eclipse.dltk.core.index.sql.h2.tests"); //$NON-NLS-1$
+		// $JUnit-BEGIN$
+		suite.addTest(new JUnit4TestAdapter(NGramIndexTest.class));
+		// $JUnit-END$
+		return suite;
+	}
+
+}
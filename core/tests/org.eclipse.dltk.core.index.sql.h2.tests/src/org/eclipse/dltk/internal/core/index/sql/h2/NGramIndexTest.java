@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class NGramIndexTest extends Assert {
+
+	private static final int TYPE = IModelElement.TYPE;
+	private static final int FILE_ID = -1000;
+
+	@Before
+	public void setUp() {
+		NGramIndex.clear();
+	}
+
+	/**
+	 * Removes the test elements from the shared cache, the n-gram indexes of
+	 * the other elements are built again when needed.
+	 */
+	@After
+	public void tearDown() {
+		H2Cache.deleteElementsByFileId(FILE_ID);
+		NGramIndex.clear();
+	}
+
+	private static void add(String name) {
+		H2Cache.addElement(new Element(TYPE, 0, 0, 0, 0, 0, name, null, null,
+				null, null, null, FILE_ID, false));
+	}
+
+	private static List<String> search(String pattern) {
+		final List<String> names = new ArrayList<String>();
+		for (Element element : H2Cache.searchElements(pattern,
+				MatchRule.PATTERN, TYPE, 0, 0, null, null,
+				new int[] { FILE_ID }, null, null, 0)) {
+			names.add(element.getName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	@Test
+	public void patternSearchBuildsIndex() {
+		add("FooBar");
+		add("BarBaz");
+		add("Qux");
+		assertNull(NGramIndex.find(TYPE));
+		assertEquals(Arrays.asList("FooBar"), search("*oba*"));
+		final NGramIndex index = NGramIndex.find(TYPE);
+		assertNotNull(index);
+		final List<String> candidates = index.match("*oba*",
+				Pattern.compile(".*oba.*"));
+		assertNotNull(candidates);
+		assertTrue(candidates.contains("foobar"));
+		assertFalse(candidates.contains("barbaz"));
+	}
+
+	@Test
+	public void addedNamesAreIndexed() {
+		add("FooBar");
+		assertEquals(Collections.emptyList(), search("*xyz*"));
+		add("AxyzB");
+		assertEquals(Arrays.asList("AxyzB"), search("*xyz*"));
+	}
+
+	@Test
+	public void sameMatchingAsCache() {
+		add("FooBar");
+		add("Fooar");
+		add("Qux");
+		assertEquals(Arrays.asList("FooBar", "Fooar"), search("foo?ar"));
+		// no literal part long enough to use the index
+		assertEquals(Arrays.asList("Qux"), search("Q*"));
+	}
+
+}
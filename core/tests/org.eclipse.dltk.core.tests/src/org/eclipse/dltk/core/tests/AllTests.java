@@ -14,25 +14,34 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.dltk.core.tests.builder.BuildParticipantManagerTests;
+import org.eclipse.dltk.core.tests.builder.ParallelBuildRunnerTests;
 import org.eclipse.dltk.core.tests.buildpath.BuildpathTests;
 import org.eclipse.dltk.core.tests.buildpath.SetContainerEventsTest;
+import org.eclipse.dltk.core.tests.cache.BinaryASTCacheTest;
 import org.eclipse.dltk.core.tests.cache.CacheTests;
+import org.eclipse.dltk.core.tests.cache.ElementCacheTest;
 import org.eclipse.dltk.core.tests.cache.SourceModuleInfoCacheTest;
 import org.eclipse.dltk.core.tests.compiler.CompilerCharOperationTests;
 import org.eclipse.dltk.core.tests.compiler.CompilerUtilTests;
 import org.eclipse.dltk.core.tests.ddp.CoreDDPTests;
+import org.eclipse.dltk.core.tests.ddp.GoalEngineTests;
 import org.eclipse.dltk.core.tests.launching.EnvironmentResolverTests;
 import org.eclipse.dltk.core.tests.launching.InterpreterConfigTests;
+import org.eclipse.dltk.core.tests.launching.LibraryLocationsCacheTests;
 import org.eclipse.dltk.core.tests.mixin.MixinIndexTests;
+import org.eclipse.dltk.core.tests.mixin.MixinKeyTrieTests;
 import org.eclipse.dltk.core.tests.mixin.MixinModelTests;
+import org.eclipse.dltk.core.tests.model.ArchivePoolTest;
 import org.eclipse.dltk.core.tests.model.BufferTests;
 import org.eclipse.dltk.core.tests.model.ModelMembersTests;
 import org.eclipse.dltk.core.tests.model.NamespaceTests;
 import org.eclipse.dltk.core.tests.model.WorkingCopyTests;
 import org.eclipse.dltk.core.tests.parser.SourceParserTests;
 import org.eclipse.dltk.core.tests.search.Bug387751Test;
+import org.eclipse.dltk.core.tests.search.DiskIndexTests;
 import org.eclipse.dltk.core.tests.util.CharacterStackTests;
 import org.eclipse.dltk.core.tests.utils.CharOperationTests;
+import org.eclipse.dltk.core.tests.utils.ExpiringLRUCacheTests;
 import org.eclipse.dltk.core.tests.utils.IntListTests;
 import org.eclipse.dltk.core.tests.utils.InternalCoreUtilTest;
 import org.eclipse.dltk.core.tests.utils.TextUtilsTest;
@@ -43,6 +52,7 @@ public class AllTests {
 		TestSuite suite = new TestSuite("org.eclipse.dltk.core.tests.model");
 		// $JUnit-BEGIN$
 		suite.addTest(new TestSuite(BuildParticipantManagerTests.class));
+		suite.addTestSuite(ParallelBuildRunnerTests.class);
 		suite.addTest(BuildpathTests.suite());
 
 		suite.addTest(new TestSuite(CacheTests.class));
@@ -50,13 +60,17 @@ public class AllTests {
 		suite.addTest(new TestSuite(CompilerUtilTests.class));
 		suite.addTest(new TestSuite(CompilerCharOperationTests.class));
 		suite.addTestSuite(IntListTests.class);
+		suite.addTestSuite(ExpiringLRUCacheTests.class);
 
 		suite.addTest(CoreDDPTests.suite());
+		suite.addTestSuite(GoalEngineTests.class);
 
 		suite.addTest(EnvironmentResolverTests.suite());
 		suite.addTest(InterpreterConfigTests.suite());
+		suite.addTestSuite(LibraryLocationsCacheTests.class);
 
 		suite.addTest(new TestSuite(MixinIndexTests.class));
+		suite.addTest(new TestSuite(MixinKeyTrieTests.class));
 		suite.addTest(new TestSuite(MixinModelTests.class));
 
 		suite.addTest(BufferTests.suite());
@@ -72,7 +86,11 @@ public class AllTests {
 		suite.addTest(new TestSuite(InternalCoreUtilTest.class));
 		suite.addTest(TextUtilsTest.suite());
 		suite.addTest(new JUnit4TestAdapter(Bug387751Test.class));
+		suite.addTest(new JUnit4TestAdapter(DiskIndexTests.class));
 		suite.addTest(new JUnit4TestAdapter(SourceModuleInfoCacheTest.class));
+		suite.addTest(new JUnit4TestAdapter(BinaryASTCacheTest.class));
+		suite.addTest(new JUnit4TestAdapter(ElementCacheTest.class));
+		suite.addTest(new JUnit4TestAdapter(ArchivePoolTest.class));
 		suite.addTest(new JUnit4TestAdapter(SetContainerEventsTest.class));
 		// $JUnit-END$
 		return suite;
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.internal.core.builder.ParallelBuildRunner;
+
+public class ParallelBuildRunnerTests extends TestCase {
+
+	private static final int THREADS = 4;
+
+	private class TestRunner extends ParallelBuildRunner<Integer, String> {
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger started = new AtomicInteger();
+		final List<Integer> built = new ArrayList<Integer>();
+		final Thread owner = Thread.currentThread();
+		int failing = -1;
+		int canceling = -1;
+		IProgressMonitor monitor;
+
+		TestRunner() {
+			super(THREADS);
+		}
+
+		@Override
+		protected String buildConcurrently(Integer item) {
+			assertNotSame(owner, Thread.currentThread());
+			started.incrementAndGet();
+			active.incrementAndGet();
+			try {
+				// some items complete after the following ones
+				Thread.sleep(item % THREADS == 0 ? 10 : 1);
+			} catch (InterruptedException e) {
+				fail();
+			} finally {
+				active.decrementAndGet();
+			}
+			if (item.intValue() == failing) {
+				throw new IllegalStateException(String.valueOf(item));
+			}
+			return String.valueOf(item);
+		}
+
+		@Override
+		protected void buildSequentially(Integer item, String result) {
+			assertSame(owner, Thread.currentThread());
+			assertEquals(String.valueOf(item), result);
+			built.add(item);
+			if (item.intValue() == canceling) {
+				monitor.setCanceled(true);
+			}
+		}
+
+		void run(int count) {
+			final List<Integer> items = new ArrayList<Integer>();
+			for (int i = 0; i < count; ++i) {
+				items.add(i);
+			}
+			monitor = new NullProgressMonitor();
+			run(items, monitor);
+		}
+	}
+
+	private static List<Integer> range(int count) {
+		final List<Integer> result = new ArrayList<Integer>();
+		for (int i = 0; i < count; ++i) {
+			result.add(i);
+		}
+		return result;
+	}
+
+	public void testOrder() {
+		final TestRunner runner = new TestRunner();
+		runner.run(100);
+		assertEquals(range(100), runner.built);
+		assertEquals(100, runner.started.get());
+	}
+
+	public void testFailure() throws InterruptedException {
+		final TestRunner runner = new TestRunner();
+		runner.failing = 50;
+		try {
+			runner.run(100);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("50", e.getMessage());
+		}
+		// the results before the failed one are completed in order
+		assertEquals(range(50), runner.built);
+		// the worker threads are terminated
+		assertEquals(0, runner.active.get());
+		final int started = runner.started.get();
+		assertTrue(started < 100);
+		Thread.sleep(50);
+		assertEquals(started, runner.started.get());
+	}
+
+	public void testCancel() throws InterruptedException {
+		final TestRunner runner = new TestRunner();
+		runner.canceling = 10;
+		runner.run(100);
+		assertEquals(range(11), runner.built);
+		assertEquals(0, runner.active.get());
+		final int started = runner.started.get();
+		assertTrue(started < 100);
+		Thread.sleep(50);
+		assertEquals(started, runner.started.get());
+	}
+
+}
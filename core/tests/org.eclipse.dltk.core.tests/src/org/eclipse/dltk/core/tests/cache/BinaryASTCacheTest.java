@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.dltk.ast.parser.IASTCache.ASTCacheEntry;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.IProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.caching.AbstractBinaryASTCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryASTCacheTest extends Assert {
+
+	private static final long STAMP = 1234567890L;
+
+	private static class NamedModule implements IModuleDeclaration {
+		final String name;
+
+		NamedModule(String name) {
+			this.name = name;
+		}
+	}
+
+	private static class TestASTCache extends AbstractBinaryASTCache {
+		int version = 1;
+
+		@Override
+		protected int getVersion() {
+			return version;
+		}
+
+		@Override
+		protected void writeModule(IModuleDeclaration module,
+				DataOutput output) throws IOException {
+			output.writeUTF(((NamedModule) module).name);
+		}
+
+		@Override
+		protected IModuleDeclaration readModule(ISourceModule module,
+				DataInput input) throws IOException {
+			return new NamedModule(input.readUTF());
+		}
+
+		byte[] encode(String name, ProblemCollector problems)
+				throws IOException {
+			return encode(STAMP, new NamedModule(name), problems);
+		}
+
+		ASTCacheEntry decode(byte[] data) throws IOException {
+			return decode(STAMP, data);
+		}
+
+		ASTCacheEntry decode(long stamp, byte[] data) throws IOException {
+			return decode(null, stamp, data);
+		}
+	}
+
+	@Test
+	public void roundtrip() throws IOException {
+		final TestASTCache cache = new TestASTCache();
+		final ProblemCollector problems = new ProblemCollector();
+		problems.reportProblem(new DefaultProblem("a.txt", "Error", 0,
+				new String[] { "x" }, ProblemSeverity.ERROR, 1, 5, 2));
+		problems.reportTask("TODO check", 3, 1, 10, 20);
+		final ASTCacheEntry entry = cache.decode(cache.encode("module",
+				problems));
+		assertNotNull(entry);
+		assertEquals("module", ((NamedModule) entry.module).name);
+		final List<IProblem> restored = entry.problems.getProblems();
+		assertEquals(2, restored.size());
+		assertEquals("Error", restored.get(0).getMessage());
+		assertEquals(ProblemSeverity.ERROR, restored.get(0).getSeverity());
+		assertEquals(1, restored.get(0).getSourceStart());
+		assertEquals(5, restored.get(0).getSourceEnd());
+		assertEquals("TODO check", restored.get(1).getMessage());
+		assertEquals(3, restored.get(1).getSourceLineNumber());
+	}
+
+	@Test
+	public void stampAndVersion() throws IOException {
+		final TestASTCache cache = new TestASTCache();
+		final byte[] data = cache.encode("module", null);
+		assertNull(cache.decode(STAMP + 1, data));
+		cache.version = 2;
+		assertNull(cache.decode(data));
+	}
+
+	@Test
+	public void damaged() throws IOException {
+		final TestASTCache cache = new TestASTCache();
+		final byte[] data = cache.encode("module", null);
+		final byte[] truncated = new byte[data.length - 1];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		assertNull(cache.decode(truncated));
+		final byte[] modified = data.clone();
+		modified[modified.length - 6] ^= 1;
+		assertNull(cache.decode(modified));
+		assertNull(cache.decode(new byte[0]));
+	}
+
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.dltk.internal.core.ElementCache;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ElementCacheTest extends Assert {
+
+	private static class TestCache extends ElementCache {
+		public TestCache(int size) {
+			super(size);
+		}
+
+		@Override
+		protected boolean close(LRUCacheEntry entry) {
+			return true;
+		}
+	}
+
+	@Test
+	public void concurrentReadsSeeModifications() {
+		final ElementCache cache = new TestCache(10);
+		cache.put("a", "A");
+		assertEquals("A", cache.getConcurrent("a"));
+		assertEquals("A", cache.peekConcurrent("a"));
+		cache.put("a", "A2");
+		assertEquals("A2", cache.getConcurrent("a"));
+		cache.remove("a");
+		assertNull(cache.getConcurrent("a"));
+		cache.put("b", "B");
+		cache.flush();
+		assertNull(cache.peekConcurrent("b"));
+	}
+
+	@Test
+	public void concurrentReadsUpdateOrder() {
+		final ElementCache cache = new TestCache(4);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.put("c", "C");
+		cache.put("d", "D");
+		assertEquals("A", cache.getConcurrent("a"));
+		// makes space for 2 entries evicting the least recently used ones
+		cache.put("e", "E");
+		assertEquals("A", cache.peekConcurrent("a"));
+		assertNull(cache.peekConcurrent("b"));
+		assertNull(cache.peekConcurrent("c"));
+		assertEquals("E", cache.peekConcurrent("e"));
+	}
+
+	private static final int THREADS = 4;
+	private static final int KEYS = 256;
+	private static final int WRITES = 20000;
+
+	/**
+	 * Reads the cache without locking while it is modified, the values read
+	 * should always belong to their keys and the concurrent view should match
+	 * the LRU cache when the modifications are done.
+	 */
+	@Test
+	public void concurrentReadsAreConsistent() throws Exception {
+		final ElementCache cache = new TestCache(KEYS / 4);
+		final AtomicBoolean done = new AtomicBoolean();
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; ++t) {
+				readers.add(executor.submit(new Callable<Integer>() {
+					public Integer call() {
+						int found = 0;
+						for (int i = 0; !done.get(); ++i) {
+							final String key = String.valueOf(i % KEYS);
+							final Object value = cache.getConcurrent(key);
+							if (value != null) {
+								assertTrue(value + " read by " + key,
+										((String) value).startsWith(key + ":"));
+								++found;
+							}
+						}
+						return found;
+					}
+				}));
+			}
+			try {
+				for (int i = 0; i < WRITES; ++i) {
+					final String key = String.valueOf(i % KEYS);
+					synchronized (cache) {
+						if (i % 3 == 0) {
+							cache.remove(key);
+						} else {
+							cache.put(key, key + ":" + i);
+						}
+					}
+				}
+			} finally {
+				done.set(true);
+			}
+			for (Future<Integer> reader : readers) {
+				reader.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		synchronized (cache) {
+			cache.get("0");
+			assertTrue(cache.getCurrentSpace() <= cache.getSpaceLimit());
+			for (int i = 0; i < KEYS; ++i) {
+				final String key = String.valueOf(i);
+				assertEquals(key, cache.peek(key), cache.peekConcurrent(key));
+			}
+		}
+	}
+
+	/**
+	 * System property enabling {@link #contention()}
+	 */
+	private static final String BENCHMARK_PROPERTY = "org.eclipse.dltk.core.tests.benchmark";
+
+	private static final int READER_THREADS = 8;
+	private static final int READS = 200000;
+
+	private long measure(final ElementCache cache, final boolean concurrent)
+			throws Exception {
+		final ExecutorService executor = Executors
+				.newFixedThreadPool(READER_THREADS);
+		try {
+			final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+			for (int t = 0; t < READER_THREADS; ++t) {
+				tasks.add(new Callable<Integer>() {
+					public Integer call() {
+						int found = 0;
+						for (int i = 0; i < READS; ++i) {
+							final String key = String.valueOf(i % KEYS);
+							final Object value;
+							if (concurrent) {
+								value = cache.getConcurrent(key);
+							} else {
+								synchronized (cache) {
+									value = cache.get(key);
+								}
+							}
+							if (value != null) {
+								++found;
+							}
+						}
+						return found;
+					}
+				});
+			}
+			final long start = System.nanoTime();
+			for (Future<Integer> future : executor.invokeAll(tasks)) {
+				assertEquals(READS, future.get().intValue());
+			}
+			return (System.nanoTime() - start) / 1000000;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Compares the reads under the cache lock (as ModelManager.getInfo() did)
+	 * with the concurrent reads. It is a benchmark rather than a test, so it
+	 * is skipped unless the {@value #BENCHMARK_PROPERTY} system property is
+	 * <code>true</code>.
+	 */
+	@Test
+	public void contention() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+		final ElementCache cache = new TestCache(KEYS * 2);
+		for (int i = 0; i < KEYS; ++i) {
+			cache.put(String.valueOf(i), new Object());
+		}
+		final long locked = measure(cache, false);
+		final long concurrent = measure(cache, true);
+		System.out.println("ElementCache " + READER_THREADS + " threads x "
+				+ READS + " reads: synchronized " + locked
+				+ "ms, concurrent " + concurrent + "ms");
+	}
+
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.ddp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.IContext;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+
+@SuppressWarnings("nls")
+public class GoalEngineTests extends TestCase {
+
+	/**
+	 * The goal evaluated to the sum of its leaves, the leaf value is the
+	 * number of the leaf.
+	 */
+	private static class SumGoal implements IGoal {
+		final String name;
+		final SumGoal[] children;
+		final int value;
+
+		SumGoal(String name, int value) {
+			this.name = name;
+			this.children = new SumGoal[0];
+			this.value = value;
+		}
+
+		SumGoal(String name, SumGoal... children) {
+			this.name = name;
+			this.children = children;
+			this.value = 0;
+		}
+
+		public IContext getContext() {
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Records the calls made by the engine and checks they are consistent.
+	 */
+	private class SumEvaluator extends GoalEvaluator {
+		final List<IGoal> received = new ArrayList<IGoal>();
+		int sum;
+
+		SumEvaluator(SumGoal goal) {
+			super(goal);
+		}
+
+		@Override
+		public IGoal[] init() {
+			final SumGoal goal = (SumGoal) this.goal;
+			active.incrementAndGet();
+			try {
+				if (goal.name.equals(failing)) {
+					throw GoalEngineTests
+							.<RuntimeException> sneakyThrow(failure);
+				}
+				if (goal.children.length == 0) {
+					try {
+						Thread.sleep(5);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return goal.children;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			assertEquals(GoalState.DONE, state);
+			assertFalse(received.contains(subgoal));
+			assertTrue(contains(((SumGoal) goal).children, subgoal));
+			received.add(subgoal);
+			sum += ((Integer) result).intValue();
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			final SumGoal goal = (SumGoal) this.goal;
+			if (goal.children.length == 0) {
+				produced.add(goal.name);
+				return goal.value;
+			}
+			// all the subgoals are reported before the result is requested
+			assertEquals(goal.children.length, received.size());
+			produced.add(goal.name);
+			return sum;
+		}
+	}
+
+	private final IGoalEvaluatorFactory factory = new IGoalEvaluatorFactory() {
+		public GoalEvaluator createEvaluator(IGoal goal) {
+			return new SumEvaluator((SumGoal) goal);
+		}
+	};
+
+	final AtomicInteger active = new AtomicInteger();
+	final List<String> produced = Collections
+			.synchronizedList(new ArrayList<String>());
+	String failing;
+	Throwable failure;
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	static boolean contains(IGoal[] goals, IGoal goal) {
+		for (IGoal g : goals) {
+			if (g == goal) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the tree of the specified depth with the leaves numbered from 1
+	 */
+	private static SumGoal tree(String name, int depth, int width,
+			int[] counter) {
+		if (depth == 0) {
+			return new SumGoal(name, ++counter[0]);
+		}
+		final SumGoal[] children = new SumGoal[width];
+		for (int i = 0; i < width; ++i) {
+			children[i] = tree(name + "." + i, depth - 1, width, counter);
+		}
+		return new SumGoal(name, children);
+	}
+
+	public void testSerial() {
+		final SumGoal root = tree("r", 3, 4, new int[1]);
+		assertEquals(Integer.valueOf(64 * 65 / 2), new GoalEngine(factory)
+				.evaluateGoal(root, null));
+		assertEquals(1 + 4 + 16 + 64, produced.size());
+	}
+
+	public void testParallel() {
+		final SumGoal root = tree("r", 3, 4, new int[1]);
+		assertEquals(Integer.valueOf(64 * 65 / 2), new GoalEngine(factory,
+				executor).evaluateGoal(root, null));
+		assertEquals(1 + 4 + 16 + 64, produced.size());
+		// the parents are produced after their subgoals
+		for (int i = 0; i < produced.size(); ++i) {
+			final String name = produced.get(i);
+			for (int j = i + 1; j < produced.size(); ++j) {
+				assertFalse(produced.get(j).startsWith(name + "."));
+			}
+		}
+		assertEquals("r", produced.get(produced.size() - 1));
+	}
+
+	public void testSharedSubgoal() {
+		final SumGoal shared = new SumGoal("s", 5);
+		final SumGoal root = new SumGoal("r", new SumGoal("a", shared),
+				new SumGoal("b", shared), shared);
+		assertEquals(Integer.valueOf(15), new GoalEngine(factory, executor)
+				.evaluateGoal(root, null));
+		assertEquals(1, Collections.frequency(produced, "s"));
+	}
+
+	public void testRuntimeException() {
+		final SumGoal root = tree("r", 2, 8, new int[1]);
+		failing = "r.3.5";
+		failure = new IllegalStateException();
+		try {
+			new GoalEngine(factory, executor).evaluateGoal(root, null);
+			fail();
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+		// the running tasks are completed before returning
+		assertEquals(0, active.get());
+		assertFalse(produced.contains("r"));
+	}
+
+	public void testCheckedException() {
+		final SumGoal root = tree("r", 2, 8, new int[1]);
+		failing = "r.3";
+		failure = new IOException();
+		try {
+			new GoalEngine(factory, executor).evaluateGoal(root, null);
+			fail();
+		} catch (RuntimeException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertEquals(0, active.get());
+		assertFalse(produced.contains("r"));
+	}
+
+	public void testError() {
+		final SumGoal root = tree("r", 1, 8, new int[1]);
+		failing = "r";
+		failure = new AssertionError();
+		try {
+			new GoalEngine(factory, executor).evaluateGoal(root, null);
+			fail();
+		} catch (AssertionError e) {
+			assertSame(failure, e);
+		}
+		assertEquals(0, active.get());
+	}
+
+	/**
+	 * Throws the checked exception without declaring it, as the evaluators
+	 * implemented in other languages may do.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Throwable> RuntimeException sneakyThrow(Throwable e)
+			throws T {
+		throw (T) e;
+	}
+
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.launching;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.internal.environment.LocalEnvironment;
+import org.eclipse.dltk.internal.launching.LibraryLocationsCache;
+import org.eclipse.dltk.launching.LibraryLocation;
+
+@SuppressWarnings("nls")
+public class LibraryLocationsCacheTests extends TestCase {
+
+	private static final String KEY = "type|/usr/bin/tclsh";
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("libraryLocations", ".dat");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static LibraryLocation[] locations(String... paths) {
+		final LibraryLocation[] result = new LibraryLocation[paths.length];
+		for (int i = 0; i < paths.length; ++i) {
+			result[i] = new LibraryLocation(EnvironmentPathUtils.getFullPath(
+					LocalEnvironment.ENVIRONMENT_ID, new Path(paths[i])));
+		}
+		return result;
+	}
+
+	public void testRoundTrip() {
+		final LibraryLocation[] libs = locations("/usr/lib/tcl8.5",
+				"/usr/share/tcltk");
+		new LibraryLocationsCache(file).put(KEY, "1:2:ab", libs);
+		new LibraryLocationsCache(file).put(KEY + "|A:1", "1:2:ab",
+				locations("/opt/tcl"));
+		final LibraryLocationsCache cache = new LibraryLocationsCache(file);
+		assertTrue(Arrays.equals(libs, cache.get(KEY, "1:2:ab")));
+		assertTrue(Arrays.equals(locations("/opt/tcl"), cache.get(KEY
+				+ "|A:1", "1:2:ab")));
+		assertNull(cache.get("type|/usr/bin/wish", "1:2:ab"));
+	}
+
+	public void testFingerprintMismatch() {
+		final LibraryLocation[] libs = locations("/usr/lib/tcl8.5");
+		new LibraryLocationsCache(file).put(KEY, "1:2:ab", libs);
+		final LibraryLocationsCache cache = new LibraryLocationsCache(file);
+		assertNull(cache.get(KEY, "1:3:ab"));
+		assertNull(cache.get(KEY, null));
+		// still available to detect the changed locations
+		assertTrue(Arrays.equals(libs, cache.get(KEY)));
+		final LibraryLocation[] changed = locations("/usr/lib/tcl8.6");
+		cache.put(KEY, "1:3:ab", changed);
+		assertNull(new LibraryLocationsCache(file).get(KEY, "1:2:ab"));
+		assertTrue(Arrays.equals(changed, new LibraryLocationsCache(file)
+				.get(KEY, "1:3:ab")));
+	}
+
+	public void testCorruptedFile() throws IOException {
+		final FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(new byte[] { 0, 0, 0, 1, 0, 0, 0, 5, 1, 2, 3 });
+		} finally {
+			output.close();
+		}
+		final LibraryLocationsCache cache = new LibraryLocationsCache(file);
+		assertNull(cache.get(KEY, "1:2:ab"));
+		final LibraryLocation[] libs = locations("/usr/lib/tcl8.5");
+		cache.put(KEY, "1:2:ab", libs);
+		assertTrue(Arrays.equals(libs, new LibraryLocationsCache(file).get(
+				KEY, "1:2:ab")));
+	}
+
+	public void testTruncatedFile() throws IOException {
+		new LibraryLocationsCache(file).put(KEY, "1:2:ab",
+				locations("/usr/lib/tcl8.5"));
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() - 3);
+		} finally {
+			raf.close();
+		}
+		assertNull(new LibraryLocationsCache(file).get(KEY, "1:2:ab"));
+	}
+
+	public void testRemoveWithVariables() {
+		final LibraryLocationsCache cache = new LibraryLocationsCache(file);
+		cache.put(KEY, "1:2:ab", locations("/a"));
+		cache.put(KEY + "|A:1", "1:2:ab", locations("/b"));
+		cache.put(KEY + "8.5", "1:2:ab", locations("/c"));
+		cache.removeWithVariables(KEY);
+		final LibraryLocationsCache loaded = new LibraryLocationsCache(file);
+		assertNull(loaded.get(KEY));
+		assertNull(loaded.get(KEY + "|A:1"));
+		assertNotNull(loaded.get(KEY + "8.5"));
+	}
+
+}
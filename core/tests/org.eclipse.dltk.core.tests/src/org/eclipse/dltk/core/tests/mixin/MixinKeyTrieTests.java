@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.mixin;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.internal.core.mixin.MixinKeyTrie;
+
+/**
+ * Tests for the {@link MixinKeyTrie} class.
+ */
+public class MixinKeyTrieTests extends TestCase {
+
+	private static final char SEPARATOR = '{';
+
+	private MixinKeyTrie<String> trie;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		trie = new MixinKeyTrie<String>(SEPARATOR);
+		final Map<String, List<String>> keys = new HashMap<String, List<String>>();
+		keys.put("m1", Arrays.asList("Foo", "Foo{bar", "Foo{baz", "Fob"));
+		keys.put("m2", Arrays.asList("Foo{bar", "Foo{Inner{x", "Zed"));
+		trie.load(keys, trie.getVersion());
+	}
+
+	private Set<String> keys(String prefix, boolean isPrefix) {
+		final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+		trie.find(prefix, isPrefix, result);
+		final Set<String> keys = new HashSet<String>();
+		for (Set<String> moduleKeys : result.values()) {
+			keys.addAll(moduleKeys);
+		}
+		return keys;
+	}
+
+	private static Set<String> set(String... values) {
+		return new HashSet<String>(Arrays.asList(values));
+	}
+
+	public void testFind() {
+		assertEquals(6, trie.size());
+		assertEquals(set("Foo", "Foo{bar", "Foo{baz", "Foo{Inner{x", "Fob"),
+				keys("Fo", true));
+		assertEquals(set("Foo{bar", "Foo{baz"), keys("Foo{ba", true));
+		assertEquals(set("Foo{bar"), keys("Foo{bar", false));
+		assertEquals(Collections.emptySet(), keys("Foo{ba", false));
+		assertEquals(Collections.emptySet(), keys("Q", true));
+		final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+		trie.find("Foo{bar", false, result);
+		assertEquals(set("m1", "m2"), result.keySet());
+	}
+
+	public void testExists() {
+		assertTrue(trie.exists("Foo"));
+		assertTrue(trie.exists("Foo{Inner"));
+		assertTrue(trie.exists("Foo{Inner{x"));
+		assertFalse(trie.exists("Fo"));
+		assertFalse(trie.exists("Foo{Inn"));
+	}
+
+	public void testChildKeys() {
+		assertEquals(set("Foo{bar", "Foo{baz", "Foo{Inner"),
+				trie.findChildKeys("Foo"));
+		assertEquals(set("Foo{Inner{x"), trie.findChildKeys("Foo{Inner"));
+		assertEquals(Collections.emptySet(), trie.findChildKeys("Fob"));
+	}
+
+	public void testUpdate() {
+		trie.markStale("m2");
+		assertEquals(Arrays.asList("m2"), trie.takeStaleModules());
+		assertFalse(trie.exists("Zed"));
+		assertFalse(trie.exists("Foo{Inner"));
+		assertEquals(set("Foo{bar"), keys("Foo{bar", false));
+		final Map<String, List<String>> keys = new HashMap<String, List<String>>();
+		keys.put("m2", Arrays.asList("Zed{y"));
+		trie.update(Arrays.asList("m2"), keys, trie.getVersion());
+		assertTrue(trie.exists("Zed"));
+		assertEquals(set("Zed{y"), trie.findChildKeys("Zed"));
+		assertEquals(5, trie.size());
+	}
+
+	public void testReset() {
+		final long version = trie.getVersion();
+		trie.reset();
+		assertFalse(trie.isLoaded());
+		final Map<String, List<String>> keys = new HashMap<String, List<String>>();
+		keys.put("m1", Arrays.asList("Foo"));
+		// loaded before the reset, so ignored
+		trie.load(keys, version);
+		assertFalse(trie.isLoaded());
+		assertEquals(0, trie.size());
+	}
+
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.dltk.core.IArchive;
+import org.eclipse.dltk.core.IArchiveEntry;
+import org.eclipse.dltk.internal.core.ArchivePool;
+import org.eclipse.dltk.internal.core.ZipArchiveFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchivePoolTest extends Assert {
+
+	private static final String STORED = "a/stored.txt";
+	private static final String DEFLATED = "a/b/deflated.txt";
+
+	private File file;
+	private int openCount;
+
+	private final ArchivePool.Opener opener = new ArchivePool.Opener() {
+		public IArchive open(File file) throws IOException {
+			++openCount;
+			return new ZipArchiveFile(file);
+		}
+	};
+
+	@Before
+	public void createArchive() throws IOException {
+		file = File.createTempFile("archive", ".zip");
+		writeArchive(file, "Hello");
+	}
+
+	@After
+	public void deleteArchive() {
+		file.delete();
+	}
+
+	private static void writeArchive(File file, String content)
+			throws IOException {
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(
+				file));
+		try {
+			final byte[] bytes = content.getBytes("UTF-8");
+			final ZipEntry stored = new ZipEntry(STORED);
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(bytes.length);
+			final CRC32 crc = new CRC32();
+			crc.update(bytes);
+			stored.setCrc(crc.getValue());
+			zip.putNextEntry(stored);
+			zip.write(bytes);
+			zip.closeEntry();
+			zip.putNextEntry(new ZipEntry(DEFLATED));
+			for (int i = 0; i < 100; ++i) {
+				zip.write(bytes);
+			}
+			zip.closeEntry();
+		} finally {
+			zip.close();
+		}
+	}
+
+	private static String read(IArchive archive, String name)
+			throws IOException {
+		final IArchiveEntry entry = archive.getArchiveEntry(name);
+		final InputStream stream = archive.getInputStream(entry);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[100];
+			int len;
+			while ((len = stream.read(buffer)) != -1) {
+				out.write(buffer, 0, len);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void readEntries() throws IOException {
+		final IArchive archive = new ZipArchiveFile(file);
+		try {
+			final List<String> names = new ArrayList<String>();
+			for (Enumeration<? extends IArchiveEntry> e = archive
+					.getArchiveEntries(); e.hasMoreElements();) {
+				names.add(e.nextElement().getName());
+			}
+			assertEquals(2, names.size());
+			assertTrue(names.contains(STORED));
+			assertTrue(names.contains(DEFLATED));
+			assertEquals("Hello", read(archive, STORED));
+			final String deflated = read(archive, DEFLATED);
+			assertEquals(500, deflated.length());
+			assertTrue(deflated.startsWith("HelloHello"));
+		} finally {
+			archive.close();
+		}
+	}
+
+	@Test
+	public void sharedHandles() throws IOException {
+		final ArchivePool pool = new ArchivePool();
+		final IArchive first = pool.acquire(file, opener);
+		final IArchive second = pool.acquire(file, opener);
+		assertEquals(1, openCount);
+		first.close();
+		first.close();
+		assertEquals("Hello", read(second, STORED));
+		second.close();
+		try {
+			second.getArchiveEntry(STORED);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		// idle archive is reused
+		final IArchive third = pool.acquire(file, opener);
+		assertEquals(1, openCount);
+		third.close();
+		pool.clear();
+		assertEquals(0, pool.getOpenCount());
+	}
+
+	@Test
+	public void reopenModified() throws IOException {
+		final ArchivePool pool = new ArchivePool();
+		final IArchive first = pool.acquire(file, opener);
+		writeArchive(file, "Modified");
+		file.setLastModified(file.lastModified() + 2000);
+		final IArchive second = pool.acquire(file, opener);
+		assertEquals(2, openCount);
+		assertEquals("Modified", read(second, STORED));
+		first.close();
+		second.close();
+		assertEquals(1, pool.getOpenCount());
+		pool.clear();
+	}
+
+	@Test
+	public void evictIdle() throws IOException {
+		final ArchivePool pool = new ArchivePool(1);
+		final File other = File.createTempFile("archive", ".zip");
+		try {
+			writeArchive(other, "Other");
+			pool.acquire(file, opener).close();
+			pool.acquire(other, opener).close();
+			assertEquals(1, pool.getOpenCount());
+			pool.acquire(file, opener).close();
+			assertEquals(3, openCount);
+			pool.clear();
+		} finally {
+			other.delete();
+		}
+	}
+
+	@Test
+	public void closeIdle() throws IOException {
+		final ArchivePool pool = new ArchivePool();
+		final IArchive archive = pool.acquire(file, opener);
+		pool.closeIdle(0);
+		assertEquals(1, pool.getOpenCount());
+		assertEquals("Hello", read(archive, STORED));
+		archive.close();
+		pool.closeIdle(60 * 1000);
+		assertEquals(1, pool.getOpenCount());
+		pool.closeIdle(0);
+		assertEquals(0, pool.getOpenCount());
+		pool.acquire(file, opener).close();
+		assertEquals(2, openCount);
+		pool.clear();
+	}
+
+}
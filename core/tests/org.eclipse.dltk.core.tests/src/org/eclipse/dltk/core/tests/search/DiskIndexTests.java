@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the queries on the sorted category tables of the saved index.
+ */
+public class DiskIndexTests extends Assert {
+
+	private static final char[] CATEGORY = "TYPE".toCharArray();
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private Index index;
+
+	@Before
+	public void createIndex() throws IOException {
+		final File file = new File(temp.getRoot(), "test.index");
+		index = new Index(file.getAbsolutePath(), "test", false);
+		for (int i = 0; i < 200; ++i) {
+			add("Word" + i, "doc" + (i % 7));
+		}
+		add("FileHandler", "handler.rb");
+		add("FileHelper", "helper.rb");
+		add("fileUtils", "utils.rb");
+		add("FooBar", "foo.rb");
+		index.save();
+	}
+
+	private void add(String word, String document) {
+		index.addIndexEntry(CATEGORY, word.toCharArray(), document);
+	}
+
+	private Set<String> query(String key, int matchRule) throws IOException {
+		final Set<String> words = new TreeSet<String>();
+		index.startQuery();
+		try {
+			final EntryResult[] results = index.query(
+					new char[][] { CATEGORY }, key.toCharArray(), matchRule);
+			if (results != null) {
+				for (EntryResult result : results) {
+					assertTrue(result.getDocumentNames(index).length != 0);
+					words.add(new String(result.getWord()));
+				}
+			}
+		} finally {
+			index.stopQuery();
+		}
+		return words;
+	}
+
+	private static Set<String> set(String... words) {
+		final Set<String> result = new TreeSet<String>();
+		for (String word : words) {
+			result.add(word);
+		}
+		return result;
+	}
+
+	@Test
+	public void exactMatch() throws IOException {
+		assertEquals(set("FileHelper"), query("FileHelper",
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set("Word150"), query("Word150",
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set(), query("Word1500", SearchPattern.R_EXACT_MATCH
+				| SearchPattern.R_CASE_SENSITIVE));
+	}
+
+	@Test
+	public void prefixMatch() throws IOException {
+		assertEquals(set("FileHandler", "FileHelper"), query("File",
+				SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set("Word19", "Word190", "Word191", "Word192", "Word193",
+				"Word194", "Word195", "Word196", "Word197", "Word198",
+				"Word199"), query("Word19", SearchPattern.R_PREFIX_MATCH
+				| SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set(), query("A", SearchPattern.R_PREFIX_MATCH
+				| SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set(), query("zzz", SearchPattern.R_PREFIX_MATCH
+				| SearchPattern.R_CASE_SENSITIVE));
+	}
+
+	@Test
+	public void prefixMatchIgnoreCase() throws IOException {
+		assertEquals(set("FileHandler", "FileHelper", "fileUtils"), query(
+				"file", SearchPattern.R_PREFIX_MATCH));
+		assertEquals(set("FileHelper"), query("FILEHELPER",
+				SearchPattern.R_EXACT_MATCH));
+	}
+
+	@Test
+	public void camelCaseMatch() throws IOException {
+		assertEquals(set("FileHandler", "FileHelper"), query("FH",
+				SearchPattern.R_CAMELCASE_MATCH
+						| SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set("FileHandler"), query("FHa",
+				SearchPattern.R_CAMELCASE_MATCH
+						| SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(set("FooBar"), query("FB",
+				SearchPattern.R_CAMELCASE_MATCH
+						| SearchPattern.R_CASE_SENSITIVE));
+	}
+
+	@Test
+	public void patternMatch() throws IOException {
+		assertEquals(set("FileHandler"), query("*Handler",
+				SearchPattern.R_PATTERN_MATCH | SearchPattern.R_CASE_SENSITIVE));
+	}
+
+	@Test
+	public void reopen() throws IOException {
+		index = new Index(index.getIndexFile().getAbsolutePath(), "test", true);
+		assertEquals(set("FileHandler", "FileHelper"), query("File",
+				SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE));
+		assertEquals(204, query("", SearchPattern.R_PREFIX_MATCH).size());
+	}
+
+}
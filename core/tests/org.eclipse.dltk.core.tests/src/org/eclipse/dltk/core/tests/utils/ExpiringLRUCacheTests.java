@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.utils.ExpiringLRUCache;
+
+public class ExpiringLRUCacheTests extends TestCase {
+
+	private static class TestCache extends ExpiringLRUCache<String, String> {
+		long time = 0;
+
+		TestCache(int limit, long lifetime) {
+			super(limit, lifetime, 1);
+		}
+
+		@Override
+		protected long currentTime() {
+			return time;
+		}
+	}
+
+	public void testEvictsLeastRecentlyUsed() {
+		final TestCache cache = new TestCache(3, 1000);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.put("c", "C");
+		assertEquals("A", cache.get("a"));
+		cache.put("d", "D");
+		assertEquals(3, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals("A", cache.get("a"));
+		assertEquals("C", cache.get("c"));
+		assertEquals("D", cache.get("d"));
+	}
+
+	public void testExpiration() {
+		final TestCache cache = new TestCache(10, 1000);
+		cache.put("a", "A");
+		cache.time = 500;
+		final Map<String, String> values = new HashMap<String, String>();
+		values.put("b", "B");
+		values.put("c", "C");
+		cache.putAll(values);
+		cache.time = 1000;
+		assertNull(cache.get("a"));
+		assertEquals("B", cache.get("b"));
+		assertEquals(2, cache.size());
+		cache.time = 1500;
+		assertNull(cache.get("c"));
+	}
+
+	public void testRemoveAndClear() {
+		final TestCache cache = new TestCache(10, 1000);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals("B", cache.get("b"));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	public void testHitRate() {
+		final TestCache cache = new TestCache(10, 1000);
+		assertEquals(0.0, cache.getHitRate(), 0);
+		cache.put("a", "A");
+		cache.get("a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		assertEquals(3, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.75, cache.getHitRate(), 0);
+	}
+
+	public void testSegments() {
+		final ExpiringLRUCache<Integer, Integer> cache = new ExpiringLRUCache<Integer, Integer>(
+				100, 1000, 4);
+		for (int i = 0; i < 1000; ++i) {
+			cache.put(i, i);
+		}
+		assertTrue(cache.size() <= 100);
+		assertEquals(Integer.valueOf(999), cache.get(999));
+	}
+
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.debug.dbgp.tests;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.dbgp.internal.packets.DbgpPacketReceiver;
+import org.eclipse.dltk.dbgp.internal.packets.DbgpResponsePacket;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser;
+
+public class DbgpPacketReceiverTests extends TestCase {
+
+	private static class TestReceiver extends DbgpPacketReceiver {
+		TestReceiver() {
+			super(new ByteArrayInputStream(new byte[0]));
+		}
+
+		void receive(int transactionId) throws Exception {
+			final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+					+ "<response command=\"status\" transaction_id=\""
+					+ transactionId + "\"/>";
+			addDocument(DbgpXmlStreamParser.parse(xml.getBytes("UTF-8"),
+					null));
+		}
+	}
+
+	public void testPipelinedResponses() throws Exception {
+		final TestReceiver receiver = new TestReceiver();
+		final Future<DbgpResponsePacket> first = receiver.getResponseFuture(1);
+		final Future<DbgpResponsePacket> second = receiver
+				.getResponseFuture(2);
+		receiver.receive(2);
+		assertFalse(first.isDone());
+		assertTrue(second.isDone());
+		assertEquals(2, second.get().getTransactionId());
+		receiver.receive(1);
+		assertEquals(1, first.get(1, TimeUnit.SECONDS).getTransactionId());
+	}
+
+	public void testResponseBeforeWait() throws Exception {
+		final TestReceiver receiver = new TestReceiver();
+		receiver.receive(3);
+		assertEquals(3, receiver.getResponsePacket(3, 1000).getTransactionId());
+		// the response is taken only once
+		assertNull(receiver.getResponsePacket(3, 10));
+	}
+
+	public void testTimeout() throws Exception {
+		final TestReceiver receiver = new TestReceiver();
+		assertNull(receiver.getResponsePacket(4, 10));
+		final Future<DbgpResponsePacket> future = receiver
+				.getResponseFuture(5);
+		assertTrue(future.cancel(false));
+		receiver.receive(5);
+		assertTrue(future.isCancelled());
+	}
+
+	public void testTermination() throws Exception {
+		final TestReceiver receiver = new TestReceiver();
+		final Future<DbgpResponsePacket> future = receiver
+				.getResponseFuture(6);
+		receiver.start();
+		receiver.waitTerminated();
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof InterruptedException);
+		}
+		try {
+			receiver.getResponsePacket(7, 0);
+			fail();
+		} catch (InterruptedException e) {
+			// expected
+		}
+	}
+
+}
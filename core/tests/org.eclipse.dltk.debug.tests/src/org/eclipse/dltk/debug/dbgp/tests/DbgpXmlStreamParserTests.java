@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.debug.dbgp.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.dltk.dbgp.IDbgpProperty;
+import org.eclipse.dltk.dbgp.IDbgpStackLevel;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlEntityParser;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlParser;
+import org.eclipse.dltk.dbgp.internal.utils.DbgpXmlStreamParser;
+import org.eclipse.osgi.util.NLS;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class DbgpXmlStreamParserTests extends DbgpProtocolTests {
+
+	private static final String NESTED_PROPERTIES = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+			+ "<response command=\"context_get\" transaction_id=\"1\">\n"
+			+ "<property type=\"hash\" children=\"1\" numchildren=\"2\" page=\"0\" pagesize=\"10\">"
+			+ "<name encoding=\"base64\"><![CDATA[aA==]]></name>"
+			+ "<fullname><![CDATA[$h]]></fullname>"
+			+ "<property name=\"a\" fullname=\"$h[a]\" type=\"int\" children=\"0\">1</property>"
+			+ "<property name=\"b\" fullname=\"$h[b]\" type=\"string\" children=\"0\">"
+			+ "<value encoding=\"base64\"><![CDATA[dGV4dA==]]></value></property>"
+			+ "</property>\n"
+			+ "<property name=\"x\" fullname=\"$x\" type=\"array\" children=\"0\">"
+			+ "<property name=\"ignored\"/>value</property>\n" + "</response>";
+
+	/**
+	 * Parses the response, requesting its entities to be decoded.
+	 */
+	private static Element parseStream(String xml) throws Exception {
+		final Set<String> decoded = Collections
+				.synchronizedSet(new HashSet<String>());
+		decoded.add(parseDom(xml).getAttribute("transaction_id"));
+		final Element response = DbgpXmlStreamParser.parse(
+				xml.getBytes("UTF-8"), decoded).getDocumentElement();
+		assertTrue(decoded.isEmpty());
+		return response;
+	}
+
+	private static Element parseDom(String xml) throws Exception {
+		return DbgpXmlParser.parseXml(xml.getBytes("UTF-8"))
+				.getDocumentElement();
+	}
+
+	private static IDbgpProperty[] parseDomProperties(Element response) {
+		final NodeList list = response.getChildNodes();
+		final List<IDbgpProperty> result = new ArrayList<IDbgpProperty>();
+		for (int i = 0; i < list.getLength(); ++i) {
+			if (list.item(i) instanceof Element
+					&& DbgpXmlEntityParser.TAG_PROPERTY.equals(list.item(i)
+							.getNodeName())) {
+				result.add(DbgpXmlEntityParser.parseProperty((Element) list
+						.item(i)));
+			}
+		}
+		return result.toArray(new IDbgpProperty[result.size()]);
+	}
+
+	private static void assertPropertiesEqual(IDbgpProperty[] expected,
+			IDbgpProperty[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; ++i) {
+			final IDbgpProperty e = expected[i];
+			final IDbgpProperty a = actual[i];
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getEvalName(), a.getEvalName());
+			assertEquals(e.getType(), a.getType());
+			assertEquals(e.getValue(), a.getValue());
+			assertEquals(e.hasChildren(), a.hasChildren());
+			assertEquals(e.getChildrenCount(), a.getChildrenCount());
+			assertEquals(e.isConstant(), a.isConstant());
+			assertEquals(e.getKey(), a.getKey());
+			assertEquals(e.getAddress(), a.getAddress());
+			assertEquals(e.getPage(), a.getPage());
+			assertEquals(e.getPageSize(), a.getPageSize());
+			assertPropertiesEqual(e.getAvailableChildren(), a
+					.getAvailableChildren());
+		}
+	}
+
+	private void assertSameProperties(String xml) throws Exception {
+		final Element response = parseStream(xml);
+		final IDbgpProperty[] decoded = DbgpXmlStreamParser
+				.getProperties(response);
+		assertNotNull(decoded);
+		assertEquals(0, response.getElementsByTagName(
+				DbgpXmlEntityParser.TAG_PROPERTY).getLength());
+		assertPropertiesEqual(parseDomProperties(parseDom(xml)), decoded);
+	}
+
+	public void testContextGet() throws Exception {
+		assertSameProperties(getResourceAsString("context_get.xml"));
+	}
+
+	public void testPropertyGet() throws Exception {
+		assertSameProperties(NLS.bind(getResourceAsString("property_get.xml"),
+				new Object[] { "xxx", "test::xxx", "string" }));
+	}
+
+	public void testNestedProperties() throws Exception {
+		assertSameProperties(NESTED_PROPERTIES);
+		final IDbgpProperty[] properties = DbgpXmlStreamParser
+				.getProperties(parseStream(NESTED_PROPERTIES));
+		assertEquals(2, properties.length);
+		assertEquals("h", properties[0].getName());
+		assertEquals("$h", properties[0].getEvalName());
+		assertEquals(2, properties[0].getAvailableChildren().length);
+		assertEquals("1", properties[0].getAvailableChildren()[0].getValue());
+		assertEquals("text", properties[0].getAvailableChildren()[1]
+				.getValue());
+		assertEquals("value", properties[1].getValue());
+		assertEquals(0, properties[1].getAvailableChildren().length);
+	}
+
+	public void testStackGet() throws Exception {
+		final String xml = NLS.bind(getResourceAsString("stack_get.xml"),
+				"5");
+		final Element response = parseStream(xml);
+		assertEquals("5", response.getAttribute("transaction_id"));
+		final IDbgpStackLevel[] levels = DbgpXmlStreamParser
+				.getStackLevels(response);
+		assertNotNull(levels);
+		assertEquals(1, levels.length);
+		final IDbgpStackLevel expected = DbgpXmlEntityParser
+				.parseStackLevel((Element) parseDom(xml).getElementsByTagName(
+						"stack").item(0));
+		assertEquals(expected, levels[0]);
+	}
+
+	public void testNotRequested() throws Exception {
+		final String xml = getResourceAsString("context_get.xml");
+		final Set<String> decoded = Collections
+				.synchronizedSet(new HashSet<String>());
+		decoded.add("1000");
+		final Element response = DbgpXmlStreamParser.parse(
+				xml.getBytes("UTF-8"), decoded).getDocumentElement();
+		assertNull(DbgpXmlStreamParser.getProperties(response));
+		assertEquals(Collections.singleton("1000"), decoded);
+		// the complete DOM tree is built
+		assertPropertiesEqual(parseDomProperties(parseDom(xml)),
+				parseDomProperties(response));
+		assertNull(DbgpXmlStreamParser.getProperties(DbgpXmlStreamParser
+				.parse(xml.getBytes("UTF-8"), null).getDocumentElement()));
+	}
+
+	public void testOtherResponse() throws Exception {
+		final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+				+ "<response command=\"eval\" transaction_id=\"2\">"
+				+ "<error code=\"206\"><message>Error</message></error>"
+				+ "<property name=\"p\"/></response>";
+		final Element response = parseStream(xml);
+		assertNull(DbgpXmlStreamParser.getProperties(response));
+		assertEquals(1, response.getElementsByTagName(
+				DbgpXmlEntityParser.TAG_PROPERTY).getLength());
+		assertEquals(206, DbgpXmlParser.checkError(response).getCode());
+	}
+
+}
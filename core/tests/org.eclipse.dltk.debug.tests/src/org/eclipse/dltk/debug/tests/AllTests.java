@@ -17,6 +17,7 @@ import org.eclipse.dltk.debug.dbgp.tests.DbgpBreakpointCommandsTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpContextCommandsTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpContinuationCommandsTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpFeatureCommandsTests;
+import org.eclipse.dltk.debug.dbgp.tests.DbgpPacketReceiverTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpPropertyCommandsTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpRequestTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpStackCommandsTests;
@@ -24,9 +25,11 @@ import org.eclipse.dltk.debug.dbgp.tests.DbgpStackLevelTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpStatusCommandsTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpStatusTests;
 import org.eclipse.dltk.debug.dbgp.tests.DbgpStreamCommandsTests;
+import org.eclipse.dltk.debug.dbgp.tests.DbgpXmlStreamParserTests;
 import org.eclipse.dltk.debug.dbgp.tests.service.DbgpServiceDispatcherTests;
 import org.eclipse.dltk.debug.dbgp.tests.service.DbgpServiceTests;
 import org.eclipse.dltk.debug.tests.breakpoints.BreakpointTests;
+import org.eclipse.dltk.debug.tests.model.ScriptValuePagingTests;
 
 public class AllTests {
 
@@ -49,6 +52,9 @@ public class AllTests {
 		dbgpSuite.addTestSuite(DbgpStatusCommandsTests.class);
 		dbgpSuite.addTestSuite(DbgpBase64Tests.class);
 		dbgpSuite.addTestSuite(DbgpStatusTests.class);
+		dbgpSuite.addTestSuite(DbgpXmlStreamParserTests.class);
+		dbgpSuite.addTestSuite(DbgpPacketReceiverTests.class);
+		dbgpSuite.addTestSuite(ScriptValuePagingTests.class);
 		suite.addTest(dbgpSuite);
 
 		final TestSuite serviceSuite = new TestSuite("DBGP Service tests");
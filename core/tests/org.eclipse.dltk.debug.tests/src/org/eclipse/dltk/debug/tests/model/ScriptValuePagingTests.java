@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.debug.tests.model;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.model.IDebugTarget;
+import org.eclipse.debug.core.model.IVariable;
+import org.eclipse.dltk.dbgp.IDbgpProperty;
+import org.eclipse.dltk.dbgp.IDbgpSession;
+import org.eclipse.dltk.dbgp.commands.IDbgpCoreCommands;
+import org.eclipse.dltk.dbgp.internal.DbgpProperty;
+import org.eclipse.dltk.debug.core.model.IScriptDebugTarget;
+import org.eclipse.dltk.debug.core.model.IScriptStackFrame;
+import org.eclipse.dltk.debug.core.model.IScriptThread;
+import org.eclipse.dltk.debug.core.model.IScriptValue;
+import org.eclipse.dltk.internal.debug.core.model.IScriptThreadManager;
+import org.eclipse.dltk.internal.debug.core.model.ScriptThread;
+import org.eclipse.dltk.internal.debug.core.model.ScriptValue;
+import org.eclipse.dltk.internal.debug.core.model.UnknownVariable;
+
+public class ScriptValuePagingTests extends TestCase {
+
+	private static final String MODEL_ID = "org.eclipse.dltk.debug.tests.debugModel";
+	private static final int PAGE_SIZE = 3;
+	private static final int CHILDREN_COUNT = 7;
+
+	/**
+	 * Answers the requests of the value to the stack frame, thread and the
+	 * engine, the pages of the children are taken from {@link #pages}.
+	 */
+	private class Engine implements InvocationHandler {
+		final List requests = new ArrayList();
+		final IDbgpProperty[] pages = new IDbgpProperty[] { page(0, 3),
+				page(1, 3), page(2, 1) };
+
+		final IScriptStackFrame frame = (IScriptStackFrame) create(IScriptStackFrame.class);
+
+		/**
+		 * The thread returned by the frame, if <code>null</code> then the
+		 * properties are not cached.
+		 */
+		IScriptThread thread;
+
+		private Object create(Class type) {
+			return Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] { type }, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			final String name = method.getName();
+			if ("getProperty".equals(name) && args.length == 3) {
+				final int page = ((Integer) args[0]).intValue();
+				synchronized (requests) {
+					requests.add(new Integer(page));
+				}
+				return pages[page];
+			} else if ("getModelIdentifier".equals(name)) {
+				return MODEL_ID;
+			} else if ("getPropertyPageSize".equals(name)) {
+				return new Integer(PAGE_SIZE);
+			} else if ("getDebugTarget".equals(name)) {
+				return create(IDebugTarget.class);
+			} else if ("getScriptThread".equals(name)) {
+				return thread != null ? thread
+						: (IScriptThread) create(IScriptThread.class);
+			} else if ("getDbgpSession".equals(name)) {
+				return create(IDbgpSession.class);
+			} else if ("getCoreCommands".equals(name)) {
+				return create(IDbgpCoreCommands.class);
+			} else if ("equals".equals(name)) {
+				return Boolean.valueOf(proxy == args[0]);
+			} else if ("hashCode".equals(name)) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			final Class returnType = method.getReturnType();
+			if (returnType == boolean.class) {
+				return Boolean.FALSE;
+			} else if (returnType == int.class) {
+				return new Integer(0);
+			} else if (returnType.isArray()) {
+				return Array.newInstance(returnType.getComponentType(), 0);
+			}
+			return null;
+		}
+
+		ScriptThread createThread() throws Exception {
+			final ScriptThread result = new ScriptThread(
+					(IScriptDebugTarget) create(IScriptDebugTarget.class),
+					(IDbgpSession) create(IDbgpSession.class),
+					(IScriptThreadManager) create(IScriptThreadManager.class));
+			thread = result;
+			return result;
+		}
+
+		List getRequests() {
+			synchronized (requests) {
+				return new ArrayList(requests);
+			}
+		}
+	}
+
+	private static IDbgpProperty child(int index) {
+		return new DbgpProperty("v" + index, "a[" + index + "]", "int",
+				String.valueOf(index), 0, false, false, null, null,
+				new IDbgpProperty[0], 0, 0);
+	}
+
+	/**
+	 * Returns the page of the array with the specified number of children
+	 * available in it.
+	 */
+	private static IDbgpProperty page(int page, int available) {
+		final IDbgpProperty[] children = new IDbgpProperty[available];
+		for (int i = 0; i < available; ++i) {
+			children[i] = child(page * PAGE_SIZE + i);
+		}
+		return array(CHILDREN_COUNT, children, page);
+	}
+
+	private static IDbgpProperty array(int childrenCount,
+			IDbgpProperty[] children, int page) {
+		return new DbgpProperty("a", "a", "array", null, childrenCount, true,
+				false, "key", null, children, page, PAGE_SIZE);
+	}
+
+	public void testFirstPageSent() throws Exception {
+		final Engine engine = new Engine();
+		final IScriptValue value = ScriptValue.createValue(engine.frame,
+				engine.pages[0]);
+		assertEquals(CHILDREN_COUNT, value.getSize());
+		assertEquals("v1", value.getVariable(1).getName());
+		assertTrue(engine.getRequests().isEmpty());
+
+		assertEquals("v4", value.getVariable(4).getName());
+		assertEquals("v3", value.getVariable(3).getName());
+		assertEquals("v5", value.getVariable(5).getName());
+		assertEquals(Collections.singletonList(new Integer(1)),
+				engine.getRequests());
+	}
+
+	public void testChildrenNotSent() throws Exception {
+		final Engine engine = new Engine();
+		final IScriptValue value = ScriptValue.createValue(engine.frame,
+				array(0, new IDbgpProperty[0], 0));
+		assertTrue(engine.getRequests().isEmpty());
+		assertEquals(CHILDREN_COUNT, value.getSize());
+		assertEquals(CHILDREN_COUNT, value.getSize());
+		assertEquals("v2", value.getVariable(2).getName());
+		assertEquals(Collections.singletonList(new Integer(0)),
+				engine.getRequests());
+	}
+
+	public void testMissingChildren() throws Exception {
+		final Engine engine = new Engine();
+		engine.pages[2] = array(CHILDREN_COUNT, new IDbgpProperty[0], 2);
+		final IScriptValue value = ScriptValue.createValue(engine.frame,
+				engine.pages[0]);
+		final IVariable variable = value.getVariable(6);
+		assertTrue(variable instanceof UnknownVariable);
+		assertSame(variable, value.getVariable(6));
+		assertEquals(Collections.singletonList(new Integer(2)),
+				engine.getRequests());
+	}
+
+	/**
+	 * Expands the new value of the array, so the first page of its children is
+	 * requested unless it is cached.
+	 */
+	private static void expand(Engine engine) throws Exception {
+		final IScriptValue value = ScriptValue.createValue(engine.frame, array(
+				0, new IDbgpProperty[0], 0));
+		assertEquals("v2", value.getVariable(2).getName());
+	}
+
+	public void testPagesCachedWhileSuspended() throws Exception {
+		final Engine engine = new Engine();
+		engine.createThread();
+		expand(engine);
+		expand(engine);
+		assertEquals(Collections.singletonList(new Integer(0)),
+				engine.getRequests());
+	}
+
+	public void testCacheClearedOnSuspend() throws Exception {
+		final Engine engine = new Engine();
+		final ScriptThread thread = engine.createThread();
+		expand(engine);
+		thread.handleSuspend(DebugEvent.BREAKPOINT);
+		expand(engine);
+		expand(engine);
+		assertEquals(2, engine.getRequests().size());
+	}
+
+	public void testCacheClearedOnResume() throws Exception {
+		final Engine engine = new Engine();
+		final ScriptThread thread = engine.createThread();
+		expand(engine);
+		thread.handleResume(DebugEvent.STEP_OVER);
+		expand(engine);
+		expand(engine);
+		assertEquals(2, engine.getRequests().size());
+	}
+
+	public void testCacheClearedOnModify() throws Exception {
+		final Engine engine = new Engine();
+		final ScriptThread thread = engine.createThread();
+		expand(engine);
+		thread.notifyModified();
+		expand(engine);
+		expand(engine);
+		assertEquals(2, engine.getRequests().size());
+	}
+
+	public void testConcurrentLoad() throws Exception {
+		final Engine engine = new Engine();
+		final IScriptValue value = ScriptValue.createValue(engine.frame,
+				engine.pages[0]);
+		final Throwable[] errors = new Throwable[1];
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						final IVariable[] variables = value.getVariables();
+						for (int j = 0; j < variables.length; ++j) {
+							assertEquals("v" + j, variables[j].getName());
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors[0] = e;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i].join();
+		}
+		synchronized (errors) {
+			if (errors[0] != null) {
+				final AssertionFailedError error = new AssertionFailedError(
+						errors[0].toString());
+				error.initCause(errors[0]);
+				throw error;
+			}
+		}
+		for (int i = 0; i < CHILDREN_COUNT; ++i) {
+			assertEquals("v" + i, value.getVariable(i).getName());
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.debug.tests.model;
+
+import org.eclipse.dltk.debug.core.model.AtomicScriptType;
+import org.eclipse.dltk.debug.core.model.IScriptType;
+import org.eclipse.dltk.debug.core.model.IScriptTypeFactory;
+
+public class TestScriptTypeFactory implements IScriptTypeFactory {
+
+	public IScriptType buildType(String type) {
+		return new AtomicScriptType(type);
+	}
+
+}
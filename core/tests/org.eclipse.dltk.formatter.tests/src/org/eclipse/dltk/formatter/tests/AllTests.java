@@ -21,6 +21,8 @@ public class AllTests {
 				"org.eclipse.dltk.formatter.tests"); //$NON-NLS-1$
 		// $JUnit-BEGIN$
 		suite.addTestSuite(ExcludeRegionListTest.class);
+		suite.addTestSuite(FormatterDiffTest.class);
+		suite.addTestSuite(FormatterNodeBuilderTest.class);
 		// $JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.formatter.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.formatter.FormatterDiff;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+@SuppressWarnings("nls")
+public class FormatterDiffTest extends TestCase {
+
+	private static String apply(String input, TextEdit edit)
+			throws BadLocationException {
+		final Document document = new Document(input);
+		edit.apply(document);
+		return document.get();
+	}
+
+	public void testSame() throws BadLocationException {
+		final String input = "if (a) {\n\tb();\n}\n";
+		final TextEdit edit = FormatterDiff.createEdit(input, input, 0);
+		assertEquals(0, edit.getChildrenSize());
+		assertEquals(input, apply(input, edit));
+	}
+
+	public void testWhitespace() throws BadLocationException {
+		final String input = "if (a){\n  b( );\n\n\n}";
+		final String output = "if (a) {\n\tb();\n\n}";
+		final TextEdit edit = FormatterDiff.createEdit(input, output, 0);
+		assertEquals(output, apply(input, edit));
+		assertEquals(4, edit.getChildrenSize());
+	}
+
+	public void testIndentation() throws BadLocationException {
+		final String input = "a\n\t\tb\n";
+		final String output = "a\n\tb\n";
+		final TextEdit edit = FormatterDiff.createEdit(input, output, 0);
+		assertEquals(1, edit.getChildrenSize());
+		final ReplaceEdit replace = (ReplaceEdit) edit.getChildren()[0];
+		assertEquals(3, replace.getOffset());
+		assertEquals(1, replace.getLength());
+		assertEquals("", replace.getText());
+	}
+
+	public void testOffset() throws BadLocationException {
+		final String prefix = "x  y\n";
+		final String input = "a  b";
+		final String output = "a b";
+		final TextEdit edit = FormatterDiff.createEdit(input, output,
+				prefix.length());
+		assertEquals(prefix + output, apply(prefix + input, edit));
+	}
+
+	public void testRegion() throws BadLocationException {
+		final String input = "a(){\n  b();\n  c();\n  d();\n}\n";
+		final String output = "a() {\n\tb();\n\tc();\n\td();\n}\n";
+		// the line with c();
+		final IRegion region = new Region(input.indexOf("  c"), 7);
+		final TextEdit edit = FormatterDiff.createEdit(input, output, 0,
+				region);
+		assertEquals("a(){\n  b();\n\tc();\n  d();\n}\n", apply(input, edit));
+	}
+
+	public void testChangedText() throws BadLocationException {
+		final String input = "a  b # long comment\nc";
+		final String output = "a b # long\n# comment\nc";
+		final TextEdit edit = FormatterDiff.createEdit(input, output, 0);
+		assertEquals(output, apply(input, edit));
+		assertEquals(1, edit.getChildrenSize());
+	}
+
+	public void testChangedTextOutsideRegion() throws BadLocationException {
+		final String input = "a b\nc # long comment\n";
+		final String output = "a b\nc # long\n# comment\n";
+		final TextEdit edit = FormatterDiff.createEdit(input, output, 0,
+				new Region(0, 3));
+		assertEquals(0, edit.getChildrenSize());
+		assertEquals(input, apply(input, edit));
+	}
+
+	public void testChangedTextInRegion() throws BadLocationException {
+		final String input = "a  b\nc # long comment\n";
+		final String output = "a b\nc # long\n# comment\n";
+		final TextEdit edit = FormatterDiff.createEdit(input, output, 0,
+				new Region(input.indexOf('#'), 6));
+		assertEquals(output, apply(input, edit));
+	}
+
+}
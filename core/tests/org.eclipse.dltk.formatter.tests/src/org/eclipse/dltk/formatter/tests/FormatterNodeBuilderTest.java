@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.formatter.tests;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.formatter.AbstractFormatterNodeBuilder;
+import org.eclipse.dltk.formatter.FormatterBlockNode;
+import org.eclipse.dltk.formatter.FormatterDocument;
+import org.eclipse.dltk.formatter.FormatterTextNode;
+import org.eclipse.dltk.formatter.IFormatterContainerNode;
+import org.eclipse.dltk.formatter.IFormatterDocument;
+import org.eclipse.dltk.formatter.IFormatterNode;
+import org.eclipse.jface.text.Region;
+
+@SuppressWarnings("nls")
+public class FormatterNodeBuilderTest extends TestCase {
+
+	private static final String TEXT = "aaa bbb ccc";
+
+	/**
+	 * Builds the node for each word of the {@link #TEXT}.
+	 */
+	private static class Builder extends AbstractFormatterNodeBuilder {
+		final IFormatterDocument document = new FormatterDocument(TEXT);
+		final IFormatterNode[] words = new IFormatterNode[3];
+
+		IFormatterContainerNode build() {
+			final IFormatterContainerNode root = new FormatterBlockNode(
+					document);
+			start(root);
+			for (int i = 0; i < words.length; ++i) {
+				words[i] = addChild(new FormatterTextNode(document, i * 4,
+						i * 4 + 3));
+			}
+			checkedPop(root, TEXT.length());
+			return root;
+		}
+
+		boolean isInRegion(IFormatterNode node) {
+			return isInRegion(node.getStartOffset(), node.getEndOffset());
+		}
+	}
+
+	private static String getText(IFormatterContainerNode root) {
+		final StringBuilder sb = new StringBuilder();
+		for (IFormatterNode node : root.getChildren()) {
+			sb.append(((FormatterTextNode) node).getText());
+		}
+		return sb.toString();
+	}
+
+	public void testWithoutRegion() {
+		final Builder builder = new Builder();
+		final IFormatterContainerNode root = builder.build();
+		final List<IFormatterNode> children = root.getChildren();
+		for (int i = 0; i < builder.words.length; ++i) {
+			assertTrue(builder.isInRegion(builder.words[i]));
+			assertTrue(children.contains(builder.words[i]));
+		}
+		assertEquals(TEXT, getText(root));
+	}
+
+	public void testRegion() {
+		final Builder builder = new Builder();
+		builder.setRegion(new Region(TEXT.indexOf("bbb"), 1));
+		final IFormatterContainerNode root = builder.build();
+		final List<IFormatterNode> children = root.getChildren();
+		assertFalse(children.contains(builder.words[0]));
+		assertTrue(children.contains(builder.words[1]));
+		assertFalse(children.contains(builder.words[2]));
+		// the source of the skipped nodes is kept as the text
+		assertEquals(TEXT, getText(root));
+		assertEquals(0, root.getStartOffset());
+		assertEquals(TEXT.length(), root.getEndOffset());
+	}
+
+}
@@ -183,6 +183,7 @@ public class RSEEnvironment implements IEnvironment, IAdaptable {
 	private void connectUnsafe(boolean force) {
 		boolean tryToConnect = isTryToConnect();
 		if (force || tryToConnect) {
+			RSEExecEnvironment.clearHostCaches(host);
 			RSEConnectionQueryManager.getInstance().connectTo(host);
 			setTryToConnect(false);
 		}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.internal.rse;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.environment.IEnvironmentMirror;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.internal.rse.ssh.RSESshManager;
+import org.eclipse.dltk.ssh.core.ISshConnection;
+import org.eclipse.dltk.ssh.core.ISshConnectionExtension;
+
+/**
+ * Mirrors the folders of the {@link RSEEnvironment} via the direct ssh
+ * connection, if available.
+ */
+public class RSEEnvironmentMirror implements IEnvironmentMirror {
+
+	private final RSEEnvironment environment;
+
+	public RSEEnvironmentMirror(RSEEnvironment environment) {
+		this.environment = environment;
+	}
+
+	public boolean synchronize(IFileHandle folder, IProgressMonitor monitor) {
+		if (!environment.getId().equals(folder.getEnvironmentId())) {
+			return false;
+		}
+		final ISshConnection connection = RSESshManager
+				.getConnection(environment.getHost());
+		if (!(connection instanceof ISshConnectionExtension)) {
+			return false;
+		}
+		return ((ISshConnectionExtension) connection).synchronizeMirror(
+				folder.getPath(), monitor);
+	}
+
+}
@@ -29,7 +29,10 @@ import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IExecutionEnvironment;
 import org.eclipse.dltk.core.environment.IExecutionLogger;
 import org.eclipse.dltk.core.internal.rse.perfomance.RSEPerfomanceStatistics;
+import org.eclipse.dltk.core.internal.rse.ssh.RSESshManager;
 import org.eclipse.dltk.internal.launching.execution.EFSDeployment;
+import org.eclipse.dltk.ssh.core.ISshConnection;
+import org.eclipse.dltk.ssh.core.ISshConnectionExtension;
 import org.eclipse.dltk.utils.TextUtils;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.rse.core.model.IHost;
@@ -50,11 +53,25 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 	private static int counter = -1;
 
 	private static final Map<IHost, Map<String, String>> hostToEnvironment = new HashMap<IHost, Map<String, String>>();
+	private static final Map<IHost, String> hostToTempDir = new HashMap<IHost, String>();
 
 	public RSEExecEnvironment(RSEEnvironment env) {
 		this.environment = env;
 	}
 
+	/**
+	 * Forgets the environment variables and the temporary directory fetched
+	 * from the host, so they are requested again when it is reconnected.
+	 */
+	static void clearHostCaches(IHost host) {
+		synchronized (hostToEnvironment) {
+			hostToEnvironment.remove(host);
+		}
+		synchronized (hostToTempDir) {
+			hostToTempDir.remove(host);
+		}
+	}
+
 	public IDeployment createDeployment() {
 		if (RSEPerfomanceStatistics.PERFOMANCE_TRACING) {
 			RSEPerfomanceStatistics
@@ -104,6 +121,22 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 
 	private String getTempDir() {
 		final IHost host = environment.getHost();
+		synchronized (hostToTempDir) {
+			final String tmp = hostToTempDir.get(host);
+			if (tmp != null) {
+				return tmp;
+			}
+		}
+		final String tmp = fetchTempDir(host);
+		if (tmp != null) {
+			synchronized (hostToTempDir) {
+				hostToTempDir.put(host, tmp);
+			}
+		}
+		return tmp;
+	}
+
+	private String fetchTempDir(IHost host) {
 		final IShellServiceSubSystem system = getSubSystem(host,
 				IShellServiceSubSystem.class);
 		if (system == null) {
@@ -134,6 +167,17 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 
 	public Process exec(String[] cmdLine, IPath workingDir,
 			String[] environment, IExecutionLogger logger) throws CoreException {
+		return exec(cmdLine, workingDir, environment, logger, true);
+	}
+
+	/**
+	 * @param direct
+	 *            if the "exec" channel of the direct ssh connection should be
+	 *            used when available
+	 */
+	private Process exec(String[] cmdLine, IPath workingDir,
+			String[] environment, IExecutionLogger logger, boolean direct)
+			throws CoreException {
 		if (RSEPerfomanceStatistics.PERFOMANCE_TRACING) {
 			RSEPerfomanceStatistics
 					.inc(RSEPerfomanceStatistics.EXECUTION_COUNT);
@@ -142,6 +186,25 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 				.currentTimeMillis() : 0;
 		final IHost host = this.environment.getHost();
 
+		if (direct) {
+			final ISshConnection connection = RSESshManager
+					.getConnection(host);
+			if (connection instanceof ISshConnectionExtension) {
+				final Process process = execDirect(
+						(ISshConnectionExtension) connection, cmdLine,
+						workingDir, environment, logger);
+				if (process != null) {
+					if (RSEPerfomanceStatistics.PERFOMANCE_TRACING) {
+						RSEPerfomanceStatistics.inc(
+								RSEPerfomanceStatistics.EXECUTION_TIME, System
+										.currentTimeMillis()
+										- start);
+					}
+					return process;
+				}
+			}
+		}
+
 		// obtain IFileService
 		final IFileServiceSubSystem fileService = getSubSystem(host,
 				IFileServiceSubSystem.class);
@@ -165,26 +228,8 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 				+ fileService.getSeparatorChar() + tmpLauncher;
 
 		// build commands
-		final List<String> commands = new ArrayList<String>();
-		if (workingDir != null) {
-			final String p = this.environment.convertPathToString(workingDir);
-			commands.add("cd " + p); //$NON-NLS-1$
-		} else {
-			commands.add("cd /"); //$NON-NLS-1$
-		}
-		/*
-		 * Sometimes environment variables aren't set by the runCommand() call,
-		 * so use export.
-		 */
-		if (environment != null) {
-			// TODO Skip environment variables which are already in shell?
-			for (int i = 0; i < environment.length; i++) {
-				final String env = environment[i];
-				if (isSafeEnvironmentVariable(extractName(env))) {
-					commands.add(buildExportCommand(env));
-				}
-			}
-		}
+		final List<String> commands = buildSetupCommands(workingDir,
+				environment);
 		final String token = TOKEN_PREFIX + System.currentTimeMillis();
 		final String echoCmd = "echo \"" + token + "\""; //$NON-NLS-1$ //$NON-NLS-2$
 		commands.add(echoCmd);
@@ -259,7 +304,7 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 							Messages.RSEExecEnvironment_NotConnected, host
 									.getAliasName()), null));
 		}
-		// TODO try to use "exec" channel instead of "shell" one.
+		// used if there is no direct ssh connection, see execDirect()
 		final IShellService shellService = shell.getShellService();
 		final String command = EXEC_BIN_SH + tmpLauncherPath;
 		final IHostShell hostShell;
@@ -293,6 +338,66 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 		}
 	}
 
+	/**
+	 * Returns the commands changing to the working directory and exporting
+	 * the environment variables.
+	 */
+	private List<String> buildSetupCommands(IPath workingDir,
+			String[] environment) {
+		final List<String> commands = new ArrayList<String>();
+		if (workingDir != null) {
+			final String p = this.environment.convertPathToString(workingDir);
+			commands.add("cd " + p); //$NON-NLS-1$
+		} else {
+			commands.add("cd /"); //$NON-NLS-1$
+		}
+		/*
+		 * Sometimes environment variables aren't set by the runCommand() call,
+		 * so use export.
+		 */
+		if (environment != null) {
+			// TODO Skip environment variables which are already in shell?
+			for (int i = 0; i < environment.length; i++) {
+				final String env = environment[i];
+				if (isSafeEnvironmentVariable(extractName(env))) {
+					commands.add(buildExportCommand(env));
+				}
+			}
+		}
+		return commands;
+	}
+
+	/**
+	 * Runs the command in the "exec" channel of the direct ssh connection, so
+	 * no launcher is uploaded and no interactive shell is started. The
+	 * commands are run by /bin/sh, since the login shell of the user could be
+	 * csh. Returns <code>null</code> if failed, so the RSE shell should be used
+	 * instead.
+	 */
+	private Process execDirect(ISshConnectionExtension connection,
+			String[] cmdLine, IPath workingDir, String[] environment,
+			IExecutionLogger logger) {
+		final List<String> commands = buildSetupCommands(workingDir,
+				environment);
+		commands.add(buildCommand(cmdLine));
+		final StringBuilder script = new StringBuilder();
+		for (String command : commands) {
+			script.append(command).append('\n');
+		}
+		if (logger != null) {
+			for (String command : commands) {
+				logger.logLine("exec:" + command); //$NON-NLS-1$
+			}
+			logger.logLine("exec:END"); //$NON-NLS-1$
+		}
+		try {
+			return connection.exec(script.toString());
+		} catch (CoreException e) {
+			DLTKRSEPlugin.log(e);
+			return null;
+		}
+	}
+
 	private static final List<String> UNSAFE_ENV_VARS = Arrays
 			.asList(TextUtils
 					.split(
@@ -411,7 +516,13 @@ public class RSEExecEnvironment implements IExecutionEnvironment {
 		}
 		final Map<String, String> result = new HashMap<String, String>();
 		try {
-			Process process = exec(new String[] { "set" }, Path.EMPTY, null); //$NON-NLS-1$
+			/*
+			 * The RSE shell is used, as it is the login one, while the "exec"
+			 * channel does not read the profile. The launches export these
+			 * variables, so they get the same environment then.
+			 */
+			Process process = exec(new String[] { "set" }, Path.EMPTY, null, //$NON-NLS-1$
+					null, false);
 			if (process != null) {
 				final BufferedReader input = new BufferedReader(
 						new InputStreamReader(process.getInputStream()));
@@ -1,10 +1,12 @@
 package org.eclipse.dltk.core.internal.rse;
 
 import org.eclipse.core.runtime.IAdapterFactory;
+import org.eclipse.dltk.core.environment.IEnvironmentMirror;
 import org.eclipse.dltk.core.environment.IExecutionEnvironment;
 
 public class RSEExecEnvironmentAdapter implements IAdapterFactory {
-	public static final Class[] ADAPTER_LIST = { IExecutionEnvironment.class };
+	public static final Class[] ADAPTER_LIST = { IExecutionEnvironment.class,
+			IEnvironmentMirror.class };
 	
 	public Object getAdapter(Object adaptableObject, Class adapterType) {
 		if (adapterType == IExecutionEnvironment.class && 
@@ -12,6 +14,10 @@ public class RSEExecEnvironmentAdapter implements IAdapterFactory {
 			RSEEnvironment env = (RSEEnvironment) adaptableObject;
 			return new RSEExecEnvironment(env);
 		}
+		if (adapterType == IEnvironmentMirror.class
+				&& adaptableObject instanceof RSEEnvironment) {
+			return new RSEEnvironmentMirror((RSEEnvironment) adaptableObject);
+		}
 		return null;
 	}
 	public Class[] getAdapterList() {
@@ -41,25 +41,31 @@ import org.eclipse.dltk.core.internal.rse.perfomance.RSEPerfomanceStatistics;
 import org.eclipse.dltk.core.internal.rse.ssh.RSESshManager;
 import org.eclipse.dltk.ssh.core.ISshConnection;
 import org.eclipse.dltk.ssh.core.ISshFileHandle;
+import org.eclipse.dltk.utils.ExpiringLRUCache;
 import org.eclipse.rse.core.model.IHost;
 
 public class RSEFileHandle implements IFileHandle, IFileStoreProvider {
 	private static final int SYMLINK_CONNECTION_TIMEOUT = 30 * 1000;
 	private static final int CACHE_LIMIT = 1000;
 	private static final long CACHE_ENTRY_LIFETIME = 10 * 1000;
+	private static final int CACHE_CONCURRENCY = 8;
 
-	private static class CacheEntry {
-		final IFileInfo fileInfo;
-		final long timestamp;
-
-		public CacheEntry(IFileInfo fileInfo, long timestamp) {
-			this.fileInfo = fileInfo;
-			this.timestamp = timestamp;
-		}
+	private static final ExpiringLRUCache<IFileStore, IFileInfo> cache = new ExpiringLRUCache<IFileStore, IFileInfo>(
+			CACHE_LIMIT, CACHE_ENTRY_LIFETIME, CACHE_CONCURRENCY);
 
+	/**
+	 * @since 5.1
+	 */
+	public static long getInfoCacheHitCount() {
+		return cache.getHitCount();
 	}
 
-	private static final Map<IFileStore, CacheEntry> cache = new HashMap<IFileStore, CacheEntry>();
+	/**
+	 * @since 5.1
+	 */
+	public static long getInfoCacheMissCount() {
+		return cache.getMissCount();
+	}
 
 	private final IFileStore file;
 	private final IEnvironment environment;
@@ -124,38 +130,19 @@ public class RSEFileHandle implements IFileHandle, IFileStoreProvider {
 
 	private IFileInfo fetchInfo(boolean force) {
 		final boolean isRemote = !environment.isLocal();
-		long now = 0;
 		if (isRemote && !force) {
-			CacheEntry entry;
-			synchronized (cache) {
-				entry = cache.get(getCacheKey());
-			}
-			if (entry != null) {
-				now = System.currentTimeMillis();
-				if (now - entry.timestamp < CACHE_ENTRY_LIFETIME) {
-					return entry.fileInfo;
-				}
+			final IFileInfo cached = cache.get(getCacheKey());
+			if (cached != null) {
+				return cached;
 			}
 		}
 		final IFileInfo info = file.fetchInfo();
 		if (isRemote) {
-			if (now == 0) {
-				now = System.currentTimeMillis();
-			}
-			synchronized (cache) {
-				checkCacheLimit();
-				cache.put(getCacheKey(), new CacheEntry(info, now));
-			}
+			cache.put(getCacheKey(), info);
 		}
 		return info;
 	}
 
-	private static void checkCacheLimit() {
-		if (cache.size() > CACHE_LIMIT) {
-			cache.clear();
-		}
-	}
-
 	/**
 	 * @return
 	 */
@@ -215,23 +202,16 @@ public class RSEFileHandle implements IFileHandle, IFileStoreProvider {
 		try {
 			final IFileInfo[] infos = file.childInfos(EFS.NONE,
 					new NullProgressMonitor());
-			if (infos.length != 0) {
-				synchronized (cache) {
-					checkCacheLimit();
-				}
-			}
 			final IFileHandle[] children = new IFileHandle[infos.length];
-			final long now = System.currentTimeMillis();
+			final Map<IFileStore, IFileInfo> childInfos = new HashMap<IFileStore, IFileInfo>();
 			for (int i = 0; i < infos.length; i++) {
 				final IFileInfo childInfo = infos[i];
 				children[i] = new RSEFileHandle(environment, file
 						.getChild(childInfo.getName()));
-				final IFileStore childCacheKey = ((RSEFileHandle) children[i])
-						.getCacheKey();
-				synchronized (cache) {
-					cache.put(childCacheKey, new CacheEntry(childInfo, now));
-				}
+				childInfos.put(((RSEFileHandle) children[i]).getCacheKey(),
+						childInfo);
 			}
+			cache.putAll(childInfos);
 			return children;
 		} catch (CoreException e) {
 			if (DLTKCore.DEBUG)
@@ -354,8 +334,10 @@ public class RSEFileHandle implements IFileHandle, IFileStoreProvider {
 		if (!environment.connect()) {
 			return null;
 		}
-		synchronized (cache) {
-			cache.clear();
+		clearLastModifiedCache();
+		final IFileStore parent = file.getParent();
+		if (parent != null) {
+			cache.remove(parent);
 		}
 		fetchSshFile();
 		if (sshFile != null) {
@@ -487,9 +469,7 @@ public class RSEFileHandle implements IFileHandle, IFileStoreProvider {
 	 * @since 2.0
 	 */
 	public void clearLastModifiedCache() {
-		synchronized (cache) {
-			cache.remove(getCacheKey());
-		}
+		cache.remove(getCacheKey());
 	}
 
 	/**
@@ -12,6 +12,7 @@
 package org.eclipse.dltk.core.internal.rse.perfomance;
 
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.dltk.core.internal.rse.RSEFileHandle;
 
 public final class RSEPerfomanceStatistics {
 	public static final boolean PERFOMANCE_TRACING = Boolean
@@ -28,7 +29,9 @@ public final class RSEPerfomanceStatistics {
 			"Environment receive count", // 6
 			"Has project invocations", // 7
 			"Has project execution time", // 8
-			"Execution time" // 9
+			"Execution time", // 9
+			"File info cache hits", // 10
+			"File info cache misses" // 11
 	};
 	public static final int TOTAL_BYTES_RECEIVED = 0;
 	public static final int FILES_ACCESSED = 1;
@@ -40,8 +43,10 @@ public final class RSEPerfomanceStatistics {
 	public static final int HAS_PROJECT_EXECUTIONS = 7;
 	public static final int HAS_POJECT_EXECUTIONS_TIME = 8;
 	public static final int EXECUTION_TIME = 9;
+	public static final int FILE_INFO_CACHE_HITS = 10;
+	public static final int FILE_INFO_CACHE_MISSES = 11;
 
-	public final static int STATISTICS_COUNT = 10;
+	public final static int STATISTICS_COUNT = 12;
 	// Statistics
 	private static long statistics[] = null;
 	static {
@@ -56,6 +61,12 @@ public final class RSEPerfomanceStatistics {
 	}
 
 	public static long get(int pos) {
+		// the cache counters are maintained by the cache itself
+		if (pos == FILE_INFO_CACHE_HITS) {
+			return RSEFileHandle.getInfoCacheHitCount();
+		} else if (pos == FILE_INFO_CACHE_MISSES) {
+			return RSEFileHandle.getInfoCacheMissCount();
+		}
 		return statistics[pos];
 	}
 
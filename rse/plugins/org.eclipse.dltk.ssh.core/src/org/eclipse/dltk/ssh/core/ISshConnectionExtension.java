@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.core;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Optional extension of the {@link ISshConnection}, the callers should check
+ * if the connection implements it.
+ * 
+ * @since 5.1
+ */
+public interface ISshConnectionExtension extends ISshConnection {
+
+	/**
+	 * Transfers the specified remote folder with all the subfolders to the
+	 * local mirror at once (only the files modified since the previous
+	 * synchronization are transferred), so the contents of the files there are
+	 * read from the mirror while they are not modified remotely.
+	 * 
+	 * @param monitor
+	 *            the progress monitor, the transfer is stopped when it is
+	 *            cancelled, could be <code>null</code>
+	 * @return <code>true</code> if the mirror was synchronized
+	 */
+	public boolean synchronizeMirror(IPath folder, IProgressMonitor monitor);
+
+	/**
+	 * Runs the specified script in the new "exec" channel of this connection.
+	 * The script is run by /bin/sh whatever the login shell of the remote user
+	 * is, its lines are run sequentially.
+	 */
+	public Process exec(String script) throws CoreException;
+
+	/**
+	 * Returns the usage statistics of the SFTP channels of this connection.
+	 */
+	public SshChannelStatistics getChannelStatistics();
+
+}
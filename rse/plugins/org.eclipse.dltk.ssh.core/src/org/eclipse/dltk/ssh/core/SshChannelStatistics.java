@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.core;
+
+/**
+ * The snapshot of the SFTP channel usage statistics of the
+ * {@link ISshConnectionExtension}. The times are in milliseconds. The file
+ * attribute cache counters are shared by all the connections.
+ * 
+ * @since 5.1
+ */
+public final class SshChannelStatistics {
+
+	private final int usedChannels;
+	private final int freeChannels;
+	private final int peakUsedChannels;
+	private final int channelLimit;
+	private final long acquireCount;
+	private final long waitCount;
+	private final long totalWaitTime;
+	private final long maxWaitTime;
+	private final long timeoutCount;
+	private final long busyTime;
+	private final long attrCacheHitCount;
+	private final long attrCacheMissCount;
+
+	public SshChannelStatistics(int usedChannels, int freeChannels,
+			int peakUsedChannels, int channelLimit, long acquireCount,
+			long waitCount, long totalWaitTime, long maxWaitTime,
+			long timeoutCount, long busyTime, long attrCacheHitCount,
+			long attrCacheMissCount) {
+		this.usedChannels = usedChannels;
+		this.freeChannels = freeChannels;
+		this.peakUsedChannels = peakUsedChannels;
+		this.channelLimit = channelLimit;
+		this.acquireCount = acquireCount;
+		this.waitCount = waitCount;
+		this.totalWaitTime = totalWaitTime;
+		this.maxWaitTime = maxWaitTime;
+		this.timeoutCount = timeoutCount;
+		this.busyTime = busyTime;
+		this.attrCacheHitCount = attrCacheHitCount;
+		this.attrCacheMissCount = attrCacheMissCount;
+	}
+
+	/**
+	 * Returns the number of the channels currently used
+	 */
+	public int getUsedChannels() {
+		return usedChannels;
+	}
+
+	/**
+	 * Returns the number of the opened channels available for reuse
+	 */
+	public int getFreeChannels() {
+		return freeChannels;
+	}
+
+	/**
+	 * Returns the maximum number of the channels used at the same time
+	 */
+	public int getPeakUsedChannels() {
+		return peakUsedChannels;
+	}
+
+	/**
+	 * Returns the current limit of the channels, it is reduced if the server
+	 * refuses to open more channels.
+	 */
+	public int getChannelLimit() {
+		return channelLimit;
+	}
+
+	/**
+	 * Returns the number of the successfully acquired channels
+	 */
+	public long getAcquireCount() {
+		return acquireCount;
+	}
+
+	/**
+	 * Returns the number of the acquisitions which had to wait
+	 */
+	public long getWaitCount() {
+		return waitCount;
+	}
+
+	public long getTotalWaitTime() {
+		return totalWaitTime;
+	}
+
+	public long getMaxWaitTime() {
+		return maxWaitTime;
+	}
+
+	/**
+	 * Returns the average time of acquiring the channel
+	 */
+	public double getAverageWaitTime() {
+		return acquireCount != 0 ? (double) totalWaitTime / acquireCount : 0;
+	}
+
+	/**
+	 * Returns the number of the failed acquisitions
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/**
+	 * Returns the total time the channels were used, so the utilization
+	 * during the period is the difference of this value divided by the period
+	 * and the number of the channels.
+	 */
+	public long getBusyTime() {
+		return busyTime;
+	}
+
+	/**
+	 * Returns the number of the file attribute lookups answered from the cache
+	 */
+	public long getAttrCacheHitCount() {
+		return attrCacheHitCount;
+	}
+
+	/**
+	 * Returns the number of the file attribute lookups requesting the server
+	 */
+	public long getAttrCacheMissCount() {
+		return attrCacheMissCount;
+	}
+
+	/**
+	 * Returns the ratio of the file attribute lookups answered from the cache
+	 * or <code>0</code> if there were no lookups yet.
+	 */
+	public double getAttrCacheHitRate() {
+		final long total = attrCacheHitCount + attrCacheMissCount;
+		return total != 0 ? (double) attrCacheHitCount / total : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "used=" + usedChannels + ",free=" + freeChannels + ",peak=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ peakUsedChannels + ",limit=" + channelLimit + ",acquired=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ acquireCount + ",waited=" + waitCount + ",waitTime=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ totalWaitTime + ",maxWaitTime=" + maxWaitTime //$NON-NLS-1$
+				+ ",timeouts=" + timeoutCount + ",busyTime=" + busyTime //$NON-NLS-1$ //$NON-NLS-2$
+				+ ",attrCacheHits=" + attrCacheHitCount //$NON-NLS-1$
+				+ ",attrCacheMisses=" + attrCacheMissCount; //$NON-NLS-1$
+	}
+
+}
@@ -15,9 +15,14 @@ import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.eclipse.dltk.ssh.core.SshChannelStatistics;
 import org.eclipse.jsch.core.IJSchService;
 
+import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
@@ -37,6 +42,44 @@ public class ChannelPool {
 	private final List<ChannelSftp> freeChannels = new ArrayList<ChannelSftp>();
 	private final Map<ChannelSftp, ChannelUsageInfo> usedChannels = new IdentityHashMap<ChannelSftp, ChannelUsageInfo>();
 
+	/**
+	 * The maximum number of the channels, the OpenSSH server allows 10
+	 * sessions per connection by default.
+	 */
+	private static final int MAX_CHANNELS = 10;
+
+	/**
+	 * The time after which the limit reduced because the server refused to
+	 * open the channel is increased again.
+	 */
+	private static final long LIMIT_RECOVERY_INTERVAL = 30 * 1000;
+
+	/**
+	 * The time to wait before the next attempt if the channel could not be
+	 * opened.
+	 */
+	private static final long RETRY_INTERVAL = 1000;
+
+	/**
+	 * The current limit of the channels, reduced when the server refuses to
+	 * open more channels (e.g. they are used for the other purposes).
+	 */
+	private int channelLimit = MAX_CHANNELS;
+	private long channelLimitReduced;
+	/**
+	 * The number of the channels being opened (outside of the lock)
+	 */
+	private int openingChannels = 0;
+
+	// statistics
+	private long acquireCount;
+	private long waitCount;
+	private long totalWaitTime;
+	private long maxWaitTime;
+	private long timeoutCount;
+	private long busyTime;
+	private int peakUsedChannels;
+
 	private static class ChannelUsageInfo {
 		final Object context;
 		final long timestamp;
@@ -104,7 +147,7 @@ public class ChannelPool {
 	private static boolean DEBUG = false;
 
 	protected void connectSession() throws JSchException {
-		synchronized (lock) {
+		synchronized (sessionLock) {
 			if (session == null) {
 				IJSchService service = Activator.getDefault().getJSch();
 				session = service.createSession(hostName, port, userName);
@@ -130,35 +173,181 @@ public class ChannelPool {
 		}
 	}
 
-	private final Object channelNotifier = new Object();
-	private final Object lock = new Object();
+	/**
+	 * Fair lock, so the threads waiting for the channel are served in the
+	 * order of arrival.
+	 */
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition channelReleased = lock.newCondition();
+	private final Object sessionLock = new Object();
 
+	/**
+	 * Returns the free channel, opening the new one if there are no free
+	 * channels and the limit is not reached yet, otherwise waits for the
+	 * channel to be released. Returns <code>null</code> if the channel could
+	 * not be acquired during the specified time.
+	 */
 	protected ChannelSftp acquireChannel(final Object context, long timeout) {
 		final long start = System.currentTimeMillis();
+		final long deadline = start + timeout;
 		for (;;) {
+			lock.lock();
 			try {
-				return acquireChannel(context);
-			} catch (JSchException e) {
-				if (isOutOfChannels(e)) {
+				for (;;) {
+					final ChannelSftp channel = takeFreeChannel(context);
+					if (channel != null) {
+						acquired(start);
+						return channel;
+					}
+					if (canOpenChannel()) {
+						++openingChannels;
+						break;
+					}
 					if (tryCloseOldChannels()) {
 						continue;
 					}
+					if (!awaitChannel(deadline)) {
+						++timeoutCount;
+						Activator.warn("Timeout acquiring channel for " //$NON-NLS-1$
+								+ context);
+						return null;
+					}
 				}
-				if (System.currentTimeMillis() - start > timeout) {
-					Activator.error("Failed to create direct connection", e); //$NON-NLS-1$					
-					return null;
-				}
-				if (DEBUG) {
-					log(" <sleep>"); //$NON-NLS-1$
-				}
+			} finally {
+				lock.unlock();
+			}
+			final ChannelSftp channel;
+			try {
+				channel = openChannel();
+			} catch (JSchException e) {
+				lock.lock();
 				try {
-					synchronized (channelNotifier) {
-						channelNotifier.wait(1000);
+					--openingChannels;
+					channelReleased.signal();
+					if (isOutOfChannels(e)) {
+						reduceChannelLimit();
+						if (tryCloseOldChannels()) {
+							continue;
+						}
+					}
+					if (System.currentTimeMillis() > deadline) {
+						++timeoutCount;
+						Activator.error("Failed to create direct connection", e); //$NON-NLS-1$
+						return null;
+					}
+					if (DEBUG) {
+						log(" <sleep>"); //$NON-NLS-1$
 					}
-				} catch (InterruptedException e1) {
-					return null;
+					awaitChannel(Math.min(deadline, System.currentTimeMillis()
+							+ RETRY_INTERVAL));
+					if (Thread.currentThread().isInterrupted()) {
+						return null;
+					}
+				} finally {
+					lock.unlock();
 				}
+				continue;
+			}
+			lock.lock();
+			try {
+				--openingChannels;
+				usedChannels.put(channel, createUsageInfo(context));
+				acquired(start);
+			} finally {
+				lock.unlock();
 			}
+			return channel;
+		}
+	}
+
+	/**
+	 * Waits until the channel is released or the deadline. Should be called
+	 * with the lock held.
+	 * 
+	 * @return <code>false</code> if the deadline passed or the thread was
+	 *         interrupted
+	 */
+	private boolean awaitChannel(long deadline) {
+		final long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+			return false;
+		}
+		try {
+			channelReleased.await(remaining, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the connected free channel marking it as used or
+	 * <code>null</code> if there are no free channels. Should be called with
+	 * the lock held.
+	 */
+	private ChannelSftp takeFreeChannel(Object context) {
+		while (!freeChannels.isEmpty()) {
+			final ChannelSftp channel = freeChannels.remove(freeChannels
+					.size() - 1);
+			if (channel.isConnected()) {
+				usedChannels.put(channel, createUsageInfo(context));
+				return channel;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Tests if the new channel could be opened. Should be called with the
+	 * lock held.
+	 */
+	private boolean canOpenChannel() {
+		final int count = usedChannels.size() + openingChannels;
+		if (count < channelLimit) {
+			return true;
+		}
+		if (channelLimit < MAX_CHANNELS
+				&& System.currentTimeMillis() - channelLimitReduced > LIMIT_RECOVERY_INTERVAL) {
+			// try if the server allows more channels now
+			++channelLimit;
+			channelLimitReduced = System.currentTimeMillis();
+			return count < channelLimit;
+		}
+		return false;
+	}
+
+	/**
+	 * Limits the channels to the currently opened ones, as the server refused
+	 * to open more. Should be called with the lock held.
+	 */
+	private void reduceChannelLimit() {
+		final int count = Math.max(1, usedChannels.size() + openingChannels);
+		if (count < channelLimit) {
+			if (DEBUG) {
+				log("channelLimit=" + count); //$NON-NLS-1$
+			}
+			channelLimit = count;
+		}
+		channelLimitReduced = System.currentTimeMillis();
+	}
+
+	/**
+	 * Updates the statistics after the channel was acquired. Should be called
+	 * with the lock held.
+	 */
+	private void acquired(long start) {
+		++acquireCount;
+		final long wait = System.currentTimeMillis() - start;
+		if (wait > 0) {
+			++waitCount;
+			totalWaitTime += wait;
+			if (wait > maxWaitTime) {
+				maxWaitTime = wait;
+			}
+		}
+		if (usedChannels.size() > peakUsedChannels) {
+			peakUsedChannels = usedChannels.size();
 		}
 	}
 
@@ -168,46 +357,61 @@ public class ChannelPool {
 
 	private static final String CHANNEL_IS_NOT_OPENED = "channel is not opened."; //$NON-NLS-1$
 
+	/**
+	 * Returns the free channel or opens the new one without waiting or
+	 * checking the limit.
+	 */
 	protected ChannelSftp acquireChannel(Object context) throws JSchException {
-		connectSession();
 		if (DEBUG) {
 			log("<acquireChannel> " + context); //$NON-NLS-1$
 		}
-		synchronized (lock) {
-			while (!freeChannels.isEmpty()) {
-				final ChannelSftp channel = freeChannels.remove(freeChannels
-						.size() - 1);
-				if (channel.isConnected()) {
-					usedChannels.put(channel, createUsageInfo(context));
-					return channel;
-				}
+		lock.lock();
+		try {
+			final ChannelSftp channel = takeFreeChannel(context);
+			if (channel != null) {
+				acquired(System.currentTimeMillis());
+				return channel;
 			}
+		} finally {
+			lock.unlock();
+		}
+		final ChannelSftp channel = openChannel();
+		lock.lock();
+		try {
+			usedChannels.put(channel, createUsageInfo(context));
+			acquired(System.currentTimeMillis());
+		} finally {
+			lock.unlock();
 		}
-		final ChannelSftp channel = (ChannelSftp) session.openChannel("sftp"); //$NON-NLS-1$			
+		return channel;
+	}
+
+	private ChannelSftp openChannel() throws JSchException {
+		connectSession();
+		final ChannelSftp channel = (ChannelSftp) session.openChannel("sftp"); //$NON-NLS-1$
 		if (!channel.isConnected()) {
 			if (DEBUG) {
 				log("channel.connect()"); //$NON-NLS-1$
 			}
 			channel.connect(10000);
 		}
-		synchronized (lock) {
-			usedChannels.put(channel, createUsageInfo(context));
+		return channel;
+	}
+
+	/**
+	 * Opens the "exec" channel for the specified command over the pooled
+	 * session. The returned channel is not connected yet (so the streams
+	 * could be configured), it is not managed by this pool and should be
+	 * disconnected by the caller.
+	 */
+	protected ChannelExec openExecChannel(String command) throws JSchException {
+		connectSession();
+		if (DEBUG) {
+			log("<openExecChannel> " + command); //$NON-NLS-1$
 		}
+		final ChannelExec channel = (ChannelExec) session.openChannel("exec"); //$NON-NLS-1$
+		channel.setCommand(command);
 		return channel;
-		// String eToStr = e.toString();
-		// if (eToStr.indexOf("Auth cancel") >= 0 || eToStr.indexOf("Auth fail") >= 0 || eToStr.indexOf("session is down") >= 0) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-		// if (session.isConnected()) {
-		// session.disconnect();
-		// session = null;
-		// }
-		// }
-		// if (needLog) {
-		// Activator.error("Failed to create direct connection", e); //$NON-NLS-1$
-		// }
-		// if (session != null) {
-		// session.disconnect();
-		// session = null;
-		// }
 	}
 
 	/**
@@ -221,15 +425,18 @@ public class ChannelPool {
 		if (DEBUG) {
 			log("<releaseChannel>"); //$NON-NLS-1$
 		}
-		synchronized (lock) {
-			if (usedChannels.remove(channel) != null) {
+		lock.lock();
+		try {
+			final ChannelUsageInfo usageInfo = usedChannels.remove(channel);
+			if (usageInfo != null) {
+				busyTime += System.currentTimeMillis() - usageInfo.timestamp;
 				freeChannels.add(channel);
 			} else {
 				channel.disconnect();
 			}
-		}
-		synchronized (channelNotifier) {
-			channelNotifier.notifyAll();
+			channelReleased.signal();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -237,45 +444,50 @@ public class ChannelPool {
 		if (DEBUG) {
 			log("<destroyChannel>"); //$NON-NLS-1$
 		}
-		synchronized (lock) {
+		lock.lock();
+		try {
 			usedChannels.remove(channel);
+			channelReleased.signal();
+		} finally {
+			lock.unlock();
 		}
 		channel.disconnect();
 	}
 
+	/**
+	 * Should be called with the lock held.
+	 */
 	private boolean tryCloseOldChannels() {
-		synchronized (lock) {
-			if (!usedChannels.isEmpty()) {
-				ChannelSftp selectedChannel = null;
-				ChannelUsageInfo selectedUsageInfo = null;
-				long selectedLastActivity = 0;
-				for (Map.Entry<ChannelSftp, ChannelUsageInfo> entry : usedChannels
-						.entrySet()) {
-					final ChannelUsageInfo usageInfo = entry.getValue();
-					if (canClose(usageInfo.context)) {
-						final long lastActivity = getLastActivity(usageInfo.context);
-						if (lastActivity != Long.MIN_VALUE) {
-							if (selectedChannel == null
-									|| lastActivity < selectedLastActivity) {
-								selectedChannel = entry.getKey();
-								selectedUsageInfo = usageInfo;
-								selectedLastActivity = lastActivity;
-							}
+		if (!usedChannels.isEmpty()) {
+			ChannelSftp selectedChannel = null;
+			ChannelUsageInfo selectedUsageInfo = null;
+			long selectedLastActivity = 0;
+			for (Map.Entry<ChannelSftp, ChannelUsageInfo> entry : usedChannels
+					.entrySet()) {
+				final ChannelUsageInfo usageInfo = entry.getValue();
+				if (canClose(usageInfo.context)) {
+					final long lastActivity = getLastActivity(usageInfo.context);
+					if (lastActivity != Long.MIN_VALUE) {
+						if (selectedChannel == null
+								|| lastActivity < selectedLastActivity) {
+							selectedChannel = entry.getKey();
+							selectedUsageInfo = usageInfo;
+							selectedLastActivity = lastActivity;
 						}
 					}
 				}
-				if (selectedChannel != null) {
-					final long currentTime = System.currentTimeMillis();
-					if (currentTime - selectedLastActivity > inactivityTimeout) {
-						Activator
-								.warn("Close active channel \"" + selectedUsageInfo.context + "\" created " + (currentTime - selectedUsageInfo.timestamp) + "ms ago, lastActivity=" + (currentTime - selectedLastActivity) + "ms ago"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-						if (DEBUG) {
-							log(" channel.disconnect() " + selectedUsageInfo.context); //$NON-NLS-1$
-						}
-						selectedChannel.disconnect();
-						usedChannels.remove(selectedChannel);
-						return true;
+			}
+			if (selectedChannel != null) {
+				final long currentTime = System.currentTimeMillis();
+				if (currentTime - selectedLastActivity > inactivityTimeout) {
+					Activator
+							.warn("Close active channel \"" + selectedUsageInfo.context + "\" created " + (currentTime - selectedUsageInfo.timestamp) + "ms ago, lastActivity=" + (currentTime - selectedLastActivity) + "ms ago"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					if (DEBUG) {
+						log(" channel.disconnect() " + selectedUsageInfo.context); //$NON-NLS-1$
 					}
+					selectedChannel.disconnect();
+					usedChannels.remove(selectedChannel);
+					return true;
 				}
 			}
 		}
@@ -304,7 +516,8 @@ public class ChannelPool {
 	}
 
 	public void disconnect() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			for (ChannelSftp channel : freeChannels) {
 				if (DEBUG) {
 					log("channel.disconnect()"); //$NON-NLS-1$
@@ -323,6 +536,12 @@ public class ChannelPool {
 				entry.getKey().disconnect();
 			}
 			usedChannels.clear();
+			channelLimit = MAX_CHANNELS;
+			channelReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		synchronized (sessionLock) {
 			if (session != null) {
 				if (DEBUG) {
 					log("session.disconnect()"); //$NON-NLS-1$
@@ -333,6 +552,22 @@ public class ChannelPool {
 		}
 	}
 
+	/**
+	 * Returns the snapshot of the channel usage statistics.
+	 */
+	public SshChannelStatistics getChannelStatistics() {
+		lock.lock();
+		try {
+			return new SshChannelStatistics(usedChannels.size(), freeChannels
+					.size(), peakUsedChannels, channelLimit, acquireCount,
+					waitCount, totalWaitTime, maxWaitTime, timeoutCount,
+					busyTime, SshFileHandle.getAttrCacheHitCount(),
+					SshFileHandle.getAttrCacheMissCount());
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	private static final long loadedAt = System.currentTimeMillis();
 
 	protected void log(Object message) {
@@ -340,6 +575,13 @@ public class ChannelPool {
 				.println("[" + (System.currentTimeMillis() - loadedAt) + "] " + message); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
+	/**
+	 * Returns the "user@host:port" string identifying this connection.
+	 */
+	protected String getLocation() {
+		return userName + "@" + hostName + ":" + port; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	public boolean isConnected() {
 		return session != null && session.isConnected();
 	}
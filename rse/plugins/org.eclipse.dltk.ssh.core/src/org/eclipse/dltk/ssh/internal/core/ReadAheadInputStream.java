@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the underlying stream in the background thread, so the remote reads
+ * of the next blocks are in progress while the current block is processed.
+ */
+class ReadAheadInputStream extends InputStream {
+
+	private static final int CHUNK_SIZE = 32 * 1024;
+	private static final int CHUNK_COUNT = 8;
+
+	private static class Chunk {
+		final byte[] data;
+		final int length;
+		final IOException error;
+
+		Chunk(byte[] data, int length) {
+			this.data = data;
+			this.length = length;
+			this.error = null;
+		}
+
+		Chunk(IOException error) {
+			this.data = null;
+			this.length = -1;
+			this.error = error;
+		}
+	}
+
+	private static final Chunk EOF = new Chunk(null, -1);
+
+	/**
+	 * The stream which could be left in the inconsistent state by the
+	 * interrupted read (e.g. in the middle of the packet), so its resources
+	 * should be discarded instead of being reused.
+	 */
+	interface Destroyable {
+		void destroy() throws IOException;
+	}
+
+	private final InputStream in;
+	private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<Chunk>(
+			CHUNK_COUNT);
+	private final Thread reader;
+
+	private Chunk current;
+	private int position;
+	private volatile boolean closed = false;
+
+	ReadAheadInputStream(InputStream in, String name) {
+		this.in = in;
+		this.reader = new Thread("Read ahead " + name) { //$NON-NLS-1$
+			@Override
+			public void run() {
+				readChunks();
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void readChunks() {
+		boolean broken = false;
+		try {
+			while (!closed) {
+				final byte[] buffer = new byte[CHUNK_SIZE];
+				int length = 0;
+				while (length < buffer.length) {
+					final int count = in.read(buffer, length, buffer.length
+							- length);
+					if (count < 0) {
+						break;
+					}
+					length += count;
+				}
+				if (length != 0) {
+					put(new Chunk(buffer, length));
+				}
+				if (length < buffer.length) {
+					put(EOF);
+					return;
+				}
+			}
+		} catch (InterruptedIOException e) {
+			broken = true;
+			put(new Chunk(e));
+		} catch (IOException e) {
+			put(new Chunk(e));
+		} finally {
+			if (closed) {
+				// wakes up the thread waiting for the next chunk
+				chunks.offer(EOF);
+			}
+			/*
+			 * The underlying stream is closed by the reader thread only, since
+			 * closing it returns the channel to the pool, which must not happen
+			 * while the channel is still being read.
+			 */
+			Thread.interrupted();
+			try {
+				if (broken && in instanceof Destroyable) {
+					((Destroyable) in).destroy();
+				} else {
+					in.close();
+				}
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Adds the chunk to the queue unless this stream is closed. The queue is
+	 * cleared when closing, so the reader thread waiting for the space here
+	 * continues then.
+	 */
+	private void put(Chunk chunk) {
+		if (closed) {
+			return;
+		}
+		boolean interrupted = false;
+		try {
+			for (;;) {
+				try {
+					chunks.put(chunk);
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns the current chunk, waiting for the next one if the current is
+	 * consumed.
+	 */
+	private Chunk getChunk() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+		}
+		if (current == null || current != EOF && position >= current.length) {
+			try {
+				current = chunks.take();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			if (closed) {
+				current = EOF;
+				throw new IOException("Stream closed"); //$NON-NLS-1$
+			}
+			position = 0;
+			if (current.error != null) {
+				final IOException error = current.error;
+				current = EOF;
+				throw error;
+			}
+		}
+		return current;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final Chunk chunk = getChunk();
+		if (chunk == EOF) {
+			return -1;
+		}
+		return chunk.data[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		final Chunk chunk = getChunk();
+		if (chunk == EOF) {
+			return -1;
+		}
+		final int count = Math.min(len, chunk.length - position);
+		System.arraycopy(chunk.data, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (current == null || current == EOF) {
+			return 0;
+		}
+		return current.length - position;
+	}
+
+	/**
+	 * Stops the reader thread, the underlying stream is closed by that thread
+	 * when the pending read completes. The read is not interrupted, since the
+	 * interrupted read of the piped stream leaves the channel in the middle of
+	 * the packet.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			chunks.clear();
+			current = EOF;
+		}
+	}
+
+}
@@ -6,14 +6,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.dltk.ssh.core.ISshConnection;
+import org.eclipse.dltk.ssh.core.ISshConnectionExtension;
 import org.eclipse.dltk.ssh.core.ISshFileHandle;
 
 import com.jcraft.jsch.ChannelSftp;
@@ -22,7 +25,8 @@ import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
 
-public class SshConnection extends ChannelPool implements ISshConnection {
+public class SshConnection extends ChannelPool implements
+		ISshConnectionExtension {
 	private long disabledTime = 0;
 
 	private static abstract class Operation {
@@ -234,7 +238,8 @@ public class SshConnection extends ChannelPool implements ISshConnection {
 
 	}
 
-	private class GetOperationInputStream extends BufferedInputStream {
+	private class GetOperationInputStream extends BufferedInputStream
+			implements ReadAheadInputStream.Destroyable {
 
 		private final ChannelSftp channel;
 		private int activeCalls;
@@ -255,6 +260,14 @@ public class SshConnection extends ChannelPool implements ISshConnection {
 			}
 		}
 
+		/**
+		 * Disconnects the channel instead of returning it to the pool, as the
+		 * pending response could be left in it.
+		 */
+		public void destroy() {
+			destroyChannel(channel);
+		}
+
 		private void updateLastActivity() {
 			lastActivity = System.currentTimeMillis();
 		}
@@ -559,6 +572,83 @@ public class SshConnection extends ChannelPool implements ISshConnection {
 		return disabledTime > System.currentTimeMillis();
 	}
 
+	public Process exec(String script) throws CoreException {
+		if (isDisabled()) {
+			throw new CoreException(new Status(IStatus.ERROR,
+					Activator.PLUGIN_ID, "Connection is disabled")); //$NON-NLS-1$
+		}
+		try {
+			return new SshProcess(openExecChannel(SshProcess
+					.toShellCommand(script)));
+		} catch (JSchException e) {
+			throw new CoreException(new Status(IStatus.ERROR,
+					Activator.PLUGIN_ID, "Error executing " + script, e)); //$NON-NLS-1$
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR,
+					Activator.PLUGIN_ID, "Error executing " + script, e)); //$NON-NLS-1$
+		}
+	}
+
+	private static final String MIRRORS_FOLDER = "mirrors"; //$NON-NLS-1$
+
+	private final Map<IPath, SshTreeMirror> mirrors = new HashMap<IPath, SshTreeMirror>();
+
+	public boolean synchronizeMirror(IPath folder, IProgressMonitor monitor) {
+		if (isDisabled()) {
+			return false;
+		}
+		final Activator activator = Activator.getDefault();
+		if (activator == null) {
+			return false;
+		}
+		SshTreeMirror mirror;
+		synchronized (mirrors) {
+			mirror = mirrors.get(folder);
+			if (mirror == null) {
+				mirror = new SshTreeMirror(this, folder, activator
+						.getStateLocation().append(MIRRORS_FOLDER).toFile());
+				mirrors.put(folder, mirror);
+			}
+		}
+		return mirror.synchronize(monitor);
+	}
+
+	/**
+	 * Returns the stream reading the local copy of the specified file if it is
+	 * in the synchronized mirror and was not modified remotely.
+	 */
+	InputStream getMirroredStream(IPath path, SftpATTRS attrs) {
+		final SshTreeMirror[] candidates;
+		synchronized (mirrors) {
+			if (mirrors.isEmpty()) {
+				return null;
+			}
+			candidates = mirrors.values().toArray(
+					new SshTreeMirror[mirrors.size()]);
+		}
+		for (SshTreeMirror mirror : candidates) {
+			final InputStream stream = mirror.openStream(path, attrs);
+			if (stream != null) {
+				return stream;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Tests if the specified file is in the folder requested to mirror.
+	 */
+	boolean isMirrored(IPath path) {
+		synchronized (mirrors) {
+			for (IPath root : mirrors.keySet()) {
+				if (root.isPrefixOf(path)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	public void setDisabled(int timeout) {
 		disabledTime = System.currentTimeMillis() + timeout;
 	}
@@ -11,6 +11,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.dltk.ssh.core.ISshFileHandle;
+import org.eclipse.dltk.utils.ExpiringLRUCache;
 
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
@@ -18,19 +19,35 @@ import com.jcraft.jsch.ChannelSftp.LsEntry;
 public class SshFileHandle implements ISshFileHandle,
 		IOutputStreamCloseListener {
 	private static final int CACHE_LIMIT = 1000;
+	private static final long CACHE_ENTRY_LIFETIME = 10 * 1000;
+	private static final int CACHE_CONCURRENCY = 8;
+	/**
+	 * The size of the file to read the contents in the background
+	 */
+	private static final long READ_AHEAD_THRESHOLD = 256 * 1024;
 
+	/**
+	 * The attributes of the file, <code>null</code> if the file does not exist.
+	 */
 	private static class CacheEntry {
 		final SftpATTRS attrs;
-		final long lastAccess;
 
-		public CacheEntry(SftpATTRS attrs, long lastAccess) {
+		public CacheEntry(SftpATTRS attrs) {
 			this.attrs = attrs;
-			this.lastAccess = lastAccess;
 		}
 
 	}
 
-	private static final Map<SshFileHandle, CacheEntry> attrCache = new HashMap<SshFileHandle, CacheEntry>();
+	private static final ExpiringLRUCache<SshFileHandle, CacheEntry> attrCache = new ExpiringLRUCache<SshFileHandle, CacheEntry>(
+			CACHE_LIMIT, CACHE_ENTRY_LIFETIME, CACHE_CONCURRENCY);
+
+	static long getAttrCacheHitCount() {
+		return attrCache.getHitCount();
+	}
+
+	static long getAttrCacheMissCount() {
+		return attrCache.getMissCount();
+	}
 
 	private SshConnection connection = null;
 	private IPath path;
@@ -101,9 +118,7 @@ public class SshFileHandle implements ISshFileHandle,
 
 	private void cleanAttrs() {
 		attrs = null;
-		synchronized (attrCache) {
-			attrCache.remove(this);
-		}
+		attrCache.remove(this);
 	}
 
 	private void fetchAttrs(boolean clean) {
@@ -116,28 +131,27 @@ public class SshFileHandle implements ISshFileHandle,
 		}
 	}
 
+	/**
+	 * Returns the attributes of this handle or the cached ones, without
+	 * requesting the server.
+	 */
+	private SftpATTRS getKnownAttrs() {
+		if (attrs != null) {
+			return attrs;
+		}
+		final CacheEntry entry = attrCache.get(this);
+		return entry != null ? entry.attrs : null;
+	}
+
 	private SftpATTRS fetchCacheAttrs(boolean clean) {
-		long c = 0;
-		synchronized (attrCache) {
-			if (attrCache.size() > CACHE_LIMIT) {
-				attrCache.clear();
-			} else if (!clean) {
-				final CacheEntry entry = attrCache.get(this);
-				if (entry != null) {
-					c = System.currentTimeMillis();
-					if ((c - entry.lastAccess) < 1000 * 10) {
-						return entry.attrs;
-					}
-				}
+		if (!clean) {
+			final CacheEntry entry = attrCache.get(this);
+			if (entry != null) {
+				return entry.attrs;
 			}
 		}
 		SftpATTRS attrs = connection.getAttrs(path);
-		if (c == 0) {
-			c = System.currentTimeMillis();
-		}
-		synchronized (attrCache) {
-			attrCache.put(this, new CacheEntry(attrs, c));
-		}
+		attrCache.put(this, new CacheEntry(attrs));
 		return attrs;
 	}
 
@@ -170,7 +184,7 @@ public class SshFileHandle implements ISshFileHandle,
 		Vector<LsEntry> list = connection.list(path);
 		if (list != null) {
 			children.clear();
-			long c = System.currentTimeMillis();
+			final Map<SshFileHandle, CacheEntry> childAttrCache = new HashMap<SshFileHandle, CacheEntry>();
 			for (LsEntry entry : list) {
 				String filename = entry.getFilename();
 				if (filename.equals(".") || filename.equals("..")) { //$NON-NLS-1$ //$NON-NLS-2$
@@ -186,11 +200,10 @@ public class SshFileHandle implements ISshFileHandle,
 				}
 				SshFileHandle childHandle = new SshFileHandle(connection,
 						childPath, childAttrs);
-				synchronized (attrCache) {
-					attrCache.put(childHandle, new CacheEntry(childAttrs, c));
-				}
+				childAttrCache.put(childHandle, new CacheEntry(childAttrs));
 				children.put(filename, childHandle);
 			}
+			attrCache.putAll(childAttrCache);
 			childrenFetched = true;
 		}
 	}
@@ -210,8 +223,25 @@ public class SshFileHandle implements ISshFileHandle,
 		// if (attrs.isLink() && linkTarget != null) {
 		// current = linkTarget;
 		// }
+		if (connection.isMirrored(path)) {
+			fetchAttrs();
+			if (attrs != null) {
+				final InputStream stream = connection.getMirroredStream(path,
+						attrs);
+				if (stream != null) {
+					return stream;
+				}
+			}
+		}
 		final InputStream stream = connection.get(this.path);
 		// TODO throw/wrap original exception?
+		if (stream != null) {
+			// the size is not requested just to decide on reading ahead
+			final SftpATTRS known = getKnownAttrs();
+			if (known != null && known.getSize() > READ_AHEAD_THRESHOLD) {
+				return new ReadAheadInputStream(stream, path.toString());
+			}
+		}
 		return stream;
 		// }
 		// return null;
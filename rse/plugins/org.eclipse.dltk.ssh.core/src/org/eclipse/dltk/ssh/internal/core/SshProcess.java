@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+
+/**
+ * {@link Process} running the command in the "exec" channel of the ssh
+ * session.
+ */
+class SshProcess extends Process {
+
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long POLL_INTERVAL = 50;
+
+	private final ChannelExec channel;
+	private final InputStream input;
+	private final InputStream error;
+	private final OutputStream output;
+
+	/**
+	 * Connects the specified channel (the command should be already set).
+	 */
+	SshProcess(ChannelExec channel) throws JSchException, IOException {
+		this.channel = channel;
+		// the streams should be requested before connecting
+		this.input = channel.getInputStream();
+		this.error = channel.getExtInputStream();
+		this.output = channel.getOutputStream();
+		channel.connect(CONNECT_TIMEOUT);
+	}
+
+	/**
+	 * Returns the command running the specified script by /bin/sh, as the
+	 * command of the "exec" channel is interpreted by the login shell of the
+	 * remote user. The script is passed as the single quoted argument without
+	 * the line breaks and with the quotes and exclamation marks escaped, so
+	 * the Bourne and C shell families parse it the same way.
+	 */
+	static String toShellCommand(String script) {
+		final String line = joinLines(script);
+		final StringBuilder sb = new StringBuilder("/bin/sh -c '"); //$NON-NLS-1$
+		for (int i = 0; i < line.length(); ++i) {
+			final char ch = line.charAt(i);
+			if (ch == '\'') {
+				sb.append("'\\''"); //$NON-NLS-1$
+			} else if (ch == '!') {
+				// history substitution of csh
+				sb.append("'\\!'"); //$NON-NLS-1$
+			} else {
+				sb.append(ch);
+			}
+		}
+		return sb.append('\'').toString();
+	}
+
+	/**
+	 * The variable holding the line break, set by the script if the line
+	 * break is quoted in it.
+	 */
+	private static final String NL_VARIABLE = "DLTK_NL"; //$NON-NLS-1$
+
+	/**
+	 * Returns the script on the single line, since the C shell does not
+	 * accept the line breaks in the quoted argument. The lines are joined by
+	 * the command separators, the comments are removed and the line breaks
+	 * inside the quotes (e.g. in the multi-line values of the variables) are
+	 * replaced by the variable holding the line break.
+	 */
+	private static String joinLines(String script) {
+		final StringBuilder sb = new StringBuilder();
+		char quote = 0;
+		boolean separate = false;
+		boolean quotedLineBreak = false;
+		for (int i = 0; i < script.length(); ++i) {
+			final char ch = script.charAt(i);
+			if (ch == '\r' && i + 1 < script.length()
+					&& script.charAt(i + 1) == '\n') {
+				continue;
+			}
+			final boolean lineBreak = ch == '\n' || ch == '\r';
+			if (quote == 0) {
+				if (lineBreak) {
+					trimEnd(sb);
+					separate = sb.length() != 0;
+					continue;
+				}
+				if (ch == '#' && (separate || isWordStart(sb))) {
+					// skip the comment
+					while (i + 1 < script.length()
+							&& script.charAt(i + 1) != '\n'
+							&& script.charAt(i + 1) != '\r') {
+						++i;
+					}
+					continue;
+				}
+				if (separate) {
+					// the line could be continued, e.g. after "&&" or "|"
+					final char last = sb.charAt(sb.length() - 1);
+					sb.append(last == ';' || last == '&' || last == '|' ? " " //$NON-NLS-1$
+							: "; "); //$NON-NLS-1$
+					separate = false;
+				}
+				if (ch == '\\' && i + 1 < script.length()) {
+					final char next = script.charAt(++i);
+					if (next != '\n' && next != '\r') {
+						sb.append(ch).append(next);
+					}
+					continue;
+				}
+				if (ch == '\'' || ch == '"') {
+					quote = ch;
+				}
+				sb.append(ch);
+			} else if (lineBreak) {
+				quotedLineBreak = true;
+				if (quote == '\'') {
+					sb.append("'\"$").append(NL_VARIABLE).append("\"'"); //$NON-NLS-1$ //$NON-NLS-2$
+				} else {
+					sb.append("${").append(NL_VARIABLE).append('}'); //$NON-NLS-1$
+				}
+			} else if (quote == '"' && ch == '\\' && i + 1 < script.length()) {
+				final char next = script.charAt(++i);
+				if (next != '\n' && next != '\r') {
+					sb.append(ch).append(next);
+				}
+			} else {
+				if (ch == quote) {
+					quote = 0;
+				}
+				sb.append(ch);
+			}
+		}
+		trimEnd(sb);
+		if (quotedLineBreak) {
+			// the command substitution removes the trailing line breaks
+			sb.insert(0, NL_VARIABLE + "=$(printf '\\nx'); " + NL_VARIABLE //$NON-NLS-1$
+					+ "=${" + NL_VARIABLE + "%x}; "); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return sb.toString();
+	}
+
+	private static boolean isWordStart(StringBuilder sb) {
+		if (sb.length() == 0) {
+			return true;
+		}
+		final char last = sb.charAt(sb.length() - 1);
+		return Character.isWhitespace(last) || last == ';' || last == '&'
+				|| last == '|' || last == '(';
+	}
+
+	private static void trimEnd(StringBuilder sb) {
+		int end = sb.length();
+		while (end > 0 && Character.isWhitespace(sb.charAt(end - 1))) {
+			--end;
+		}
+		sb.setLength(end);
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return input;
+	}
+
+	@Override
+	public InputStream getErrorStream() {
+		return error;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return output;
+	}
+
+	@Override
+	public int waitFor() throws InterruptedException {
+		// JSch does not notify about the channel close
+		while (!channel.isClosed()) {
+			Thread.sleep(POLL_INTERVAL);
+		}
+		return channel.getExitStatus();
+	}
+
+	@Override
+	public int exitValue() {
+		if (!channel.isClosed()) {
+			throw new IllegalThreadStateException();
+		}
+		return channel.getExitStatus();
+	}
+
+	@Override
+	public void destroy() {
+		channel.disconnect();
+	}
+
+}
@@ -0,0 +1,622 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+
+/**
+ * The local copy of the remote folder tree. The files are transferred as the
+ * single tar stream over the "exec" channel, instead of the separate SFTP
+ * requests for each file. The contents are stored by their SHA-1 digest (so
+ * the same files from the different folders are stored once) and the index of
+ * the mirror keeps the timestamps of the remote files, so the subsequent
+ * synchronizations transfer only the modified files.
+ */
+class SshTreeMirror {
+
+	private static final String BLOBS_FOLDER = "blobs"; //$NON-NLS-1$
+	private static final String INDEX_EXTENSION = ".index"; //$NON-NLS-1$
+	private static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The index of the mirror not synchronized for this time is deleted with
+	 * its blobs.
+	 */
+	private static final long MAX_INDEX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * The blobs are shared by the mirrors of all the connections, so they are
+	 * stored when holding the read lock and deleted when holding the write
+	 * lock.
+	 */
+	private static final ReadWriteLock BLOBS_LOCK = new ReentrantReadWriteLock();
+
+	static class Entry {
+		/**
+		 * The modification time in seconds
+		 */
+		final long mtime;
+		final long size;
+		/**
+		 * The digest of the contents, <code>null</code> for the remote files
+		 * not transferred yet
+		 */
+		final String digest;
+
+		Entry(long mtime, long size, String digest) {
+			this.mtime = mtime;
+			this.size = size;
+			this.digest = digest;
+		}
+
+		boolean isSame(long mtime, long size) {
+			return this.mtime == mtime && this.size == size;
+		}
+	}
+
+	/**
+	 * The output of the remote command, waiting for the data with the
+	 * cancellation checks, so the transfer could be cancelled while the remote
+	 * side does not respond. Closing this stream disconnects the channel.
+	 */
+	private static class ChannelInputStream extends FilterInputStream {
+		private static final int POLL_INTERVAL = 50;
+
+		private final Channel channel;
+		private final IProgressMonitor monitor;
+
+		ChannelInputStream(InputStream in, Channel channel,
+				IProgressMonitor monitor) {
+			super(in);
+			this.channel = channel;
+			this.monitor = monitor;
+		}
+
+		private void await() throws IOException {
+			while (in.available() == 0 && !channel.isClosed()) {
+				if (monitor.isCanceled()) {
+					throw new InterruptedIOException();
+				}
+				try {
+					Thread.sleep(POLL_INTERVAL);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			await();
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			await();
+			return super.read(b, off, len);
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			await();
+			return super.skip(n);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.disconnect();
+		}
+	}
+
+	private final SshConnection connection;
+	private final IPath root;
+	private final File location;
+	private final File blobs;
+	private final File indexFile;
+
+	/**
+	 * The entries by the path relative to the root, <code>null</code> until
+	 * the mirror is synchronized.
+	 */
+	private Map<String, Entry> entries;
+
+	SshTreeMirror(SshConnection connection, IPath root, File location) {
+		this.connection = connection;
+		this.root = root;
+		this.location = location;
+		this.blobs = new File(location, BLOBS_FOLDER);
+		this.indexFile = new File(location, digest(connection.getLocation()
+				+ root.toString())
+				+ INDEX_EXTENSION);
+	}
+
+	IPath getRoot() {
+		return root;
+	}
+
+	/**
+	 * Returns the stream reading the local copy of the specified file or
+	 * <code>null</code> if there is no copy or it differs from the remote
+	 * file.
+	 */
+	InputStream openStream(IPath path, SftpATTRS attrs) {
+		return openStream(path, attrs.getMTime(), attrs.getSize());
+	}
+
+	/**
+	 * Returns the stream reading the local copy of the specified file or
+	 * <code>null</code> if there is no copy or it has the different
+	 * modification time (in seconds) or size.
+	 */
+	InputStream openStream(IPath path, long mtime, long size) {
+		final Entry entry;
+		synchronized (this) {
+			if (entries == null || !root.isPrefixOf(path)) {
+				return null;
+			}
+			entry = entries.get(path.removeFirstSegments(root.segmentCount())
+					.toString());
+		}
+		if (entry == null || !entry.isSame(mtime, size)) {
+			return null;
+		}
+		try {
+			return new BufferedInputStream(new FileInputStream(
+					getBlobFile(entry.digest)), BUFFER_SIZE);
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Transfers the files modified since the previous synchronization, or all
+	 * the files if synchronized for the first time. The blobs no longer
+	 * referenced are deleted after that.
+	 *
+	 * @return <code>true</code> if the mirror was synchronized or
+	 *         <code>false</code> if it failed or was cancelled
+	 */
+	synchronized boolean synchronize(IProgressMonitor monitor) {
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		monitor.beginTask("Synchronizing " + root, IProgressMonitor.UNKNOWN); //$NON-NLS-1$
+		try {
+			final Map<String, Entry> previous;
+			BLOBS_LOCK.readLock().lock();
+			try {
+				previous = entries != null ? entries : loadIndex();
+				final Map<String, Entry> current = update(previous, monitor);
+				if (current == null) {
+					return false;
+				}
+				saveIndex(current);
+				entries = current;
+			} finally {
+				BLOBS_LOCK.readLock().unlock();
+			}
+			if (hasGarbage(previous, entries)) {
+				collectGarbage();
+			}
+			return true;
+		} catch (InterruptedIOException e) {
+			// cancelled
+			return false;
+		} catch (JSchException e) {
+			Activator.error("Failed to synchronize " + root, e); //$NON-NLS-1$
+			return false;
+		} catch (IOException e) {
+			Activator.error("Failed to synchronize " + root, e); //$NON-NLS-1$
+			return false;
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Returns the new entries of the mirror, transferring the files modified
+	 * since the previous entries were saved (or all the files if there are no
+	 * previous entries). The previous entries are not modified.
+	 *
+	 * @return the new entries or <code>null</code> if failed or cancelled
+	 */
+	private Map<String, Entry> update(Map<String, Entry> previous,
+			IProgressMonitor monitor) throws JSchException, IOException {
+		final Map<String, Entry> current = new HashMap<String, Entry>(
+				previous);
+		final List<String> requested;
+		if (current.isEmpty()) {
+			requested = null;
+		} else {
+			final Map<String, Entry> remote = new HashMap<String, Entry>();
+			if (!listFiles(root, "", remote, monitor)) { //$NON-NLS-1$
+				return null;
+			}
+			requested = new ArrayList<String>();
+			for (Map.Entry<String, Entry> e : remote.entrySet()) {
+				final Entry entry = current.get(e.getKey());
+				if (entry == null
+						|| !entry.isSame(e.getValue().mtime, e.getValue().size)) {
+					requested.add(e.getKey());
+				}
+			}
+			current.keySet().retainAll(remote.keySet());
+		}
+		if (requested == null || !requested.isEmpty()) {
+			if (!transfer(requested, current, monitor)) {
+				return null;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Lists the regular files in the specified folder and its subfolders, with
+	 * the single request for each folder. The listed entries have no digest.
+	 */
+	boolean listFiles(IPath folder, String prefix, Map<String, Entry> result,
+			IProgressMonitor monitor) {
+		if (monitor.isCanceled()) {
+			return false;
+		}
+		final Vector<LsEntry> list = connection.list(folder);
+		if (list == null) {
+			// unreadable subfolders are mirrored as empty
+			return prefix.length() != 0;
+		}
+		for (LsEntry entry : list) {
+			final String name = entry.getFilename();
+			if (name.equals(".") || name.equals("..")) { //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			}
+			final SftpATTRS attrs = entry.getAttrs();
+			if (attrs.isDir()) {
+				if (!listFiles(folder.append(name), prefix + name + '/',
+						result, monitor)) {
+					return false;
+				}
+			} else if (attrs.isReg()) {
+				result.put(prefix + name, new Entry(attrs.getMTime(), attrs
+						.getSize(), null));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the tar stream with the specified files (or the whole tree if
+	 * <code>null</code>), the paths are relative to the root. Closing the
+	 * returned stream terminates the transfer.
+	 */
+	InputStream openTar(List<String> files, IProgressMonitor monitor)
+			throws JSchException, IOException {
+		final StringBuilder command = new StringBuilder();
+		command.append("cd ").append(quote(root.toString())); //$NON-NLS-1$
+		if (files == null) {
+			command.append(" && tar -cf - ."); //$NON-NLS-1$
+		} else {
+			// the names are passed via the standard input
+			command.append(" && tar -cf - -T -"); //$NON-NLS-1$
+		}
+		final ChannelExec channel = connection.openExecChannel(SshProcess
+				.toShellCommand(command.toString()));
+		boolean connected = false;
+		try {
+			if (files != null) {
+				final StringBuilder names = new StringBuilder();
+				for (String file : files) {
+					names.append(file).append('\n');
+				}
+				channel.setInputStream(new ByteArrayInputStream(names
+						.toString().getBytes(UTF_8)));
+			}
+			final InputStream input = channel.getInputStream();
+			channel.connect(CONNECT_TIMEOUT);
+			connected = true;
+			return new ChannelInputStream(input, channel, monitor);
+		} finally {
+			if (!connected) {
+				channel.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Transfers the specified files (or the whole tree if <code>null</code>)
+	 * and stores them to the mirror.
+	 */
+	private boolean transfer(List<String> files, Map<String, Entry> current,
+			IProgressMonitor monitor) throws JSchException, IOException {
+		final InputStream input = openTar(files, monitor);
+		try {
+			final TarReader reader = new TarReader(new BufferedInputStream(
+					input, BUFFER_SIZE));
+			TarReader.Entry entry;
+			while ((entry = reader.next()) != null) {
+				if (monitor.isCanceled()) {
+					return false;
+				}
+				if (entry.isFile()) {
+					String name = entry.name;
+					if (name.startsWith("./")) { //$NON-NLS-1$
+						name = name.substring(2);
+					}
+					monitor.subTask(name);
+					final String digest = store(reader.getContents());
+					current.put(name, new Entry(entry.mtime, entry.size,
+							digest));
+				}
+			}
+			return reader.isComplete();
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Stores the contents to the blob named by its digest.
+	 *
+	 * @return the digest
+	 */
+	private String store(InputStream contents) throws IOException {
+		final MessageDigest digest = createDigest();
+		blobs.mkdirs();
+		final File temp = File.createTempFile("blob", null, blobs); //$NON-NLS-1$
+		try {
+			final OutputStream output = new BufferedOutputStream(
+					new FileOutputStream(temp), BUFFER_SIZE);
+			try {
+				final byte[] buffer = new byte[BUFFER_SIZE];
+				int len;
+				while ((len = contents.read(buffer)) != -1) {
+					digest.update(buffer, 0, len);
+					output.write(buffer, 0, len);
+				}
+			} finally {
+				output.close();
+			}
+			final String result = toHex(digest.digest());
+			final File blob = getBlobFile(result);
+			if (!blob.exists()) {
+				blob.getParentFile().mkdirs();
+				if (!temp.renameTo(blob) && !blob.exists()) {
+					throw new IOException("Failed to create " + blob); //$NON-NLS-1$
+				}
+			}
+			return result;
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private File getBlobFile(String digest) {
+		return new File(new File(blobs, digest.substring(0, 2)), digest);
+	}
+
+	/**
+	 * Tests if the previous entries reference the blobs not referenced by the
+	 * current ones.
+	 */
+	private static boolean hasGarbage(Map<String, Entry> previous,
+			Map<String, Entry> current) {
+		if (previous.isEmpty()) {
+			return false;
+		}
+		final Set<String> digests = new HashSet<String>();
+		for (Entry entry : current.values()) {
+			digests.add(entry.digest);
+		}
+		for (Entry entry : previous.values()) {
+			if (!digests.contains(entry.digest)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes the blobs not referenced by the index of any mirror in the
+	 * location, together with the indexes not synchronized for a long time.
+	 * Skipped if the other mirrors are being synchronized at the moment, the
+	 * blobs are collected after the next synchronization then.
+	 */
+	void collectGarbage() throws IOException {
+		if (!BLOBS_LOCK.writeLock().tryLock()) {
+			return;
+		}
+		try {
+			final Set<String> referenced = new HashSet<String>();
+			final long expired = System.currentTimeMillis() - MAX_INDEX_AGE;
+			final File[] files = location.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					if (!file.isFile()
+							|| !file.getName().endsWith(INDEX_EXTENSION)) {
+						continue;
+					}
+					if (!file.equals(indexFile)
+							&& file.lastModified() < expired) {
+						file.delete();
+					} else {
+						for (Entry entry : readIndex(file).values()) {
+							referenced.add(entry.digest);
+						}
+					}
+				}
+			}
+			final File[] folders = blobs.listFiles();
+			if (folders == null) {
+				return;
+			}
+			for (File folder : folders) {
+				final File[] blobFiles = folder.listFiles();
+				if (blobFiles != null) {
+					for (File blob : blobFiles) {
+						if (!referenced.contains(blob.getName())) {
+							blob.delete();
+						}
+					}
+				}
+				// the empty folders and the temporary files left by the
+				// interrupted transfers
+				folder.delete();
+			}
+		} finally {
+			BLOBS_LOCK.writeLock().unlock();
+		}
+	}
+
+	private Map<String, Entry> loadIndex() throws IOException {
+		final Map<String, Entry> result = readIndex(indexFile);
+		// the blobs could be removed externally
+		for (Iterator<Entry> i = result.values().iterator(); i.hasNext();) {
+			if (!getBlobFile(i.next().digest).exists()) {
+				i.remove();
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, Entry> readIndex(File file) throws IOException {
+		final Map<String, Entry> result = new HashMap<String, Entry>();
+		if (!file.exists()) {
+			return result;
+		}
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				// mtime \t size \t digest \t path
+				final String[] parts = line.split("\t", 4); //$NON-NLS-1$
+				if (parts.length == 4) {
+					try {
+						result.put(parts[3], new Entry(Long
+								.parseLong(parts[0]), Long.parseLong(parts[1]),
+								parts[2]));
+					} catch (NumberFormatException e) {
+						// skip
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return result;
+	}
+
+	private void saveIndex(Map<String, Entry> entries) throws IOException {
+		indexFile.getParentFile().mkdirs();
+		final File temp = new File(indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(temp), UTF_8));
+		try {
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				final Entry entry = e.getValue();
+				writer.write(Long.toString(entry.mtime));
+				writer.write('\t');
+				writer.write(Long.toString(entry.size));
+				writer.write('\t');
+				writer.write(entry.digest);
+				writer.write('\t');
+				writer.write(e.getKey());
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		indexFile.delete();
+		if (!temp.renameTo(indexFile)) {
+			throw new IOException("Failed to save " + indexFile); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Quotes the argument for the remote shell.
+	 */
+	private static String quote(String value) {
+		return "'" + value.replace("'", "'\\''") + "'"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	private static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			final IOException ioe = new IOException(e.getMessage());
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	private static String digest(String value) {
+		try {
+			return toHex(createDigest().digest(value.getBytes(UTF_8)));
+		} catch (IOException e) {
+			// SHA-1 and UTF-8 are always available
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private static String toHex(byte[] bytes) {
+		final char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; ++i) {
+			result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(result);
+	}
+
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Sequentially reads the entries of the tar stream. Supports the ustar format
+ * with the GNU long names and pax path headers, as produced by the GNU and BSD
+ * tar implementations.
+ */
+class TarReader {
+
+	private static final int BLOCK_SIZE = 512;
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	private static final char TYPE_FILE = '0';
+	private static final char TYPE_FILE_OLD = '\0';
+	private static final char TYPE_GNU_LONG_NAME = 'L';
+	private static final char TYPE_PAX_HEADER = 'x';
+
+	static class Entry {
+		final String name;
+		final char type;
+		final long size;
+		/**
+		 * The modification time in seconds
+		 */
+		final long mtime;
+
+		Entry(String name, char type, long size, long mtime) {
+			this.name = name;
+			this.type = type;
+			this.size = size;
+			this.mtime = mtime;
+		}
+
+		boolean isFile() {
+			return type == TYPE_FILE || type == TYPE_FILE_OLD;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private final InputStream input;
+	private final byte[] header = new byte[BLOCK_SIZE];
+	private long entryRemaining = 0;
+	private long padding = 0;
+	private boolean complete = false;
+
+	TarReader(InputStream input) {
+		this.input = input;
+	}
+
+	/**
+	 * Returns the next entry or <code>null</code> if there are no more
+	 * entries. The contents of the previous entry are skipped if not read.
+	 */
+	Entry next() throws IOException {
+		String longName = null;
+		for (;;) {
+			skip(entryRemaining + padding);
+			entryRemaining = 0;
+			padding = 0;
+			if (!readHeader()) {
+				return null;
+			}
+			final String name = longName != null ? longName : getName();
+			final char type = (char) header[156];
+			final long size = parseNumber(124, 12);
+			final long mtime = parseNumber(136, 12);
+			entryRemaining = size;
+			padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+			if (type == TYPE_GNU_LONG_NAME) {
+				longName = trimNull(readString(size));
+			} else if (type == TYPE_PAX_HEADER) {
+				final String path = parsePaxPath(readString(size));
+				if (path != null) {
+					longName = path;
+				}
+			} else {
+				return new Entry(name, type, size, mtime);
+			}
+		}
+	}
+
+	/**
+	 * Returns the stream with the contents of the current entry. The returned
+	 * stream should not be closed.
+	 */
+	InputStream getContents() {
+		return new InputStream() {
+			@Override
+			public int read() throws IOException {
+				if (entryRemaining <= 0) {
+					return -1;
+				}
+				final int b = input.read();
+				if (b < 0) {
+					throw new EOFException();
+				}
+				--entryRemaining;
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (entryRemaining <= 0) {
+					return -1;
+				}
+				if (len > entryRemaining) {
+					len = (int) entryRemaining;
+				}
+				final int count = input.read(b, off, len);
+				if (count < 0) {
+					throw new EOFException();
+				}
+				entryRemaining -= count;
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * Tests if the end of archive marker was read, i.e. the stream was not
+	 * truncated.
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	private boolean readHeader() throws IOException {
+		int offset = 0;
+		while (offset < BLOCK_SIZE) {
+			final int count = input.read(header, offset, BLOCK_SIZE - offset);
+			if (count < 0) {
+				if (offset == 0) {
+					return false;
+				}
+				throw new EOFException();
+			}
+			offset += count;
+		}
+		for (int i = 0; i < BLOCK_SIZE; ++i) {
+			if (header[i] != 0) {
+				return true;
+			}
+		}
+		complete = true;
+		return false;
+	}
+
+	private void skip(long count) throws IOException {
+		while (count > 0) {
+			final long skipped = input.skip(count);
+			if (skipped > 0) {
+				count -= skipped;
+			} else if (input.read() >= 0) {
+				--count;
+			} else {
+				throw new EOFException();
+			}
+		}
+	}
+
+	private String readString(long size) throws IOException {
+		final byte[] buffer = new byte[(int) size];
+		int offset = 0;
+		while (offset < buffer.length) {
+			final int count = input.read(buffer, offset, buffer.length
+					- offset);
+			if (count < 0) {
+				throw new EOFException();
+			}
+			offset += count;
+		}
+		entryRemaining = 0;
+		return new String(buffer, UTF_8);
+	}
+
+	private String getName() throws UnsupportedEncodingException {
+		final String name = getString(0, 100);
+		if (header[257] == 'u' && header[258] == 's' && header[259] == 't'
+				&& header[260] == 'a' && header[261] == 'r') {
+			final String prefix = getString(345, 155);
+			if (prefix.length() != 0) {
+				return prefix + '/' + name;
+			}
+		}
+		return name;
+	}
+
+	private String getString(int offset, int length)
+			throws UnsupportedEncodingException {
+		int end = offset;
+		while (end < offset + length && header[end] != 0) {
+			++end;
+		}
+		return new String(header, offset, end - offset, UTF_8);
+	}
+
+	private static String trimNull(String value) {
+		final int pos = value.indexOf('\0');
+		return pos >= 0 ? value.substring(0, pos) : value;
+	}
+
+	/**
+	 * Parses the octal number (or the base-256 one, used for the large values)
+	 */
+	private long parseNumber(int offset, int length) {
+		if ((header[offset] & 0x80) != 0) {
+			long result = header[offset] & 0x7F;
+			for (int i = 1; i < length; ++i) {
+				result = (result << 8) | (header[offset + i] & 0xFF);
+			}
+			return result;
+		}
+		long result = 0;
+		int i = offset;
+		final int end = offset + length;
+		while (i < end && (header[i] == ' ' || header[i] == 0)) {
+			++i;
+		}
+		while (i < end && header[i] >= '0' && header[i] <= '7') {
+			result = (result << 3) + (header[i] - '0');
+			++i;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the value of the "path" record of the pax extended header, the
+	 * records are in the "length key=value\n" format.
+	 */
+	private static String parsePaxPath(String records) {
+		String path = null;
+		for (String record : records.split("\n")) { //$NON-NLS-1$
+			final int space = record.indexOf(' ');
+			if (space >= 0 && record.startsWith("path=", space + 1)) { //$NON-NLS-1$
+				path = record.substring(space + 6);
+			}
+		}
+		return path;
+	}
+
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.core.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.dltk.ssh.internal.core.ReadAheadInputStreamTest;
+import org.eclipse.dltk.ssh.internal.core.SshProcessTest;
+import org.eclipse.dltk.ssh.internal.core.SshTreeMirrorTest;
+import org.eclipse.dltk.ssh.internal.core.TarReaderTest;
+
+public class AllTests {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite("org.eclipse.dltk.ssh.core.tests"); //$NON-NLS-1$
+		// $JUnit-BEGIN$
+		suite.addTestSuite(TarReaderTest.class);
+		suite.addTestSuite(SshTreeMirrorTest.class);
+		suite.addTestSuite(SshProcessTest.class);
+		suite.addTestSuite(ReadAheadInputStreamTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class ReadAheadInputStreamTest extends TestCase {
+
+	/**
+	 * The stream recording whether it is being read and whether it is closed
+	 * or destroyed. The reads are blocked while {@link #blocked} is not
+	 * released, and are interrupted as the reads of the piped stream.
+	 */
+	private static class TestStream extends FilterInputStream implements
+			ReadAheadInputStream.Destroyable {
+		final CountDownLatch blocked;
+		final CountDownLatch closed = new CountDownLatch(1);
+		volatile Thread reading;
+		volatile boolean closedWhileReading;
+		volatile boolean destroyed;
+
+		TestStream(byte[] data, boolean blocking) {
+			super(new ByteArrayInputStream(data));
+			blocked = new CountDownLatch(blocking ? 1 : 0);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			reading = Thread.currentThread();
+			try {
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				return super.read(b, off, len);
+			} finally {
+				reading = null;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (reading != null) {
+				closedWhileReading = true;
+			}
+			super.close();
+			closed.countDown();
+		}
+
+		public void destroy() {
+			destroyed = true;
+			closed.countDown();
+		}
+	}
+
+	private static byte[] data(int size) {
+		final byte[] data = new byte[size];
+		for (int i = 0; i < size; ++i) {
+			data[i] = (byte) i;
+		}
+		return data;
+	}
+
+	public void testRead() throws IOException {
+		final byte[] data = data(100 * 1024 + 1);
+		final InputStream stream = new ReadAheadInputStream(new TestStream(
+				data, false), "test");
+		try {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			assertEquals(0, stream.read());
+			output.write(0);
+			final byte[] buffer = new byte[1000];
+			int len;
+			while ((len = stream.read(buffer)) != -1) {
+				output.write(buffer, 0, len);
+			}
+			assertTrue(Arrays.equals(data, output.toByteArray()));
+			assertEquals(-1, stream.read());
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void testClosedAtEnd() throws Exception {
+		final TestStream in = new TestStream(data(10), false);
+		final InputStream stream = new ReadAheadInputStream(in, "test");
+		assertEquals(0, stream.read());
+		assertTrue(in.closed.await(10, TimeUnit.SECONDS));
+		stream.close();
+	}
+
+	public void testCloseWhileReading() throws Exception {
+		final TestStream in = new TestStream(data(10), true);
+		final InputStream stream = new ReadAheadInputStream(in, "test");
+		while (in.reading == null) {
+			Thread.sleep(10);
+		}
+		stream.close();
+		try {
+			stream.read();
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		// not closed until the pending read completes
+		assertFalse(in.closed.await(100, TimeUnit.MILLISECONDS));
+		in.blocked.countDown();
+		assertTrue(in.closed.await(10, TimeUnit.SECONDS));
+		assertFalse(in.closedWhileReading);
+		assertFalse(in.destroyed);
+	}
+
+	public void testInterruptedRead() throws Exception {
+		final TestStream in = new TestStream(data(10), true);
+		final InputStream stream = new ReadAheadInputStream(in, "test");
+		Thread reading;
+		while ((reading = in.reading) == null) {
+			Thread.sleep(10);
+		}
+		reading.interrupt();
+		try {
+			stream.read();
+			fail();
+		} catch (InterruptedIOException e) {
+			// expected
+		}
+		// the interrupted stream is not reused
+		assertTrue(in.closed.await(10, TimeUnit.SECONDS));
+		assertTrue(in.destroyed);
+		stream.close();
+	}
+
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class SshProcessTest extends TestCase {
+
+	public void testSingleLine() {
+		assertEquals("/bin/sh -c 'ls -l'", SshProcess.toShellCommand("ls -l\n"));
+	}
+
+	public void testLines() {
+		assertEquals("/bin/sh -c 'cd /tmp; export A=1; ls'", SshProcess
+				.toShellCommand("cd /tmp\n\nexport A=1\r\nls\n"));
+	}
+
+	public void testLineSeparators() {
+		assertEquals("/bin/sh -c 'a; b & c && d; e'", SshProcess
+				.toShellCommand("a;\nb &\nc &&\nd  \ne"));
+	}
+
+	public void testQuotes() {
+		assertEquals("/bin/sh -c 'echo '\\''a b'\\'''", SshProcess
+				.toShellCommand("echo 'a b'"));
+	}
+
+	public void testHistorySubstitution() {
+		assertEquals("/bin/sh -c 'echo a'\\!'b'", SshProcess
+				.toShellCommand("echo a!b"));
+	}
+
+	public void testComments() {
+		assertEquals("/bin/sh -c 'a; echo a#b'", SshProcess
+				.toShellCommand("# don't\na # comment\n  # more\necho a#b"));
+	}
+
+	public void testLineContinuation() {
+		assertEquals("/bin/sh -c 'echo a b'", SshProcess
+				.toShellCommand("echo a \\\nb"));
+	}
+
+	public void testMultiLineValue() {
+		final String command = SshProcess
+				.toShellCommand("A='x\ny';export A\nls");
+		assertEquals(-1, command.indexOf('\n'));
+		assertTrue(command
+				.endsWith("A='\\''x'\\''\"$DLTK_NL\"'\\''y'\\'';export A; ls'"));
+	}
+
+	/**
+	 * Runs the command by the local shell to check the quoting.
+	 */
+	public void testExecution() throws Exception {
+		if (!new File("/bin/sh").exists()) {
+			return;
+		}
+		assertEquals("x y! z'w\n", execute("A='x y!'\n" + "export A\n"
+				+ "echo \"$A\" 'z'\\''w'\n"));
+	}
+
+	public void testMultiLineValueExecution() throws Exception {
+		if (!new File("/bin/sh").exists()) {
+			return;
+		}
+		assertEquals("a\n\nb|c\nd\n|\n", execute("A='a\n\nb'\n"
+				+ "B=\"c\r\nd\n\"; export A B\n"
+				+ "printf '%s|%s|\\n' \"$A\" \"$B\"\n"));
+	}
+
+	/**
+	 * Runs the command by the local shell and returns its output.
+	 */
+	private static String execute(String script) throws Exception {
+		final String command = SshProcess.toShellCommand(script);
+		final Process process = Runtime.getRuntime().exec(
+				new String[] { "/bin/sh", "-c", command });
+		process.getOutputStream().close();
+		final String output = read(process.getInputStream());
+		assertEquals(0, process.waitFor());
+		return output;
+	}
+
+	private static String read(InputStream input) throws IOException {
+		try {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[100];
+			int len;
+			while ((len = input.read(buffer)) != -1) {
+				output.write(buffer, 0, len);
+			}
+			return output.toString("UTF-8");
+		} finally {
+			input.close();
+		}
+	}
+
+}
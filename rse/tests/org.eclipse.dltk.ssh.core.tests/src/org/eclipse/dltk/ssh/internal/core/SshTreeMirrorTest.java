@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+
+@SuppressWarnings("nls")
+public class SshTreeMirrorTest extends TestCase {
+
+	private static final IPath ROOT = new Path("/usr/lib/tcl");
+
+	private static class RemoteFile {
+		final String contents;
+		final long mtime;
+
+		RemoteFile(String contents, long mtime) {
+			this.contents = contents;
+			this.mtime = mtime;
+		}
+	}
+
+	/**
+	 * The mirror of the {@link #remote} files, recording the transfers.
+	 */
+	private class TestMirror extends SshTreeMirror {
+		final List<List<String>> transfers = new ArrayList<List<String>>();
+		boolean truncated = false;
+
+		TestMirror(IPath root) {
+			super(new SshConnection("user", "host", 22), root, location);
+		}
+
+		@Override
+		boolean listFiles(IPath folder, String prefix,
+				Map<String, Entry> result, IProgressMonitor monitor) {
+			if (monitor.isCanceled()) {
+				return false;
+			}
+			for (Map.Entry<String, RemoteFile> e : remote.entrySet()) {
+				result.put(e.getKey(), new Entry(e.getValue().mtime,
+						e.getValue().contents.length(), null));
+			}
+			return true;
+		}
+
+		@Override
+		InputStream openTar(List<String> files, IProgressMonitor monitor) {
+			transfers.add(files);
+			final TarBuilder builder = new TarBuilder();
+			if (files == null) {
+				builder.folder("./");
+				for (Map.Entry<String, RemoteFile> e : remote.entrySet()) {
+					builder.file("./" + e.getKey(), e.getValue().contents, e
+							.getValue().mtime);
+				}
+			} else {
+				for (String file : files) {
+					final RemoteFile remoteFile = remote.get(file);
+					builder.file(file, remoteFile.contents, remoteFile.mtime);
+				}
+			}
+			return new ByteArrayInputStream(truncated ? builder
+					.toTruncatedByteArray() : builder.toByteArray());
+		}
+
+		String read(String path, long mtime, long size) throws IOException {
+			final InputStream stream = openStream(ROOT.append(path), mtime,
+					size);
+			if (stream == null) {
+				return null;
+			}
+			try {
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				int b;
+				while ((b = stream.read()) != -1) {
+					output.write(b);
+				}
+				return output.toString("UTF-8");
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+	private final Map<String, RemoteFile> remote = new HashMap<String, RemoteFile>();
+	private File location;
+
+	@Override
+	protected void setUp() throws Exception {
+		location = File.createTempFile("mirror", null);
+		location.delete();
+		location.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(location);
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private int countBlobs() {
+		int count = 0;
+		final File[] folders = new File(location, "blobs").listFiles();
+		if (folders != null) {
+			for (File folder : folders) {
+				final File[] blobs = folder.listFiles();
+				if (blobs != null) {
+					count += blobs.length;
+				}
+			}
+		}
+		return count;
+	}
+
+	public void testFirstSynchronization() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		remote.put("lib/b.tcl", new RemoteFile("b", 20));
+		final TestMirror mirror = new TestMirror(ROOT);
+		assertNull(mirror.read("a.tcl", 10, 1));
+		assertTrue(mirror.synchronize(null));
+		assertEquals(1, mirror.transfers.size());
+		assertNull(mirror.transfers.get(0));
+		assertEquals("a", mirror.read("a.tcl", 10, 1));
+		assertEquals("b", mirror.read("lib/b.tcl", 20, 1));
+		// modified remotely
+		assertNull(mirror.read("a.tcl", 11, 1));
+		assertNull(mirror.read("a.tcl", 10, 2));
+		assertNull(mirror.openStream(new Path("/usr/lib/a.tcl"), 10, 1));
+	}
+
+	public void testModifiedFiles() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		remote.put("lib/b.tcl", new RemoteFile("b", 20));
+		final TestMirror mirror = new TestMirror(ROOT);
+		assertTrue(mirror.synchronize(null));
+		remote.put("a.tcl", new RemoteFile("aa", 11));
+		remote.put("c.tcl", new RemoteFile("c", 30));
+		remote.remove("lib/b.tcl");
+		assertTrue(mirror.synchronize(null));
+		assertEquals(2, mirror.transfers.size());
+		assertEquals(new HashSet<String>(Arrays.asList("a.tcl", "c.tcl")),
+				new HashSet<String>(mirror.transfers.get(1)));
+		assertEquals("aa", mirror.read("a.tcl", 11, 2));
+		assertNull(mirror.read("a.tcl", 10, 1));
+		assertEquals("c", mirror.read("c.tcl", 30, 1));
+		assertNull(mirror.read("lib/b.tcl", 20, 1));
+		// nothing is modified
+		assertTrue(mirror.synchronize(null));
+		assertEquals(2, mirror.transfers.size());
+	}
+
+	public void testIndexReloaded() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		assertTrue(new TestMirror(ROOT).synchronize(null));
+		final TestMirror mirror = new TestMirror(ROOT);
+		assertTrue(mirror.synchronize(null));
+		assertTrue(mirror.transfers.isEmpty());
+		assertEquals("a", mirror.read("a.tcl", 10, 1));
+	}
+
+	public void testGarbageCollected() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		remote.put("b.tcl", new RemoteFile("a", 20));
+		remote.put("c.tcl", new RemoteFile("c", 30));
+		final TestMirror mirror = new TestMirror(ROOT);
+		assertTrue(mirror.synchronize(null));
+		assertEquals(2, countBlobs());
+		// the old contents are still referenced by b.tcl
+		remote.put("a.tcl", new RemoteFile("x", 11));
+		assertTrue(mirror.synchronize(null));
+		assertEquals(3, countBlobs());
+		remote.remove("b.tcl");
+		assertTrue(mirror.synchronize(null));
+		assertEquals(2, countBlobs());
+		assertEquals("x", mirror.read("a.tcl", 11, 1));
+		assertEquals("c", mirror.read("c.tcl", 30, 1));
+	}
+
+	public void testSharedBlobs() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		final TestMirror first = new TestMirror(ROOT);
+		final TestMirror second = new TestMirror(new Path("/opt/tcl"));
+		assertTrue(first.synchronize(null));
+		assertTrue(second.synchronize(null));
+		assertEquals(1, countBlobs());
+		remote.put("a.tcl", new RemoteFile("b", 11));
+		assertTrue(first.synchronize(null));
+		// still referenced by the second mirror
+		assertEquals(2, countBlobs());
+		assertTrue(second.synchronize(null));
+		assertEquals(1, countBlobs());
+	}
+
+	public void testCancelled() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		final TestMirror mirror = new TestMirror(ROOT);
+		assertTrue(mirror.synchronize(null));
+		remote.put("a.tcl", new RemoteFile("b", 11));
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		assertFalse(mirror.synchronize(monitor));
+		assertEquals(1, mirror.transfers.size());
+		assertEquals("a", mirror.read("a.tcl", 10, 1));
+	}
+
+	public void testTruncatedTransfer() throws IOException {
+		remote.put("a.tcl", new RemoteFile("a", 10));
+		final TestMirror mirror = new TestMirror(ROOT);
+		mirror.truncated = true;
+		assertFalse(mirror.synchronize(null));
+		assertNull(mirror.read("a.tcl", 10, 1));
+		mirror.truncated = false;
+		assertTrue(mirror.synchronize(null));
+		assertEquals("a", mirror.read("a.tcl", 10, 1));
+	}
+
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Writes the tar stream in the ustar format for the tests.
+ */
+@SuppressWarnings("nls")
+class TarBuilder {
+
+	private static final int BLOCK_SIZE = 512;
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	/**
+	 * Adds the file, the names longer than 100 characters are written with
+	 * the preceding GNU long name entry.
+	 */
+	TarBuilder file(String name, String contents, long mtime) {
+		final byte[] nameBytes = bytes(name);
+		if (nameBytes.length > 100) {
+			entry("././@LongLink", 'L', bytes(name + '\0'), 0);
+			return entry(name.substring(0, 100), '0', bytes(contents), mtime);
+		}
+		return entry(name, '0', bytes(contents), mtime);
+	}
+
+	/**
+	 * Adds the file with the path in the preceding pax extended header.
+	 */
+	TarBuilder paxFile(String path, String contents, long mtime) {
+		final String record = "path=" + path + '\n';
+		final int recordLength = bytes(record).length;
+		// the length of the record includes the length itself
+		int length = recordLength + 2;
+		while (length != Integer.toString(length).length() + 1 + recordLength) {
+			++length;
+		}
+		entry("PaxHeader", 'x', bytes(length + " " + record), 0);
+		return entry("truncated", '0', bytes(contents), mtime);
+	}
+
+	/**
+	 * Adds the file with the name split into the ustar prefix and name.
+	 */
+	TarBuilder prefixedFile(String prefix, String name, String contents,
+			long mtime) {
+		final byte[] header = header(name, '0', bytes(contents).length, mtime);
+		final byte[] prefixBytes = bytes(prefix);
+		System.arraycopy(prefixBytes, 0, header, 345, prefixBytes.length);
+		writeChecksum(header);
+		output.write(header, 0, header.length);
+		return data(bytes(contents));
+	}
+
+	TarBuilder folder(String name) {
+		return entry(name, '5', new byte[0], 0);
+	}
+
+	TarBuilder entry(String name, char type, byte[] data, long mtime) {
+		final byte[] header = header(name, type, data.length, mtime);
+		writeChecksum(header);
+		output.write(header, 0, header.length);
+		return data(data);
+	}
+
+	/**
+	 * Returns the stream with the end of archive marker.
+	 */
+	byte[] toByteArray() {
+		output.write(new byte[BLOCK_SIZE * 2], 0, BLOCK_SIZE * 2);
+		return output.toByteArray();
+	}
+
+	/**
+	 * Returns the stream without the end of archive marker.
+	 */
+	byte[] toTruncatedByteArray() {
+		return output.toByteArray();
+	}
+
+	private TarBuilder data(byte[] data) {
+		output.write(data, 0, data.length);
+		final int padding = (BLOCK_SIZE - data.length % BLOCK_SIZE)
+				% BLOCK_SIZE;
+		output.write(new byte[padding], 0, padding);
+		return this;
+	}
+
+	private static byte[] header(String name, char type, long size,
+			long mtime) {
+		final byte[] header = new byte[BLOCK_SIZE];
+		final byte[] nameBytes = bytes(name);
+		System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+		octal(header, 100, 8, 0644);
+		octal(header, 108, 8, 0);
+		octal(header, 116, 8, 0);
+		octal(header, 124, 12, size);
+		octal(header, 136, 12, mtime);
+		header[156] = (byte) type;
+		System.arraycopy(bytes("ustar\u000000"), 0, header, 257, 8);
+		return header;
+	}
+
+	private static void writeChecksum(byte[] header) {
+		for (int i = 148; i < 156; ++i) {
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for (int i = 0; i < BLOCK_SIZE; ++i) {
+			checksum += header[i] & 0xFF;
+		}
+		octal(header, 148, 7, checksum);
+	}
+
+	private static void octal(byte[] header, int offset, int length,
+			long value) {
+		final String digits = Long.toOctalString(value);
+		final int start = offset + length - 1 - digits.length();
+		for (int i = offset; i < start; ++i) {
+			header[i] = '0';
+		}
+		System.arraycopy(bytes(digits), 0, header, start, digits.length());
+		header[offset + length - 1] = 0;
+	}
+
+	private static byte[] bytes(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2012 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ssh.internal.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class TarReaderTest extends TestCase {
+
+	private static String read(InputStream input) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[100];
+		int len;
+		while ((len = input.read(buffer)) != -1) {
+			output.write(buffer, 0, len);
+		}
+		return output.toString("UTF-8");
+	}
+
+	private static TarReader reader(byte[] tar) {
+		return new TarReader(new ByteArrayInputStream(tar));
+	}
+
+	public void testEntries() throws IOException {
+		final TarReader reader = reader(new TarBuilder().folder("./lib/")
+				.file("./lib/a.tcl", "puts a", 1000).file("./lib/b.tcl", "",
+						2000).toByteArray());
+		TarReader.Entry entry = reader.next();
+		assertEquals("./lib/", entry.name);
+		assertFalse(entry.isFile());
+		entry = reader.next();
+		assertEquals("./lib/a.tcl", entry.name);
+		assertTrue(entry.isFile());
+		assertEquals(6, entry.size);
+		assertEquals(1000, entry.mtime);
+		assertEquals("puts a", read(reader.getContents()));
+		entry = reader.next();
+		assertEquals("./lib/b.tcl", entry.name);
+		assertEquals(0, entry.size);
+		assertEquals(2000, entry.mtime);
+		assertEquals("", read(reader.getContents()));
+		assertNull(reader.next());
+		assertTrue(reader.isComplete());
+	}
+
+	public void testSkipContents() throws IOException {
+		final StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 1000; ++i) {
+			large.append(i);
+		}
+		final TarReader reader = reader(new TarBuilder().file("a",
+				large.toString(), 1).file("b", "second", 2).toByteArray());
+		assertEquals("a", reader.next().name);
+		assertEquals("b", reader.next().name);
+		assertEquals("second", read(reader.getContents()));
+		assertNull(reader.next());
+		assertTrue(reader.isComplete());
+	}
+
+	public void testLongName() throws IOException {
+		final StringBuilder name = new StringBuilder();
+		while (name.length() < 150) {
+			name.append("folder/");
+		}
+		name.append("file.tcl");
+		final TarReader reader = reader(new TarBuilder().file(
+				name.toString(), "long", 3).toByteArray());
+		final TarReader.Entry entry = reader.next();
+		assertEquals(name.toString(), entry.name);
+		assertTrue(entry.isFile());
+		assertEquals("long", read(reader.getContents()));
+		assertNull(reader.next());
+	}
+
+	public void testPaxPath() throws IOException {
+		final String path = "lib/\u00e4\u00f6\u00fc.tcl";
+		final TarReader reader = reader(new TarBuilder().paxFile(path, "pax",
+				4).file("next", "", 5).toByteArray());
+		final TarReader.Entry entry = reader.next();
+		assertEquals(path, entry.name);
+		assertEquals("pax", read(reader.getContents()));
+		// the pax path applies to the following entry only
+		assertEquals("next", reader.next().name);
+	}
+
+	public void testPrefix() throws IOException {
+		final TarReader reader = reader(new TarBuilder().prefixedFile(
+				"usr/lib", "file.tcl", "prefixed", 6).toByteArray());
+		final TarReader.Entry entry = reader.next();
+		assertEquals("usr/lib/file.tcl", entry.name);
+		assertEquals("prefixed", read(reader.getContents()));
+	}
+
+	public void testTruncated() throws IOException {
+		final TarReader reader = reader(new TarBuilder().file("a", "data", 1)
+				.toTruncatedByteArray());
+		assertEquals("a", reader.next().name);
+		assertNull(reader.next());
+		assertFalse(reader.isComplete());
+	}
+
+	public void testTruncatedContents() throws IOException {
+		final byte[] tar = new TarBuilder().file("a", "data", 1)
+				.toTruncatedByteArray();
+		final byte[] truncated = new byte[512 + 2];
+		System.arraycopy(tar, 0, truncated, 0, truncated.length);
+		final TarReader reader = reader(truncated);
+		assertEquals("a", reader.next().name);
+		try {
+			read(reader.getContents());
+			fail();
+		} catch (EOFException e) {
+			// expected
+		}
+	}
+
+}